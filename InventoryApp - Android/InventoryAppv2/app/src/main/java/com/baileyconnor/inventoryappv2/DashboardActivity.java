@@ -0,0 +1,130 @@
+package com.baileyconnor.inventoryappv2;
+
+import android.os.Bundle;
+import android.view.MenuItem;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.activity.EdgeToEdge;
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.baileyconnor.inventoryappv2.database.InventoryRepository;
+import com.baileyconnor.inventoryappv2.database.InventoryRepository.Callback;
+import com.baileyconnor.inventoryappv2.model.Item;
+import com.baileyconnor.inventoryappv2.model.ItemForecast;
+import com.baileyconnor.inventoryappv2.model.LocationSummary;
+
+import java.util.List;
+import java.util.Locale;
+
+// Totals per location and for the whole warehouse. Everything shown here comes from
+// the location_summary table and the quantity index, never from loading every item.
+public class DashboardActivity extends AppCompatActivity {
+
+    // How many of the lowest stocked items to list
+    private static final int LOWEST_COUNT = 10;
+    // How many of the items expected to run out first to list
+    private static final int RUNNING_OUT_COUNT = 10;
+
+    private InventoryRepository repository;
+    private TextView totalsText;
+    private LinearLayout locationsContainer;
+    private LinearLayout lowestContainer;
+    private LinearLayout runningOutContainer;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        EdgeToEdge.enable(this);
+        setContentView(R.layout.activity_dashboard);
+
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+            getSupportActionBar().setTitle("Dashboard");
+        }
+
+        repository = InventoryRepository.getInstance(this);
+        totalsText = findViewById(R.id.totalsText);
+        locationsContainer = findViewById(R.id.locationsContainer);
+        lowestContainer = findViewById(R.id.lowestContainer);
+        runningOutContainer = findViewById(R.id.runningOutContainer);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        load();
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem menuItem) {
+        if (menuItem.getItemId() == android.R.id.home) {
+            finish();
+            return true;
+        }
+        return super.onOptionsItemSelected(menuItem);
+    }
+
+    // --- --- Helper Functions --- --- \\
+
+    private void load() {
+        repository.getInventoryTotals(Callback.of(totals -> {
+            if (isFinishing() || isDestroyed()) return;
+            totalsText.setText(describe(totals));
+        }, this::showError));
+
+        repository.getLocationSummaries(Callback.of(summaries -> {
+            if (isFinishing() || isDestroyed()) return;
+            locationsContainer.removeAllViews();
+            for (LocationSummary summary : summaries) {
+                String location = summary.getLocation().isEmpty() ? "No location" : summary.getLocation();
+                addRow(locationsContainer, location + ": " + describe(summary));
+            }
+        }, this::showError));
+
+        repository.getLowestStock(LOWEST_COUNT, Callback.of(items -> {
+            if (isFinishing() || isDestroyed()) return;
+            lowestContainer.removeAllViews();
+            for (Item item : items) {
+                addRow(lowestContainer, item.getQuantity() + " x " + item.getName() +
+                        (item.getLocation() == null ? "" : " (" + item.getLocation() + ")"));
+            }
+        }, this::showError));
+
+        repository.getRunningOutSoon(RUNNING_OUT_COUNT, Callback.of(forecasts -> {
+            if (isFinishing() || isDestroyed()) return;
+            runningOutContainer.removeAllViews();
+            long now = System.currentTimeMillis();
+            for (ItemForecast forecast : forecasts) {
+                addRow(runningOutContainer, forecast.getItem().getName() + ": " + describe(forecast, now));
+            }
+        }, this::showError));
+    }
+
+    private void showError(Exception error) {
+        if (isFinishing() || isDestroyed()) return;
+        Toast.makeText(this, "Something went wrong: " + error.getMessage(), Toast.LENGTH_LONG).show();
+    }
+
+    private static String describe(LocationSummary summary) {
+        return summary.getItemCount() + " items, " + summary.getUnits() + " units, " +
+                summary.getLowStockCount() + " low on stock";
+    }
+
+    private static String describe(ItemForecast forecast, long now) {
+        double days = forecast.daysUntilEmpty(now);
+        if (days < 1) return forecast.getItem().getQuantity() <= 0 ? "empty" : "less than a day left";
+        return String.format(Locale.getDefault(), "about %.0f days left (%.1f used per day)",
+                days, forecast.getUnitsPerDay());
+    }
+
+    private void addRow(LinearLayout container, String text) {
+        TextView row = new TextView(this);
+        int pad = (int) (4 * getResources().getDisplayMetrics().density);
+        row.setPadding(0, pad, 0, pad);
+        row.setText(text);
+        container.addView(row);
+    }
+}
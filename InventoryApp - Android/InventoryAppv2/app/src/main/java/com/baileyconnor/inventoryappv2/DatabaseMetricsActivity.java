@@ -0,0 +1,144 @@
+package com.baileyconnor.inventoryappv2;
+
+import android.content.SharedPreferences;
+import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.text.format.DateFormat;
+import android.view.MenuItem;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import androidx.activity.EdgeToEdge;
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.baileyconnor.inventoryappv2.database.DbMetrics;
+import com.baileyconnor.inventoryappv2.database.StartupTracer;
+import com.google.android.material.button.MaterialButton;
+import com.google.android.material.switchmaterial.SwitchMaterial;
+import com.google.android.material.textfield.TextInputEditText;
+
+import java.util.List;
+import java.util.Locale;
+
+// Latency percentiles, row counts and the slow query log of every database operation
+// since the app started (or the last reset), and the phases of this process's cold start.
+// The settings are saved and applied to DbMetrics by InventoryApp.
+public class DatabaseMetricsActivity extends AppCompatActivity {
+
+    // Also read by InventoryApp to configure the metrics
+    static final String PREFS = "db_metrics_prefs";
+    static final String KEY_ENABLED = "enabled";
+    static final String KEY_SLOW_THRESHOLD_MS = "slow_threshold_ms";
+
+    private final DbMetrics metrics = DbMetrics.getInstance();
+    private TextView startupText;
+    private LinearLayout operationsContainer;
+    private LinearLayout slowContainer;
+    private TextView slowTitle;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        EdgeToEdge.enable(this);
+        setContentView(R.layout.activity_database_metrics);
+
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+            getSupportActionBar().setTitle("Database Metrics");
+        }
+
+        startupText = findViewById(R.id.startupText);
+        operationsContainer = findViewById(R.id.operationsContainer);
+        slowContainer = findViewById(R.id.slowContainer);
+        slowTitle = findViewById(R.id.slowTitle);
+
+        SwitchMaterial recordSwitch = findViewById(R.id.recordSwitch);
+        recordSwitch.setChecked(metrics.isEnabled());
+        recordSwitch.setOnCheckedChangeListener((button, checked) ->
+                getPrefs().edit().putBoolean(KEY_ENABLED, checked).apply());
+
+        TextInputEditText thresholdEditText = findViewById(R.id.slowThresholdEditText);
+        thresholdEditText.setText(String.valueOf(metrics.getSlowThresholdMs()));
+        thresholdEditText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void afterTextChanged(Editable s) {
+                try {
+                    long thresholdMs = Long.parseLong(s.toString().trim());
+                    getPrefs().edit().putLong(KEY_SLOW_THRESHOLD_MS, thresholdMs).apply();
+                } catch (NumberFormatException e) {
+                    // Keep the last valid threshold while the field is being edited
+                }
+            }
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {}
+        });
+
+        MaterialButton refreshButton = findViewById(R.id.refreshButton);
+        refreshButton.setOnClickListener(v -> load());
+        MaterialButton resetButton = findViewById(R.id.resetButton);
+        resetButton.setOnClickListener(v -> {
+            metrics.reset();
+            load();
+        });
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        load();
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem menuItem) {
+        if (menuItem.getItemId() == android.R.id.home) {
+            finish();
+            return true;
+        }
+        return super.onOptionsItemSelected(menuItem);
+    }
+
+    // --- --- Helper Functions --- --- \\
+
+    // Everything is read from memory, no need to leave the main thread
+    private void load() {
+        String startup = StartupTracer.getInstance().toString();
+        startupText.setText(startup.isEmpty() ? "Not finished yet" : startup);
+
+        operationsContainer.removeAllViews();
+        List<DbMetrics.Stats> snapshot = metrics.snapshot();
+        if (snapshot.isEmpty()) addRow(operationsContainer, "Nothing recorded yet");
+        for (DbMetrics.Stats stats : snapshot) {
+            addRow(operationsContainer, describe(stats));
+        }
+
+        slowContainer.removeAllViews();
+        slowTitle.setText(String.format(Locale.getDefault(), "Slow queries (%d over %d ms)",
+                metrics.slowQueryCount(), metrics.getSlowThresholdMs()));
+        for (DbMetrics.SlowQuery slow : metrics.slowQueries()) {
+            addRow(slowContainer, DateFormat.format("HH:mm:ss", slow.at) + "  " + slow);
+        }
+    }
+
+    private static String describe(DbMetrics.Stats stats) {
+        return String.format(Locale.getDefault(),
+                "%s: %d calls, %d rows (%.0f rows/s)\np50 %.2f ms, p95 %.2f ms, p99 %.2f ms, max %.2f ms",
+                stats.operation, stats.count, stats.rows, stats.rowsPerSecond,
+                stats.p50Ms, stats.p95Ms, stats.p99Ms, stats.maxMs);
+    }
+
+    private void addRow(LinearLayout container, String text) {
+        TextView row = new TextView(this);
+        int pad = (int) (4 * getResources().getDisplayMetrics().density);
+        row.setPadding(0, pad, 0, pad);
+        row.setText(text);
+        container.addView(row);
+    }
+
+    private SharedPreferences getPrefs() {
+        return getSharedPreferences(PREFS, MODE_PRIVATE);
+    }
+}
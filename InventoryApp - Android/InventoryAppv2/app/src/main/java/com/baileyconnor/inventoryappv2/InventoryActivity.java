@@ -1,30 +1,128 @@
 package com.baileyconnor.inventoryappv2;
 
 import android.content.Intent;
+import android.content.SharedPreferences;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import android.widget.ArrayAdapter;
+import android.widget.CheckBox;
+import android.widget.Spinner;
 import android.widget.Toast;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import android.widget.EditText;
 import android.widget.LinearLayout;
+import android.widget.TextView;
 import android.text.InputType;
 import android.app.AlertDialog;
 
 import androidx.activity.EdgeToEdge;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.view.ActionMode;
+import androidx.appcompat.widget.SearchView;
 import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.baileyconnor.inventoryappv2.database.DatabaseHelper;
+import com.baileyconnor.inventoryappv2.database.InventoryRepository;
+import com.baileyconnor.inventoryappv2.database.InventoryRepository.Callback;
+import com.baileyconnor.inventoryappv2.database.ItemPagingSource;
+import com.baileyconnor.inventoryappv2.database.ItemQuery;
+import com.baileyconnor.inventoryappv2.database.StartupTracer;
+import com.baileyconnor.inventoryappv2.importer.CsvItemReader;
+import com.baileyconnor.inventoryappv2.importer.ItemRowReader;
+import com.baileyconnor.inventoryappv2.importer.JsonItemReader;
 import com.baileyconnor.inventoryappv2.model.Item;
+import com.baileyconnor.inventoryappv2.model.ItemSummary;
 
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 
 public class InventoryActivity extends AppCompatActivity {
 
-    private DatabaseHelper db;
+    // Grid paging: rows per page, how close to the end the next page is requested
+    // and how many pages around the visible range survive a memory trim
+    private static final int PAGE_SIZE = 60;
+    private static final int PREFETCH_DISTANCE = 30;
+    private static final int KEEP_PAGES = 2;
+
+    // Search as you type: wait for a pause in typing before querying, and show at most this many results
+    private static final long SEARCH_DEBOUNCE_MS = 200;
+    private static final int SEARCH_LIMIT = 100;
+
+    // Sort choices, indexed by the ItemQuery.SORT_ constants
+    private static final String[] SORT_NAMES = { "Last updated", "Name", "Quantity", "Location" };
+
+    private InventoryRepository repository;
     private InventoryAdapter adapter;
+    private ItemPagingSource pagingSource;
+    // Whether the first page has been shown, the startup trace ends with its first frame
+    private boolean firstPageShown = false;
+
+    // Latest paged list, shown again when the search is cleared
+    private List<ItemSummary> pagedItems = new ArrayList<>();
+
+    // Search state, searchGeneration is bumped for every search so stale results are dropped
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private final Runnable runPendingSearch = this::runSearch;
+    private String searchQuery = "";
+    private CancellationSignal searchSignal;
+    private int searchGeneration = 0;
+
+    // Multi-select, null while nothing is being selected
+    private ActionMode selectionMode;
+    private final ActionMode.Callback selectionCallback = new ActionMode.Callback() {
+        @Override public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+            mode.getMenuInflater().inflate(R.menu.inventory_selection_menu, menu);
+            return true;
+        }
+        @Override public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+            return false;
+        }
+        @Override public boolean onActionItemClicked(ActionMode mode, MenuItem menuItem) {
+            if (menuItem.getItemId() == R.id.action_select_all) {
+                adapter.selectAll();
+                updateSelectionTitle();
+                return true;
+            }
+            if (menuItem.getItemId() == R.id.action_bulk_delete) {
+                confirmBulkDelete();
+                return true;
+            }
+            if (menuItem.getItemId() == R.id.action_bulk_move) {
+                promptBulkMove();
+                return true;
+            }
+            if (menuItem.getItemId() == R.id.action_bulk_adjust) {
+                promptBulkAdjust();
+                return true;
+            }
+            return false;
+        }
+        @Override public void onDestroyActionMode(ActionMode mode) {
+            selectionMode = null;
+            adapter.clearSelection();
+        }
+    };
+
+    // File picker for the bulk import
+    private final ActivityResultLauncher<String[]> pickImportFile = registerForActivityResult(
+            new ActivityResultContracts.OpenDocument(), uri -> {
+                if (uri != null) importFile(uri);
+            });
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -32,31 +130,48 @@ public class InventoryActivity extends AppCompatActivity {
         EdgeToEdge.enable(this);
         setContentView(R.layout.activity_inventory);
 
-        db = new DatabaseHelper(this);
+        repository = InventoryRepository.getInstance(this);
 
         RecyclerView inventoryRecycler = findViewById(R.id.inventoryRecycler);
-        inventoryRecycler.setLayoutManager(new GridLayoutManager(this, 2));
+        GridLayoutManager layoutManager = new GridLayoutManager(this, 2);
+        inventoryRecycler.setLayoutManager(layoutManager);
 
-        adapter = new InventoryAdapter(db.getAllItems(), new InventoryAdapter.Listener() {
-            @Override public void onClick(Item item) {
+        // Start empty, the items are loaded page by page in the background
+        adapter = new InventoryAdapter(new ArrayList<>(), new InventoryAdapter.Listener() {
+            @Override public void onClick(ItemSummary item) {
+                // While selecting, a tap adds or removes the item instead of opening it
+                if (selectionMode != null) {
+                    toggleSelected(item);
+                    return;
+                }
                 Intent i = new Intent(InventoryActivity.this, InventoryItemActivity.class);
                 i.putExtra(InventoryItemActivity.ITEM_ID, item.getId());
                 startActivity(i);
             }
-            @Override public void onLongPress(Item item) {
-                new android.app.AlertDialog.Builder(InventoryActivity.this)
-                        .setTitle("Delete item")
-                        .setMessage("Delete \"" + item.getName() + "\"?")
-                        .setPositiveButton("Delete", (d, w) -> {
-                            db.deleteItem(item.getId());
-                            refresh();
-                        })
-                        .setNegativeButton("Cancel", null)
-                        .show();
+            @Override public void onLongPress(ItemSummary item) {
+                if (selectionMode == null) selectionMode = startSupportActionMode(selectionCallback);
+                toggleSelected(item);
             }
         });
         inventoryRecycler.setAdapter(adapter);
 
+        pagingSource = new ItemPagingSource(repository, PAGE_SIZE, PREFETCH_DISTANCE, new ItemPagingSource.Listener() {
+            @Override public void onItemsChanged(List<ItemSummary> items) {
+                onItemsLoaded(items);
+            }
+            @Override public void onLoadFailed(Exception error) {
+                showError(error);
+            }
+        });
+        inventoryRecycler.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                pagingSource.onVisibleRange(
+                        layoutManager.findFirstVisibleItemPosition(),
+                        layoutManager.findLastVisibleItemPosition());
+            }
+        });
+
         // Floating Action Button
         FloatingActionButton fab = findViewById(R.id.floatingActionButton);
         fab.setOnClickListener(v -> {
@@ -93,49 +208,370 @@ public class InventoryActivity extends AppCompatActivity {
                         }
                         int q = Integer.parseInt(qStr);
 
-                        long newId = db.insertItem(new Item(n, q, l));
-
-                        if (newId == -1) {
-                            Toast.makeText(this, "Failed to add item", Toast.LENGTH_LONG).show();
-                        } else {
-                            Toast.makeText(this, "Added: " + n, Toast.LENGTH_SHORT).show();
-                            refresh();
-                        }
+                        repository.insertItem(new Item(n, q, l), Callback.of(newId -> {
+                            if (newId == -1) {
+                                Toast.makeText(this, "Failed to add item", Toast.LENGTH_LONG).show();
+                            } else {
+                                Toast.makeText(this, "Added: " + n, Toast.LENGTH_SHORT).show();
+                                refresh();
+                            }
+                        }, this::showError));
                     })
                     .setNegativeButton("Cancel", null)
                     .show();
         });
+    }
 
-        // Initialize the database with sample values if it is empty
-        if (adapter.getItemCount() == 0) {
-            db.insertItem(new Item(1, "Boxes", 17, "Bay 4"));
-            db.insertItem(new Item(2, "Tape", 29, "Bay 7"));
-            db.insertItem(new Item(3, "Nails", 103, "Bay 4"));
-            db.insertItem(new Item(4, "Paper Cups", 51, "Bay 1"));
-            db.insertItem(new Item(5, "Apple Magic Keyboard", 6, "Bay 2"));
-            db.insertItem(new Item(6, "Apple Magic Trackpad", 7, "Bay 2"));
-            db.insertItem(new Item(7, "Apple Magic Mouse", 6, "Bay 2"));
-            db.insertItem(new Item(8, "Lightning Cable (1M)", 24, "Bay 3"));
-            db.insertItem(new Item(9, "USB-C Cable (1M)", 25, "Bay 2"));
-            refresh();
+    // --- --- Multi-Select --- --- \\
+    // Each bulk action is a single transaction in the data layer, and the grid catches up
+    // with one refresh() once it has committed.
+
+    private void toggleSelected(ItemSummary item) {
+        adapter.toggleSelected(item.getId());
+        if (adapter.getSelectedCount() == 0) {
+            selectionMode.finish();
+        } else {
+            updateSelectionTitle();
         }
     }
 
+    private void updateSelectionTitle() {
+        if (selectionMode != null) selectionMode.setTitle(adapter.getSelectedCount() + " selected");
+    }
+
+    private void confirmBulkDelete() {
+        long[] ids = adapter.getSelectedIds();
+        new AlertDialog.Builder(this)
+                .setTitle("Delete items")
+                .setMessage("Delete " + ids.length + (ids.length == 1 ? " item?" : " items?"))
+                .setPositiveButton("Delete", (d, w) -> repository.deleteItems(ids, Callback.of(deleted ->
+                        bulkDone("Deleted", count(deleted), ids.length), this::showError)))
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void promptBulkMove() {
+        long[] ids = adapter.getSelectedIds();
+        final EditText input = new EditText(this);
+        input.setHint("Location");
+
+        new AlertDialog.Builder(this)
+                .setTitle("Move " + ids.length + (ids.length == 1 ? " item" : " items"))
+                .setView(input)
+                .setPositiveButton("Move", (d, w) -> {
+                    String location = input.getText().toString().trim();
+                    repository.moveItems(ids, location, Callback.of(moved ->
+                            bulkDone("Moved", count(moved), ids.length), this::showError));
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void promptBulkAdjust() {
+        long[] ids = adapter.getSelectedIds();
+        final EditText input = new EditText(this);
+        input.setHint("Amount to add, negative to remove");
+        input.setInputType(InputType.TYPE_CLASS_NUMBER | InputType.TYPE_NUMBER_FLAG_SIGNED);
+
+        new AlertDialog.Builder(this)
+                .setTitle("Adjust " + ids.length + (ids.length == 1 ? " item" : " items"))
+                .setView(input)
+                .setPositiveButton("Save", (d, w) -> {
+                    int delta;
+                    try {
+                        delta = Integer.parseInt(input.getText().toString().trim());
+                    } catch (NumberFormatException error) {
+                        Toast.makeText(this, "Please enter a valid number", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    // Items that would go below zero are left as they are
+                    repository.adjustQuantities(ids, delta, 0, DatabaseHelper.NO_CEILING, Callback.of(adjusted ->
+                            bulkDone("Adjusted", count(adjusted), ids.length), this::showError));
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void bulkDone(String verb, int changed, int selected) {
+        if (isFinishing() || isDestroyed()) return;
+        if (selectionMode != null) selectionMode.finish();
+        Toast.makeText(this, verb + " " + changed + " of " + selected + " items", Toast.LENGTH_SHORT).show();
+        refresh();
+    }
+
+    private void showError(Exception error) {
+        if (isFinishing() || isDestroyed()) return;
+        Toast.makeText(this, "Something went wrong: " + error.getMessage(), Toast.LENGTH_LONG).show();
+    }
+
+    // Rows changed by a bulk action
+    private static int count(int[] changed) {
+        int total = 0;
+        for (int rows : changed) total += rows;
+        return total;
+    }
+
+    // Reload only what was written since the grid was loaded, nothing if nothing was
     private void refresh() {
-        List<Item> all = db.getAllItems();
-        Toast.makeText(this, "Items: " + all.size(), Toast.LENGTH_SHORT).show();
-        adapter.submit(all);
+        boolean changed = pagingSource.reloadChanged();
+        if (changed && !searchQuery.isEmpty()) runSearch();
+    }
+
+    private void onItemsLoaded(List<ItemSummary> items) {
+        if (isFinishing() || isDestroyed()) return;
+
+        pagedItems = items;
+        if (searchQuery.isEmpty()) adapter.submit(items);
+        if (!firstPageShown) traceFirstFrame();
+    }
+
+    // The first page is in, its rows are bound in the next layout pass and the grid's
+    // first frame is drawn right after it
+    private void traceFirstFrame() {
+        firstPageShown = true;
+        StartupTracer tracer = StartupTracer.getInstance();
+        tracer.end(StartupTracer.FIRST_QUERY);
+        tracer.begin(StartupTracer.FIRST_BIND);
+
+        View grid = findViewById(R.id.inventoryRecycler);
+        grid.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override public boolean onPreDraw() {
+                grid.getViewTreeObserver().removeOnPreDrawListener(this);
+                tracer.end(StartupTracer.FIRST_BIND);
+                reportFullyDrawn();
+                return true;
+            }
+        });
+    }
+
+    // --- --- Sort and Filter --- --- \\
+    // The grid reloads from its first page with the new query, sorting and filtering
+    // happen in the database (see ItemQuery).
+
+    private void promptQuery() {
+        ItemQuery current = pagingSource.getQuery();
+
+        final Spinner sort = new Spinner(this);
+        sort.setAdapter(new ArrayAdapter<>(this, android.R.layout.simple_spinner_dropdown_item, SORT_NAMES));
+        sort.setSelection(current.sort);
+
+        final CheckBox descending = new CheckBox(this);
+        descending.setText("Descending");
+        descending.setChecked(current.descending);
+
+        final EditText location = new EditText(this);
+        location.setHint("Location (any)");
+        if (current.location != null) location.setText(current.location);
+
+        final EditText minQty = new EditText(this);
+        minQty.setHint("Minimum quantity");
+        minQty.setInputType(InputType.TYPE_CLASS_NUMBER);
+        if (current.minQuantity != null) minQty.setText(String.valueOf(current.minQuantity));
+
+        final EditText maxQty = new EditText(this);
+        maxQty.setHint("Maximum quantity");
+        maxQty.setInputType(InputType.TYPE_CLASS_NUMBER);
+        if (current.maxQuantity != null) maxQty.setText(String.valueOf(current.maxQuantity));
+
+        final CheckBox lowStock = new CheckBox(this);
+        lowStock.setText("Low stock only");
+        lowStock.setChecked(current.lowStockOnly);
+
+        LinearLayout container = new LinearLayout(this);
+        container.setOrientation(LinearLayout.VERTICAL);
+        int pad = (int) (16 * getResources().getDisplayMetrics().density);
+        container.setPadding(pad, pad, pad, pad);
+        container.addView(sort);
+        container.addView(descending);
+        container.addView(location);
+        container.addView(minQty);
+        container.addView(maxQty);
+        container.addView(lowStock);
+
+        new AlertDialog.Builder(this)
+                .setTitle("Sort and filter")
+                .setView(container)
+                .setPositiveButton("Apply", (d, w) -> {
+                    Integer min, max;
+                    try {
+                        min = quantityOf(minQty);
+                        max = quantityOf(maxQty);
+                    } catch (NumberFormatException error) {
+                        Toast.makeText(this, "Please enter a valid number", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    applyQuery(new ItemQuery(sort.getSelectedItemPosition(), descending.isChecked(),
+                            location.getText().toString(), min, max, lowStock.isChecked()));
+                })
+                .setNeutralButton("Reset", (d, w) -> applyQuery(ItemQuery.DEFAULT))
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void applyQuery(ItemQuery query) {
+        pagingSource.setQuery(query);
+        // The subtitle says what the grid shows, unless it's the default
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setSubtitle(query.equals(ItemQuery.DEFAULT) ? null : query.toString());
+        }
+    }
+
+    // Null when left empty
+    private static Integer quantityOf(EditText input) {
+        String text = input.getText().toString().trim();
+        return text.isEmpty() ? null : Integer.valueOf(text);
+    }
+
+    // --- --- Search --- --- \\
+
+    // Called for every keystroke, the query only runs once typing pauses
+    private void onSearchChanged(String text) {
+        searchHandler.removeCallbacks(runPendingSearch);
+        cancelSearch();
+
+        searchQuery = text.trim();
+        if (searchQuery.isEmpty()) {
+            // Back to the paged grid
+            adapter.submit(pagedItems);
+            return;
+        }
+        searchHandler.postDelayed(runPendingSearch, SEARCH_DEBOUNCE_MS);
+    }
+
+    private void runSearch() {
+        cancelSearch();
+        int generation = searchGeneration;
+        String query = searchQuery;
+        searchSignal = new CancellationSignal();
+
+        repository.searchItems(query, SEARCH_LIMIT, searchSignal, Callback.of(items -> {
+            if (generation != searchGeneration || isFinishing() || isDestroyed()) return;
+            List<ItemSummary> results = new ArrayList<>(items.size());
+            for (Item item : items) results.add(new ItemSummary(item));
+            adapter.submit(results);
+        }, error -> {
+            // A cancelled search fails too, but it's been replaced already
+            if (generation == searchGeneration) showError(error);
+        }));
+    }
+
+    // Abandon the running query (if any) and ignore whatever it still delivers
+    private void cancelSearch() {
+        searchGeneration++;
+        if (searchSignal != null) {
+            searchSignal.cancel();
+            searchSignal = null;
+        }
+    }
+
+    // Stream a CSV or JSON file into the database, the picked file type decides the format
+    private void importFile(Uri uri) {
+        ItemRowReader reader;
+        try {
+            InputStream stream = getContentResolver().openInputStream(uri);
+            if (stream == null) throw new FileNotFoundException(uri.toString());
+            BufferedReader in = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+            String type = getContentResolver().getType(uri);
+            boolean json = (type != null && type.contains("json")) || uri.toString().endsWith(".json");
+            reader = json ? new JsonItemReader(in) : new CsvItemReader(in);
+        } catch (Exception error) {
+            Toast.makeText(this, "Could not open the file", Toast.LENGTH_LONG).show();
+            return;
+        }
+
+        TextView status = new TextView(this);
+        int pad = (int) (24 * getResources().getDisplayMetrics().density);
+        status.setPadding(pad, pad, pad, pad);
+        status.setText("Starting import...");
+        AlertDialog progressDialog = new AlertDialog.Builder(this)
+                .setTitle("Importing items")
+                .setView(status)
+                .setCancelable(false)
+                .show();
+
+        repository.importItems(reader,
+                progress -> status.setText(progress.rowsRead + " rows, " + progress.rowsPerSecond() + " rows/s"),
+                Callback.of(result -> {
+                    progressDialog.dismiss();
+                    if (isFinishing() || isDestroyed()) return;
+
+                    String message = result.error == null
+                            ? "Imported " + result.inserted + " new and " + result.updated + " updated items"
+                            : "Import stopped after " + result.rowsRead + " rows: " + result.error;
+                    new AlertDialog.Builder(this)
+                            .setTitle("Import finished")
+                            .setMessage(message + "\n" + result)
+                            .setPositiveButton("OK", null)
+                            .show();
+                    refresh();
+                }, error -> {
+                    progressDialog.dismiss();
+                    showError(error);
+                    refresh();
+                }));
+    }
+
+    // Push the outbox to the inventory API and pull its changes, once signed in on the Sync screen
+    private void syncNow() {
+        SharedPreferences prefs = getSharedPreferences(SyncActivity.PREFS, MODE_PRIVATE);
+        if (!SyncActivity.isSignedIn(prefs)) {
+            Toast.makeText(this, "Sign in to sync", Toast.LENGTH_SHORT).show();
+            startActivity(new Intent(this, SyncActivity.class));
+            return;
+        }
+
+        Toast.makeText(this, "Syncing...", Toast.LENGTH_SHORT).show();
+        repository.sync(prefs.getString(SyncActivity.KEY_BASE_URL, ""),
+                () -> prefs.getString(SyncActivity.KEY_ACCESS_TOKEN, null),
+                Callback.of(result -> {
+                    SyncActivity.saveResult(prefs, result);
+                    if (isFinishing() || isDestroyed()) return;
+                    Toast.makeText(this, "Synced: pushed " + (result.pushed + result.pushedDeletes) +
+                            ", pulled " + result.applied, Toast.LENGTH_SHORT).show();
+                    refresh();
+                }, this::showError));
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        pagingSource.trimMemory(KEEP_PAGES);
     }
 
     @Override
     protected void onResume() {
         super.onResume();
+        // Only the first load of the process is traced, the tracer ignores the rest
+        StartupTracer.getInstance().begin(StartupTracer.FIRST_QUERY);
         refresh();
     }
 
+    @Override
+    protected void onDestroy() {
+        searchHandler.removeCallbacks(runPendingSearch);
+        cancelSearch();
+        super.onDestroy();
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.inventory_menu, menu);
+
+        SearchView searchView = (SearchView) menu.findItem(R.id.action_search).getActionView();
+        searchView.setQueryHint("Search items");
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override public boolean onQueryTextSubmit(String query) {
+                // Don't wait for the debounce when the user presses search
+                onSearchChanged(query);
+                searchHandler.removeCallbacks(runPendingSearch);
+                if (!searchQuery.isEmpty()) runSearch();
+                return true;
+            }
+            @Override public boolean onQueryTextChange(String text) {
+                onSearchChanged(text);
+                return true;
+            }
+        });
         return true;
     }
 
@@ -145,6 +581,34 @@ public class InventoryActivity extends AppCompatActivity {
             startActivity(new Intent(this, NotificationsActivity.class));
             return true;
         }
+        if (menuItem.getItemId() == R.id.action_sort_filter) {
+            promptQuery();
+            return true;
+        }
+        if (menuItem.getItemId() == R.id.action_scan) {
+            startActivity(new Intent(this, ScanActivity.class));
+            return true;
+        }
+        if (menuItem.getItemId() == R.id.action_dashboard) {
+            startActivity(new Intent(this, DashboardActivity.class));
+            return true;
+        }
+        if (menuItem.getItemId() == R.id.action_sync) {
+            syncNow();
+            return true;
+        }
+        if (menuItem.getItemId() == R.id.action_sync_settings) {
+            startActivity(new Intent(this, SyncActivity.class));
+            return true;
+        }
+        if (menuItem.getItemId() == R.id.action_database_metrics) {
+            startActivity(new Intent(this, DatabaseMetricsActivity.class));
+            return true;
+        }
+        if (menuItem.getItemId() == R.id.action_import) {
+            pickImportFile.launch(new String[] { "text/csv", "text/comma-separated-values", "application/json", "text/plain" });
+            return true;
+        }
         return super.onOptionsItemSelected(menuItem);
     }
 }
\ No newline at end of file
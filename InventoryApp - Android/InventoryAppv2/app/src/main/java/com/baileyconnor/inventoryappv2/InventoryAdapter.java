@@ -3,63 +3,179 @@ package com.baileyconnor.inventoryappv2;
 import android.view.LayoutInflater;
 import android.view.ViewGroup;
 import android.view.View;
+import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.baileyconnor.inventoryappv2.model.Item;
+import com.baileyconnor.inventoryappv2.model.ItemSummary;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
-public class InventoryAdapter extends RecyclerView.Adapter<InventoryAdapter.Holder> {
+// The list is diffed on a background thread by ListAdapter, so a refresh only
+// dispatches the inserts, removes, moves and changes between the two lists.
+// Null entries are placeholders for pages that haven't been loaded (see ItemPagingSource).
+// Selected items are kept by id, so the selection survives refreshes and searches.
+public class InventoryAdapter extends ListAdapter<ItemSummary, InventoryAdapter.Holder> {
+
+    // Payload sent when only the quantity of an item changed
+    static final Object PAYLOAD_QUANTITY = new Object();
+    // Payload sent when only whether an item is selected changed
+    static final Object PAYLOAD_SELECTION = new Object();
 
     public interface Listener {
-        void onClick(Item item);
-        void onLongPress(Item item);
+        void onClick(ItemSummary item);
+        void onLongPress(ItemSummary item);
     }
 
-    private List<Item> data;
     private final Listener listener;
+    private final Set<Long> selected = new HashSet<>();
 
-    public InventoryAdapter(List<Item> data, Listener listener) {
-        this.data = data;
+    public InventoryAdapter(List<ItemSummary> data, Listener listener) {
+        super(new ItemDiff());
         this.listener = listener;
+        setHasStableIds(true);
+        submitList(data);
+    }
+
+    public void submit(List<ItemSummary> updated) {
+        submitList(updated);
+    }
+
+    // --- --- Selection --- --- \\
+
+    public boolean isSelected(long id) {
+        return selected.contains(id);
     }
 
-    public void submit(List<Item> updated) {
-        this.data = updated;
-        notifyDataSetChanged();
+    // Select the item if it isn't, unselect it if it is
+    public void toggleSelected(long id) {
+        if (!selected.remove(id)) selected.add(id);
+        List<ItemSummary> items = getCurrentList();
+        for (int pos = 0; pos < items.size(); pos++) {
+            ItemSummary item = items.get(pos);
+            if (item != null && item.getId() == id) {
+                notifyItemChanged(pos, PAYLOAD_SELECTION);
+                return;
+            }
+        }
+    }
+
+    // Every item in the list, placeholders for pages that aren't loaded can't be selected
+    public void selectAll() {
+        for (ItemSummary item : getCurrentList()) {
+            if (item != null) selected.add(item.getId());
+        }
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
+    }
+
+    public void clearSelection() {
+        if (selected.isEmpty()) return;
+        selected.clear();
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
+    }
+
+    public int getSelectedCount() {
+        return selected.size();
+    }
+
+    public long[] getSelectedIds() {
+        long[] ids = new long[selected.size()];
+        int i = 0;
+        for (long id : selected) ids[i++] = id;
+        return ids;
     }
 
     @NonNull @Override
     public Holder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View v = LayoutInflater.from(parent.getContext()).inflate(R.layout.inventory_cell, parent, false);
-        return new Holder(v);
+        Holder h = new Holder(v);
+
+        // The listeners look up the current item so a partial rebind never leaves them stale
+        v.setOnClickListener(view -> {
+            ItemSummary item = itemAt(h);
+            if (item != null) listener.onClick(item);
+        });
+        v.setOnLongClickListener(view -> {
+            ItemSummary item = itemAt(h);
+            if (item == null) return false;
+            listener.onLongPress(item);
+            return true;
+        });
+        return h;
     }
 
-    @Override public int getItemCount() {
-        return data == null ? 0 : data.size();
+    @Override public long getItemId(int pos) {
+        ItemSummary item = getItem(pos);
+        // A placeholder has no id of its own, its position shifts as pages load around it
+        return item == null ? RecyclerView.NO_ID : item.getId();
     }
 
     @Override public void onBindViewHolder(@NonNull Holder h, int pos) {
-        Item item = data.get(pos);
+        ItemSummary item = getItem(pos);
+        if (item == null) {
+            h.tvName.setText("Loading...");
+            h.tvQty.setText("");
+            bindSelection(h, false);
+            return;
+        }
         h.tvName.setText(item.getName());
         h.tvQty.setText(String.valueOf(item.getQuantity()));
+        bindSelection(h, selected.contains(item.getId()));
+    }
 
-        h.itemView.setOnClickListener(v -> listener.onClick(item));
-        h.itemView.setOnLongClickListener(v -> {
-            listener.onLongPress(item);
-            return true;
-        });
+    @Override public void onBindViewHolder(@NonNull Holder h, int pos, @NonNull List<Object> payloads) {
+        // Only the quantity or the selection changed, skip rebinding the rest of the cell
+        ItemSummary item = getItem(pos);
+        if (!payloads.isEmpty() && payloads.stream().allMatch(p -> p == PAYLOAD_QUANTITY || p == PAYLOAD_SELECTION)) {
+            if (item == null) return;
+            if (payloads.contains(PAYLOAD_QUANTITY)) h.tvQty.setText(String.valueOf(item.getQuantity()));
+            if (payloads.contains(PAYLOAD_SELECTION)) bindSelection(h, selected.contains(item.getId()));
+            return;
+        }
+        onBindViewHolder(h, pos);
+    }
+
+    private static void bindSelection(Holder h, boolean isSelected) {
+        h.itemView.setActivated(isSelected);
+        h.ivSelected.setVisibility(isSelected ? View.VISIBLE : View.GONE);
+    }
+
+    private ItemSummary itemAt(Holder h) {
+        int pos = h.getBindingAdapterPosition();
+        return pos == RecyclerView.NO_POSITION ? null : getItem(pos);
+    }
+
+    // Items are matched by id and compared on the fields the grid shows
+    static class ItemDiff extends DiffUtil.ItemCallback<ItemSummary> {
+        @Override public boolean areItemsTheSame(@NonNull ItemSummary oldItem, @NonNull ItemSummary newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override public boolean areContentsTheSame(@NonNull ItemSummary oldItem, @NonNull ItemSummary newItem) {
+            return oldItem.getQuantity() == newItem.getQuantity()
+                    && Objects.equals(oldItem.getName(), newItem.getName());
+        }
+
+        @Override public Object getChangePayload(@NonNull ItemSummary oldItem, @NonNull ItemSummary newItem) {
+            return Objects.equals(oldItem.getName(), newItem.getName()) ? PAYLOAD_QUANTITY : null;
+        }
     }
 
     static class Holder extends RecyclerView.ViewHolder {
         TextView tvName, tvQty;
+        ImageView ivSelected;
         Holder(@NonNull View itemView) {
             super(itemView);
             tvName = itemView.findViewById(R.id.tvName);
             tvQty = itemView.findViewById(R.id.tvQty);
+            ivSelected = itemView.findViewById(R.id.ivSelected);
         }
     }
 }
@@ -0,0 +1,84 @@
+package com.baileyconnor.inventoryappv2;
+
+import android.app.Application;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.baileyconnor.inventoryappv2.alerts.AndroidSmsSender;
+import com.baileyconnor.inventoryappv2.alerts.LowStockAlertEngine;
+import com.baileyconnor.inventoryappv2.database.DbMetrics;
+import com.baileyconnor.inventoryappv2.database.InventoryRepository;
+import com.baileyconnor.inventoryappv2.database.StartupTracer;
+
+// Process-wide setup that has to happen once, whichever activity starts first.
+// The low stock alert engine is fed every committed quantity change and sends through the
+// phone number saved on the SMS Alerts screen while low inventory alerts are switched on.
+// Old quantity ledger history is compacted in the background on every start.
+// Database timings are recorded unless switched off on the Database Metrics screen.
+// The database's write-ahead log is checkpointed whenever the app goes to the background.
+// The database is opened in the background straight away, while the first screen inflates,
+// and the phases of the start are timed from here by StartupTracer.
+public class InventoryApp extends Application {
+
+    // Crossings within this window go out as one message, and at most one message per interval
+    private static final long ALERT_COALESCE_WINDOW_MS = 60_000;
+    private static final long ALERT_MIN_SEND_INTERVAL_MS = 5 * 60_000;
+    private static final int ALERT_MAX_QUEUED = 3;
+
+    private LowStockAlertEngine alertEngine;
+
+    // Kept as a field, SharedPreferences only holds its listeners weakly
+    private final SharedPreferences.OnSharedPreferenceChangeListener alertPrefsListener =
+            (prefs, key) -> applyAlertPrefs(prefs);
+    private final SharedPreferences.OnSharedPreferenceChangeListener metricsPrefsListener =
+            (prefs, key) -> applyMetricsPrefs(prefs);
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        StartupTracer tracer = StartupTracer.getInstance();
+
+        Handler main = new Handler(Looper.getMainLooper());
+        alertEngine = new LowStockAlertEngine(
+                new AndroidSmsSender(this),
+                SystemClock::elapsedRealtime,
+                main::postDelayed,
+                ALERT_COALESCE_WINDOW_MS,
+                ALERT_MIN_SEND_INTERVAL_MS,
+                ALERT_MAX_QUEUED);
+
+        SharedPreferences prefs = getSharedPreferences(NotificationsActivity.PREFS, MODE_PRIVATE);
+        applyAlertPrefs(prefs);
+        prefs.registerOnSharedPreferenceChangeListener(alertPrefsListener);
+
+        SharedPreferences metricsPrefs = getSharedPreferences(DatabaseMetricsActivity.PREFS, MODE_PRIVATE);
+        applyMetricsPrefs(metricsPrefs);
+        metricsPrefs.registerOnSharedPreferenceChangeListener(metricsPrefsListener);
+
+        InventoryRepository repository = InventoryRepository.getInstance(this);
+        repository.setQuantityListener(alertEngine::onQuantityChanged);
+        repository.open(tracer, null);
+        repository.compactLedger(null);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level == TRIM_MEMORY_UI_HIDDEN) {
+            InventoryRepository.getInstance(this).checkpoint(null);
+        }
+    }
+
+    private void applyAlertPrefs(SharedPreferences prefs) {
+        boolean enabled = prefs.getBoolean(NotificationsActivity.KEY_LOW_INVENTORY_ENABLED, false);
+        alertEngine.setRecipient(enabled ? prefs.getString(NotificationsActivity.KEY_SMS_PHONE, null) : null);
+    }
+
+    private void applyMetricsPrefs(SharedPreferences prefs) {
+        DbMetrics metrics = DbMetrics.getInstance();
+        metrics.setEnabled(prefs.getBoolean(DatabaseMetricsActivity.KEY_ENABLED, true));
+        metrics.setSlowThresholdMs(prefs.getLong(DatabaseMetricsActivity.KEY_SLOW_THRESHOLD_MS, DbMetrics.DEFAULT_SLOW_THRESHOLD_MS));
+    }
+}
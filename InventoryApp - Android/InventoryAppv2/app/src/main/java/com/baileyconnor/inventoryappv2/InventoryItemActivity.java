@@ -13,17 +13,21 @@ import androidx.activity.EdgeToEdge;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.baileyconnor.inventoryappv2.database.DatabaseHelper;
-import com.baileyconnor.inventoryappv2.model.Item;
+import com.baileyconnor.inventoryappv2.database.InventoryRepository;
+import com.baileyconnor.inventoryappv2.database.InventoryRepository.Callback;
+
+// Every change made here writes only the field it edits, and the +1 / -1 buttons add to
+// whatever is stored, so two people working on the same item don't undo each other.
 public class InventoryItemActivity extends AppCompatActivity {
 
     public static final String ITEM_ID = "item_id";
 
-    private DatabaseHelper db;
+    private InventoryRepository repository;
     private long itemId = -1L;
-    private Item item;
 
-    private TextView itemName, itemAmountAnswerText, itemLocationAnswerText;
-    private Button adjustQuantityItemButton, adjustLocationButton, deleteItemButton;
+    private TextView itemName, itemAmountAnswerText, itemLocationAnswerText, itemSkuAnswerText;
+    private Button adjustQuantityItemButton, adjustLocationButton, deleteItemButton, setSkuButton;
+    private Button decreaseQuantityButton, increaseQuantityButton;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -35,12 +39,16 @@ public class InventoryItemActivity extends AppCompatActivity {
         itemName = findViewById(R.id.itemName);
         itemAmountAnswerText = findViewById(R.id.itemAmountAnswerText);
         itemLocationAnswerText = findViewById(R.id.itemLocationAnswerText);
+        itemSkuAnswerText = findViewById(R.id.itemSkuAnswerText);
         adjustQuantityItemButton = findViewById(R.id.adjustQuantityItemButton);
         adjustLocationButton = findViewById(R.id.adjustLocationButton);
         deleteItemButton = findViewById(R.id.deleteItemButton);
+        setSkuButton = findViewById(R.id.setSkuButton);
+        decreaseQuantityButton = findViewById(R.id.decreaseQuantityButton);
+        increaseQuantityButton = findViewById(R.id.increaseQuantityButton);
 
-        // Initialize the database and load the item from intent
-        db = new DatabaseHelper(this);
+        // Initialize the repository and load the item from intent
+        repository = InventoryRepository.getInstance(this);
         itemId = getIntent().getLongExtra(ITEM_ID, -1L);
         if (itemId == -1L) {
             Toast.makeText(this, "No item id provided", Toast.LENGTH_SHORT).show();
@@ -48,23 +56,36 @@ public class InventoryItemActivity extends AppCompatActivity {
             return;
         }
 
-        item = db.getItemById(itemId);
-        if (item == null) {
-            Toast.makeText(this, "Item not found", Toast.LENGTH_SHORT).show();
-            finish();
-            return;
-        }
-
-        // Populate the current values fetched from the database
-        itemName.setText(item.getName());
-        itemAmountAnswerText.setText(String.valueOf(item.getQuantity()));
-        itemLocationAnswerText.setText(item.getLocation());
-
         if (getSupportActionBar() != null) {
             getSupportActionBar().setDisplayHomeAsUpEnabled(true);
-            getSupportActionBar().setTitle(item.getName());
         }
 
+        // The buttons stay disabled until the item has been loaded
+        setButtonsEnabled(false);
+        repository.getItemById(itemId, Callback.of(loaded -> {
+            if (isFinishing() || isDestroyed()) return;
+
+            if (loaded == null) {
+                Toast.makeText(this, "Item not found", Toast.LENGTH_SHORT).show();
+                finish();
+                return;
+            }
+
+            // Populate the current values fetched from the database
+            itemName.setText(loaded.getName());
+            itemAmountAnswerText.setText(String.valueOf(loaded.getQuantity()));
+            itemLocationAnswerText.setText(loaded.getLocation());
+            showSku(loaded.getSku());
+
+            if (getSupportActionBar() != null) {
+                getSupportActionBar().setTitle(loaded.getName());
+            }
+            setButtonsEnabled(true);
+        }, error -> {
+            showError(error);
+            finish();
+        }));
+
         // Button Event Listeners
         adjustQuantityItemButton.setOnClickListener(v -> {
             final EditText input = new EditText(this);
@@ -85,13 +106,12 @@ public class InventoryItemActivity extends AppCompatActivity {
                             return;
                         }
 
-                        // Update the model and DB
-                        item.setQuantity(newQuantity);
-                        db.updateItem(item);
-
-                        // Update the UI
-                        itemAmountAnswerText.setText(String.valueOf(newQuantity));
-                        Toast.makeText(this, "Quantity updated to: " + newQuantity, Toast.LENGTH_SHORT).show();
+                        // Update the quantity column only
+                        repository.updateQuantity(itemId, newQuantity, Callback.of(quantity -> {
+                            if (isFinishing() || isDestroyed() || quantity == null) return;
+                            itemAmountAnswerText.setText(String.valueOf(quantity));
+                            Toast.makeText(this, "Quantity updated to: " + quantity, Toast.LENGTH_SHORT).show();
+                        }, this::showError));
                     })
                     .setNegativeButton("Cancel", null)
                     .show();
@@ -108,31 +128,87 @@ public class InventoryItemActivity extends AppCompatActivity {
                     .setPositiveButton("Save", (dialog, which) -> {
                         String newLocation = input.getText().toString().trim();
 
-                        // Update the model and the database
-                        item.setLocation(newLocation);
-                        db.updateItem(item);
+                        // Update the location column only
+                        repository.updateLocation(itemId, newLocation, Callback.of(changed -> {
+                            if (isFinishing() || isDestroyed() || changed == 0) return;
+                            itemLocationAnswerText.setText(newLocation);
+                            Toast.makeText(this, "Location updated to: " + newLocation, Toast.LENGTH_SHORT).show();
+                        }, this::showError));
+                    })
+                    .setNegativeButton("Cancel", null)
+                    .show();
+        });
 
-                        // Update the UI
-                        itemLocationAnswerText.setText(newLocation);
-                        Toast.makeText(this, "Location updated to: " + newLocation, Toast.LENGTH_SHORT).show();
+        setSkuButton.setOnClickListener(v -> {
+            final EditText input = new EditText(this);
+            input.setHint("Scan or enter the item's SKU, empty to remove it");
+
+            new AlertDialog.Builder(this)
+                    .setTitle("Set SKU")
+                    .setView(input)
+                    .setPositiveButton("Save", (dialog, which) -> {
+                        String newSku = input.getText().toString().trim();
+
+                        // Skus are unique, the write is refused if another item has it
+                        repository.setSku(itemId, newSku, Callback.of(changed -> {
+                            if (isFinishing() || isDestroyed() || changed == 0) return;
+                            if (changed == -1) {
+                                Toast.makeText(this, "Another item already has the SKU " + newSku, Toast.LENGTH_SHORT).show();
+                                return;
+                            }
+                            showSku(newSku);
+                            Toast.makeText(this, "SKU updated", Toast.LENGTH_SHORT).show();
+                        }, this::showError));
                     })
                     .setNegativeButton("Cancel", null)
                     .show();
         });
 
+        decreaseQuantityButton.setOnClickListener(v -> adjustQuantity(-1));
+        increaseQuantityButton.setOnClickListener(v -> adjustQuantity(1));
+
         deleteItemButton.setOnClickListener(v -> new AlertDialog.Builder(this)
                 .setTitle("Delete Item")
                 .setMessage("Are you sure you want to delete this item?")
-                .setPositiveButton("Yes", (dialog, which) -> {
-                    db.deleteItem(itemId);
+                .setPositiveButton("Yes", (dialog, which) -> repository.deleteItem(itemId, Callback.of(deleted -> {
                     Toast.makeText(this, "Item Deleted", Toast.LENGTH_SHORT).show();
                     finish();
-                })
+                }, this::showError)))
 
                 .setNegativeButton("Cancel", null)
                 .show());
     }
 
+    // Add delta to the stored quantity, never going below zero
+    private void adjustQuantity(int delta) {
+        repository.adjustQuantity(itemId, delta, 0, DatabaseHelper.NO_CEILING, Callback.of(quantity -> {
+            if (isFinishing() || isDestroyed()) return;
+            if (quantity == null) {
+                Toast.makeText(this, "The quantity can't go below 0", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            itemAmountAnswerText.setText(String.valueOf(quantity));
+        }, this::showError));
+    }
+
+    private void showError(Exception error) {
+        if (isFinishing() || isDestroyed()) return;
+        Toast.makeText(this, "Something went wrong: " + error.getMessage(), Toast.LENGTH_LONG).show();
+    }
+
+    private void showSku(String sku) {
+        itemSkuAnswerText.setText(sku == null || sku.isEmpty() ? "None" : sku);
+    }
+
+    private void setButtonsEnabled(boolean enabled) {
+        decreaseQuantityButton.setEnabled(enabled);
+        increaseQuantityButton.setEnabled(enabled);
+        adjustQuantityItemButton.setEnabled(enabled);
+        adjustLocationButton.setEnabled(enabled);
+        deleteItemButton.setEnabled(enabled);
+        setSkuButton.setEnabled(enabled);
+    }
+
     @Override
     public boolean onOptionsItemSelected(@NonNull MenuItem item) {
         if (item.getItemId() == android.R.id.home) {
@@ -13,11 +13,12 @@ import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
-import com.baileyconnor.inventoryappv2.database.DatabaseHelper;
+import com.baileyconnor.inventoryappv2.database.InventoryRepository;
+import com.baileyconnor.inventoryappv2.database.InventoryRepository.Callback;
 
 public class MainActivity extends AppCompatActivity {
 
-    private DatabaseHelper db;
+    private InventoryRepository repository;
     private EditText usernameEditText, passwordEditText;
 
     @Override
@@ -34,7 +35,7 @@ public class MainActivity extends AppCompatActivity {
             return insets;
         });
 
-        db = new DatabaseHelper(this);
+        repository = InventoryRepository.getInstance(this);
 
         usernameEditText = findViewById(R.id.usernameEditText);
         passwordEditText = findViewById(R.id.passwordEditText);
@@ -54,15 +55,19 @@ public class MainActivity extends AppCompatActivity {
                 return;
             }
 
-            // Validate the login attempt
-            if (db.validateLogin(u, p)) {
-                Toast.makeText(this, "Login successful", Toast.LENGTH_SHORT).show();
-                // Move to the Inventory Activity
-                startActivity(new Intent(this, InventoryActivity.class)); // FIX ME
-                finish();
-            } else {
-                Toast.makeText(this, "Invalid Login Attempt", Toast.LENGTH_SHORT).show();
-            }
+            // Validate the login attempt in the background
+            repository.validateLogin(u, p, Callback.of(valid -> {
+                if (isFinishing() || isDestroyed()) return;
+
+                if (valid) {
+                    Toast.makeText(this, "Login successful", Toast.LENGTH_SHORT).show();
+                    // Move to the Inventory Activity
+                    startActivity(new Intent(this, InventoryActivity.class)); // FIX ME
+                    finish();
+                } else {
+                    Toast.makeText(this, "Invalid Login Attempt", Toast.LENGTH_SHORT).show();
+                }
+            }, this::showError));
         });
 
         // Create Account Button Listener
@@ -75,18 +80,26 @@ public class MainActivity extends AppCompatActivity {
                 Toast.makeText(this, "Enter username and password", Toast.LENGTH_SHORT).show();
                 return;
             }
-            // Store the result of the database operation
-            boolean createUserAttempt = db.createUser(u, p);
-
-            // Check the database operation
-            if (createUserAttempt) {
-                Toast.makeText(this, "Account created. Logging in...", Toast.LENGTH_SHORT).show();
-                // Move to the Inventory Activity
-                startActivity(new Intent(this, InventoryActivity.class));
-                finish();
-            } else {
-                Toast.makeText(this, "Username already exists or an error occurred.", Toast.LENGTH_SHORT).show();
-            }
+            // Create the user in the background and check the result of the database operation
+            repository.createUser(u, p, Callback.of(createUserAttempt -> {
+                if (isFinishing() || isDestroyed()) return;
+
+                if (createUserAttempt) {
+                    Toast.makeText(this, "Account created. Logging in...", Toast.LENGTH_SHORT).show();
+                    // Move to the Inventory Activity
+                    startActivity(new Intent(this, InventoryActivity.class));
+                    finish();
+                } else {
+                    Toast.makeText(this, "Username already exists or an error occurred.", Toast.LENGTH_SHORT).show();
+                }
+            }, this::showError));
         });
     }
+
+    // --- --- Helper Functions --- --- \\
+
+    private void showError(Exception error) {
+        if (isFinishing() || isDestroyed()) return;
+        Toast.makeText(this, "Something went wrong: " + error.getMessage(), Toast.LENGTH_LONG).show();
+    }
 }
@@ -27,9 +27,10 @@ import com.google.android.material.textfield.TextInputEditText;
 
 public class NotificationsActivity extends AppCompatActivity {
 
-    private static final String PREFS = "sms_prefs";
-    private static final String KEY_LOW_INVENTORY_ENABLED = "low_inv_enabled";
-    private static final String KEY_SMS_PHONE = "sms_phone";
+    // Also read by InventoryApp to configure the low stock alerts
+    static final String PREFS = "sms_prefs";
+    static final String KEY_LOW_INVENTORY_ENABLED = "low_inv_enabled";
+    static final String KEY_SMS_PHONE = "sms_phone";
 
     private Chip chipPermissionStatus;
     private MaterialButton enableSMSButton;
@@ -76,6 +77,12 @@ public class NotificationsActivity extends AppCompatActivity {
             });
         }
 
+        // Save the low inventory alert switch
+        if (lowInventorySwitch != null) {
+            lowInventorySwitch.setOnCheckedChangeListener((button, checked) ->
+                    getPrefs().edit().putBoolean(KEY_LOW_INVENTORY_ENABLED, checked).apply());
+        }
+
         // Event Handler for enableSMSButton
         enableSMSButton.setOnClickListener(v -> {
             if (hasSmsPermission()) {
@@ -0,0 +1,136 @@
+package com.baileyconnor.inventoryappv2;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.view.KeyEvent;
+import android.view.MenuItem;
+import android.view.inputmethod.EditorInfo;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.activity.EdgeToEdge;
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.baileyconnor.inventoryappv2.database.InventoryRepository;
+import com.baileyconnor.inventoryappv2.database.InventoryRepository.Callback;
+import com.baileyconnor.inventoryappv2.database.ScanSession;
+import com.baileyconnor.inventoryappv2.model.Item;
+import com.google.android.material.textfield.TextInputEditText;
+
+import java.util.Locale;
+
+// Looks up scanned barcodes one after another. Hardware scanners type the sku followed by
+// Enter into the field, which is cleared for the next scan. Every sku is loaded into a
+// ScanSession when the screen opens, so a scan doesn't have to query the database to
+// find its item. Tapping a scanned item opens it.
+public class ScanActivity extends AppCompatActivity {
+
+    // Rows kept in the scan log, oldest are dropped first
+    private static final int MAX_LOG_ROWS = 100;
+
+    private InventoryRepository repository;
+    private ScanSession session;
+
+    private TextInputEditText scanEditText;
+    private TextView scanResultText, scanStatsText;
+    private LinearLayout scanLogContainer;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        EdgeToEdge.enable(this);
+        setContentView(R.layout.activity_scan);
+
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+            getSupportActionBar().setTitle("Scan");
+        }
+
+        scanEditText = findViewById(R.id.scanEditText);
+        scanResultText = findViewById(R.id.scanResultText);
+        scanStatsText = findViewById(R.id.scanStatsText);
+        scanLogContainer = findViewById(R.id.scanLogContainer);
+
+        scanEditText.setOnEditorActionListener((view, actionId, event) -> {
+            boolean enter = event != null && event.getKeyCode() == KeyEvent.KEYCODE_ENTER;
+            if (actionId != EditorInfo.IME_ACTION_GO && !enter) return false;
+            // Scanners send both the key down and up, only the first one scans
+            if (enter && event.getAction() != KeyEvent.ACTION_DOWN) return true;
+            scan();
+            return true;
+        });
+
+        // The field stays disabled until every sku has been loaded
+        repository = InventoryRepository.getInstance(this);
+        repository.openScanSession(Callback.of(opened -> {
+            if (isFinishing() || isDestroyed() || opened == null) return;
+            session = opened;
+            scanResultText.setText(String.format(Locale.getDefault(), "Ready, %d SKUs loaded", opened.size()));
+            scanEditText.setEnabled(true);
+            scanEditText.requestFocus();
+        }, error -> {
+            if (isFinishing() || isDestroyed()) return;
+            scanResultText.setText("Could not load the SKUs");
+            showError(error);
+        }));
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem menuItem) {
+        if (menuItem.getItemId() == android.R.id.home) {
+            finish();
+            return true;
+        }
+        return super.onOptionsItemSelected(menuItem);
+    }
+
+    // --- --- Helper Functions --- --- \\
+
+    private void scan() {
+        String sku = scanEditText.getText() == null ? "" : scanEditText.getText().toString().trim();
+        scanEditText.setText("");
+        if (sku.isEmpty() || session == null) return;
+
+        repository.scan(session, sku, Callback.of(item -> {
+            if (isFinishing() || isDestroyed()) return;
+            if (item == null) {
+                scanResultText.setText("No item with SKU " + sku);
+                addLogRow(sku + ": not found", null);
+            } else {
+                String text = String.format(Locale.getDefault(), "%s: %d at %s", item.getName(), item.getQuantity(),
+                        item.getLocation() == null ? "no location" : item.getLocation());
+                scanResultText.setText(text);
+                addLogRow(sku + "  " + text, item);
+            }
+            scanStatsText.setText(String.format(Locale.getDefault(), "%d from memory, %d looked up",
+                    session.getHits(), session.getMisses()));
+        }, this::showError));
+    }
+
+    private void showError(Exception error) {
+        if (isFinishing() || isDestroyed()) return;
+        Toast.makeText(this, "Something went wrong: " + error.getMessage(), Toast.LENGTH_LONG).show();
+    }
+
+    // Newest first
+    private void addLogRow(String text, Item item) {
+        TextView row = new TextView(this);
+        int pad = (int) (4 * getResources().getDisplayMetrics().density);
+        row.setPadding(0, pad, 0, pad);
+        row.setText(text);
+        if (item != null) {
+            long id = item.getId();
+            row.setOnClickListener(v -> {
+                Intent i = new Intent(this, InventoryItemActivity.class);
+                i.putExtra(InventoryItemActivity.ITEM_ID, id);
+                startActivity(i);
+            });
+        }
+        scanLogContainer.addView(row, 0);
+        if (scanLogContainer.getChildCount() > MAX_LOG_ROWS) {
+            scanLogContainer.removeViewAt(MAX_LOG_ROWS);
+        }
+    }
+}
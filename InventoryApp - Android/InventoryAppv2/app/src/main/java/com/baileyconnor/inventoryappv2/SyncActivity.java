@@ -0,0 +1,172 @@
+package com.baileyconnor.inventoryappv2;
+
+import android.content.SharedPreferences;
+import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.text.format.DateFormat;
+import android.view.MenuItem;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.activity.EdgeToEdge;
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.baileyconnor.inventoryappv2.database.InventoryRepository;
+import com.baileyconnor.inventoryappv2.database.InventoryRepository.Callback;
+import com.baileyconnor.inventoryappv2.sync.SyncResult;
+import com.google.android.material.button.MaterialButton;
+import com.google.android.material.textfield.TextInputEditText;
+
+// Where the inventory API is and the access token to reach it with, and a button to sync
+// with it now. Signing in keeps only the token the API hands back, never the password.
+// The API's tokens expire, a sync that's refused needs another sign in.
+public class SyncActivity extends AppCompatActivity {
+
+    static final String PREFS = "sync_prefs";
+    static final String KEY_BASE_URL = "base_url";
+    static final String KEY_ACCESS_TOKEN = "access_token";
+    static final String KEY_LAST_SYNC_AT = "last_sync_at";
+    static final String KEY_LAST_RESULT = "last_result";
+
+    private InventoryRepository repository;
+    private TextInputEditText serverUrlEditText, usernameEditText, passwordEditText;
+    private MaterialButton signInButton, syncNowButton;
+    private TextView statusText;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        EdgeToEdge.enable(this);
+        setContentView(R.layout.activity_sync);
+
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+            getSupportActionBar().setTitle("Sync");
+        }
+
+        repository = InventoryRepository.getInstance(this);
+
+        serverUrlEditText = findViewById(R.id.serverUrlEditText);
+        usernameEditText = findViewById(R.id.syncUsernameEditText);
+        passwordEditText = findViewById(R.id.syncPasswordEditText);
+        signInButton = findViewById(R.id.signInButton);
+        syncNowButton = findViewById(R.id.syncNowButton);
+        statusText = findViewById(R.id.syncStatusText);
+
+        // A token is only good for the server it came from
+        serverUrlEditText.setText(getPrefs().getString(KEY_BASE_URL, ""));
+        serverUrlEditText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void afterTextChanged(Editable s) {
+                String url = s == null ? "" : s.toString().trim();
+                if (url.equals(getPrefs().getString(KEY_BASE_URL, ""))) return;
+                getPrefs().edit().putString(KEY_BASE_URL, url).remove(KEY_ACCESS_TOKEN).apply();
+                updateStatus();
+            }
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {}
+        });
+
+        signInButton.setOnClickListener(v -> signIn());
+        syncNowButton.setOnClickListener(v -> syncNow());
+        updateStatus();
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem menuItem) {
+        if (menuItem.getItemId() == android.R.id.home) {
+            finish();
+            return true;
+        }
+        return super.onOptionsItemSelected(menuItem);
+    }
+
+    // Signed in to the saved server, so a sync can be started
+    static boolean isSignedIn(SharedPreferences prefs) {
+        return !prefs.getString(KEY_BASE_URL, "").isEmpty() && prefs.getString(KEY_ACCESS_TOKEN, null) != null;
+    }
+
+    // Remember how a finished sync went, for the status shown here
+    static void saveResult(SharedPreferences prefs, SyncResult result) {
+        prefs.edit()
+                .putLong(KEY_LAST_SYNC_AT, System.currentTimeMillis())
+                .putString(KEY_LAST_RESULT, result.toString())
+                .apply();
+    }
+
+    // --- --- Helper Functions --- --- \\
+
+    private void signIn() {
+        String url = getPrefs().getString(KEY_BASE_URL, "");
+        String u = usernameEditText.getText() == null ? "" : usernameEditText.getText().toString().trim();
+        String p = passwordEditText.getText() == null ? "" : passwordEditText.getText().toString();
+
+        // Check if any field is empty
+        if (url.isEmpty() || u.isEmpty() || p.isEmpty()) {
+            Toast.makeText(this, "Enter the server URL, username and password", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        signInButton.setEnabled(false);
+        repository.signIn(url, u, p, Callback.of(token -> {
+            if (isFinishing() || isDestroyed()) return;
+            signInButton.setEnabled(true);
+            // Dropped if the server was changed while signing in
+            if (!url.equals(getPrefs().getString(KEY_BASE_URL, ""))) return;
+            getPrefs().edit().putString(KEY_ACCESS_TOKEN, token).apply();
+            passwordEditText.setText("");
+            Toast.makeText(this, "Signed in", Toast.LENGTH_SHORT).show();
+            updateStatus();
+        }, error -> {
+            if (isFinishing() || isDestroyed()) return;
+            signInButton.setEnabled(true);
+            showError(error);
+        }));
+    }
+
+    private void syncNow() {
+        SharedPreferences prefs = getPrefs();
+        if (!isSignedIn(prefs)) {
+            Toast.makeText(this, "Sign in first", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        syncNowButton.setEnabled(false);
+        repository.sync(prefs.getString(KEY_BASE_URL, ""), () -> prefs.getString(KEY_ACCESS_TOKEN, null), Callback.of(result -> {
+            saveResult(prefs, result);
+            if (isFinishing() || isDestroyed()) return;
+            syncNowButton.setEnabled(true);
+            updateStatus();
+        }, error -> {
+            if (isFinishing() || isDestroyed()) return;
+            syncNowButton.setEnabled(true);
+            showError(error);
+        }));
+    }
+
+    private void updateStatus() {
+        SharedPreferences prefs = getPrefs();
+        StringBuilder status = new StringBuilder(isSignedIn(prefs)
+                ? "Signed in to " + prefs.getString(KEY_BASE_URL, "")
+                : "Not signed in");
+        long lastSyncAt = prefs.getLong(KEY_LAST_SYNC_AT, 0);
+        if (lastSyncAt != 0) {
+            status.append("\nLast sync ").append(DateFormat.format("yyyy-MM-dd HH:mm", lastSyncAt))
+                    .append(": ").append(prefs.getString(KEY_LAST_RESULT, ""));
+        }
+        statusText.setText(status);
+    }
+
+    private void showError(Exception error) {
+        if (isFinishing() || isDestroyed()) return;
+        Toast.makeText(this, "Something went wrong: " + error.getMessage(), Toast.LENGTH_LONG).show();
+    }
+
+    private SharedPreferences getPrefs() {
+        return getSharedPreferences(PREFS, MODE_PRIVATE);
+    }
+}
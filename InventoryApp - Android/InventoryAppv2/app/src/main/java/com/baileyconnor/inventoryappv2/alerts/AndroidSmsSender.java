@@ -0,0 +1,42 @@
+package com.baileyconnor.inventoryappv2.alerts;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.telephony.SmsManager;
+
+import androidx.core.content.ContextCompat;
+
+import java.util.ArrayList;
+
+// Sends alerts through the platform SmsManager, long messages are split into parts
+public class AndroidSmsSender implements SmsSender {
+
+    private final Context context;
+
+    // Constructor
+    public AndroidSmsSender(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    @Override
+    public boolean send(String phoneNumber, String message) {
+        if (ContextCompat.checkSelfPermission(context, Manifest.permission.SEND_SMS) != PackageManager.PERMISSION_GRANTED) {
+            System.out.println("ERROR: Low stock alert not sent, the SEND_SMS permission is not granted");
+            return false;
+        }
+
+        try {
+            SmsManager sms = Build.VERSION.SDK_INT >= Build.VERSION_CODES.S
+                    ? context.getSystemService(SmsManager.class)
+                    : SmsManager.getDefault();
+            ArrayList<String> parts = sms.divideMessage(message);
+            sms.sendMultipartTextMessage(phoneNumber, null, parts, null, null);
+            return true;
+        } catch (Exception error) {
+            System.out.println("ERROR: An error occurred when sending a low stock alert: " + error);
+            return false;
+        }
+    }
+}
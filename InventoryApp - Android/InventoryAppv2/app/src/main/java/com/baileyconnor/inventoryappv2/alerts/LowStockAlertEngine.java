@@ -0,0 +1,159 @@
+package com.baileyconnor.inventoryappv2.alerts;
+
+import com.baileyconnor.inventoryappv2.model.QuantityChange;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+// Turns quantity changes into low stock text messages.
+//
+// Only the changes themselves are looked at, never the whole table. An item alerts
+// when it crosses from above its threshold to at or below it, and not again until it
+// has been restocked above the threshold (one alert per dip).
+// Crossings are collected for coalesceWindowMs after the first one and then sent as a
+// single digest. Digests go through a send queue that sends at most one message every
+// minSendIntervalMs; when the queue is full new digests are merged into the last one.
+//
+// Plain Java so it can be tested on the JVM, time and delayed work are injected.
+public class LowStockAlertEngine {
+
+    // Runs a task on the engine's thread after a delay
+    public interface Scheduler {
+        void schedule(Runnable task, long delayMs);
+    }
+
+    // Items named in one message, the rest are counted as "and N more"
+    static final int MAX_ITEMS_PER_MESSAGE = 5;
+
+    private final SmsSender sender;
+    private final LongSupplier clock;
+    private final Scheduler scheduler;
+    private final long coalesceWindowMs;
+    private final long minSendIntervalMs;
+    private final int maxQueuedMessages;
+
+    // Phone number to alert, null while alerts are turned off
+    private String recipient;
+
+    // Items that are in a dip and have already been (or are about to be) alerted
+    private final Set<Long> alerted = new HashSet<>();
+    // Crossings waiting for the coalescing window to close, by item id
+    private final Map<Long, QuantityChange> pending = new LinkedHashMap<>();
+    private boolean flushScheduled = false;
+
+    // Digests waiting for the rate limit
+    private final ArrayDeque<Map<Long, QuantityChange>> queue = new ArrayDeque<>();
+    private boolean sendScheduled = false;
+    private boolean sentAny = false;
+    private long lastSentAt = 0;
+
+    // Constructor
+    public LowStockAlertEngine(SmsSender sender, LongSupplier clock, Scheduler scheduler,
+                               long coalesceWindowMs, long minSendIntervalMs, int maxQueuedMessages) {
+        this.sender = sender;
+        this.clock = clock;
+        this.scheduler = scheduler;
+        this.coalesceWindowMs = coalesceWindowMs;
+        this.minSendIntervalMs = minSendIntervalMs;
+        this.maxQueuedMessages = maxQueuedMessages;
+    }
+
+    // Turn alerts on for a phone number, or off with null / empty.
+    // Turning them off drops anything that hasn't been sent yet.
+    public synchronized void setRecipient(String phoneNumber) {
+        recipient = phoneNumber == null || phoneNumber.trim().isEmpty() ? null : phoneNumber.trim();
+        if (recipient == null) {
+            pending.clear();
+            queue.clear();
+        }
+    }
+
+    // Feed committed quantity changes in (see InventoryStore.QuantityListener)
+    public synchronized void onQuantityChanged(List<QuantityChange> changes) {
+        for (QuantityChange change : changes) {
+            if (!change.isLow()) {
+                // Restocked: the next dip alerts again, and a crossing that hasn't gone out yet is dropped
+                alerted.remove(change.itemId);
+                pending.remove(change.itemId);
+            } else if (change.crossedBelow() && alerted.add(change.itemId)) {
+                if (recipient != null) pending.put(change.itemId, change);
+            } else if (pending.containsKey(change.itemId)) {
+                // Still low, keep the latest quantity for the message
+                pending.put(change.itemId, change);
+            }
+        }
+
+        if (!pending.isEmpty() && !flushScheduled) {
+            flushScheduled = true;
+            scheduler.schedule(this::flush, coalesceWindowMs);
+        }
+    }
+
+    // --- --- Helper Functions --- --- \\
+
+    // The coalescing window closed, queue everything collected during it as one digest
+    private synchronized void flush() {
+        flushScheduled = false;
+        if (pending.isEmpty()) return;
+
+        if (queue.size() >= maxQueuedMessages && !queue.isEmpty()) {
+            queue.peekLast().putAll(pending);
+        } else {
+            queue.add(new LinkedHashMap<>(pending));
+        }
+        pending.clear();
+        sendNext();
+    }
+
+    private synchronized void runScheduledSend() {
+        sendScheduled = false;
+        sendNext();
+    }
+
+    // Send the next digest if the rate limit allows, otherwise try again once it does
+    private void sendNext() {
+        if (queue.isEmpty() || recipient == null) return;
+
+        long now = clock.getAsLong();
+        long wait = sentAny ? lastSentAt + minSendIntervalMs - now : 0;
+        if (wait > 0) {
+            scheduleSend(wait);
+            return;
+        }
+
+        Map<Long, QuantityChange> digest = queue.poll();
+        sentAny = true;
+        lastSentAt = now;
+        if (!sender.send(recipient, message(digest))) {
+            System.out.println("ERROR: A low stock alert for " + digest.size() + " items could not be sent");
+        }
+
+        if (!queue.isEmpty()) scheduleSend(minSendIntervalMs);
+    }
+
+    private void scheduleSend(long delayMs) {
+        if (sendScheduled) return;
+        sendScheduled = true;
+        scheduler.schedule(this::runScheduledSend, delayMs);
+    }
+
+    // e.g. "Low stock: Boxes (3 left), Tape (0 left) and 4 more"
+    static String message(Map<Long, QuantityChange> digest) {
+        StringBuilder text = new StringBuilder("Low stock: ");
+        Iterator<QuantityChange> changes = digest.values().iterator();
+        for (int i = 0; i < MAX_ITEMS_PER_MESSAGE && changes.hasNext(); i++) {
+            QuantityChange change = changes.next();
+            if (i > 0) text.append(", ");
+            text.append(change.name).append(" (").append(change.newQuantity).append(" left)");
+        }
+        int more = digest.size() - MAX_ITEMS_PER_MESSAGE;
+        if (more > 0) text.append(" and ").append(more).append(" more");
+        return text.toString();
+    }
+}
@@ -0,0 +1,8 @@
+package com.baileyconnor.inventoryappv2.alerts;
+
+// Sends one text message. Implementations must not block for long, they are called
+// while the alert engine holds its lock.
+public interface SmsSender {
+    // Returns false if the message could not be handed off for sending
+    boolean send(String phoneNumber, String message);
+}
@@ -0,0 +1,144 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+// Which items changed since an observer last looked, owned by DatabaseHelper.
+// Every committed write to the items table bumps the data version and logs the ids it
+// touched. An observer keeps the version its copy is current to and asks changesSince():
+// the same version means there is nothing to reload, otherwise it gets the changed ids
+// (inserted, updated or deleted, a reload tells which) and only has to read those rows.
+//
+// Deletes are also reported in deleted, those rows are gone and don't need reading, so
+// far more of them fit in one set of changes (e.g. a multi-select delete).
+//
+// A write that doesn't know its ids (e.g. an upsert by name), a large batch, or an
+// observer that fell further behind than the log keeps all get everything = true.
+public class ChangeFeed {
+
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+    // More ids than this is cheaper to reload as a whole than row by row
+    public static final int MAX_IDS = 500;
+    // Deleted ids cost nothing to apply, this only bounds the memory they take
+    public static final int MAX_DELETED_IDS = 10_000;
+
+    private final int maxEntries;
+    private final ArrayDeque<Entry> log = new ArrayDeque<>();
+    private long version = 0;
+
+    // Constructor
+    public ChangeFeed(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public synchronized long version() {
+        return version;
+    }
+
+    // --- --- Writes --- --- \\
+
+    public synchronized void itemChanged(long id) {
+        append(new long[] { id }, false);
+    }
+
+    public synchronized void itemsChanged(Collection<Long> ids) {
+        append(ids, MAX_IDS, false);
+    }
+
+    public synchronized void itemDeleted(long id) {
+        append(new long[] { id }, true);
+    }
+
+    public synchronized void itemsDeleted(Collection<Long> ids) {
+        append(ids, MAX_DELETED_IDS, true);
+    }
+
+    // Rows changed without knowing which ids
+    public synchronized void everythingChanged() {
+        append(null, false);
+    }
+
+    private void append(Collection<Long> ids, int max, boolean deleted) {
+        if (ids.isEmpty()) return;
+        if (ids.size() > max) {
+            append(null, false);
+            return;
+        }
+        long[] copy = new long[ids.size()];
+        int i = 0;
+        for (long id : ids) copy[i++] = id;
+        append(copy, deleted);
+    }
+
+    private void append(long[] ids, boolean deleted) {
+        version++;
+        log.addLast(new Entry(version, ids, deleted));
+        if (log.size() > maxEntries) log.removeFirst();
+    }
+
+    // --- --- Reads --- --- \\
+
+    // Everything that changed after the given version, up to the current one
+    public synchronized Changes changesSince(long since) {
+        if (since == version) return new Changes(version, false, Collections.emptySet(), Collections.emptySet());
+
+        Entry oldest = log.peekFirst();
+        if (since > version || oldest == null || oldest.version > since + 1) return everything();
+
+        Set<Long> ids = new HashSet<>();
+        Set<Long> deleted = new HashSet<>();
+        for (Entry entry : log) {
+            if (entry.version <= since) continue;
+            if (entry.ids == null) return everything();
+            for (long id : entry.ids) {
+                ids.add(id);
+                if (entry.deleted) deleted.add(id);
+            }
+            if (ids.size() - deleted.size() > MAX_IDS || deleted.size() > MAX_DELETED_IDS) return everything();
+        }
+        return new Changes(version, false, ids, deleted);
+    }
+
+    private Changes everything() {
+        return new Changes(version, true, Collections.emptySet(), Collections.emptySet());
+    }
+
+    // The ids written by one commit, null when they aren't known
+    private static final class Entry {
+        final long version;
+        final long[] ids;
+        // The rows were deleted
+        final boolean deleted;
+
+        Entry(long version, long[] ids, boolean deleted) {
+            this.version = version;
+            this.ids = ids;
+            this.deleted = deleted;
+        }
+    }
+
+    // The answer to changesSince(): current as of version
+    public static final class Changes {
+        public final long version;
+        // The changed ids aren't known, reload everything
+        public final boolean everything;
+        public final Set<Long> ids;
+        // The ids in ids that were deleted, ids are never handed out again
+        public final Set<Long> deleted;
+
+        // Constructor
+        public Changes(long version, boolean everything, Set<Long> ids, Set<Long> deleted) {
+            this.version = version;
+            this.everything = everything;
+            this.ids = ids;
+            this.deleted = deleted;
+        }
+
+        public boolean isEmpty() {
+            return !everything && ids.isEmpty();
+        }
+    }
+}
@@ -3,20 +3,43 @@ package com.baileyconnor.inventoryappv2.database;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
 
 import androidx.annotation.Nullable;
 
+import com.baileyconnor.inventoryappv2.forecast.DepletionForecaster;
 import com.baileyconnor.inventoryappv2.model.Item;
+import com.baileyconnor.inventoryappv2.model.ItemForecast;
+import com.baileyconnor.inventoryappv2.model.ItemSummary;
+import com.baileyconnor.inventoryappv2.model.LocationSummary;
+import com.baileyconnor.inventoryappv2.model.QuantityChange;
+import com.baileyconnor.inventoryappv2.model.SyncItem;
+import com.baileyconnor.inventoryappv2.model.SyncWatermark;
+import com.baileyconnor.inventoryappv2.sync.OutboxCoalescer;
+import com.baileyconnor.inventoryappv2.sync.OutboxEntry;
+import com.baileyconnor.inventoryappv2.sync.PendingChange;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
 
 
-public class DatabaseHelper extends SQLiteOpenHelper {
-    private static final String DB_NAME = "inventory_app.db";
-    private static final int DB_VERSION = 4;
+public class DatabaseHelper extends SQLiteOpenHelper implements InventoryStore {
+    static final String DB_NAME = "inventory_app.db";
+    static final int DB_VERSION = 16;
 
     // users table
     // T = Table, C = Column
@@ -30,43 +53,433 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public static final String C_ID = "id";
     public static final String C_NAME = "name";
     public static final String C_QTY = "quantity";
+    // Name of an item's location where it's still stored as text (the outbox and the
+    // full-text index), items themselves reference the locations table
     public static final String C_LOCATION = "location";
+    public static final String C_LOCATION_ID = "location_id";
     public static final String C_UPDATED_AT = "updated_at";
+    public static final String C_LOW_STOCK_THRESHOLD = "low_stock_threshold";
+    // Barcode of the item, unique among the items that have one (see Migrations 14 -> 15)
+    public static final String C_SKU = "sku";
+
+    // full-text index over the item name and location (see Migrations 6 -> 7), reading
+    // its content through the items_search view since 13 -> 14
+    public static final String T_ITEMS_FTS = "items_fts";
+    public static final String V_ITEMS_SEARCH = "items_search";
+
+    // locations table, one row per location (see Migrations 13 -> 14)
+    public static final String T_LOCATIONS = "locations";
+
+    // location_summary table, one row per location id (see Migrations 7 -> 8 and 13 -> 14)
+    public static final String T_LOCATION_SUMMARY = "location_summary";
+    public static final String C_ITEM_COUNT = "item_count";
+    public static final String C_UNITS = "units";
+    public static final String C_LOW_STOCK_COUNT = "low_stock_count";
+
+    // quantity_ledger and quantity_snapshots tables (see Migrations 9 -> 10)
+    public static final String T_QUANTITY_LEDGER = "quantity_ledger";
+    public static final String T_QUANTITY_SNAPSHOTS = "quantity_snapshots";
+    public static final String C_ITEM_ID = "item_id";
+    public static final String C_DELTA = "delta";
+    public static final String C_CHANGED_AT = "changed_at";
+    public static final String C_TAKEN_AT = "taken_at";
+
+    // item_forecast table, one row per item that has had its quantity changed (see Migrations 10 -> 11)
+    public static final String T_ITEM_FORECAST = "item_forecast";
+    public static final String C_RATE = "rate";
+    public static final String C_OBSERVED_AT = "observed_at";
+    public static final String C_DEPLETES_AT = "depletes_at";
+
+    // Sync with the inventory API (see Migrations 11 -> 12). Every item has a remote id,
+    // the API's uuid for it.
+    public static final String C_REMOTE_ID = "remote_id";
+    public static final String T_SYNC_STATE = "sync_state";
+    public static final String C_PULLED_UNTIL = "pulled_until";
+    public static final String C_PULLED_AFTER_ID = "pulled_after_id";
+    // No longer written, only referenced by Migrations 11 -> 13
+    public static final String C_SYNCED_AT = "synced_at";
+    public static final String T_SYNC_DELETES = "sync_deletes";
+
+    // outbox table, one coalesced PendingChange per item waiting to be pushed (see Migrations 12 -> 13)
+    public static final String T_OUTBOX = "outbox";
+    public static final String C_KIND = "kind";
+    public static final String C_QTY_DELTA = "quantity_delta";
+    public static final String C_LOCATION_SET = "location_set";
+    public static final String C_VERSION = "version";
+    public static final String C_ATTEMPTS = "attempts";
+    public static final String C_NEXT_ATTEMPT_AT = "next_attempt_at";
+
+    // Ledger compaction: full history is kept for LEDGER_RETENTION_MS, older movements
+    // are folded into one snapshot per item per LEDGER_BUCKET_MS. Those snapshots are kept
+    // for SNAPSHOT_RETENTION_MS more, after that only each item's latest one is.
+    public static final long LEDGER_BUCKET_MS = 24L * 60 * 60 * 1000;
+    public static final long LEDGER_RETENTION_MS = 30 * LEDGER_BUCKET_MS;
+    public static final long SNAPSHOT_RETENTION_MS = 365 * LEDGER_BUCKET_MS;
+
+    // An item is low on stock at or below its threshold, this is the threshold new items start with
+    public static final int LOW_STOCK_QUANTITY = 5;
+
+    // Idle reader connections are closed after this long, the writer's stays open
+    private static final long IDLE_CONNECTION_TIMEOUT_MS = 30_000;
+    private static final String PRAGMA_WAL_CHECKPOINT = "PRAGMA wal_checkpoint(TRUNCATE)";
+
+    // Read queries, every SQL_ and STMT_ constant is checked for full scans by DatabaseHelperQueryPlanTest
+    static final String SQL_VALIDATE_LOGIN = "SELECT " + C_USERNAME + " FROM " + T_USERS +
+            " WHERE " + C_USERNAME + "=? AND " + C_PASSWORD + "=?";
+    // Item reads name their columns so readItem() can use fixed indices, never SELECT *
+    private static final String ITEM_COLUMNS = C_ID + ", " + C_NAME + ", " + C_QTY + ", " + C_LOCATION_ID + ", " + C_UPDATED_AT + ", " + C_SKU;
+    static final String SQL_ITEM_BY_ID = "SELECT " + ITEM_COLUMNS + " FROM " + T_ITEMS + " WHERE " + C_ID + "=?";
+    static final String SQL_ALL_ITEMS = "SELECT " + ITEM_COLUMNS + " FROM " + T_ITEMS + " ORDER BY " + C_UPDATED_AT + " DESC";
+    static final String SQL_ITEMS_PAGE = "SELECT " + ITEM_COLUMNS +
+            " FROM " + T_ITEMS +
+            " WHERE (" + C_UPDATED_AT + ", " + C_ID + ") < (?, ?)" +
+            " ORDER BY " + C_UPDATED_AT + " DESC, " + C_ID + " DESC" +
+            " LIMIT ?";
+    // Same keyset as SQL_ITEMS_PAGE with only what the grid shows
+    static final String SQL_ITEM_SUMMARIES_PAGE = "SELECT " + C_ID + ", " + C_NAME + ", " + C_QTY + ", " + C_UPDATED_AT +
+            " FROM " + T_ITEMS +
+            " WHERE (" + C_UPDATED_AT + ", " + C_ID + ") < (?, ?)" +
+            " ORDER BY " + C_UPDATED_AT + " DESC, " + C_ID + " DESC" +
+            " LIMIT ?";
+    // Every item in one location, lowest stock first (read off idx_items_location_quantity)
+    static final String SQL_ITEMS_AT_LOCATION = "SELECT " + ITEM_COLUMNS + " FROM " + T_ITEMS +
+            " WHERE " + C_LOCATION_ID + "=? ORDER BY " + C_QTY;
+    // Scanned barcodes, both read off idx_items_sku. SQL_ITEM_ID_BY_SKU is compiled once and
+    // kept (see getItemBySku), SQL_SKU_INDEX loads every sku for a ScanSession.
+    static final String SQL_ITEM_ID_BY_SKU = "SELECT " + C_ID + " FROM " + T_ITEMS + " WHERE " + C_SKU + "=?";
+    static final String SQL_SKU_INDEX = "SELECT " + C_SKU + ", " + C_ID + " FROM " + T_ITEMS + " WHERE " + C_SKU + " IS NOT NULL";
+    // One grid row by id, for patching in the rows the change feed reports
+    static final String SQL_ITEM_SUMMARY_BY_ID = "SELECT " + C_ID + ", " + C_NAME + ", " + C_QTY + ", " + C_UPDATED_AT +
+            " FROM " + T_ITEMS + " WHERE " + C_ID + "=?";
+    // Grid rows of an ItemQuery. Its SQL is compiled per query (see compileItemQuery), so it
+    // isn't a SQL_ constant; DatabaseHelperQueryPlanTest plans every shape it compiles to.
+    static final String SUMMARY_COLUMNS = C_ID + ", " + C_NAME + ", " + C_QTY + ", " + C_LOCATION_ID + ", " + C_UPDATED_AT;
+    // Location id of a compiled ItemQuery that isn't limited to one location
+    static final long ANY_LOCATION = -1;
+    // Full-text match, ranked: name starts with the query, then name contains it, then
+    // location-only matches. Only the matched rows are sorted, never the whole table.
+    static final String SQL_SEARCH_ITEMS = "SELECT " + T_ITEMS + "." + C_ID + ", " + T_ITEMS + "." + C_NAME + ", " +
+            T_ITEMS + "." + C_QTY + ", " + T_ITEMS + "." + C_LOCATION_ID + ", " + T_ITEMS + "." + C_UPDATED_AT + ", " + T_ITEMS + "." + C_SKU +
+            " FROM " + T_ITEMS_FTS + " JOIN " + T_ITEMS + " ON " + T_ITEMS + "." + C_ID + " = " + T_ITEMS_FTS + ".docid" +
+            " WHERE " + T_ITEMS_FTS + " MATCH ?" +
+            " ORDER BY CASE WHEN " + T_ITEMS + "." + C_NAME + " LIKE ? ESCAPE '\\' THEN 0" +
+            " WHEN " + T_ITEMS + "." + C_NAME + " LIKE ? ESCAPE '\\' THEN 1 ELSE 2 END," +
+            " length(" + T_ITEMS + "." + C_NAME + "), " + T_ITEMS + "." + C_NAME +
+            " LIMIT ?";
+    // Dashboard aggregates. location_summary has one row per location, so reading it whole is
+    // O(locations); SQL_LOCATION_TOTALS_LIVE computes the same from items (used to verify it).
+    // Both return location ids, readSummaries() names and sorts them.
+    static final String SQL_LOCATION_SUMMARIES = "SELECT " + C_LOCATION_ID + ", " + C_ITEM_COUNT + ", " + C_UNITS + ", " +
+            C_LOW_STOCK_COUNT + " FROM " + T_LOCATION_SUMMARY;
+    static final String SQL_INVENTORY_TOTALS = "SELECT SUM(" + C_ITEM_COUNT + "), SUM(" + C_UNITS + "), SUM(" +
+            C_LOW_STOCK_COUNT + ") FROM " + T_LOCATION_SUMMARY;
+    static final String SQL_LOCATION_TOTALS_LIVE = "SELECT IFNULL(" + C_LOCATION_ID + ", 0), COUNT(*), SUM(" + C_QTY + "), SUM(" +
+            C_QTY + " <= " + C_LOW_STOCK_THRESHOLD + ") FROM " + T_ITEMS + " GROUP BY " + C_LOCATION_ID;
+    // Stock and forecast state of a row just before a write changes its quantity
+    private static final String ROW_STATE_COLUMNS = "i." + C_NAME + ", i." + C_QTY + ", i." + C_LOW_STOCK_THRESHOLD + ", IFNULL(f." + C_RATE + ", 0), " +
+            "IFNULL(f." + C_OBSERVED_AT + ", i." + C_UPDATED_AT + "), i." + C_REMOTE_ID + ", i." + C_SKU;
+    private static final String ROW_STATE_FROM = " FROM " + T_ITEMS + " i LEFT JOIN " + T_ITEM_FORECAST + " f ON f." + C_ITEM_ID + " = i." + C_ID;
+    static final String SQL_ROW_STATE = "SELECT " + ROW_STATE_COLUMNS + ROW_STATE_FROM + " WHERE i." + C_ID + "=?";
+    // Row state and id of the rows matched on name + location, before an upsert changes them
+    static final String SQL_STOCK_BY_NAME_LOCATION = "SELECT " + ROW_STATE_COLUMNS + ", i." + C_ID + ROW_STATE_FROM +
+            " WHERE i." + C_NAME + "=? AND i." + C_LOCATION_ID + " IS ?";
+    static final String SQL_REMOTE_ID_BY_ID = "SELECT " + C_REMOTE_ID + " FROM " + T_ITEMS + " WHERE " + C_ID + "=?";
+    // Quantity of an item at a point in time: the nearest snapshot at or before it, plus
+    // the ledger movements after that snapshot (args: item id, time, item id, time)
+    static final String SQL_QUANTITY_AT = "WITH snap AS (SELECT " + C_TAKEN_AT + ", " + C_QTY + " FROM " + T_QUANTITY_SNAPSHOTS +
+            " WHERE " + C_ITEM_ID + "=? AND " + C_TAKEN_AT + " <= ? ORDER BY " + C_TAKEN_AT + " DESC LIMIT 1)" +
+            " SELECT IFNULL((SELECT " + C_QTY + " FROM snap), 0) + IFNULL((SELECT SUM(" + C_DELTA + ") FROM " + T_QUANTITY_LEDGER +
+            " WHERE " + C_ITEM_ID + "=? AND " + C_CHANGED_AT + " > IFNULL((SELECT " + C_TAKEN_AT + " FROM snap), -1)" +
+            " AND " + C_CHANGED_AT + " <= ?), 0)";
+    // Items with a forecast, soonest to run out first. CROSS JOIN keeps item_forecast as the
+    // outer loop so rows are read in order off idx_forecast_depletes_at and the LIMIT stops early.
+    static final String SQL_RUNNING_OUT_SOON = "SELECT i." + C_ID + ", i." + C_NAME + ", i." + C_QTY + ", i." + C_LOCATION_ID + ", " +
+            "f." + C_RATE + ", f." + C_DEPLETES_AT +
+            " FROM " + T_ITEM_FORECAST + " f CROSS JOIN " + T_ITEMS + " i ON i." + C_ID + " = f." + C_ITEM_ID +
+            " WHERE f." + C_DEPLETES_AT + " IS NOT NULL ORDER BY f." + C_DEPLETES_AT + " LIMIT ?";
+    static final String SQL_FORECAST_BY_ID = "SELECT i." + C_ID + ", i." + C_NAME + ", i." + C_QTY + ", i." + C_LOCATION_ID + ", " +
+            "f." + C_RATE + ", f." + C_DEPLETES_AT +
+            " FROM " + T_ITEMS + " i JOIN " + T_ITEM_FORECAST + " f ON f." + C_ITEM_ID + " = i." + C_ID +
+            " WHERE i." + C_ID + "=?";
+    // Sync. OUTBOX_COLUMNS is read back by readOutboxEntry.
+    static final String OUTBOX_COLUMNS = C_REMOTE_ID + ", " + C_VERSION + ", " + C_ATTEMPTS + ", " + C_KIND + ", " + C_NAME + ", " +
+            C_QTY + ", " + C_QTY_DELTA + ", " + C_LOCATION_SET + ", " + C_LOCATION;
+    static final String SQL_OUTBOX_ENTRY = "SELECT " + OUTBOX_COLUMNS + " FROM " + T_OUTBOX + " WHERE " + C_REMOTE_ID + "=?";
+    static final String SQL_DUE_OUTBOX = "SELECT " + OUTBOX_COLUMNS + " FROM " + T_OUTBOX +
+            " WHERE " + C_NEXT_ATTEMPT_AT + " <= ? ORDER BY " + C_NEXT_ATTEMPT_AT + " LIMIT ?";
+    static final String SQL_HAS_OUTBOX_ENTRY = "SELECT 1 FROM " + T_OUTBOX + " WHERE " + C_REMOTE_ID + "=?";
+    static final String SQL_PULL_WATERMARK = "SELECT " + C_PULLED_UNTIL + ", " + C_PULLED_AFTER_ID +
+            " FROM " + T_SYNC_STATE + " WHERE " + C_ID + "=0";
+    static final String SQL_ITEM_BY_REMOTE_ID = "SELECT " + C_ID + ", " + C_NAME + ", " + C_QTY + ", " + C_LOCATION_ID +
+            " FROM " + T_ITEMS + " WHERE " + C_REMOTE_ID + "=?";
+    static final String SQL_LOWEST_STOCK = "SELECT " + C_ID + ", " + C_NAME + ", " + C_QTY + ", " + C_LOCATION_ID +
+            " FROM " + T_ITEMS + " ORDER BY " + C_QTY + ", " + C_ID + " LIMIT ?";
+    // Read by LocationDictionary. locations has one row per location.
+    static final String SQL_ALL_LOCATIONS = "SELECT " + C_ID + ", " + C_NAME + " FROM " + T_LOCATIONS;
+    static final String SQL_LOCATION_BY_ID = "SELECT " + C_NAME + " FROM " + T_LOCATIONS + " WHERE " + C_ID + "=?";
+    static final String SQL_LOCATION_ID_BY_NAME = "SELECT " + C_ID + " FROM " + T_LOCATIONS + " WHERE " + C_NAME + "=?";
+
+    // Write statements compiled once per batch and re-bound for every row
+    static final String STMT_INSERT_ITEM = "INSERT INTO " + T_ITEMS + " (" +
+            C_NAME + ", " + C_QTY + ", " + C_LOCATION_ID + ", " + C_UPDATED_AT + ", " + C_REMOTE_ID + ", " + C_SKU + ") VALUES (?, ?, ?, ?, ?, ?)";
+    static final String STMT_UPDATE_ITEM = "UPDATE " + T_ITEMS + " SET " +
+            C_NAME + "=?, " + C_QTY + "=?, " + C_LOCATION_ID + "=?, " + C_UPDATED_AT + "=? WHERE " + C_ID + "=?";
+    static final String STMT_DELETE_ITEM = "DELETE FROM " + T_ITEMS + " WHERE " + C_ID + "=?";
+    // Field-level writes. The quantity delta is applied by the UPDATE itself, so concurrent
+    // adjustments add up instead of overwriting each other (args: delta, now, id, delta, floor, ceiling)
+    static final String STMT_ADJUST_QTY = "UPDATE " + T_ITEMS + " SET " +
+            C_QTY + " = " + C_QTY + " + ?, " + C_UPDATED_AT + "=? WHERE " + C_ID + "=? AND " + C_QTY + " + ? BETWEEN ? AND ?";
+    static final String STMT_MOVE_ITEM = "UPDATE " + T_ITEMS + " SET " +
+            C_LOCATION_ID + "=?, " + C_UPDATED_AT + "=? WHERE " + C_ID + "=?";
+    static final String STMT_SET_SKU = "UPDATE " + T_ITEMS + " SET " + C_SKU + "=? WHERE " + C_ID + "=?";
+    static final String STMT_SET_QTY = "UPDATE " + T_ITEMS + " SET " +
+            C_QTY + "=?, " + C_UPDATED_AT + "=? WHERE " + C_ID + "=?";
+    static final String STMT_UPSERT_QTY = "UPDATE " + T_ITEMS + " SET " +
+            C_QTY + "=?, " + C_UPDATED_AT + "=? WHERE " + C_NAME + "=? AND " + C_LOCATION_ID + " IS ?";
+
+    // Folds the ledger rows up to a cutoff into one snapshot per item per bucket, each holding
+    // the running quantity at the end of its bucket (args: bucket, bucket, bucket, cutoff)
+    static final String STMT_COMPACT_LEDGER = "WITH buckets AS (" +
+            "SELECT " + C_ITEM_ID + ", (" + C_CHANGED_AT + " / ?) * ? + ? - 1 AS " + C_TAKEN_AT + ", SUM(" + C_DELTA + ") AS " + C_DELTA +
+            " FROM " + T_QUANTITY_LEDGER + " WHERE " + C_CHANGED_AT + " <= ? GROUP BY " + C_ITEM_ID + ", " + C_TAKEN_AT + ")" +
+            " INSERT OR REPLACE INTO " + T_QUANTITY_SNAPSHOTS + " (" + C_ITEM_ID + ", " + C_TAKEN_AT + ", " + C_QTY + ")" +
+            " SELECT " + C_ITEM_ID + ", " + C_TAKEN_AT + "," +
+            " IFNULL((SELECT s." + C_QTY + " FROM " + T_QUANTITY_SNAPSHOTS + " s WHERE s." + C_ITEM_ID + " = b." + C_ITEM_ID +
+            " AND s." + C_TAKEN_AT + " < (SELECT MIN(m." + C_TAKEN_AT + ") FROM buckets m WHERE m." + C_ITEM_ID + " = b." + C_ITEM_ID + ")" +
+            " ORDER BY s." + C_TAKEN_AT + " DESC LIMIT 1), 0)" +
+            " + SUM(" + C_DELTA + ") OVER (PARTITION BY " + C_ITEM_ID + " ORDER BY " + C_TAKEN_AT + ")" +
+            " FROM buckets b";
+    static final String STMT_UPSERT_FORECAST = "INSERT OR REPLACE INTO " + T_ITEM_FORECAST + " (" +
+            C_ITEM_ID + ", " + C_RATE + ", " + C_OBSERVED_AT + ", " + C_DEPLETES_AT + ") VALUES (?, ?, ?, ?)";
+    static final String STMT_SAVE_OUTBOX = "INSERT OR REPLACE INTO " + T_OUTBOX + " (" + OUTBOX_COLUMNS + ", " +
+            C_NEXT_ATTEMPT_AT + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    static final String STMT_DELETE_OUTBOX = "DELETE FROM " + T_OUTBOX + " WHERE " + C_REMOTE_ID + "=?";
+    static final String STMT_CLAIM_OUTBOX = "UPDATE " + T_OUTBOX + " SET " + C_ATTEMPTS + " = " + C_ATTEMPTS + " + 1" +
+            " WHERE " + C_REMOTE_ID + "=?";
+    static final String STMT_DEFER_OUTBOX = "UPDATE " + T_OUTBOX + " SET " + C_NEXT_ATTEMPT_AT + "=? WHERE " + C_REMOTE_ID + "=?";
+    static final String STMT_APPLY_REMOTE = "UPDATE " + T_ITEMS + " SET " +
+            C_NAME + "=?, " + C_QTY + "=?, " + C_LOCATION_ID + "=?, " + C_UPDATED_AT + "=? WHERE " + C_ID + "=?";
+    static final String STMT_SAVE_WATERMARK = "INSERT OR REPLACE INTO " + T_SYNC_STATE + " (" +
+            C_ID + ", " + C_PULLED_UNTIL + ", " + C_PULLED_AFTER_ID + ") VALUES (0, ?, ?)";
+    static final String STMT_INSERT_LOCATION = "INSERT OR IGNORE INTO " + T_LOCATIONS + " (" + C_NAME + ") VALUES (?)";
+    static final String STMT_DELETE_LEDGER_BEFORE = "DELETE FROM " + T_QUANTITY_LEDGER + " WHERE " + C_CHANGED_AT + " <= ?";
+    // Every snapshot before the horizon except each item's latest one (args: horizon, horizon)
+    static final String STMT_PRUNE_SNAPSHOTS = "DELETE FROM " + T_QUANTITY_SNAPSHOTS + " WHERE " + C_TAKEN_AT + " < ?" +
+            " AND " + C_TAKEN_AT + " < (SELECT MAX(s." + C_TAKEN_AT + ") FROM " + T_QUANTITY_SNAPSHOTS + " s" +
+            " WHERE s." + C_ITEM_ID + " = " + T_QUANTITY_SNAPSHOTS + "." + C_ITEM_ID + " AND s." + C_TAKEN_AT + " < ?)";
+    static final String STMT_CLAIM_ITEM = "UPDATE " + T_ITEMS + " SET " + C_REMOTE_ID + "=?, " + C_UPDATED_AT + "=? WHERE " + C_ID + "=?";
+
+    // Outcome of each row in upsertItems
+    public static final int UPSERT_FAILED = 0;
+    public static final int UPSERT_INSERTED = 1;
+    public static final int UPSERT_UPDATED = 2;
+
+    // Guards for adjustQuantity that never reject a change
+    public static final int NO_FLOOR = Integer.MIN_VALUE;
+    public static final int NO_CEILING = Integer.MAX_VALUE;
+
+    // Recently loaded items by id, kept coherent by every write below
+    private final ItemCache cache = new ItemCache(ItemCache.DEFAULT_MAX_ITEMS);
+
+    // Every location by id and by name, shared by the items read below
+    private final LocationDictionary locations = new LocationDictionary();
+
+    // Ids of the items each committed write touched, the same writes that keep the cache coherent
+    private final ChangeFeed changeFeed = new ChangeFeed(ChangeFeed.DEFAULT_MAX_ENTRIES);
+
+    // Told about every quantity change, null when nobody is listening
+    private volatile QuantityListener quantityListener;
+
+    private final DepletionForecaster forecaster = new DepletionForecaster(DepletionForecaster.DEFAULT_SMOOTHING_MS);
+
+    private final DatabaseProfile profile;
+
+    // SQL_ITEM_ID_BY_SKU, compiled on the first lookup and closed with the helper. Its
+    // bindings are shared, so lookups take turns on skuLock.
+    private final Object skuLock = new Object();
+    private SQLiteStatement skuLookup;
+
+    // Copied into place before the database is first opened, null to start from an empty one
+    private final Context context;
+    private final PrepackagedDatabase prepackaged;
+    // Whether the prepackaged database was looked at yet, and whether it was copied in and
+    // its items still have to be claimed (see onOpen). Both guarded by this.
+    private volatile boolean prepackagedChecked;
+    private boolean prepackagedInstalled;
 
     // Constructor
     public DatabaseHelper(@Nullable Context context) {
+        this(context, DatabaseProfile.BALANCED);
+    }
+
+    public DatabaseHelper(@Nullable Context context, DatabaseProfile profile) {
+        this(context, profile, null);
+    }
+
+    // Write-ahead logging lets every reader thread query on its own pooled connection
+    // while the writer has a transaction open, readers see the last committed state.
+    // The synchronous mode applies to every connection, the rest to the writer's (see onConfigure).
+    // Nothing is opened here, the database is opened (and the prepackaged one copied in) by
+    // whichever thread first asks for it.
+    public DatabaseHelper(@Nullable Context context, DatabaseProfile profile, @Nullable PrepackagedDatabase prepackaged) {
         super(context, DB_NAME, null, DB_VERSION);
+        this.context = context;
+        this.profile = profile;
+        this.prepackaged = prepackaged;
+        // setOpenParams replaces the open flags, WAL has to be switched on after it
+        setOpenParams(new SQLiteDatabase.OpenParams.Builder()
+                .setSynchronousMode(profile.synchronous)
+                .setIdleConnectionTimeout(IDLE_CONNECTION_TIMEOUT_MS)
+                .build());
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    // Hit, miss and eviction counters are read from here
+    public ItemCache getItemCache() {
+        return cache;
+    }
+
+    public LocationDictionary getLocationDictionary() {
+        return locations;
     }
 
     @Override
-    public void onCreate(SQLiteDatabase db) {
-        // Create the user login table
-        db.execSQL("CREATE TABLE " + T_USERS + " (" +
-                C_USERNAME + " TEXT PRIMARY KEY, " +
-                C_PASSWORD + " TEXT NOT NULL)");
+    public ChangeFeed getChangeFeed() {
+        return changeFeed;
+    }
+
+    public DatabaseProfile getProfile() {
+        return profile;
+    }
+
+    // Runs on the primary connection, the one every write goes through, so the checkpoint
+    // threshold and the larger page cache are where the writes happen
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.execSQL("PRAGMA cache_size = -" + profile.cacheSizeKb);
+        DatabaseUtils.longForQuery(db, "PRAGMA wal_autocheckpoint = " + profile.walAutoCheckpointPages, null);
+    }
 
-        // Create the item inventory table
-        db.execSQL("CREATE TABLE " + T_ITEMS + " (" +
-                C_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                C_NAME + " TEXT NOT NULL, " +
-                C_QTY + " INTEGER NOT NULL DEFAULT 0, " +
-                C_LOCATION + " TEXT, " +
-                C_UPDATED_AT + " INTEGER NOT NULL)");
+    @Override
+    public SQLiteDatabase getWritableDatabase() {
+        if (!prepackagedChecked) installPrepackaged();
+        return super.getWritableDatabase();
+    }
+
+    @Override
+    public SQLiteDatabase getReadableDatabase() {
+        if (!prepackagedChecked) installPrepackaged();
+        return super.getReadableDatabase();
+    }
+
+    // Opens the database now rather than on the first query, creating, copying in or
+    // upgrading it as needed
+    @Override
+    public void open() {
+        getWritableDatabase();
+    }
+
+    // After any upgrade has committed, so the dictionary starts out with every location
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        synchronized (this) {
+            if (prepackagedInstalled) {
+                claimPrepackagedItems(db);
+                prepackagedInstalled = false;
+            }
+        }
+        locations.load(db);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        // Start from the baseline schema and apply every migration on top of it
+        Migrations.createBaseline(db);
+        Migrations.migrate(db, Migrations.BASELINE_VERSION, DB_VERSION);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // Drop all existing tables to start fresh
-        db.execSQL("DROP TABLE IF EXISTS " + T_ITEMS);
-        db.execSQL("DROP TABLE IF EXISTS " + T_USERS);
-        // Create new tables
-        onCreate(db);
+        if (oldVersion < Migrations.BASELINE_VERSION) {
+            // Schemas older than the baseline have no migration path, start fresh
+            db.execSQL("DROP TABLE IF EXISTS " + T_ITEMS);
+            db.execSQL("DROP TABLE IF EXISTS " + T_USERS);
+            onCreate(db);
+            return;
+        }
+        // Step through each version so existing users and items are kept
+        Migrations.migrate(db, oldVersion, newVersion);
+    }
+
+    // Copy the whole WAL back into the database file and truncate it. The writer already
+    // checkpoints as it goes, this is for when the app is idle so the WAL doesn't stay at
+    // its largest size. Returns false if readers kept part of the WAL from being copied.
+    @Override
+    public boolean checkpoint() {
+        SQLiteDatabase db = getWritableDatabase();
+        try (Cursor c = db.rawQuery(PRAGMA_WAL_CHECKPOINT, null)) {
+            // Columns: busy, frames in the WAL, frames checkpointed
+            return c.moveToFirst() && c.getInt(0) == 0;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        synchronized (skuLock) {
+            if (skuLookup != null) {
+                skuLookup.close();
+                skuLookup = null;
+            }
+        }
+        super.close();
+    }
+
+    // --- Prepackaged Database --- \\
+
+    // Runs once, before the first open, on whichever thread opens the database first
+    private synchronized void installPrepackaged() {
+        if (prepackagedChecked) return;
+        if (prepackaged != null && context != null) {
+            prepackagedInstalled = prepackaged.installTo(context.getDatabasePath(DB_NAME));
+        }
+        prepackagedChecked = true;
+    }
+
+    // The prepackaged items are the same on every install, so each install gives them
+    // remote ids of its own and queues them for the server, like items inserted here.
+    // Their update times become the time they were installed.
+    private void claimPrepackagedItems(SQLiteDatabase db) {
+        List<Item> items = new ArrayList<>();
+        locations.load(db);
+        try (Cursor c = db.rawQuery(SQL_ALL_ITEMS, null)) {
+            while (c.moveToNext()) {
+                items.add(readItem(db, c));
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        db.beginTransaction();
+        try (SQLiteStatement claim = db.compileStatement(STMT_CLAIM_ITEM);
+             OutboxWriter outbox = new OutboxWriter(db)) {
+            for (Item item : items) {
+                String remoteId = UUID.randomUUID().toString();
+                claim.bindString(1, remoteId);
+                claim.bindLong(2, now);
+                claim.bindLong(3, item.getId());
+                claim.executeUpdateDelete();
+                outbox.add(remoteId, PendingChange.create(item.getName(), item.getQuantity(), item.getLocation()), now);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
     }
 
     // --- --- Helper Functions --- --- \\
 
     // Returns true if a user was created, false if the username exists or
     // an error occurs when inserting the value into the table
+    @Override
     public boolean createUser(String username, String password) {
         SQLiteDatabase db = getWritableDatabase();
         ContentValues cv = new ContentValues();
@@ -85,15 +498,14 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     }
 
     // Returns true if the username and password combination exist in the database
+    @Override
     public boolean validateLogin(String username, String password) {
         SQLiteDatabase db = getReadableDatabase();
-        String[] cols = { C_USERNAME };
-        String sel = C_USERNAME + "=? AND " + C_PASSWORD + "=?";
 
         // Args to validate
         String[] args = { username.trim(), password };
 
-        try (Cursor c = db.query(T_USERS, cols, sel, args, null, null, null)) {
+        try (Cursor c = db.rawQuery(SQL_VALIDATE_LOGIN, args)) {
             return c.moveToFirst();
         }
     }
@@ -101,75 +513,1375 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     // --- CRUD Functions for Items Table --- \\
 
     // Insert an item into the database
+    @Override
     public long insertItem(Item item) {
         SQLiteDatabase db = getWritableDatabase();
         ContentValues cv = new ContentValues();
         cv.put(C_NAME, item.getName());
         cv.put(C_QTY, item.getQuantity());
-        cv.put(C_LOCATION, item.getLocation());
-        cv.put(C_UPDATED_AT, System.currentTimeMillis());
-        return db.insert(T_ITEMS, null, cv);
+        long now = System.currentTimeMillis();
+        cv.put(C_UPDATED_AT, now);
+        String remoteId = UUID.randomUUID().toString();
+        cv.put(C_REMOTE_ID, remoteId);
+        String sku = normalizeSku(item.getSku());
+        if (sku != null) cv.put(C_SKU, sku);
+
+        long id;
+        db.beginTransaction();
+        try (OutboxWriter outbox = new OutboxWriter(db)) {
+            putLocation(cv, db, item.getLocation());
+            id = db.insert(T_ITEMS, null, cv);
+            if (id != -1) outbox.add(remoteId, PendingChange.create(item.getName(), item.getQuantity(), item.getLocation()), now);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        if (id != -1) {
+            cache.put(written(item, id, now, sku));
+            changeFeed.itemChanged(id);
+        }
+        return id;
     }
 
     // Update an item that already exists in the database
+    @Override
     public int updateItem(Item item) {
         SQLiteDatabase db = getWritableDatabase();
         ContentValues cv = new ContentValues();
         cv.put(C_NAME, item.getName());
         cv.put(C_QTY, item.getQuantity());
-        cv.put(C_LOCATION, item.getLocation());
-        cv.put(C_UPDATED_AT, System.currentTimeMillis());
-        return db.update(T_ITEMS, cv, C_ID + "=?", new String[] { String.valueOf(item.getId()) });
+        long now = System.currentTimeMillis();
+        cv.put(C_UPDATED_AT, now);
+
+        int changed;
+        RowState before;
+        List<QuantityChange> quantityChanges = new ArrayList<>(1);
+        db.beginTransaction();
+        try (SQLiteStatement forecast = db.compileStatement(STMT_UPSERT_FORECAST);
+             OutboxWriter outbox = new OutboxWriter(db)) {
+            putLocation(cv, db, item.getLocation());
+            before = rowState(db, item.getId());
+            changed = db.update(T_ITEMS, cv, C_ID + "=?", new String[] { String.valueOf(item.getId()) });
+            if (changed > 0) {
+                quantityWritten(forecast, item.getId(), item.getName(), before, item.getQuantity(), now, quantityChanges);
+                outbox.add(before.remoteId, PendingChange.update(item.getName(), item.getQuantity(), item.getLocation()), now);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        if (changed > 0) {
+            // The sku isn't part of an update, the row keeps the one it had
+            cache.put(written(item, item.getId(), now, before.sku));
+            changeFeed.itemChanged(item.getId());
+        } else {
+            cache.remove(item.getId());
+        }
+        notifyQuantityChanged(quantityChanges);
+        return changed;
     }
 
     // Delete an item in the database
+    @Override
     public int deleteItem(long id) {
         SQLiteDatabase db = getWritableDatabase();
-        return db.delete(T_ITEMS, C_ID + "=?", new String[] { String.valueOf(id) });
+        int deleted;
+        db.beginTransaction();
+        try (OutboxWriter outbox = new OutboxWriter(db)) {
+            String remoteId = remoteIdOf(db, id);
+            deleted = db.delete(T_ITEMS, C_ID + "=?", new String[] { String.valueOf(id) });
+            if (deleted > 0) outbox.add(remoteId, PendingChange.delete(), System.currentTimeMillis());
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        cache.remove(id);
+        if (deleted > 0) changeFeed.itemDeleted(id);
+        return deleted;
+    }
+
+    // --- Field-Level Updates --- \\
+    // These write only the column being changed (plus updated_at), so a screen holding an
+    // older copy of the item can't overwrite changes made to its other columns meanwhile.
+
+    // Add delta to the quantity in one UPDATE, as long as the result stays within
+    // [floor, ceiling]. Returns the new quantity, or null if the item doesn't exist or
+    // a guard rejected the change.
+    @Override
+    public Integer adjustQuantity(long id, int delta, int floor, int ceiling) {
+        return writeQuantity(id, true, delta, floor, ceiling);
+    }
+
+    // Set the quantity without touching the name or location, returns the new quantity or null
+    @Override
+    public Integer updateQuantity(long id, int quantity) {
+        return writeQuantity(id, false, quantity, NO_FLOOR, NO_CEILING);
+    }
+
+    @Override
+    public int updateName(long id, String name) {
+        return updateColumn(id, C_NAME, name);
+    }
+
+    @Override
+    public int updateLocation(long id, @Nullable String location) {
+        return updateColumn(id, C_LOCATION, location);
+    }
+
+    // Give an item a sku (null or blank takes it away). Skus are local, like the low stock
+    // threshold, so this isn't queued for sync and leaves updated_at alone. Returns the
+    // number of rows changed, or -1 if another item already has the sku.
+    @Override
+    public int setSku(long id, @Nullable String sku) {
+        SQLiteDatabase db = getWritableDatabase();
+        String value = normalizeSku(sku);
+
+        int changed;
+        try (SQLiteStatement update = db.compileStatement(STMT_SET_SKU)) {
+            if (value != null) update.bindString(1, value);
+            update.bindLong(2, id);
+            changed = update.executeUpdateDelete();
+        } catch (SQLiteConstraintException taken) {
+            System.out.println("ERROR: The sku " + value + " already belongs to another item: " + taken);
+            return -1;
+        }
+        cache.remove(id);
+        if (changed > 0) changeFeed.itemChanged(id);
+        return changed;
+    }
+
+    private Integer writeQuantity(long id, boolean relative, int value, int floor, int ceiling) {
+        SQLiteDatabase db = getWritableDatabase();
+        long now = System.currentTimeMillis();
+
+        Integer quantity = null;
+        List<QuantityChange> quantityChanges = new ArrayList<>(1);
+        db.beginTransaction();
+        try (SQLiteStatement update = db.compileStatement(relative ? STMT_ADJUST_QTY : STMT_SET_QTY);
+             SQLiteStatement forecast = db.compileStatement(STMT_UPSERT_FORECAST);
+             OutboxWriter outbox = new OutboxWriter(db)) {
+            RowState before = rowState(db, id);
+            // A relative change whose result doesn't fit in an int is rejected like a guard would
+            Integer result = before == null ? null : relative ? addQuantity(before.quantity, value) : Integer.valueOf(value);
+            update.bindLong(1, value);
+            update.bindLong(2, now);
+            update.bindLong(3, id);
+            if (relative) {
+                update.bindLong(4, value);
+                update.bindLong(5, floor);
+                update.bindLong(6, ceiling);
+            }
+            if (result != null && update.executeUpdateDelete() > 0) {
+                // No other write can land between the read and the update inside the transaction
+                // (there is no RETURNING clause before SQLite 3.35 to read it back from the UPDATE)
+                quantity = result;
+                quantityWritten(forecast, id, before.name, before, quantity, now, quantityChanges);
+                // A relative change stays relative, so it adds to changes made on other devices
+                outbox.add(before.remoteId, relative ? PendingChange.adjustQuantity(value) : PendingChange.setQuantity(value), now);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        if (quantity != null) {
+            cache.remove(id);
+            changeFeed.itemChanged(id);
+        }
+        notifyQuantityChanged(quantityChanges);
+        return quantity;
+    }
+
+    // column is C_NAME or C_LOCATION
+    private int updateColumn(long id, String column, @Nullable String value) {
+        SQLiteDatabase db = getWritableDatabase();
+        ContentValues cv = new ContentValues();
+        long now = System.currentTimeMillis();
+        cv.put(C_UPDATED_AT, now);
+
+        int changed;
+        db.beginTransaction();
+        try (OutboxWriter outbox = new OutboxWriter(db)) {
+            if (column.equals(C_LOCATION)) {
+                putLocation(cv, db, value);
+            } else {
+                cv.put(column, value);
+            }
+            changed = db.update(T_ITEMS, cv, C_ID + "=?", new String[] { String.valueOf(id) });
+            if (changed > 0) {
+                outbox.add(remoteIdOf(db, id), column.equals(C_NAME) ? PendingChange.rename(value) : PendingChange.move(value), now);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        cache.remove(id);
+        if (changed > 0) changeFeed.itemChanged(id);
+        return changed;
+    }
+
+    // --- Batch Functions for Items Table --- \\
+    // Each batch runs in a single transaction with one compiled statement, and returns
+    // a result per row in the same order as the input. The grid's multi-select goes
+    // through deleteItems, moveItems and adjustQuantities. A row that fails (e.g. a null
+    // name) gets -1 / 0 and doesn't stop the rest of the batch.
+
+    // Insert several items, returns the new row id of each item or -1
+    @Override
+    public long[] insertItems(List<Item> items) {
+        SQLiteDatabase db = getWritableDatabase();
+        long[] ids = new long[items.size()];
+        long now = System.currentTimeMillis();
+
+        db.beginTransaction();
+        try (SQLiteStatement insert = db.compileStatement(STMT_INSERT_ITEM);
+             OutboxWriter outbox = new OutboxWriter(db)) {
+            for (int i = 0; i < items.size(); i++) {
+                Item item = items.get(i);
+                try {
+                    ids[i] = insertNew(insert, outbox, item, locations.idOf(db, item.getLocation()), now);
+                } catch (Exception error) {
+                    System.out.println("ERROR: An error occurred when inserting an item in a batch: " + error);
+                    ids[i] = -1;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        List<Long> inserted = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == -1) continue;
+            cache.put(written(items.get(i), ids[i], now, normalizeSku(items.get(i).getSku())));
+            inserted.add(ids[i]);
+        }
+        changeFeed.itemsChanged(inserted);
+        return ids;
+    }
+
+    // Update several items by id, returns the number of rows changed for each item
+    @Override
+    public int[] updateItems(List<Item> items) {
+        SQLiteDatabase db = getWritableDatabase();
+        int[] changed = new int[items.size()];
+        String[] skus = new String[items.size()];
+        long now = System.currentTimeMillis();
+        List<QuantityChange> quantityChanges = new ArrayList<>();
+
+        db.beginTransaction();
+        try (SQLiteStatement update = db.compileStatement(STMT_UPDATE_ITEM);
+             SQLiteStatement forecast = db.compileStatement(STMT_UPSERT_FORECAST);
+             OutboxWriter outbox = new OutboxWriter(db)) {
+            for (int i = 0; i < items.size(); i++) {
+                Item item = items.get(i);
+                try {
+                    bindItem(update, item, locations.idOf(db, item.getLocation()), now);
+                    update.bindLong(5, item.getId());
+                    RowState before = rowState(db, item.getId());
+                    changed[i] = update.executeUpdateDelete();
+                    if (changed[i] > 0) {
+                        skus[i] = before.sku;
+                        quantityWritten(forecast, item.getId(), item.getName(), before, item.getQuantity(), now, quantityChanges);
+                        outbox.add(before.remoteId, PendingChange.update(item.getName(), item.getQuantity(), item.getLocation()), now);
+                    }
+                } catch (Exception error) {
+                    System.out.println("ERROR: An error occurred when updating an item in a batch: " + error);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        List<Long> updated = new ArrayList<>(changed.length);
+        for (int i = 0; i < changed.length; i++) {
+            Item item = items.get(i);
+            if (changed[i] > 0) {
+                cache.put(written(item, item.getId(), now, skus[i]));
+                updated.add(item.getId());
+            } else {
+                cache.remove(item.getId());
+            }
+        }
+        changeFeed.itemsChanged(updated);
+        notifyQuantityChanged(quantityChanges);
+        return changed;
+    }
+
+    // Delete several items by id, returns the number of rows deleted for each id
+    @Override
+    public int[] deleteItems(long[] ids) {
+        SQLiteDatabase db = getWritableDatabase();
+        int[] deleted = new int[ids.length];
+        long now = System.currentTimeMillis();
+
+        db.beginTransaction();
+        try (SQLiteStatement delete = db.compileStatement(STMT_DELETE_ITEM);
+             OutboxWriter outbox = new OutboxWriter(db)) {
+            for (int i = 0; i < ids.length; i++) {
+                String remoteId = remoteIdOf(db, ids[i]);
+                delete.bindLong(1, ids[i]);
+                deleted[i] = delete.executeUpdateDelete();
+                if (deleted[i] > 0) outbox.add(remoteId, PendingChange.delete(), now);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        List<Long> removed = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            cache.remove(ids[i]);
+            if (deleted[i] > 0) removed.add(ids[i]);
+        }
+        changeFeed.itemsDeleted(removed);
+        return deleted;
+    }
+
+    // Move several items by id to one location, returns the number of rows changed for each id
+    @Override
+    public int[] moveItems(long[] ids, @Nullable String location) {
+        SQLiteDatabase db = getWritableDatabase();
+        int[] changed = new int[ids.length];
+        long now = System.currentTimeMillis();
+
+        db.beginTransaction();
+        try (SQLiteStatement move = db.compileStatement(STMT_MOVE_ITEM);
+             OutboxWriter outbox = new OutboxWriter(db)) {
+            long locationId = locations.idOf(db, location);
+            if (locationId != 0) move.bindLong(1, locationId);
+            move.bindLong(2, now);
+            for (int i = 0; i < ids.length; i++) {
+                String remoteId = remoteIdOf(db, ids[i]);
+                move.bindLong(3, ids[i]);
+                changed[i] = move.executeUpdateDelete();
+                if (changed[i] > 0) outbox.add(remoteId, PendingChange.move(location), now);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        List<Long> moved = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            cache.remove(ids[i]);
+            if (changed[i] > 0) moved.add(ids[i]);
+        }
+        changeFeed.itemsChanged(moved);
+        return changed;
+    }
+
+    // Add delta to the quantity of several items by id, each one only if its result stays
+    // within [floor, ceiling] (see adjustQuantity). Returns the number of rows changed for each id.
+    @Override
+    public int[] adjustQuantities(long[] ids, int delta, int floor, int ceiling) {
+        SQLiteDatabase db = getWritableDatabase();
+        int[] changed = new int[ids.length];
+        long now = System.currentTimeMillis();
+        List<QuantityChange> quantityChanges = new ArrayList<>();
+
+        db.beginTransaction();
+        try (SQLiteStatement adjust = db.compileStatement(STMT_ADJUST_QTY);
+             SQLiteStatement forecast = db.compileStatement(STMT_UPSERT_FORECAST);
+             OutboxWriter outbox = new OutboxWriter(db)) {
+            adjust.bindLong(1, delta);
+            adjust.bindLong(2, now);
+            adjust.bindLong(4, delta);
+            adjust.bindLong(5, floor);
+            adjust.bindLong(6, ceiling);
+            for (int i = 0; i < ids.length; i++) {
+                RowState before = rowState(db, ids[i]);
+                Integer result = before == null ? null : addQuantity(before.quantity, delta);
+                if (result == null) continue;
+                adjust.bindLong(3, ids[i]);
+                changed[i] = adjust.executeUpdateDelete();
+                if (changed[i] > 0) {
+                    quantityWritten(forecast, ids[i], before.name, before, result, now, quantityChanges);
+                    outbox.add(before.remoteId, PendingChange.adjustQuantity(delta), now);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        List<Long> adjusted = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            if (changed[i] == 0) continue;
+            cache.remove(ids[i]);
+            adjusted.add(ids[i]);
+        }
+        changeFeed.itemsChanged(adjusted);
+        notifyQuantityChanged(quantityChanges);
+        return changed;
+    }
+
+    // Insert or update several items matched on name + location, in one transaction.
+    // An existing item gets the imported quantity, anything else is inserted.
+    // Returns one of the UPSERT_ outcomes for each item.
+    @Override
+    public int[] upsertItems(List<Item> items) {
+        SQLiteDatabase db = getWritableDatabase();
+        int[] outcomes = new int[items.size()];
+        long now = System.currentTimeMillis();
+        List<QuantityChange> quantityChanges = new ArrayList<>();
+
+        db.beginTransaction();
+        try (SQLiteStatement update = db.compileStatement(STMT_UPSERT_QTY);
+             SQLiteStatement insert = db.compileStatement(STMT_INSERT_ITEM);
+             SQLiteStatement forecast = db.compileStatement(STMT_UPSERT_FORECAST);
+             OutboxWriter outbox = new OutboxWriter(db)) {
+            for (int i = 0; i < items.size(); i++) {
+                Item item = items.get(i);
+                try {
+                    long locationId = locations.idOf(db, item.getLocation());
+                    update.clearBindings();
+                    update.bindLong(1, item.getQuantity());
+                    update.bindLong(2, now);
+                    update.bindString(3, item.getName());
+                    if (locationId != 0) update.bindLong(4, locationId);
+
+                    Map<Long, RowState> matched = rowStatesByName(db, item, locationId);
+                    if (update.executeUpdateDelete() > 0) {
+                        outcomes[i] = UPSERT_UPDATED;
+                        for (Map.Entry<Long, RowState> row : matched.entrySet()) {
+                            RowState before = row.getValue();
+                            quantityWritten(forecast, row.getKey(), item.getName(), before, item.getQuantity(), now, quantityChanges);
+                            outbox.add(before.remoteId, PendingChange.setQuantity(item.getQuantity()), now);
+                        }
+                    } else {
+                        outcomes[i] = insertNew(insert, outbox, item, locationId, now) == -1 ? UPSERT_FAILED : UPSERT_INSERTED;
+                    }
+                } catch (Exception error) {
+                    System.out.println("ERROR: An error occurred when upserting an item in a batch: " + error);
+                    outcomes[i] = UPSERT_FAILED;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            // Updated rows are matched by name + location, so their ids aren't known here
+            cache.clear();
+            changeFeed.everythingChanged();
+        }
+        notifyQuantityChanged(quantityChanges);
+        return outcomes;
+    }
+
+    // Bind name, quantity, location id (0 for none) and updated_at to parameters 1-4
+    private static void bindItem(SQLiteStatement statement, Item item, long locationId, long updatedAt) {
+        statement.clearBindings();
+        if (item.getName() != null) statement.bindString(1, item.getName());
+        statement.bindLong(2, item.getQuantity());
+        if (locationId != 0) statement.bindLong(3, locationId);
+        statement.bindLong(4, updatedAt);
+    }
+
+    // Location of a row written with ContentValues, must be called inside the write's transaction
+    private void putLocation(ContentValues cv, SQLiteDatabase db, @Nullable String location) {
+        long locationId = locations.idOf(db, location);
+        if (locationId != 0) {
+            cv.put(C_LOCATION_ID, locationId);
+        } else {
+            cv.putNull(C_LOCATION_ID);
+        }
+    }
+
+    // Run STMT_INSERT_ITEM for a new local item and queue its create, returns the row id or -1
+    private static long insertNew(SQLiteStatement insert, OutboxWriter outbox, Item item, long locationId, long now) {
+        String remoteId = UUID.randomUUID().toString();
+        bindItem(insert, item, locationId, now);
+        insert.bindString(5, remoteId);
+        String sku = normalizeSku(item.getSku());
+        if (sku != null) insert.bindString(6, sku);
+        long id = insert.executeInsert();
+        if (id != -1) outbox.add(remoteId, PendingChange.create(item.getName(), item.getQuantity(), item.getLocation()), now);
+        return id;
+    }
+
+    // Skus are matched exactly after trimming, null for none
+    public static String normalizeSku(@Nullable String sku) {
+        if (sku == null) return null;
+        String trimmed = sku.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    // Copy of an item as it was just written, with its location spelled the way it's stored
+    // and the sku the row holds
+    private Item written(Item item, long id, long updatedAt, @Nullable String sku) {
+        Item copy = new Item(item);
+        copy.setId(id);
+        copy.setLocation(locations.canonical(item.getLocation()));
+        copy.setSku(sku);
+        copy.setUpdatedAt(updatedAt);
+        return copy;
+    }
+
+    // --- Quantity Changes --- \\
+    // Updates by id first read the old quantity, threshold and forecast state of the row
+    // (one primary key lookup). In the same transaction as the write, the item's forecast
+    // is moved forward, and while a listener is set the change is handed to it once the
+    // write has committed.
+
+    @Override
+    public void setQuantityListener(@Nullable QuantityListener listener) {
+        quantityListener = listener;
+    }
+
+    // Set the quantity at or below which an item counts as low on stock
+    @Override
+    public int setLowStockThreshold(long id, int threshold) {
+        SQLiteDatabase db = getWritableDatabase();
+        ContentValues cv = new ContentValues();
+        cv.put(C_LOW_STOCK_THRESHOLD, threshold);
+        int changed = db.update(T_ITEMS, cv, C_ID + "=?", new String[] { String.valueOf(id) });
+        if (changed > 0) changeFeed.itemChanged(id);
+        return changed;
+    }
+
+    // Name, quantity, threshold, forecast and sku of a row before a write
+    private static class RowState {
+        final String name;
+        final int quantity;
+        final int threshold;
+        final double rate;
+        final long observedAt;
+        final String remoteId;
+        final String sku;
+
+        RowState(String name, int quantity, int threshold, double rate, long observedAt, String remoteId, String sku) {
+            this.name = name;
+            this.quantity = quantity;
+            this.threshold = threshold;
+            this.rate = rate;
+            this.observedAt = observedAt;
+            this.remoteId = remoteId;
+            this.sku = sku;
+        }
+    }
+
+    // Null if the row doesn't exist
+    private static RowState rowState(SQLiteDatabase db, long id) {
+        try (Cursor c = db.rawQuery(SQL_ROW_STATE, new String[] { String.valueOf(id) })) {
+            return c.moveToFirst() ? readRowState(c) : null;
+        }
+    }
+
+    // Read from the ROW_STATE_COLUMNS at the start of a row
+    private static RowState readRowState(Cursor c) {
+        return new RowState(c.getString(0), c.getInt(1), c.getInt(2), c.getDouble(3), c.getLong(4), c.getString(5), c.getString(6));
+    }
+
+    // The row in the before state now holds newQuantity: update its forecast and, while
+    // someone is listening, record the change
+    private void quantityWritten(SQLiteStatement forecast, long id, String name, RowState before, int newQuantity,
+                                 long now, List<QuantityChange> changes) {
+        if (before == null || before.quantity == newQuantity) return;
+
+        double rate = forecaster.nextRate(before.rate, before.observedAt, before.quantity, newQuantity, now);
+        long depletesAt = DepletionForecaster.depletesAt(rate, newQuantity, now);
+        forecast.clearBindings();
+        forecast.bindLong(1, id);
+        forecast.bindDouble(2, rate);
+        forecast.bindLong(3, now);
+        if (depletesAt != DepletionForecaster.NEVER) forecast.bindLong(4, depletesAt);
+        forecast.executeInsert();
+
+        if (quantityListener != null) {
+            changes.add(new QuantityChange(id, name, before.quantity, newQuantity, before.threshold));
+        }
+    }
+
+    // State of the rows the upsert of item is about to update, matched on name + location, by id
+    private static Map<Long, RowState> rowStatesByName(SQLiteDatabase db, Item item, long locationId) {
+        String[] args = { item.getName(), String.valueOf(locationId) };
+        String sql = SQL_STOCK_BY_NAME_LOCATION;
+        if (locationId == 0) {
+            // rawQuery can't bind a null argument
+            args = new String[] { item.getName() };
+            sql = sql.substring(0, sql.length() - 1) + "NULL";
+        }
+        Map<Long, RowState> rows = new LinkedHashMap<>(2);
+        try (Cursor c = db.rawQuery(sql, args)) {
+            while (c.moveToNext()) {
+                rows.put(c.getLong(7), readRowState(c));
+            }
+        }
+        return rows;
+    }
+
+    // quantity + delta, or null if it overflows an int
+    private static Integer addQuantity(int quantity, int delta) {
+        try {
+            return Math.addExact(quantity, delta);
+        } catch (ArithmeticException overflow) {
+            return null;
+        }
+    }
+
+    // Null if the row doesn't exist
+    private static String remoteIdOf(SQLiteDatabase db, long id) {
+        try (Cursor c = db.rawQuery(SQL_REMOTE_ID_BY_ID, new String[] { String.valueOf(id) })) {
+            return c.moveToFirst() ? c.getString(0) : null;
+        }
+    }
+
+    private void notifyQuantityChanged(List<QuantityChange> changes) {
+        QuantityListener listener = quantityListener;
+        if (listener == null || changes.isEmpty()) return;
+        try {
+            listener.onQuantityChanged(changes);
+        } catch (Exception error) {
+            System.out.println("ERROR: A quantity listener failed: " + error);
+        }
     }
 
-    // Get a single item by the item's primary key
+    // Get a single item by the item's primary key, from the cache when it was loaded recently
+    @Override
     public Item getItemById(long id) {
+        Item cached = cache.get(id);
+        if (cached != null) return cached;
+
+        long stamp = cache.stamp();
         SQLiteDatabase db = getReadableDatabase();
-        try (Cursor c = db.query(
-                T_ITEMS,
-                null,
-                C_ID + "=?",
-                new String[] { String.valueOf(id) },
-                null, null, null
-        )) {
+        try (Cursor c = db.rawQuery(SQL_ITEM_BY_ID, new String[] { String.valueOf(id) })) {
             if (c.moveToFirst()) {
-                return new Item (
-                        c.getLong(c.getColumnIndexOrThrow(C_ID)),
-                        c.getString(c.getColumnIndexOrThrow(C_NAME)),
-                        c.getInt(c.getColumnIndexOrThrow(C_QTY)),
-                        c.getString(c.getColumnIndexOrThrow(C_LOCATION))
-                );
+                Item item = readItem(db, c);
+                cache.putIfUnchanged(item, stamp);
+                return item;
             }
         }
         return null;
     }
 
+    // The item with the given sku, null if there is none. The lookup runs a statement
+    // compiled once, so a scan doesn't parse or plan SQL: one search of idx_items_sku, then
+    // the item comes from the cache or its primary key.
+    @Override
+    public Item getItemBySku(String sku) {
+        String value = normalizeSku(sku);
+        if (value == null) return null;
+
+        long id;
+        synchronized (skuLock) {
+            if (skuLookup == null) skuLookup = getReadableDatabase().compileStatement(SQL_ITEM_ID_BY_SKU);
+            skuLookup.bindString(1, value);
+            try {
+                id = skuLookup.simpleQueryForLong();
+            } catch (SQLiteDoneException none) {
+                return null;
+            } finally {
+                skuLookup.clearBindings();
+            }
+        }
+        return getItemById(id);
+    }
+
+    // Every sku with its item id, read off idx_items_sku without touching the table
+    @Override
+    public Map<String, Long> getSkuIndex() {
+        SQLiteDatabase db = getReadableDatabase();
+        Map<String, Long> output = new HashMap<>();
+        try (Cursor c = db.rawQuery(SQL_SKU_INDEX, null)) {
+            while (c.moveToNext()) {
+                output.put(c.getString(0), c.getLong(1));
+            }
+        }
+        return output;
+    }
+
     // Get all of the items in the database
+    @Override
     public List<Item> getAllItems() {
+        long stamp = cache.stamp();
+        SQLiteDatabase db = getReadableDatabase();
+        List<Item> output = new ArrayList<>();
+        try (Cursor c = db.rawQuery(SQL_ALL_ITEMS, null)) {
+            while (c.moveToNext()) {
+                output.add(readItem(db, c));
+            }
+        }
+
+        cache.putAllIfUnchanged(output, stamp);
+        return output;
+    }
+
+    // Get one page of items, newest first.
+    // Keyset pagination: the page starts right after the (updated_at, id) of the last
+    // item of the previous page, so the cost doesn't depend on how deep the page is.
+    // Pass Long.MAX_VALUE for both keys to get the first page.
+    @Override
+    public List<Item> getItemsPage(long afterUpdatedAt, long afterId, int pageSize) {
+        long stamp = cache.stamp();
+        SQLiteDatabase db = getReadableDatabase();
+        List<Item> output = new ArrayList<>(pageSize);
+        String[] args = { String.valueOf(afterUpdatedAt), String.valueOf(afterId), String.valueOf(pageSize) };
+
+        try (Cursor c = db.rawQuery(SQL_ITEMS_PAGE, args)) {
+            while (c.moveToNext()) {
+                output.add(readItem(db, c));
+            }
+        }
+
+        cache.putAllIfUnchanged(output, stamp);
+        return output;
+    }
+
+    // One page of the grid, keyed like getItemsPage. Only id, name and quantity are read,
+    // which keeps the rows copied through the CursorWindow small, and nothing is cached
+    // since these aren't full items.
+    @Override
+    public List<ItemSummary> getItemSummaries(long afterUpdatedAt, long afterId, int pageSize) {
+        SQLiteDatabase db = getReadableDatabase();
+        List<ItemSummary> output = new ArrayList<>(pageSize);
+        String[] args = { String.valueOf(afterUpdatedAt), String.valueOf(afterId), String.valueOf(pageSize) };
+
+        try (Cursor c = db.rawQuery(SQL_ITEM_SUMMARIES_PAGE, args)) {
+            while (c.moveToNext()) {
+                output.add(new ItemSummary(c.getLong(0), c.getString(1), c.getInt(2), c.getLong(3)));
+            }
+        }
+        return output;
+    }
+
+    // Grid rows of the given items, in no particular order. Ids that no longer exist are
+    // left out, which is how a caller tells a delete from an update. One primary key
+    // lookup per id, so it's meant for the handful of ids a ChangeFeed reports.
+    @Override
+    public List<ItemSummary> getItemSummariesByIds(Collection<Long> ids) {
+        SQLiteDatabase db = getReadableDatabase();
+        List<ItemSummary> output = new ArrayList<>(ids.size());
+        String[] args = new String[1];
+
+        for (long id : ids) {
+            args[0] = String.valueOf(id);
+            try (Cursor c = db.rawQuery(SQL_ITEM_SUMMARY_BY_ID, args)) {
+                if (c.moveToFirst()) {
+                    output.add(new ItemSummary(c.getLong(0), c.getString(1), c.getInt(2), c.getLong(3)));
+                }
+            }
+        }
+        return output;
+    }
+
+    // One page of the grid sorted and filtered by an ItemQuery, after the given row of the
+    // page before it (null for the first page). The filters are part of the SQL and the
+    // rows are read in order off one index, so a page only reads its own rows however deep
+    // it is. Sorted by location the page is filled one location at a time, in the order of
+    // their names, each read off idx_items_location_name.
+    @Override
+    public List<ItemSummary> queryItemSummaries(ItemQuery query, ItemSummary after, int pageSize) {
+        SQLiteDatabase db = getReadableDatabase();
+        List<ItemSummary> output = new ArrayList<>(pageSize);
+        long locationId = ANY_LOCATION;
+        if (query.location != null) {
+            locationId = locations.existingIdOf(db, query.location);
+            // Nobody has used the location yet, so nothing is there
+            if (locationId == 0) return output;
+        }
+
+        if (query.sort != ItemQuery.SORT_LOCATION || locationId != ANY_LOCATION) {
+            readItemQuery(db, query, locationId, after, pageSize, output);
+            return output;
+        }
+
+        List<Long> ids = locations.idsByName(db);
+        if (query.descending) Collections.reverse(ids);
+        int first = after == null ? 0 : Math.max(0, ids.indexOf(locations.existingIdOf(db, after.getLocation())));
+        for (int i = first; i < ids.size() && output.size() < pageSize; i++) {
+            readItemQuery(db, query, ids.get(i), i == first ? after : null, pageSize - output.size(), output);
+        }
+        return output;
+    }
+
+    // Grid rows of the given items that pass the query's filters, in no particular order.
+    // Like getItemSummariesByIds a row that's missing was deleted, or no longer matches.
+    @Override
+    public List<ItemSummary> queryItemSummariesByIds(ItemQuery query, Collection<Long> ids) {
         SQLiteDatabase db = getReadableDatabase();
+        List<ItemSummary> output = new ArrayList<>(ids.size());
+        long locationId = ANY_LOCATION;
+        if (query.location != null) {
+            locationId = locations.existingIdOf(db, query.location);
+            if (locationId == 0) return output;
+        }
+
+        List<String> filters = new ArrayList<>();
+        List<String> args = new ArrayList<>();
+        args.add(null);
+        compileFilters(query, locationId, filters, args);
+        StringBuilder sql = new StringBuilder("SELECT " + SUMMARY_COLUMNS + " FROM " + T_ITEMS + " WHERE " + C_ID + "=?");
+        for (String filter : filters) sql.append(" AND ").append(filter);
+
+        String[] bound = args.toArray(new String[0]);
+        for (long id : ids) {
+            bound[0] = String.valueOf(id);
+            try (Cursor c = db.rawQuery(sql.toString(), bound)) {
+                if (c.moveToFirst()) output.add(readSummary(db, c));
+            }
+        }
+        return output;
+    }
+
+    // Every item in one location, lowest stock first. Matched by location id on an index,
+    // a location nobody has used yet has no items and isn't queried for.
+    @Override
+    public List<Item> getItemsAtLocation(String location) {
+        SQLiteDatabase db = getReadableDatabase();
+        long locationId = locations.existingIdOf(db, location);
+        if (locationId == 0) return Collections.emptyList();
+
+        long stamp = cache.stamp();
         List<Item> output = new ArrayList<>();
-        try (Cursor c = db.query(T_ITEMS, null, null, null, null, null, C_UPDATED_AT + " DESC")) {
-            int xId = c.getColumnIndexOrThrow(C_ID);
-            int xName = c.getColumnIndexOrThrow(C_NAME);
-            int xQty = c.getColumnIndexOrThrow(C_QTY);
-            int xLoc = c.getColumnIndexOrThrow(C_LOCATION);
+        try (Cursor c = db.rawQuery(SQL_ITEMS_AT_LOCATION, new String[] { String.valueOf(locationId) })) {
+            while (c.moveToNext()) {
+                output.add(readItem(db, c));
+            }
+        }
+        cache.putAllIfUnchanged(output, stamp);
+        return output;
+    }
+
+    // Columns: ITEM_COLUMNS
+    private Item readItem(SQLiteDatabase db, Cursor c) {
+        Item item = new Item(c.getLong(0), c.getString(1), c.getInt(2), locationOf(db, c, 3));
+        item.setUpdatedAt(c.getLong(4));
+        item.setSku(c.getString(5));
+        return item;
+    }
+
+    // Name of the location id in the given column, null for none
+    private String locationOf(SQLiteDatabase db, Cursor c, int column) {
+        return c.isNull(column) ? null : locations.nameOf(db, c.getLong(column));
+    }
+
+    // Columns: SUMMARY_COLUMNS
+    private ItemSummary readSummary(SQLiteDatabase db, Cursor c) {
+        return new ItemSummary(c.getLong(0), c.getString(1), c.getInt(2), locationOf(db, c, 3), c.getLong(4));
+    }
+
+    // Adds up to limit rows of a compiled ItemQuery to output
+    private void readItemQuery(SQLiteDatabase db, ItemQuery query, long locationId, ItemSummary after, int limit,
+                               List<ItemSummary> output) {
+        List<String> args = new ArrayList<>();
+        String sql = compileItemQuery(query, locationId, after, limit, args);
+        try (Cursor c = db.rawQuery(sql, args.toArray(new String[0]))) {
+            while (c.moveToNext()) {
+                output.add(readSummary(db, c));
+            }
+        }
+    }
+
+    // SQL for one page of an ItemQuery, its arguments are added to args in order.
+    // locationId is ANY_LOCATION, 0 for the items without a location, or a location's id.
+    // The index is named (INDEXED BY) rather than left to the planner: with a quantity range
+    // SQLite may otherwise prefer idx_items_sort_quantity for the range and sort every
+    // matching row afterwards, where walking the sort index stops once the page is full.
+    static String compileItemQuery(ItemQuery query, long locationId, ItemSummary after, int limit, List<String> args) {
+        List<String> where = new ArrayList<>();
+        compileFilters(query, locationId, where, args);
+
+        String key = sortKey(query);
+        String direction = query.descending ? " DESC" : "";
+        if (after != null) {
+            // (key, id) past the row, spelled out so the key's range can be sought on the index
+            String past = query.descending ? "<" : ">";
+            where.add(key + " " + past + "= ? AND (" + key + " " + past + " ? OR " + C_ID + " " + past + " ?)");
+            String value = sortKeyOf(query, after);
+            args.add(value);
+            args.add(value);
+            args.add(String.valueOf(after.getId()));
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT " + SUMMARY_COLUMNS + " FROM " + T_ITEMS +
+                " INDEXED BY " + sortIndex(query, locationId != ANY_LOCATION));
+        for (int i = 0; i < where.size(); i++) {
+            sql.append(i == 0 ? " WHERE " : " AND ").append(where.get(i));
+        }
+        sql.append(" ORDER BY ").append(key).append(direction).append(", ").append(C_ID).append(direction);
+        sql.append(" LIMIT ?");
+        args.add(String.valueOf(limit));
+        return sql.toString();
+    }
+
+    // The conditions of an ItemQuery's filters and their arguments
+    static void compileFilters(ItemQuery query, long locationId, List<String> where, List<String> args) {
+        if (locationId == 0) {
+            where.add(C_LOCATION_ID + " IS NULL");
+        } else if (locationId != ANY_LOCATION) {
+            where.add(C_LOCATION_ID + "=?");
+            args.add(String.valueOf(locationId));
+        }
+        if (query.minQuantity != null) {
+            where.add(C_QTY + " >= ?");
+            args.add(String.valueOf(query.minQuantity));
+        }
+        if (query.maxQuantity != null) {
+            where.add(C_QTY + " <= ?");
+            args.add(String.valueOf(query.maxQuantity));
+        }
+        if (query.lowStockOnly) {
+            where.add(C_QTY + " <= " + C_LOW_STOCK_THRESHOLD);
+        }
+    }
+
+    // Sorted by location every read is within one location, so it's sorted by name
+    private static String sortKey(ItemQuery query) {
+        switch (query.sort) {
+            case ItemQuery.SORT_NAME:
+            case ItemQuery.SORT_LOCATION:
+                return C_NAME + " COLLATE NOCASE";
+            case ItemQuery.SORT_QUANTITY:
+                return C_QTY;
+            default:
+                return C_UPDATED_AT;
+        }
+    }
+
+    private static String sortKeyOf(ItemQuery query, ItemSummary row) {
+        switch (query.sort) {
+            case ItemQuery.SORT_NAME:
+            case ItemQuery.SORT_LOCATION:
+                return row.getName();
+            case ItemQuery.SORT_QUANTITY:
+                return String.valueOf(row.getQuantity());
+            default:
+                return String.valueOf(row.getUpdatedAt());
+        }
+    }
+
+    // The index that has the rows in sort order (see Migrations 15 -> 16)
+    private static String sortIndex(ItemQuery query, boolean oneLocation) {
+        switch (query.sort) {
+            case ItemQuery.SORT_NAME:
+            case ItemQuery.SORT_LOCATION:
+                return oneLocation ? "idx_items_location_name" : "idx_items_sort_name";
+            case ItemQuery.SORT_QUANTITY:
+                return oneLocation ? "idx_items_location_quantity" : "idx_items_sort_quantity";
+            default:
+                return oneLocation ? "idx_items_location_updated_at" : "idx_items_updated_at";
+        }
+    }
+
+    // --- Quantity History --- \\
+    // Every quantity change is appended to quantity_ledger by a trigger. compactLedger
+    // keeps the ledger bounded, so quantityAt replays at most the retained history.
+
+    // Quantity of the item at the given time (0 before it existed or after it was deleted).
+    // Times inside a compacted bucket get the quantity at the end of the bucket before,
+    // times before the item's oldest kept snapshot get 0.
+    @Override
+    public int quantityAt(long itemId, long time) {
+        SQLiteDatabase db = getReadableDatabase();
+        String id = String.valueOf(itemId);
+        String at = String.valueOf(time);
+        try (Cursor c = db.rawQuery(SQL_QUANTITY_AT, new String[] { id, at, id, at })) {
+            return c.moveToFirst() ? c.getInt(0) : 0;
+        }
+    }
+
+    // Compact every whole bucket of ledger rows at or before the cutoff into snapshots
+    // and delete those rows. Snapshots more than SNAPSHOT_RETENTION_MS before the cutoff
+    // are deleted too, except each item's latest one, which the newer snapshots and
+    // quantityAt build on. Returns the number of ledger rows removed.
+    @Override
+    public int compactLedger(long cutoff, long bucketMs) {
+        // Only whole buckets, a snapshot must never sit after ledger rows it doesn't include
+        long end = Math.floorDiv(cutoff + 1, bucketMs) * bucketMs - 1;
+        long horizon = end - SNAPSHOT_RETENTION_MS;
+
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try (SQLiteStatement delete = db.compileStatement(STMT_DELETE_LEDGER_BEFORE);
+             SQLiteStatement prune = db.compileStatement(STMT_PRUNE_SNAPSHOTS)) {
+            db.execSQL(STMT_COMPACT_LEDGER, new Object[] { bucketMs, bucketMs, bucketMs, end });
+            delete.bindLong(1, end);
+            int removed = delete.executeUpdateDelete();
+            prune.bindLong(1, horizon);
+            prune.bindLong(2, horizon);
+            prune.executeUpdateDelete();
+            db.setTransactionSuccessful();
+            return removed;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // --- Depletion Forecasts --- \\
+
+    // The items expected to run out first, soonest first
+    @Override
+    public List<ItemForecast> getRunningOutSoon(int limit) {
+        SQLiteDatabase db = getReadableDatabase();
+        List<ItemForecast> output = new ArrayList<>(limit);
+        try (Cursor c = db.rawQuery(SQL_RUNNING_OUT_SOON, new String[] { String.valueOf(limit) })) {
+            while (c.moveToNext()) {
+                output.add(readForecast(db, c));
+            }
+        }
+        return output;
+    }
+
+    // Forecast of one item, null if its quantity has never changed
+    @Override
+    public ItemForecast getForecast(long itemId) {
+        SQLiteDatabase db = getReadableDatabase();
+        try (Cursor c = db.rawQuery(SQL_FORECAST_BY_ID, new String[] { String.valueOf(itemId) })) {
+            return c.moveToFirst() ? readForecast(db, c) : null;
+        }
+    }
+
+    // Columns: id, name, quantity, location_id, rate, depletes_at
+    private ItemForecast readForecast(SQLiteDatabase db, Cursor c) {
+        Item item = new Item(c.getLong(0), c.getString(1), c.getInt(2), locationOf(db, c, 3));
+        long depletesAt = c.isNull(5) ? DepletionForecaster.NEVER : c.getLong(5);
+        return new ItemForecast(item, c.getDouble(4), depletesAt);
+    }
+
+    // --- Aggregates for the Dashboard --- \\
+
+    // Totals for every location, read from the summary table
+    @Override
+    public List<LocationSummary> getLocationSummaries() {
+        return readSummaries(SQL_LOCATION_SUMMARIES);
+    }
+
+    // Same totals computed from the items table, should always match getLocationSummaries()
+    List<LocationSummary> computeLocationSummaries() {
+        return readSummaries(SQL_LOCATION_TOTALS_LIVE);
+    }
+
+    // Warehouse-wide totals (location is null)
+    @Override
+    public LocationSummary getInventoryTotals() {
+        SQLiteDatabase db = getReadableDatabase();
+        try (Cursor c = db.rawQuery(SQL_INVENTORY_TOTALS, null)) {
+            c.moveToFirst();
+            return new LocationSummary(null, c.getInt(0), c.getLong(1), c.getInt(2));
+        }
+    }
+
+    // The items with the lowest quantity, lowest first (read straight off idx_items_sort_quantity)
+    @Override
+    public List<Item> getLowestStock(int limit) {
+        SQLiteDatabase db = getReadableDatabase();
+        List<Item> output = new ArrayList<>(limit);
+        try (Cursor c = db.rawQuery(SQL_LOWEST_STOCK, new String[] { String.valueOf(limit) })) {
+            while (c.moveToNext()) {
+                output.add(new Item(c.getLong(0), c.getString(1), c.getInt(2), locationOf(db, c, 3)));
+            }
+        }
+        return output;
+    }
+
+    // Columns: location id (0 for items without one), item count, units, low stock count.
+    // Sorted by location name, items without a location are under '' and come first.
+    private List<LocationSummary> readSummaries(String sql) {
+        SQLiteDatabase db = getReadableDatabase();
+        List<LocationSummary> output = new ArrayList<>();
+        try (Cursor c = db.rawQuery(sql, null)) {
+            while (c.moveToNext()) {
+                String location = c.getLong(0) == 0 ? "" : locations.nameOf(db, c.getLong(0));
+                output.add(new LocationSummary(location, c.getInt(1), c.getLong(2), c.getInt(3)));
+            }
+        }
+        output.sort((a, b) -> a.getLocation().compareTo(b.getLocation()));
+        return output;
+    }
+
+    // --- Sync with the Inventory API --- \\
+    // Used by SyncEngine. Every local write above also records its change in the outbox, in
+    // the same transaction, merged into whatever is already waiting for that item (see
+    // OutboxCoalescer). The outbox is drained in batches; an entry changed again while its
+    // batch was in flight keeps only what hasn't been sent yet.
+
+    // Up to limit outbox entries due at now, longest waiting first. Each claimed entry counts
+    // an attempt: from then on the API may have applied it, even if no answer comes back.
+    @Override
+    public List<OutboxEntry> claimOutbox(long now, int limit) {
+        SQLiteDatabase db = getWritableDatabase();
+        List<OutboxEntry> output = new ArrayList<>();
+
+        db.beginTransaction();
+        try (SQLiteStatement claim = db.compileStatement(STMT_CLAIM_OUTBOX)) {
+            try (Cursor c = db.rawQuery(SQL_DUE_OUTBOX, new String[] { String.valueOf(now), String.valueOf(limit) })) {
+                while (c.moveToNext()) {
+                    OutboxEntry entry = readOutboxEntry(c);
+                    claim.bindString(1, entry.remoteId);
+                    claim.executeUpdateDelete();
+                    output.add(new OutboxEntry(entry.remoteId, entry.version, entry.attempts + 1, entry.change));
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return output;
+    }
+
+    // The API has applied the sent entries. Entries that haven't changed since are removed,
+    // the others are left holding what was merged into them after they were claimed.
+    @Override
+    public void acknowledgeOutbox(List<OutboxEntry> sent) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try (OutboxWriter outbox = new OutboxWriter(db)) {
+            for (OutboxEntry entry : sent) {
+                OutboxEntry current = readOutboxEntry(db, entry.remoteId);
+                if (current == null) continue;
+
+                PendingChange remaining = current.version == entry.version ? null
+                        : OutboxCoalescer.remaining(current.change, entry.change);
+                if (remaining == null) {
+                    outbox.remove(entry.remoteId);
+                } else {
+                    // Due straight away, and the item exists on the API now so it starts over
+                    outbox.save(new OutboxEntry(entry.remoteId, current.version, 0, remaining), 0);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // Put entries off until the given time (remote id -> next attempt), e.g. after a failed push
+    @Override
+    public void deferOutbox(Map<String, Long> nextAttemptAt) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try (SQLiteStatement defer = db.compileStatement(STMT_DEFER_OUTBOX)) {
+            for (Map.Entry<String, Long> entry : nextAttemptAt.entrySet()) {
+                defer.bindLong(1, entry.getValue());
+                defer.bindString(2, entry.getKey());
+                defer.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Override
+    public SyncWatermark getPullWatermark() {
+        SQLiteDatabase db = getReadableDatabase();
+        try (Cursor c = db.rawQuery(SQL_PULL_WATERMARK, null)) {
+            return c.moveToFirst() ? new SyncWatermark(c.getLong(0), c.getString(1)) : SyncWatermark.NONE;
+        }
+    }
+
+    // Apply one page of items pulled from the API and store the watermark after it, in a
+    // single transaction. Items with a change waiting in the outbox (including local deletes)
+    // are skipped, the local change is pushed next. Pulled rows aren't queued themselves.
+    // Returns the number of rows written.
+    @Override
+    public int applyRemoteItems(List<SyncItem> items, SyncWatermark watermark) {
+        SQLiteDatabase db = getWritableDatabase();
+        long now = System.currentTimeMillis();
+        int applied = 0;
+        List<Long> updatedIds = new ArrayList<>();
+        List<Long> insertedIds = new ArrayList<>();
+        List<QuantityChange> quantityChanges = new ArrayList<>();
+
+        db.beginTransaction();
+        try (SQLiteStatement update = db.compileStatement(STMT_APPLY_REMOTE);
+             SQLiteStatement insert = db.compileStatement(STMT_INSERT_ITEM);
+             SQLiteStatement forecast = db.compileStatement(STMT_UPSERT_FORECAST);
+             SQLiteStatement saveWatermark = db.compileStatement(STMT_SAVE_WATERMARK)) {
+            for (SyncItem item : items) {
+                try {
+                    long id = localIdForRemote(db, item);
+                    if (id == 0) continue;
+
+                    if (id == -1) {
+                        bindRemote(insert, item, locations.idOf(db, item.location), now);
+                        insert.bindString(5, item.remoteId);
+                        long inserted = insert.executeInsert();
+                        if (inserted != -1) {
+                            insertedIds.add(inserted);
+                            applied++;
+                        }
+                        continue;
+                    }
+
+                    RowState before = rowState(db, id);
+                    bindRemote(update, item, locations.idOf(db, item.location), now);
+                    update.bindLong(5, id);
+                    if (update.executeUpdateDelete() > 0) {
+                        quantityWritten(forecast, id, item.name, before, item.quantity, now, quantityChanges);
+                        updatedIds.add(id);
+                        applied++;
+                    }
+                } catch (Exception error) {
+                    System.out.println("ERROR: An error occurred when applying a synced item: " + error);
+                }
+            }
+            saveWatermark.bindLong(1, watermark.updatedAt);
+            saveWatermark.bindString(2, watermark.remoteId);
+            saveWatermark.executeInsert();
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        for (long id : updatedIds) cache.remove(id);
+        updatedIds.addAll(insertedIds);
+        changeFeed.itemsChanged(updatedIds);
+        notifyQuantityChanged(quantityChanges);
+        return applied;
+    }
+
+    // Local id of the row a pulled item should be written to: -1 if there is none yet,
+    // 0 if it should be left alone (changed or deleted locally, or already up to date)
+    private long localIdForRemote(SQLiteDatabase db, SyncItem item) {
+        String[] args = { item.remoteId };
+        try (Cursor c = db.rawQuery(SQL_HAS_OUTBOX_ENTRY, args)) {
+            if (c.moveToFirst()) return 0;
+        }
+        try (Cursor c = db.rawQuery(SQL_ITEM_BY_REMOTE_ID, args)) {
+            if (!c.moveToFirst()) return -1;
+            long locationId = c.isNull(3) ? 0 : c.getLong(3);
+            boolean same = item.name.equals(c.getString(1)) && item.quantity == c.getInt(2)
+                    && locations.existingIdOf(db, item.location) == locationId;
+            return same ? 0 : c.getLong(0);
+        }
+    }
+
+    // Bind name, quantity, location id (0 for none) and updated_at to parameters 1-4
+    private static void bindRemote(SQLiteStatement statement, SyncItem item, long locationId, long now) {
+        statement.clearBindings();
+        statement.bindString(1, item.name);
+        statement.bindLong(2, item.quantity);
+        if (locationId != 0) statement.bindLong(3, locationId);
+        statement.bindLong(4, now);
+    }
+
+    // Null if nothing is waiting for the item
+    private static OutboxEntry readOutboxEntry(SQLiteDatabase db, String remoteId) {
+        try (Cursor c = db.rawQuery(SQL_OUTBOX_ENTRY, new String[] { remoteId })) {
+            return c.moveToFirst() ? readOutboxEntry(c) : null;
+        }
+    }
 
-            while(c.moveToNext()) {
-                output.add(new Item(
-                        c.getLong(xId),
-                        c.getString(xName),
-                        c.getInt(xQty),
-                        c.getString(xLoc)
-                ));
+    // Reads the OUTBOX_COLUMNS of the current row
+    private static OutboxEntry readOutboxEntry(Cursor c) {
+        PendingChange change = new PendingChange(c.getInt(3),
+                c.isNull(4) ? null : c.getString(4),
+                c.isNull(5) ? null : c.getInt(5),
+                c.getInt(6), c.getInt(7) != 0,
+                c.isNull(8) ? null : c.getString(8));
+        return new OutboxEntry(c.getString(0), c.getLong(1), c.getInt(2), change);
+    }
+
+    // Records changes in the outbox as part of the caller's transaction, each one merged
+    // into the entry already waiting for the same item. SyncEngine drains it.
+    private static final class OutboxWriter implements AutoCloseable {
+        private final SQLiteDatabase db;
+        private final SQLiteStatement saveEntry;
+        private final SQLiteStatement deleteEntry;
+
+        OutboxWriter(SQLiteDatabase db) {
+            this.db = db;
+            this.saveEntry = db.compileStatement(STMT_SAVE_OUTBOX);
+            this.deleteEntry = db.compileStatement(STMT_DELETE_OUTBOX);
+        }
+
+        // A new change is due straight away, whatever backoff the entry was waiting out
+        void add(@Nullable String remoteId, PendingChange change, long now) {
+            if (remoteId == null) return;
+            OutboxEntry pending = readOutboxEntry(db, remoteId);
+            if (pending == null) {
+                save(new OutboxEntry(remoteId, 1, 0, change), now);
+                return;
+            }
+
+            PendingChange merged = OutboxCoalescer.merge(pending.change, change, pending.attempts > 0);
+            if (merged == null) {
+                remove(remoteId);
+            } else {
+                save(new OutboxEntry(remoteId, pending.version + 1, pending.attempts, merged), now);
             }
         }
 
+        void save(OutboxEntry entry, long nextAttemptAt) {
+            PendingChange change = entry.change;
+            saveEntry.clearBindings();
+            saveEntry.bindString(1, entry.remoteId);
+            saveEntry.bindLong(2, entry.version);
+            saveEntry.bindLong(3, entry.attempts);
+            saveEntry.bindLong(4, change.kind);
+            if (change.name != null) saveEntry.bindString(5, change.name);
+            if (change.quantity != null) saveEntry.bindLong(6, change.quantity);
+            saveEntry.bindLong(7, change.quantityDelta);
+            saveEntry.bindLong(8, change.locationSet ? 1 : 0);
+            if (change.location != null) saveEntry.bindString(9, change.location);
+            saveEntry.bindLong(10, nextAttemptAt);
+            saveEntry.executeInsert();
+        }
+
+        void remove(String remoteId) {
+            deleteEntry.bindString(1, remoteId);
+            deleteEntry.executeUpdateDelete();
+        }
+
+        @Override
+        public void close() {
+            saveEntry.close();
+            deleteEntry.close();
+        }
+    }
+
+    // Search items by name and location, every word of the query is matched as a prefix
+    // ("usb ca" finds "USB-C Cable"). Returns at most limit items, best match first.
+    public List<Item> searchItems(String query, int limit) {
+        return searchItems(query, limit, null);
+    }
+
+    // Same as above, the query stops early (and returns nothing) once the signal is cancelled
+    @Override
+    public List<Item> searchItems(String query, int limit, @Nullable CancellationSignal signal) {
+        String match = matchQuery(query);
+        if (match.isEmpty()) return Collections.emptyList();
+
+        String like = escapeLike(query.trim());
+        String[] args = { match, like + "%", "%" + like + "%", String.valueOf(limit) };
+
+        SQLiteDatabase db = getReadableDatabase();
+        List<Item> output = new ArrayList<>();
+        try (Cursor c = db.rawQuery(SQL_SEARCH_ITEMS, args, signal)) {
+            while (c.moveToNext()) {
+                output.add(readItem(db, c));
+            }
+        } catch (OperationCanceledException cancelled) {
+            // A newer search replaced this one
+            return Collections.emptyList();
+        }
         return output;
     }
+
+    // Turn what the user typed into an FTS query: split on anything the tokenizer
+    // treats as a separator and match each word as a prefix. Words are lower-cased so
+    // a typed AND / OR / NOT is searched for instead of read as an operator.
+    static String matchQuery(String query) {
+        StringBuilder match = new StringBuilder();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= query.length(); i++) {
+            char ch = i < query.length() ? query.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(ch) || ch > 127) {
+                word.append(ch);
+            } else if (word.length() > 0) {
+                if (match.length() > 0) match.append(' ');
+                match.append(word.toString().toLowerCase(Locale.ROOT)).append('*');
+                word.setLength(0);
+            }
+        }
+        return match.toString();
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
 }
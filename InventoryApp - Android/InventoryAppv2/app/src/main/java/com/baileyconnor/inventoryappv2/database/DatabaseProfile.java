@@ -0,0 +1,44 @@
+package com.baileyconnor.inventoryappv2.database;
+
+// How DatabaseHelper trades durability for write speed.
+// Every profile runs in write-ahead logging mode so readers never wait for the writer
+// (or the other way round), they differ in when a commit is synced to disk and how
+// much the WAL may grow before it's checkpointed back into the database file.
+public class DatabaseProfile {
+
+    // Every commit is synced before it returns, nothing committed is lost on power loss
+    public static final DatabaseProfile DURABLE = new DatabaseProfile("durable", "FULL", 1_000, 2_048);
+    // Commits are synced at checkpoints. A power loss can drop the last few commits but
+    // never corrupts the database, and an app crash loses nothing. The default.
+    public static final DatabaseProfile BALANCED = new DatabaseProfile("balanced", "NORMAL", 1_000, 8_192);
+    // For bulk loads: fewer, larger checkpoints and a bigger page cache for the writer
+    public static final DatabaseProfile THROUGHPUT = new DatabaseProfile("throughput", "NORMAL", 10_000, 32_768);
+
+    public final String name;
+    // PRAGMA synchronous for every connection
+    public final String synchronous;
+    // The writer checkpoints once the WAL holds this many pages
+    public final int walAutoCheckpointPages;
+    // Page cache of the writer's connection
+    public final int cacheSizeKb;
+
+    // Constructor
+    public DatabaseProfile(String name, String synchronous, int walAutoCheckpointPages, int cacheSizeKb) {
+        this.name = name;
+        this.synchronous = synchronous;
+        this.walAutoCheckpointPages = walAutoCheckpointPages;
+        this.cacheSizeKb = cacheSizeKb;
+    }
+
+    // One of the profiles above by name, BALANCED if there's no such profile
+    public static DatabaseProfile named(String name) {
+        if (DURABLE.name.equals(name)) return DURABLE;
+        if (THROUGHPUT.name.equals(name)) return THROUGHPUT;
+        return BALANCED;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,261 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latency, row counts and a slow query log for every InventoryStore operation, fed by
+// InstrumentedStore and shown on the Database Metrics screen.
+//
+// Recording an operation is two nanoTime() calls and a handful of atomic adds into a fixed
+// size histogram, nothing is allocated after an operation's first call, so it's cheap enough
+// to leave on. When disabled start() returns 0 and finish() returns straight away on it,
+// which leaves one volatile read per operation.
+//
+// Latencies are counted in log-linear buckets, four per power of two microseconds, and a
+// percentile is reported as the upper bound of its bucket so it's at most 25% high.
+public class DbMetrics {
+
+    public static final long DEFAULT_SLOW_THRESHOLD_MS = 100;
+    // How many of the most recent slow operations are kept
+    public static final int SLOW_LOG_SIZE = 50;
+
+    // Enough for anything up to about 19 hours, longer operations land in the last bucket
+    private static final int BUCKETS = 144;
+
+    private static DbMetrics instance;
+
+    private volatile boolean enabled = true;
+    private volatile long slowThresholdNanos = DEFAULT_SLOW_THRESHOLD_MS * 1_000_000;
+
+    private final ConcurrentHashMap<String, Operation> operations = new ConcurrentHashMap<>();
+
+    // Ring buffer of the latest slow operations, guarded by itself
+    private final SlowQuery[] slowLog = new SlowQuery[SLOW_LOG_SIZE];
+    private int slowLogNext = 0;
+    private long slowCount = 0;
+
+    // Shared instance recording the app's database, the repository's store reports into it
+    public static synchronized DbMetrics getInstance() {
+        if (instance == null) {
+            instance = new DbMetrics();
+        }
+        return instance;
+    }
+
+    // --- --- Settings --- --- \\
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getSlowThresholdMs() {
+        return slowThresholdNanos / 1_000_000;
+    }
+
+    public void setSlowThresholdMs(long thresholdMs) {
+        slowThresholdNanos = Math.max(0, thresholdMs) * 1_000_000;
+    }
+
+    // --- --- Recording --- --- \\
+
+    // Call before the operation and pass the result to finish(), 0 while disabled
+    public long start() {
+        if (!enabled) return 0;
+        long now = System.nanoTime();
+        return now == 0 ? 1 : now;
+    }
+
+    // The operation that called start() is done and read or wrote this many rows
+    public void finish(String operation, long start, int rows) {
+        if (start == 0) return;
+        record(operation, System.nanoTime() - start, rows);
+    }
+
+    void record(String operation, long nanos, int rows) {
+        Operation stats = operations.get(operation);
+        if (stats == null) {
+            stats = operations.computeIfAbsent(operation, Operation::new);
+        }
+        stats.add(nanos, rows);
+
+        if (nanos >= slowThresholdNanos) {
+            SlowQuery slow = new SlowQuery(operation, nanos / 1e6, rows, System.currentTimeMillis());
+            synchronized (slowLog) {
+                slowLog[slowLogNext] = slow;
+                slowLogNext = (slowLogNext + 1) % SLOW_LOG_SIZE;
+                slowCount++;
+            }
+        }
+    }
+
+    // Forget everything recorded so far, the settings are kept
+    public void reset() {
+        operations.clear();
+        synchronized (slowLog) {
+            Arrays.fill(slowLog, null);
+            slowLogNext = 0;
+            slowCount = 0;
+        }
+    }
+
+    // --- --- Reading --- --- \\
+
+    // One entry per operation that has run, slowest total time first
+    public List<Stats> snapshot() {
+        List<Stats> stats = new ArrayList<>();
+        for (Operation operation : operations.values()) {
+            if (operation.count.sum() > 0) stats.add(operation.snapshot());
+        }
+        Collections.sort(stats, (a, b) -> Double.compare(b.totalMs, a.totalMs));
+        return stats;
+    }
+
+    // The latest slow operations, newest first
+    public List<SlowQuery> slowQueries() {
+        List<SlowQuery> slow = new ArrayList<>();
+        synchronized (slowLog) {
+            for (int i = 1; i <= SLOW_LOG_SIZE; i++) {
+                SlowQuery query = slowLog[(slowLogNext - i + SLOW_LOG_SIZE) % SLOW_LOG_SIZE];
+                if (query == null) break;
+                slow.add(query);
+            }
+        }
+        return slow;
+    }
+
+    // Every slow operation since the last reset, including the ones no longer in the log
+    public long slowQueryCount() {
+        synchronized (slowLog) {
+            return slowCount;
+        }
+    }
+
+    // --- --- Histogram buckets --- --- \\
+
+    // 0-3 us get a bucket each, then four per power of two
+    static int bucketOf(long nanos) {
+        long micros = nanos / 1_000;
+        if (micros < 4) return (int) Math.max(0, micros);
+        int exp = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exp - 2)) & 3;
+        return Math.min(BUCKETS - 1, 4 * (exp - 1) + sub);
+    }
+
+    // The largest latency in microseconds that falls in the bucket
+    static long bucketUpperMicros(int bucket) {
+        if (bucket < 4) return bucket;
+        int exp = bucket / 4 + 1;
+        long lower = (4L + bucket % 4) << (exp - 2);
+        return lower + (1L << (exp - 2)) - 1;
+    }
+
+    // Counters for one operation, every field is updated without locking
+    private static final class Operation {
+        final String name;
+        final LongAdder count = new LongAdder();
+        final LongAdder rows = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+        final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        Operation(String name) {
+            this.name = name;
+        }
+
+        void add(long elapsed, int rowCount) {
+            count.increment();
+            rows.add(rowCount);
+            nanos.add(elapsed);
+            maxNanos.accumulateAndGet(elapsed, Math::max);
+            histogram.incrementAndGet(bucketOf(elapsed));
+        }
+
+        Stats snapshot() {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = histogram.get(i);
+                total += counts[i];
+            }
+            long elapsed = nanos.sum();
+            long rowCount = rows.sum();
+            return new Stats(name, total, rowCount, elapsed / 1e6,
+                    percentileMs(counts, total, 0.50),
+                    percentileMs(counts, total, 0.95),
+                    percentileMs(counts, total, 0.99),
+                    maxNanos.get() / 1e6,
+                    elapsed == 0 ? 0 : rowCount * 1e9 / elapsed);
+        }
+
+        private static double percentileMs(long[] counts, long total, double percentile) {
+            long rank = (long) Math.ceil(percentile * total);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && seen > 0) return bucketUpperMicros(i) / 1e3;
+            }
+            return 0;
+        }
+    }
+
+    // What one operation has done since the last reset
+    public static final class Stats {
+        public final String operation;
+        public final long count;
+        public final long rows;
+        public final double totalMs;
+        public final double p50Ms;
+        public final double p95Ms;
+        public final double p99Ms;
+        public final double maxMs;
+        // Rows read or written per second spent in the operation
+        public final double rowsPerSecond;
+
+        // Constructor
+        public Stats(String operation, long count, long rows, double totalMs, double p50Ms,
+                     double p95Ms, double p99Ms, double maxMs, double rowsPerSecond) {
+            this.operation = operation;
+            this.count = count;
+            this.rows = rows;
+            this.totalMs = totalMs;
+            this.p50Ms = p50Ms;
+            this.p95Ms = p95Ms;
+            this.p99Ms = p99Ms;
+            this.maxMs = maxMs;
+            this.rowsPerSecond = rowsPerSecond;
+        }
+    }
+
+    // One operation that took at least the slow threshold
+    public static final class SlowQuery {
+        public final String operation;
+        public final double durationMs;
+        public final int rows;
+        // Wall clock time it finished at
+        public final long at;
+
+        // Constructor
+        public SlowQuery(String operation, double durationMs, int rows, long at) {
+            this.operation = operation;
+            this.durationMs = durationMs;
+            this.rows = rows;
+            this.at = at;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s took %.1f ms for %d rows", operation, durationMs, rows);
+        }
+    }
+}
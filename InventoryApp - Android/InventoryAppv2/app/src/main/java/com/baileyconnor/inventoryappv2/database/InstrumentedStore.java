@@ -0,0 +1,397 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import android.os.CancellationSignal;
+
+import com.baileyconnor.inventoryappv2.model.Item;
+import com.baileyconnor.inventoryappv2.model.ItemForecast;
+import com.baileyconnor.inventoryappv2.model.ItemSummary;
+import com.baileyconnor.inventoryappv2.model.LocationSummary;
+import com.baileyconnor.inventoryappv2.model.SyncItem;
+import com.baileyconnor.inventoryappv2.model.SyncWatermark;
+import com.baileyconnor.inventoryappv2.sync.OutboxEntry;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+// Times every operation of another store into DbMetrics, along with how many rows it
+// read or wrote. Written out by hand rather than with a proxy or lambdas so a call costs
+// nothing extra when the metrics are switched off.
+// Operations that throw aren't recorded, the repository logs those.
+public class InstrumentedStore implements InventoryStore {
+
+    private final InventoryStore store;
+    private final DbMetrics metrics;
+
+    // Constructor
+    public InstrumentedStore(InventoryStore store, DbMetrics metrics) {
+        this.store = store;
+        this.metrics = metrics;
+    }
+
+    // --- --- Opening --- --- \\
+
+    @Override
+    public void open() {
+        long start = metrics.start();
+        store.open();
+        metrics.finish("open", start, 0);
+    }
+
+    // --- --- Users --- --- \\
+
+    @Override
+    public boolean createUser(String username, String password) {
+        long start = metrics.start();
+        boolean created = store.createUser(username, password);
+        metrics.finish("createUser", start, created ? 1 : 0);
+        return created;
+    }
+
+    @Override
+    public boolean validateLogin(String username, String password) {
+        long start = metrics.start();
+        boolean valid = store.validateLogin(username, password);
+        metrics.finish("validateLogin", start, valid ? 1 : 0);
+        return valid;
+    }
+
+    // --- --- Items --- --- \\
+
+    @Override
+    public long insertItem(Item item) {
+        long start = metrics.start();
+        long id = store.insertItem(item);
+        metrics.finish("insertItem", start, id == -1 ? 0 : 1);
+        return id;
+    }
+
+    @Override
+    public int updateItem(Item item) {
+        long start = metrics.start();
+        int updated = store.updateItem(item);
+        metrics.finish("updateItem", start, updated);
+        return updated;
+    }
+
+    @Override
+    public int deleteItem(long id) {
+        long start = metrics.start();
+        int deleted = store.deleteItem(id);
+        metrics.finish("deleteItem", start, deleted);
+        return deleted;
+    }
+
+    @Override
+    public long[] insertItems(List<Item> items) {
+        long start = metrics.start();
+        long[] ids = store.insertItems(items);
+        metrics.finish("insertItems", start, items.size());
+        return ids;
+    }
+
+    @Override
+    public int[] updateItems(List<Item> items) {
+        long start = metrics.start();
+        int[] updated = store.updateItems(items);
+        metrics.finish("updateItems", start, items.size());
+        return updated;
+    }
+
+    @Override
+    public int[] deleteItems(long[] ids) {
+        long start = metrics.start();
+        int[] deleted = store.deleteItems(ids);
+        metrics.finish("deleteItems", start, ids.length);
+        return deleted;
+    }
+
+    @Override
+    public int[] moveItems(long[] ids, String location) {
+        long start = metrics.start();
+        int[] moved = store.moveItems(ids, location);
+        metrics.finish("moveItems", start, ids.length);
+        return moved;
+    }
+
+    @Override
+    public int[] adjustQuantities(long[] ids, int delta, int floor, int ceiling) {
+        long start = metrics.start();
+        int[] adjusted = store.adjustQuantities(ids, delta, floor, ceiling);
+        metrics.finish("adjustQuantities", start, ids.length);
+        return adjusted;
+    }
+
+    @Override
+    public int[] upsertItems(List<Item> items) {
+        long start = metrics.start();
+        int[] outcomes = store.upsertItems(items);
+        metrics.finish("upsertItems", start, items.size());
+        return outcomes;
+    }
+
+    @Override
+    public Integer adjustQuantity(long id, int delta, int floor, int ceiling) {
+        long start = metrics.start();
+        Integer quantity = store.adjustQuantity(id, delta, floor, ceiling);
+        metrics.finish("adjustQuantity", start, quantity == null ? 0 : 1);
+        return quantity;
+    }
+
+    @Override
+    public Integer updateQuantity(long id, int quantity) {
+        long start = metrics.start();
+        Integer updated = store.updateQuantity(id, quantity);
+        metrics.finish("updateQuantity", start, updated == null ? 0 : 1);
+        return updated;
+    }
+
+    @Override
+    public int updateName(long id, String name) {
+        long start = metrics.start();
+        int updated = store.updateName(id, name);
+        metrics.finish("updateName", start, updated);
+        return updated;
+    }
+
+    @Override
+    public int updateLocation(long id, String location) {
+        long start = metrics.start();
+        int updated = store.updateLocation(id, location);
+        metrics.finish("updateLocation", start, updated);
+        return updated;
+    }
+
+    @Override
+    public Item getItemById(long id) {
+        long start = metrics.start();
+        Item item = store.getItemById(id);
+        metrics.finish("getItemById", start, item == null ? 0 : 1);
+        return item;
+    }
+
+    @Override
+    public List<Item> getAllItems() {
+        long start = metrics.start();
+        List<Item> items = store.getAllItems();
+        metrics.finish("getAllItems", start, items.size());
+        return items;
+    }
+
+    @Override
+    public List<Item> getItemsPage(long afterUpdatedAt, long afterId, int pageSize) {
+        long start = metrics.start();
+        List<Item> items = store.getItemsPage(afterUpdatedAt, afterId, pageSize);
+        metrics.finish("getItemsPage", start, items.size());
+        return items;
+    }
+
+    @Override
+    public List<ItemSummary> getItemSummaries(long afterUpdatedAt, long afterId, int pageSize) {
+        long start = metrics.start();
+        List<ItemSummary> summaries = store.getItemSummaries(afterUpdatedAt, afterId, pageSize);
+        metrics.finish("getItemSummaries", start, summaries.size());
+        return summaries;
+    }
+
+    @Override
+    public List<ItemSummary> getItemSummariesByIds(Collection<Long> ids) {
+        long start = metrics.start();
+        List<ItemSummary> summaries = store.getItemSummariesByIds(ids);
+        metrics.finish("getItemSummariesByIds", start, summaries.size());
+        return summaries;
+    }
+
+    @Override
+    public List<ItemSummary> queryItemSummaries(ItemQuery query, ItemSummary after, int pageSize) {
+        long start = metrics.start();
+        List<ItemSummary> summaries = store.queryItemSummaries(query, after, pageSize);
+        metrics.finish("queryItemSummaries", start, summaries.size());
+        return summaries;
+    }
+
+    @Override
+    public List<ItemSummary> queryItemSummariesByIds(ItemQuery query, Collection<Long> ids) {
+        long start = metrics.start();
+        List<ItemSummary> summaries = store.queryItemSummariesByIds(query, ids);
+        metrics.finish("queryItemSummariesByIds", start, summaries.size());
+        return summaries;
+    }
+
+    @Override
+    public List<Item> getItemsAtLocation(String location) {
+        long start = metrics.start();
+        List<Item> items = store.getItemsAtLocation(location);
+        metrics.finish("getItemsAtLocation", start, items.size());
+        return items;
+    }
+
+    @Override
+    public List<Item> searchItems(String query, int limit, CancellationSignal signal) {
+        long start = metrics.start();
+        List<Item> items = store.searchItems(query, limit, signal);
+        metrics.finish("searchItems", start, items.size());
+        return items;
+    }
+
+    // --- --- Barcode Scanning --- --- \\
+
+    @Override
+    public int setSku(long id, String sku) {
+        long start = metrics.start();
+        int updated = store.setSku(id, sku);
+        metrics.finish("setSku", start, Math.max(updated, 0));
+        return updated;
+    }
+
+    @Override
+    public Item getItemBySku(String sku) {
+        long start = metrics.start();
+        Item item = store.getItemBySku(sku);
+        metrics.finish("getItemBySku", start, item == null ? 0 : 1);
+        return item;
+    }
+
+    @Override
+    public Map<String, Long> getSkuIndex() {
+        long start = metrics.start();
+        Map<String, Long> skus = store.getSkuIndex();
+        metrics.finish("getSkuIndex", start, skus.size());
+        return skus;
+    }
+
+    // --- --- Dashboard --- --- \\
+
+    @Override
+    public List<LocationSummary> getLocationSummaries() {
+        long start = metrics.start();
+        List<LocationSummary> summaries = store.getLocationSummaries();
+        metrics.finish("getLocationSummaries", start, summaries.size());
+        return summaries;
+    }
+
+    @Override
+    public LocationSummary getInventoryTotals() {
+        long start = metrics.start();
+        LocationSummary totals = store.getInventoryTotals();
+        metrics.finish("getInventoryTotals", start, 1);
+        return totals;
+    }
+
+    @Override
+    public List<Item> getLowestStock(int limit) {
+        long start = metrics.start();
+        List<Item> items = store.getLowestStock(limit);
+        metrics.finish("getLowestStock", start, items.size());
+        return items;
+    }
+
+    // --- --- Quantity history --- --- \\
+
+    @Override
+    public int quantityAt(long itemId, long time) {
+        long start = metrics.start();
+        int quantity = store.quantityAt(itemId, time);
+        metrics.finish("quantityAt", start, 1);
+        return quantity;
+    }
+
+    @Override
+    public int compactLedger(long cutoff, long bucketMs) {
+        long start = metrics.start();
+        int compacted = store.compactLedger(cutoff, bucketMs);
+        metrics.finish("compactLedger", start, compacted);
+        return compacted;
+    }
+
+    // --- --- Depletion forecasts --- --- \\
+
+    @Override
+    public List<ItemForecast> getRunningOutSoon(int limit) {
+        long start = metrics.start();
+        List<ItemForecast> forecasts = store.getRunningOutSoon(limit);
+        metrics.finish("getRunningOutSoon", start, forecasts.size());
+        return forecasts;
+    }
+
+    @Override
+    public ItemForecast getForecast(long itemId) {
+        long start = metrics.start();
+        ItemForecast forecast = store.getForecast(itemId);
+        metrics.finish("getForecast", start, forecast == null ? 0 : 1);
+        return forecast;
+    }
+
+    // --- --- Sync --- --- \\
+
+    @Override
+    public List<OutboxEntry> claimOutbox(long now, int limit) {
+        long start = metrics.start();
+        List<OutboxEntry> entries = store.claimOutbox(now, limit);
+        metrics.finish("claimOutbox", start, entries.size());
+        return entries;
+    }
+
+    @Override
+    public void acknowledgeOutbox(List<OutboxEntry> sent) {
+        long start = metrics.start();
+        store.acknowledgeOutbox(sent);
+        metrics.finish("acknowledgeOutbox", start, sent.size());
+    }
+
+    @Override
+    public void deferOutbox(Map<String, Long> nextAttemptAt) {
+        long start = metrics.start();
+        store.deferOutbox(nextAttemptAt);
+        metrics.finish("deferOutbox", start, nextAttemptAt.size());
+    }
+
+    @Override
+    public SyncWatermark getPullWatermark() {
+        long start = metrics.start();
+        SyncWatermark watermark = store.getPullWatermark();
+        metrics.finish("getPullWatermark", start, 1);
+        return watermark;
+    }
+
+    @Override
+    public int applyRemoteItems(List<SyncItem> items, SyncWatermark watermark) {
+        long start = metrics.start();
+        int applied = store.applyRemoteItems(items, watermark);
+        metrics.finish("applyRemoteItems", start, applied);
+        return applied;
+    }
+
+    // --- --- Change feed --- --- \\
+
+    // In memory, nothing to time
+    @Override
+    public ChangeFeed getChangeFeed() {
+        return store.getChangeFeed();
+    }
+
+    // --- --- Write-ahead log --- --- \\
+
+    @Override
+    public boolean checkpoint() {
+        long start = metrics.start();
+        boolean complete = store.checkpoint();
+        metrics.finish("checkpoint", start, 0);
+        return complete;
+    }
+
+    // --- --- Low stock alerts --- --- \\
+
+    @Override
+    public int setLowStockThreshold(long id, int threshold) {
+        long start = metrics.start();
+        int updated = store.setLowStockThreshold(id, threshold);
+        metrics.finish("setLowStockThreshold", start, updated);
+        return updated;
+    }
+
+    @Override
+    public void setQuantityListener(QuantityListener listener) {
+        store.setQuantityListener(listener);
+    }
+}
@@ -0,0 +1,387 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import android.content.Context;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+
+import com.baileyconnor.inventoryappv2.importer.ImportResult;
+import com.baileyconnor.inventoryappv2.importer.ItemImporter;
+import com.baileyconnor.inventoryappv2.importer.ItemRowReader;
+import com.baileyconnor.inventoryappv2.model.Item;
+import com.baileyconnor.inventoryappv2.model.ItemForecast;
+import com.baileyconnor.inventoryappv2.model.ItemSummary;
+import com.baileyconnor.inventoryappv2.model.LocationSummary;
+import com.baileyconnor.inventoryappv2.sync.SyncEngine;
+import com.baileyconnor.inventoryappv2.sync.SyncResult;
+import com.baileyconnor.inventoryappv2.sync.SyncTransport;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Runs every database operation off the UI thread.
+// Writes go through a single serialized executor so they are applied in the order
+// they were requested, reads are spread over a small pool. Results are handed back
+// through a Callback on the main thread, and every call also returns a Future.
+// An operation that throws calls the callback's onError instead of onResult, and its
+// Future fails with the same error.
+// Talking to the inventory API runs on a third, single thread: syncs never overlap, and
+// waiting on the network holds up neither queued writes nor reads.
+public class InventoryRepository {
+
+    // Delivered on the main thread once the operation has finished
+    public interface Callback<T> {
+        void onResult(T result);
+
+        // Delivered on the main thread instead of onResult when the operation threw.
+        // Ignored unless overridden, build the callback with of() to handle it.
+        default void onError(Exception error) {}
+
+        // A callback that also handles failures
+        static <T> Callback<T> of(Callback<T> onResult, ErrorCallback onError) {
+            return new Callback<T>() {
+                @Override public void onResult(T result) {
+                    onResult.onResult(result);
+                }
+                @Override public void onError(Exception error) {
+                    onError.onError(error);
+                }
+            };
+        }
+    }
+
+    public interface ErrorCallback {
+        void onError(Exception error);
+    }
+
+    // Each reader queries on its own connection from DatabaseHelper's WAL pool, so reads run
+    // alongside each other and alongside an open write transaction
+    private static final int READER_THREADS = 2;
+
+    private static InventoryRepository instance;
+
+    private final InventoryStore store;
+    private final ExecutorService writer;
+    private final ExecutorService readers;
+    private final ExecutorService network;
+    private final Executor mainThread;
+
+    // Shared instance so every activity uses the same writer queue
+    public static synchronized InventoryRepository getInstance(Context context) {
+        if (instance == null) {
+            Handler main = new Handler(Looper.getMainLooper());
+            instance = new InventoryRepository(
+                    new InstrumentedStore(new DatabaseHelper(context.getApplicationContext(), DatabaseProfile.BALANCED,
+                            PrepackagedDatabase.fromAssets(context)), DbMetrics.getInstance()),
+                    Executors.newSingleThreadExecutor(named("inventory-db-writer")),
+                    Executors.newFixedThreadPool(READER_THREADS, named("inventory-db-reader")),
+                    Executors.newSingleThreadExecutor(named("inventory-sync")),
+                    main::post
+            );
+        }
+        return instance;
+    }
+
+    // Constructor (the executors are injectable so the repository can be tested on the JVM)
+    public InventoryRepository(InventoryStore store, ExecutorService writer,
+                               ExecutorService readers, Executor mainThread) {
+        this(store, writer, readers, Executors.newSingleThreadExecutor(named("inventory-sync")), mainThread);
+    }
+
+    // Constructor
+    public InventoryRepository(InventoryStore store, ExecutorService writer, ExecutorService readers,
+                               ExecutorService network, Executor mainThread) {
+        this.store = store;
+        this.writer = writer;
+        this.readers = readers;
+        this.network = network;
+        this.mainThread = mainThread;
+    }
+
+    // --- --- Opening --- --- \\
+
+    // Opens the database on the writer thread, ahead of the first screen's queries, so
+    // copying in the prepackaged database on the first run or an upgrade happens while the
+    // UI is still inflating. Traced as the tracer's DB_OPEN phase.
+    public Future<Void> open(StartupTracer tracer, @Nullable Callback<Void> callback) {
+        return write(() -> {
+            tracer.begin(StartupTracer.DB_OPEN);
+            try {
+                store.open();
+            } finally {
+                tracer.end(StartupTracer.DB_OPEN);
+            }
+            return null;
+        }, callback);
+    }
+
+    // --- --- Users --- --- \\
+
+    public Future<Boolean> createUser(String username, String password, @Nullable Callback<Boolean> callback) {
+        return write(() -> store.createUser(username, password), callback);
+    }
+
+    public Future<Boolean> validateLogin(String username, String password, @Nullable Callback<Boolean> callback) {
+        return read(() -> store.validateLogin(username, password), callback);
+    }
+
+    // --- --- Items --- --- \\
+
+    public Future<Long> insertItem(Item item, @Nullable Callback<Long> callback) {
+        return write(() -> store.insertItem(item), callback);
+    }
+
+    public Future<Integer> updateItem(Item item, @Nullable Callback<Integer> callback) {
+        return write(() -> store.updateItem(item), callback);
+    }
+
+    public Future<Integer> deleteItem(long id, @Nullable Callback<Integer> callback) {
+        return write(() -> store.deleteItem(id), callback);
+    }
+
+    public Future<long[]> insertItems(List<Item> items, @Nullable Callback<long[]> callback) {
+        return write(() -> store.insertItems(items), callback);
+    }
+
+    public Future<int[]> updateItems(List<Item> items, @Nullable Callback<int[]> callback) {
+        return write(() -> store.updateItems(items), callback);
+    }
+
+    public Future<int[]> deleteItems(long[] ids, @Nullable Callback<int[]> callback) {
+        return write(() -> store.deleteItems(ids), callback);
+    }
+
+    public Future<int[]> moveItems(long[] ids, @Nullable String location, @Nullable Callback<int[]> callback) {
+        return write(() -> store.moveItems(ids, location), callback);
+    }
+
+    // Each item is only changed if its result stays within [floor, ceiling]
+    public Future<int[]> adjustQuantities(long[] ids, int delta, int floor, int ceiling,
+                                          @Nullable Callback<int[]> callback) {
+        return write(() -> store.adjustQuantities(ids, delta, floor, ceiling), callback);
+    }
+
+    public Future<int[]> upsertItems(List<Item> items, @Nullable Callback<int[]> callback) {
+        return write(() -> store.upsertItems(items), callback);
+    }
+
+    // Atomic quantity change, the callback gets the new quantity or null if a guard rejected it
+    public Future<Integer> adjustQuantity(long id, int delta, int floor, int ceiling,
+                                          @Nullable Callback<Integer> callback) {
+        return write(() -> store.adjustQuantity(id, delta, floor, ceiling), callback);
+    }
+
+    public Future<Integer> updateQuantity(long id, int quantity, @Nullable Callback<Integer> callback) {
+        return write(() -> store.updateQuantity(id, quantity), callback);
+    }
+
+    public Future<Integer> updateName(long id, String name, @Nullable Callback<Integer> callback) {
+        return write(() -> store.updateName(id, name), callback);
+    }
+
+    public Future<Integer> updateLocation(long id, @Nullable String location, @Nullable Callback<Integer> callback) {
+        return write(() -> store.updateLocation(id, location), callback);
+    }
+
+    // Streams the rows in on the writer thread, progress is reported on the main thread after each chunk
+    public Future<ImportResult> importItems(ItemRowReader reader, @Nullable ItemImporter.ProgressListener progress,
+                                            @Nullable Callback<ImportResult> callback) {
+        return write(() -> new ItemImporter(store).run(reader, update -> {
+            if (progress != null) mainThread.execute(() -> progress.onProgress(update));
+        }), callback);
+    }
+
+    public Future<Item> getItemById(long id, @Nullable Callback<Item> callback) {
+        return read(() -> store.getItemById(id), callback);
+    }
+
+    public Future<List<Item>> getAllItems(@Nullable Callback<List<Item>> callback) {
+        return read(store::getAllItems, callback);
+    }
+
+    public Future<List<Item>> getItemsPage(long afterUpdatedAt, long afterId, int pageSize,
+                                           @Nullable Callback<List<Item>> callback) {
+        return read(() -> store.getItemsPage(afterUpdatedAt, afterId, pageSize), callback);
+    }
+
+    public Future<List<ItemSummary>> getItemSummaries(long afterUpdatedAt, long afterId, int pageSize,
+                                                      @Nullable Callback<List<ItemSummary>> callback) {
+        return read(() -> store.getItemSummaries(afterUpdatedAt, afterId, pageSize), callback);
+    }
+
+    // Grid rows of the ids a ChangeFeed reported, deleted ids are left out
+    public Future<List<ItemSummary>> getItemSummariesByIds(Collection<Long> ids,
+                                                           @Nullable Callback<List<ItemSummary>> callback) {
+        return read(() -> store.getItemSummariesByIds(ids), callback);
+    }
+
+    // One page of the grid sorted and filtered by query, after the last row of the page
+    // before it (null for the first page)
+    public Future<List<ItemSummary>> queryItemSummaries(ItemQuery query, @Nullable ItemSummary after, int pageSize,
+                                                        @Nullable Callback<List<ItemSummary>> callback) {
+        return read(() -> store.queryItemSummaries(query, after, pageSize), callback);
+    }
+
+    // Grid rows of the reported ids that (still) match the query's filters
+    public Future<List<ItemSummary>> queryItemSummariesByIds(ItemQuery query, Collection<Long> ids,
+                                                             @Nullable Callback<List<ItemSummary>> callback) {
+        return read(() -> store.queryItemSummariesByIds(query, ids), callback);
+    }
+
+    // Every item in one location, lowest stock first
+    public Future<List<Item>> getItemsAtLocation(String location, @Nullable Callback<List<Item>> callback) {
+        return read(() -> store.getItemsAtLocation(location), callback);
+    }
+
+    // Null or blank takes the sku away, the callback gets -1 if another item already has it
+    public Future<Integer> setSku(long id, @Nullable String sku, @Nullable Callback<Integer> callback) {
+        return write(() -> store.setSku(id, sku), callback);
+    }
+
+    public Future<Item> getItemBySku(String sku, @Nullable Callback<Item> callback) {
+        return read(() -> store.getItemBySku(sku), callback);
+    }
+
+    // Loads every sku on a reader thread, then scan the session with scan() below
+    public Future<ScanSession> openScanSession(@Nullable Callback<ScanSession> callback) {
+        return read(() -> new ScanSession(store), callback);
+    }
+
+    public Future<Item> scan(ScanSession session, String sku, @Nullable Callback<Item> callback) {
+        return read(() -> session.scan(sku), callback);
+    }
+
+    // In memory and thread safe, read it on any thread
+    public ChangeFeed getChangeFeed() {
+        return store.getChangeFeed();
+    }
+
+    // Cancel the signal to abandon the query when a newer search replaces it
+    public Future<List<Item>> searchItems(String query, int limit, @Nullable CancellationSignal signal,
+                                          @Nullable Callback<List<Item>> callback) {
+        return read(() -> store.searchItems(query, limit, signal), callback);
+    }
+
+    // --- --- Dashboard --- --- \\
+
+    public Future<List<LocationSummary>> getLocationSummaries(@Nullable Callback<List<LocationSummary>> callback) {
+        return read(store::getLocationSummaries, callback);
+    }
+
+    public Future<LocationSummary> getInventoryTotals(@Nullable Callback<LocationSummary> callback) {
+        return read(store::getInventoryTotals, callback);
+    }
+
+    public Future<List<Item>> getLowestStock(int limit, @Nullable Callback<List<Item>> callback) {
+        return read(() -> store.getLowestStock(limit), callback);
+    }
+
+    // --- --- Quantity History --- --- \\
+
+    public Future<Integer> quantityAt(long itemId, long time, @Nullable Callback<Integer> callback) {
+        return read(() -> store.quantityAt(itemId, time), callback);
+    }
+
+    // Fold ledger history older than the retention period into daily snapshots
+    public Future<Integer> compactLedger(@Nullable Callback<Integer> callback) {
+        return write(() -> store.compactLedger(
+                System.currentTimeMillis() - DatabaseHelper.LEDGER_RETENTION_MS,
+                DatabaseHelper.LEDGER_BUCKET_MS), callback);
+    }
+
+    // --- --- Depletion Forecasts --- --- \\
+
+    public Future<List<ItemForecast>> getRunningOutSoon(int limit, @Nullable Callback<List<ItemForecast>> callback) {
+        return read(() -> store.getRunningOutSoon(limit), callback);
+    }
+
+    public Future<ItemForecast> getForecast(long itemId, @Nullable Callback<ItemForecast> callback) {
+        return read(() -> store.getForecast(itemId), callback);
+    }
+
+    // --- --- Low Stock Alerts --- --- \\
+
+    public Future<Integer> setLowStockThreshold(long id, int threshold, @Nullable Callback<Integer> callback) {
+        return write(() -> store.setLowStockThreshold(id, threshold), callback);
+    }
+
+    // The listener is called on the writer thread
+    public void setQuantityListener(@Nullable InventoryStore.QuantityListener listener) {
+        store.setQuantityListener(listener);
+    }
+
+    // --- --- Sync --- --- \\
+
+    // Sign in to the inventory API at baseUrl, the result is the access token
+    public Future<String> signIn(String baseUrl, String username, String password, @Nullable Callback<String> callback) {
+        return submit(network, () -> new SyncTransport(baseUrl, () -> null).login(username, password), callback);
+    }
+
+    // Push the outbox to the inventory API and pull what changed there
+    public Future<SyncResult> sync(String baseUrl, Supplier<String> accessToken, @Nullable Callback<SyncResult> callback) {
+        return submit(network, () -> new SyncEngine(store, new SyncTransport(baseUrl, accessToken)).sync(), callback);
+    }
+
+    // --- --- Write-ahead Log --- --- \\
+
+    // Queued behind pending writes, so it runs once they've committed
+    public Future<Boolean> checkpoint(@Nullable Callback<Boolean> callback) {
+        return write(store::checkpoint, callback);
+    }
+
+    // --- --- Helper Functions --- --- \\
+
+    // Stop accepting work, queued operations still run to completion
+    public void shutdown() {
+        writer.shutdown();
+        readers.shutdown();
+        network.shutdown();
+    }
+
+    private <T> Future<T> read(Callable<T> work, @Nullable Callback<T> callback) {
+        return submit(readers, work, callback);
+    }
+
+    private <T> Future<T> write(Callable<T> work, @Nullable Callback<T> callback) {
+        return submit(writer, work, callback);
+    }
+
+    private <T> Future<T> submit(ExecutorService executor, Callable<T> work, @Nullable Callback<T> callback) {
+        return executor.submit(() -> {
+            T result;
+            try {
+                result = work.call();
+            } catch (Exception error) {
+                System.out.println("ERROR: A background operation failed: " + error);
+                if (callback != null) {
+                    mainThread.execute(() -> callback.onError(error));
+                }
+                throw error;
+            }
+
+            if (callback != null) {
+                mainThread.execute(() -> callback.onResult(result));
+            }
+            return result;
+        });
+    }
+
+    private static ThreadFactory named(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
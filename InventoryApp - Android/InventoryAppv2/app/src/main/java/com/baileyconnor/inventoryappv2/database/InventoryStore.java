@@ -0,0 +1,93 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import android.os.CancellationSignal;
+
+import com.baileyconnor.inventoryappv2.model.Item;
+import com.baileyconnor.inventoryappv2.model.ItemForecast;
+import com.baileyconnor.inventoryappv2.model.ItemSummary;
+import com.baileyconnor.inventoryappv2.model.LocationSummary;
+import com.baileyconnor.inventoryappv2.model.QuantityChange;
+import com.baileyconnor.inventoryappv2.model.SyncItem;
+import com.baileyconnor.inventoryappv2.model.SyncWatermark;
+import com.baileyconnor.inventoryappv2.sync.OutboxEntry;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+// Blocking data operations used by the InventoryRepository.
+// DatabaseHelper is the real implementation, tests can provide their own.
+public interface InventoryStore {
+
+    // Told about quantity changes after the write that made them has committed,
+    // on the thread that made the write
+    interface QuantityListener {
+        void onQuantityChanged(List<QuantityChange> changes);
+    }
+
+    // Opens the database ahead of the first operation
+    void open();
+
+    // Users
+    boolean createUser(String username, String password);
+    boolean validateLogin(String username, String password);
+
+    // Items
+    long insertItem(Item item);
+    int updateItem(Item item);
+    int deleteItem(long id);
+    long[] insertItems(List<Item> items);
+    int[] updateItems(List<Item> items);
+    int[] deleteItems(long[] ids);
+    int[] moveItems(long[] ids, String location);
+    int[] adjustQuantities(long[] ids, int delta, int floor, int ceiling);
+    int[] upsertItems(List<Item> items);
+    Integer adjustQuantity(long id, int delta, int floor, int ceiling);
+    Integer updateQuantity(long id, int quantity);
+    int updateName(long id, String name);
+    int updateLocation(long id, String location);
+    Item getItemById(long id);
+    List<Item> getAllItems();
+    List<Item> getItemsPage(long afterUpdatedAt, long afterId, int pageSize);
+    List<ItemSummary> getItemSummaries(long afterUpdatedAt, long afterId, int pageSize);
+    List<ItemSummary> getItemSummariesByIds(Collection<Long> ids);
+    List<ItemSummary> queryItemSummaries(ItemQuery query, ItemSummary after, int pageSize);
+    List<ItemSummary> queryItemSummariesByIds(ItemQuery query, Collection<Long> ids);
+    List<Item> getItemsAtLocation(String location);
+    List<Item> searchItems(String query, int limit, CancellationSignal signal);
+
+    // Barcode scanning
+    int setSku(long id, String sku);
+    Item getItemBySku(String sku);
+    Map<String, Long> getSkuIndex();
+
+    // Dashboard
+    List<LocationSummary> getLocationSummaries();
+    LocationSummary getInventoryTotals();
+    List<Item> getLowestStock(int limit);
+
+    // Quantity history
+    int quantityAt(long itemId, long time);
+    int compactLedger(long cutoff, long bucketMs);
+
+    // Depletion forecasts
+    List<ItemForecast> getRunningOutSoon(int limit);
+    ItemForecast getForecast(long itemId);
+
+    // Sync with the inventory API
+    List<OutboxEntry> claimOutbox(long now, int limit);
+    void acknowledgeOutbox(List<OutboxEntry> sent);
+    void deferOutbox(Map<String, Long> nextAttemptAt);
+    SyncWatermark getPullWatermark();
+    int applyRemoteItems(List<SyncItem> items, SyncWatermark watermark);
+
+    // Which items each committed write changed
+    ChangeFeed getChangeFeed();
+
+    // Write-ahead log
+    boolean checkpoint();
+
+    // Low stock alerts
+    int setLowStockThreshold(long id, int threshold);
+    void setQuantityListener(QuantityListener listener);
+}
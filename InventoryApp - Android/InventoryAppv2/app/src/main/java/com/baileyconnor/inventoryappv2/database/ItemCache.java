@@ -0,0 +1,92 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import android.util.LruCache;
+
+import com.baileyconnor.inventoryappv2.model.Item;
+
+import java.util.List;
+
+// Size-bounded LRU cache of items by id, owned by DatabaseHelper.
+// Reads fill it with the rows they loaded and every write updates or drops the
+// rows it touched, so a detail lookup right after a list load never hits SQLite.
+// Items are copied in and out, callers are free to modify what they get back.
+//
+// A reader thread may finish a query after a write has already changed the row, so
+// reads take a stamp() before querying and their rows are only cached if no write
+// happened in between (see putIfUnchanged).
+public class ItemCache {
+
+    public static final int DEFAULT_MAX_ITEMS = 512;
+
+    private final LruCache<Long, Item> items;
+    // Bumped by every write, readers compare it to decide if their rows are still current
+    private long writeStamp = 0;
+
+    // Constructor
+    public ItemCache(int maxItems) {
+        items = new LruCache<>(maxItems);
+    }
+
+    // A copy of the cached item, or null on a miss
+    public synchronized Item get(long id) {
+        Item item = items.get(id);
+        return item == null ? null : new Item(item);
+    }
+
+    // --- --- Reads --- --- \\
+
+    public synchronized long stamp() {
+        return writeStamp;
+    }
+
+    // Cache rows loaded by a read that started at the given stamp
+    public synchronized void putIfUnchanged(Item item, long stamp) {
+        if (stamp == writeStamp && item != null) {
+            items.put(item.getId(), new Item(item));
+        }
+    }
+
+    public synchronized void putAllIfUnchanged(List<Item> loaded, long stamp) {
+        if (stamp != writeStamp) return;
+        for (Item item : loaded) {
+            if (item != null) items.put(item.getId(), new Item(item));
+        }
+    }
+
+    // --- --- Writes --- --- \\
+
+    // The row was written with these values
+    public synchronized void put(Item item) {
+        writeStamp++;
+        items.put(item.getId(), new Item(item));
+    }
+
+    public synchronized void remove(long id) {
+        writeStamp++;
+        items.remove(id);
+    }
+
+    // Rows were changed without knowing which ids (e.g. an upsert by name)
+    public synchronized void clear() {
+        writeStamp++;
+        // Removed one by one, evictAll() would count these as evictions
+        for (Long id : items.snapshot().keySet()) {
+            items.remove(id);
+        }
+    }
+
+    // --- --- Counters --- --- \\
+
+    public synchronized int size() { return items.size(); }
+    public synchronized int maxSize() { return items.maxSize(); }
+    public synchronized int hitCount() { return items.hitCount(); }
+    public synchronized int missCount() { return items.missCount(); }
+    public synchronized int evictionCount() { return items.evictionCount(); }
+
+    @Override
+    public synchronized String toString() {
+        return "ItemCache[size=" + items.size() + "/" + items.maxSize() +
+                ", hits=" + items.hitCount() + ", misses=" + items.missCount() +
+                ", evictions=" + items.evictionCount() + "]";
+    }
+}
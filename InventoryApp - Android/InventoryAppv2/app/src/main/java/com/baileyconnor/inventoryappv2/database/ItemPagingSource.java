@@ -0,0 +1,292 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import com.baileyconnor.inventoryappv2.model.ItemSummary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Loads the inventory grid one keyset page of item summaries at a time, in the order and
+// with the filters of an ItemQuery (setQuery() starts over with a different one).
+// Pages are requested as the user scrolls to within prefetchDistance items of the end,
+// and pages far away from the visible range can be dropped under memory pressure.
+// A dropped page keeps its size (as null placeholders) and the key it was loaded from,
+// so it can be reloaded when it scrolls back into view.
+// reloadChanged() keeps the pages current with the repository's ChangeFeed, reading back
+// only the rows that were written since the pages were loaded. Deleted rows are just
+// dropped, so deleting a large selection doesn't read anything. A changed row that no
+// longer passes the filters isn't read back, and leaves the grid like a deleted one.
+// All methods are expected to be called on the main thread.
+public class ItemPagingSource {
+
+    public interface Listener {
+        // Called with the full list (null entries are placeholders for dropped pages)
+        void onItemsChanged(List<ItemSummary> items);
+
+        // A page or patch couldn't be read, it's tried again when the page scrolls into
+        // view or with the next reloadChanged()
+        default void onLoadFailed(Exception error) {}
+    }
+
+    private final InventoryRepository repository;
+    private final int pageSize;
+    private final int prefetchDistance;
+    private final Listener listener;
+
+    private ItemQuery query = ItemQuery.DEFAULT;
+    private final List<Page> pages = new ArrayList<>();
+    private boolean endReached = false;
+    private int firstVisible = 0;
+    private int lastVisible = 0;
+
+    // Bumped on every refresh so loads from an older generation are ignored
+    private int generation = 0;
+    // ChangeFeed version the pages are current to
+    private long syncedVersion = 0;
+    // Bumped on every reloadChanged so only the newest patch is applied
+    private int patches = 0;
+
+    // Constructor
+    public ItemPagingSource(InventoryRepository repository, int pageSize, int prefetchDistance, Listener listener) {
+        this.repository = repository;
+        this.pageSize = pageSize;
+        this.prefetchDistance = prefetchDistance;
+        this.listener = listener;
+    }
+
+    public ItemQuery getQuery() {
+        return query;
+    }
+
+    // Show the items of a different query, from its first page
+    public void setQuery(ItemQuery query) {
+        if (query.equals(this.query)) return;
+        this.query = query;
+        refresh();
+    }
+
+    // Throw away every page and load the first one again
+    public void refresh() {
+        generation++;
+        // Read before the first page, a write landing in between is patched in again later
+        syncedVersion = repository.getChangeFeed().version();
+        pages.clear();
+        endReached = false;
+        loadNextPage();
+    }
+
+    // Bring the pages up to date with the writes made since they were loaded. Nothing is
+    // read when nothing was written; otherwise only the changed rows are read and patched
+    // into the pages they now sort into. Falls back to refresh() when the feed can't say
+    // which items changed or a page isn't there to patch. Returns false if nothing changed.
+    public boolean reloadChanged() {
+        if (pages.isEmpty()) {
+            refresh();
+            return true;
+        }
+
+        ChangeFeed.Changes changes = repository.getChangeFeed().changesSince(syncedVersion);
+        if (changes.isEmpty()) return false;
+        if (changes.everything || !patchable()) {
+            refresh();
+            return true;
+        }
+
+        int patch = ++patches;
+        Set<Long> written = new HashSet<>(changes.ids);
+        written.removeAll(changes.deleted);
+        if (written.isEmpty()) {
+            applyChanges(changes.ids, Collections.emptyList());
+            syncedVersion = changes.version;
+            publish();
+            return true;
+        }
+
+        int requested = generation;
+        repository.queryItemSummariesByIds(query, written, InventoryRepository.Callback.of(rows -> {
+            // A newer patch also covers these changes, a refresh replaced them
+            if (patch != patches || requested != generation) return;
+            if (!patchable()) {
+                refresh();
+                return;
+            }
+            applyChanges(changes.ids, rows);
+            syncedVersion = changes.version;
+            publish();
+        }, error -> {
+            // syncedVersion stays where it was, so the next reloadChanged asks again
+            if (patch == patches && requested == generation) listener.onLoadFailed(error);
+        }));
+        return true;
+    }
+
+    // Called as the grid scrolls; loads the next page and reloads dropped pages near the visible range
+    public void onVisibleRange(int first, int last) {
+        firstVisible = first;
+        lastVisible = last;
+
+        if (!endReached && last + prefetchDistance >= loadedCount()) {
+            loadNextPage();
+        }
+
+        int start = 0;
+        for (Page page : pages) {
+            int end = start + page.size;
+            if (page.items == null && !page.loading
+                    && end > first - prefetchDistance && start <= last + prefetchDistance) {
+                load(page);
+            }
+            start = end;
+        }
+    }
+
+    // Drop every page more than keepPages pages away from the visible range
+    public void trimMemory(int keepPages) {
+        int keep = keepPages * pageSize;
+        boolean changed = false;
+        int start = 0;
+        for (Page page : pages) {
+            int end = start + page.size;
+            if (page.items != null && (end < firstVisible - keep || start > lastVisible + keep)) {
+                page.items = null;
+                changed = true;
+            }
+            start = end;
+        }
+        if (changed) publish();
+    }
+
+    // --- --- Helper Functions --- --- \\
+
+    private void loadNextPage() {
+        if (!pages.isEmpty() && pages.get(pages.size() - 1).loading) return;
+
+        Page page = pages.isEmpty()
+                ? new Page(null)
+                : pages.get(pages.size() - 1).next();
+        if (page == null) return;
+
+        pages.add(page);
+        load(page);
+    }
+
+    private void load(Page page) {
+        int requested = generation;
+        page.loading = true;
+        repository.queryItemSummaries(query, page.after, pageSize, InventoryRepository.Callback.of(items -> {
+            if (requested != generation) return;
+
+            page.loading = false;
+            page.setItems(items);
+            if (page == pages.get(pages.size() - 1) && items.size() < pageSize) {
+                endReached = true;
+            }
+            publish();
+        }, error -> {
+            if (requested != generation) return;
+            page.loading = false;
+            // A page that never loaded is dropped, so loadNextPage (or reloadChanged, for
+            // the first page) asks for it again
+            if (page.items == null && page.size == 0) pages.remove(page);
+            listener.onLoadFailed(error);
+        }));
+    }
+
+    // Pages can only be patched while every one of them is loaded
+    private boolean patchable() {
+        for (Page page : pages) {
+            if (page.items == null || page.loading) return false;
+        }
+        return true;
+    }
+
+    // Take the changed items out of their pages, then put each row read back into the
+    // page whose key range it now falls in. A page holds the rows after the row it was
+    // loaded after, up to and including the row the next page was loaded after. Rows past
+    // the last loaded page are left for loadNextPage, and deleted items aren't in rows at all.
+    private void applyChanges(Set<Long> changedIds, List<ItemSummary> rows) {
+        for (Page page : pages) {
+            List<ItemSummary> kept = new ArrayList<>(page.items.size());
+            for (ItemSummary item : page.items) {
+                if (!changedIds.contains(item.getId())) kept.add(item);
+            }
+            page.items = kept;
+        }
+
+        for (ItemSummary row : rows) {
+            for (int i = 0; i < pages.size(); i++) {
+                Page page = pages.get(i);
+                if (page.after != null && query.compare(row, page.after) <= 0) continue;
+
+                boolean last = i == pages.size() - 1;
+                if (!last) {
+                    Page next = pages.get(i + 1);
+                    if (query.compare(row, next.after) > 0) continue;
+                } else if (!endReached && (page.last == null || query.compare(row, page.last) > 0)) {
+                    break;
+                }
+                insertSorted(page.items, row);
+                break;
+            }
+        }
+
+        // The last keys stay as loaded, they're what the next page continues from
+        for (Page page : pages) page.size = page.items.size();
+    }
+
+    // In the query's order, like the keyset queries
+    private void insertSorted(List<ItemSummary> items, ItemSummary row) {
+        int at = 0;
+        while (at < items.size() && query.compare(items.get(at), row) < 0) {
+            at++;
+        }
+        items.add(at, row);
+    }
+
+    private int loadedCount() {
+        int count = 0;
+        for (Page page : pages) count += page.size;
+        return count;
+    }
+
+    private void publish() {
+        List<ItemSummary> snapshot = new ArrayList<>(loadedCount());
+        for (Page page : pages) {
+            if (page.items != null) {
+                snapshot.addAll(page.items);
+            } else {
+                snapshot.addAll(Collections.nCopies(page.size, null));
+            }
+        }
+        listener.onItemsChanged(snapshot);
+    }
+
+    private static class Page {
+        // Last item of the previous page, null for the first page
+        final ItemSummary after;
+        // Last item of this page as it was loaded, used to start the next one
+        ItemSummary last;
+        List<ItemSummary> items;
+        int size = 0;
+        boolean loading = false;
+
+        Page(ItemSummary after) {
+            this.after = after;
+        }
+
+        void setItems(List<ItemSummary> loaded) {
+            items = loaded;
+            size = loaded.size();
+            if (!loaded.isEmpty()) last = loaded.get(loaded.size() - 1);
+        }
+
+        // The page after this one, or null if this page is still loading or was loaded
+        // empty. A page whose items were all deleted since still continues from its last row.
+        Page next() {
+            if (loading || last == null) return null;
+            return new Page(last);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import com.baileyconnor.inventoryappv2.model.ItemSummary;
+
+import java.util.Objects;
+
+// Which items the inventory grid shows and in what order: one sort key, ascending or
+// descending, filtered by any of a location, a quantity range and "low on stock only".
+// Immutable, the with...() methods return a changed copy.
+//
+// DatabaseHelper compiles a query into SQL that walks one index in the sort order (see
+// Migrations 15 -> 16), so the filters are applied by SQLite as it reads and a page is
+// keyed on the last row of the page before it. Items with the same sort key are ordered
+// by id. Names sort like COLLATE NOCASE, items without a location sort before the rest.
+public class ItemQuery {
+
+    public static final int SORT_UPDATED_AT = 0;
+    public static final int SORT_NAME = 1;
+    public static final int SORT_QUANTITY = 2;
+    // By location name, then by item name
+    public static final int SORT_LOCATION = 3;
+
+    // Newest first and unfiltered, the grid's order before it could be sorted
+    public static final ItemQuery DEFAULT = new ItemQuery(SORT_UPDATED_AT, true, null, null, null, false);
+
+    public final int sort;
+    public final boolean descending;
+    // Only the items at this location, null for every location
+    public final String location;
+    // Inclusive, null for no bound
+    public final Integer minQuantity;
+    public final Integer maxQuantity;
+    // Only the items at or below their low stock threshold
+    public final boolean lowStockOnly;
+
+    // Constructor
+    public ItemQuery(int sort, boolean descending, String location, Integer minQuantity, Integer maxQuantity,
+                     boolean lowStockOnly) {
+        this.sort = sort;
+        this.descending = descending;
+        this.location = LocationDictionary.normalize(location);
+        this.minQuantity = minQuantity;
+        this.maxQuantity = maxQuantity;
+        this.lowStockOnly = lowStockOnly;
+    }
+
+    public ItemQuery withSort(int sort, boolean descending) {
+        return new ItemQuery(sort, descending, location, minQuantity, maxQuantity, lowStockOnly);
+    }
+
+    public ItemQuery withLocation(String location) {
+        return new ItemQuery(sort, descending, location, minQuantity, maxQuantity, lowStockOnly);
+    }
+
+    public ItemQuery withQuantityRange(Integer minQuantity, Integer maxQuantity) {
+        return new ItemQuery(sort, descending, location, minQuantity, maxQuantity, lowStockOnly);
+    }
+
+    public ItemQuery withLowStockOnly(boolean lowStockOnly) {
+        return new ItemQuery(sort, descending, location, minQuantity, maxQuantity, lowStockOnly);
+    }
+
+    public boolean isFiltered() {
+        return location != null || minQuantity != null || maxQuantity != null || lowStockOnly;
+    }
+
+    // Negative if a is listed before b, the same order the compiled SQL reads rows in.
+    // Used to patch changed rows into pages that were already loaded.
+    public int compare(ItemSummary a, ItemSummary b) {
+        int order;
+        switch (sort) {
+            case SORT_NAME:
+                order = compareNoCase(a.getName(), b.getName());
+                break;
+            case SORT_QUANTITY:
+                order = Integer.compare(a.getQuantity(), b.getQuantity());
+                break;
+            case SORT_LOCATION:
+                order = compareLocations(a.getLocation(), b.getLocation());
+                if (order == 0) order = compareNoCase(a.getName(), b.getName());
+                break;
+            default:
+                order = Long.compare(a.getUpdatedAt(), b.getUpdatedAt());
+        }
+        if (order == 0) order = Long.compare(a.getId(), b.getId());
+        return descending ? -order : order;
+    }
+
+    // No location first
+    static int compareLocations(String a, String b) {
+        if (a == null || b == null) return a == null ? (b == null ? 0 : -1) : 1;
+        return compareNoCase(a, b);
+    }
+
+    // Like SQLite's NOCASE: only ASCII letters are folded, the rest compares by code
+    // point, which is also the order of their UTF-8 bytes
+    static int compareNoCase(String a, String b) {
+        int i = 0, j = 0;
+        while (i < a.length() && j < b.length()) {
+            int x = fold(a.codePointAt(i));
+            int y = fold(b.codePointAt(j));
+            if (x != y) return Integer.compare(x, y);
+            i += Character.charCount(x);
+            j += Character.charCount(y);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    private static int fold(int c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof ItemQuery)) return false;
+        ItemQuery that = (ItemQuery) other;
+        return sort == that.sort && descending == that.descending && lowStockOnly == that.lowStockOnly
+                && Objects.equals(location, that.location) && Objects.equals(minQuantity, that.minQuantity)
+                && Objects.equals(maxQuantity, that.maxQuantity);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(sort, descending, location, minQuantity, maxQuantity, lowStockOnly);
+    }
+
+    @Override
+    public String toString() {
+        String sortName = sort == SORT_NAME ? "name" : sort == SORT_QUANTITY ? "quantity"
+                : sort == SORT_LOCATION ? "location" : "updated";
+        return sortName + (descending ? " desc" : " asc") +
+                (location != null ? ", at " + location : "") +
+                (minQuantity != null ? ", quantity >= " + minQuantity : "") +
+                (maxQuantity != null ? ", quantity <= " + maxQuantity : "") +
+                (lowStockOnly ? ", low stock" : "");
+    }
+}
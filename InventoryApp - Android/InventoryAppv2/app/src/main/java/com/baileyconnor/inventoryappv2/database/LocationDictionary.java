@@ -0,0 +1,138 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.baileyconnor.inventoryappv2.database.DatabaseHelper.*;
+
+// The locations table held in memory, owned by DatabaseHelper.
+// Items store a location_id, this turns it back into the location's name, so every item
+// in a bay shares the same String, and turns a typed location into its id. Names are
+// matched like the table's COLLATE NOCASE column after trimming, "bay 4 " is "Bay 4".
+//
+// Only committed rows are kept: the dictionary is (re)loaded outside of transactions, so a
+// location created by a write that is then rolled back never makes it in here.
+public class LocationDictionary {
+
+    // Both directions of the locations table, id 0 is "no location"
+    private final Map<Long, String> names = new HashMap<>();
+    private final Map<String, Long> ids = new HashMap<>();
+    // idsByName's answer, null until it's built and again once a location has been added
+    private List<Long> sortedIds;
+
+    // Read the whole table again, it has one row per location
+    public synchronized void load(SQLiteDatabase db) {
+        names.clear();
+        ids.clear();
+        sortedIds = null;
+        try (Cursor c = db.rawQuery(SQL_ALL_LOCATIONS, null)) {
+            while (c.moveToNext()) {
+                names.put(c.getLong(0), c.getString(1));
+                ids.put(key(c.getString(1)), c.getLong(0));
+            }
+        }
+    }
+
+    // Name of the location with the given id, null for 0 (no location)
+    public synchronized String nameOf(SQLiteDatabase db, long id) {
+        if (id == 0) return null;
+        String name = names.get(id);
+        if (name != null) return name;
+
+        // Created since the last load. Inside a transaction it may not be committed yet,
+        // so it's looked up on its own instead of reloading.
+        if (!db.inTransaction()) {
+            load(db);
+            return names.get(id);
+        }
+        return DatabaseUtils.stringForQuery(db, SQL_LOCATION_BY_ID, new String[] { String.valueOf(id) });
+    }
+
+    // Id of the location an item is written with, 0 for none. A location that doesn't exist
+    // yet is created, expected to be called inside the write's transaction.
+    public synchronized long idOf(SQLiteDatabase db, String location) {
+        String name = normalize(location);
+        if (name == null) return 0;
+        Long id = ids.get(key(name));
+        if (id != null) return id;
+
+        try (SQLiteStatement insert = db.compileStatement(STMT_INSERT_LOCATION)) {
+            insert.bindString(1, name);
+            insert.executeInsert();
+        }
+        // Not in names until the next load, which idsByName does once the write commits
+        sortedIds = null;
+        return DatabaseUtils.longForQuery(db, SQL_LOCATION_ID_BY_NAME, new String[] { name });
+    }
+
+    // Id of an existing location, 0 if there is no such location (or none was given)
+    public synchronized long existingIdOf(SQLiteDatabase db, String location) {
+        String name = normalize(location);
+        if (name == null) return 0;
+        Long id = ids.get(key(name));
+        if (id != null) return id;
+
+        // Possibly created since the last load, see nameOf
+        if (!db.inTransaction()) {
+            load(db);
+            id = ids.get(key(name));
+            return id != null ? id : 0;
+        }
+        try (Cursor c = db.rawQuery(SQL_LOCATION_ID_BY_NAME, new String[] { name })) {
+            return c.moveToFirst() ? c.getLong(0) : 0;
+        }
+    }
+
+    // The location as it will be read back: the known spelling, otherwise the trimmed text
+    public synchronized String canonical(String location) {
+        String name = normalize(location);
+        if (name == null) return null;
+        Long id = ids.get(key(name));
+        return id != null ? names.get(id) : name;
+    }
+
+    // Every location id in the order of their names, after 0 (no location), as a copy the
+    // caller can change. The order is kept until idOf adds a location, then the table is
+    // read again so the new one is in it.
+    public synchronized List<Long> idsByName(SQLiteDatabase db) {
+        if (sortedIds != null) return new ArrayList<>(sortedIds);
+
+        // Inside a transaction the new location may not be committed, so it isn't cached
+        boolean committed = !db.inTransaction();
+        if (committed) load(db);
+        List<Long> sorted = new ArrayList<>(names.keySet());
+        sorted.sort((a, b) -> ItemQuery.compareNoCase(names.get(a), names.get(b)));
+        sorted.add(0, 0L);
+        if (committed) sortedIds = sorted;
+        return new ArrayList<>(sorted);
+    }
+
+    public synchronized int size() {
+        return names.size();
+    }
+
+    // --- --- Helper Functions --- --- \\
+
+    // Null for no location
+    static String normalize(String location) {
+        if (location == null) return null;
+        String trimmed = location.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    // NOCASE only folds ASCII letters, so this doesn't use toLowerCase()
+    private static String key(String name) {
+        char[] chars = name.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] >= 'A' && chars[i] <= 'Z') chars[i] += 'a' - 'A';
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,15 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import android.database.sqlite.SQLiteDatabase;
+
+// One step of the schema history, moving the database from fromVersion to fromVersion + 1.
+// Steps must keep existing rows; SQLiteOpenHelper already runs them inside a transaction.
+public abstract class Migration {
+    final int fromVersion;
+
+    protected Migration(int fromVersion) {
+        this.fromVersion = fromVersion;
+    }
+
+    public abstract void migrate(SQLiteDatabase db);
+}
@@ -0,0 +1,434 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.baileyconnor.inventoryappv2.sync.PendingChange;
+
+import java.util.UUID;
+
+import static com.baileyconnor.inventoryappv2.database.DatabaseHelper.*;
+
+// The schema history of the app database.
+// A new install creates the baseline schema and then runs every step, so a fresh
+// database and an upgraded one always end up with the same schema.
+// To change the schema: bump DatabaseHelper.DB_VERSION and append a step here.
+final class Migrations {
+
+    // Oldest version we can upgrade from without losing data
+    static final int BASELINE_VERSION = 4;
+
+    // Sync state of an item between versions 12 and 13, replaced by the outbox
+    private static final String UNSYNCED = "(" + C_SYNCED_AT + " IS NULL OR " + C_UPDATED_AT + " > " + C_SYNCED_AT + ")";
+
+    private static final Migration[] STEPS = {
+            // 4 -> 5: secondary indexes for the item queries
+            new Migration(4) {
+                @Override public void migrate(SQLiteDatabase db) {
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_items_updated_at ON " + T_ITEMS + " (" + C_UPDATED_AT + ")");
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_items_name ON " + T_ITEMS + " (" + C_NAME + ")");
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_items_location ON " + T_ITEMS + " (" + C_LOCATION + ")");
+                }
+            },
+            // 5 -> 6: the import upsert matches on name + location, a composite index keeps
+            // the planner off the low-selectivity location index (and covers name lookups)
+            new Migration(5) {
+                @Override public void migrate(SQLiteDatabase db) {
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_items_name_location ON " + T_ITEMS + " (" + C_NAME + ", " + C_LOCATION + ")");
+                    db.execSQL("DROP INDEX IF EXISTS idx_items_name");
+                }
+            },
+            // 6 -> 7: full-text index over name + location for the item search.
+            // External content table, so the text is only stored once in items; the
+            // triggers keep it in sync and only fire when an indexed column changes.
+            // prefix="2,3" adds prefix indexes for the short terms typed while searching.
+            new Migration(6) {
+                @Override public void migrate(SQLiteDatabase db) {
+                    db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + T_ITEMS_FTS + " USING fts4(" +
+                            "content=\"" + T_ITEMS + "\", " + C_NAME + ", " + C_LOCATION + ", prefix=\"2,3\")");
+
+                    db.execSQL("CREATE TRIGGER IF NOT EXISTS items_fts_bu BEFORE UPDATE OF " + C_NAME + ", " + C_LOCATION +
+                            " ON " + T_ITEMS + " BEGIN " +
+                            "DELETE FROM " + T_ITEMS_FTS + " WHERE docid=old." + C_ID + "; END");
+                    db.execSQL("CREATE TRIGGER IF NOT EXISTS items_fts_bd BEFORE DELETE ON " + T_ITEMS + " BEGIN " +
+                            "DELETE FROM " + T_ITEMS_FTS + " WHERE docid=old." + C_ID + "; END");
+                    db.execSQL("CREATE TRIGGER IF NOT EXISTS items_fts_au AFTER UPDATE OF " + C_NAME + ", " + C_LOCATION +
+                            " ON " + T_ITEMS + " BEGIN " +
+                            "INSERT INTO " + T_ITEMS_FTS + " (docid, " + C_NAME + ", " + C_LOCATION + ")" +
+                            " VALUES (new." + C_ID + ", new." + C_NAME + ", new." + C_LOCATION + "); END");
+                    db.execSQL("CREATE TRIGGER IF NOT EXISTS items_fts_ai AFTER INSERT ON " + T_ITEMS + " BEGIN " +
+                            "INSERT INTO " + T_ITEMS_FTS + " (docid, " + C_NAME + ", " + C_LOCATION + ")" +
+                            " VALUES (new." + C_ID + ", new." + C_NAME + ", new." + C_LOCATION + "); END");
+
+                    // Index the rows that are already there
+                    db.execSQL("INSERT INTO " + T_ITEMS_FTS + " (" + T_ITEMS_FTS + ") VALUES ('rebuild')");
+                }
+            },
+            // 7 -> 8: per-location totals for the dashboard, maintained by triggers so they
+            // are updated in the same transaction as the item write. Items without a
+            // location are counted under ''. Also covering indexes for the aggregates.
+            new Migration(7) {
+                @Override public void migrate(SQLiteDatabase db) {
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_items_location_quantity ON " + T_ITEMS + " (" + C_LOCATION + ", " + C_QTY + ")");
+                    db.execSQL("DROP INDEX IF EXISTS idx_items_location");
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_items_quantity ON " + T_ITEMS + " (" + C_QTY + ", " + C_NAME + ", " + C_LOCATION + ")");
+
+                    db.execSQL("CREATE TABLE IF NOT EXISTS " + T_LOCATION_SUMMARY + " (" +
+                            C_LOCATION + " TEXT NOT NULL PRIMARY KEY, " +
+                            C_ITEM_COUNT + " INTEGER NOT NULL, " +
+                            C_UNITS + " INTEGER NOT NULL, " +
+                            C_LOW_STOCK_COUNT + " INTEGER NOT NULL) WITHOUT ROWID");
+
+                    String threshold = String.valueOf(LOW_STOCK_QUANTITY);
+                    db.execSQL("CREATE TRIGGER IF NOT EXISTS location_summary_ai AFTER INSERT ON " + T_ITEMS + " BEGIN " +
+                            addToSummary("new", threshold) + " END");
+                    db.execSQL("CREATE TRIGGER IF NOT EXISTS location_summary_ad AFTER DELETE ON " + T_ITEMS + " BEGIN " +
+                            removeFromSummary("old", threshold) + " END");
+                    db.execSQL("CREATE TRIGGER IF NOT EXISTS location_summary_au AFTER UPDATE OF " + C_QTY + ", " + C_LOCATION +
+                            " ON " + T_ITEMS + " BEGIN " +
+                            removeFromSummary("old", threshold) + " " + addToSummary("new", threshold) + " END");
+
+                    db.execSQL("INSERT INTO " + T_LOCATION_SUMMARY + " SELECT IFNULL(" + C_LOCATION + ", ''), COUNT(*), " +
+                            "SUM(" + C_QTY + "), SUM(" + C_QTY + " <= " + threshold + ") FROM " + T_ITEMS +
+                            " GROUP BY IFNULL(" + C_LOCATION + ", '')");
+                }
+            },
+            // 8 -> 9: per-item low stock threshold for the alerts. The summary triggers and
+            // the covering index are recreated to count low stock against each item's own threshold.
+            new Migration(8) {
+                @Override public void migrate(SQLiteDatabase db) {
+                    db.execSQL("ALTER TABLE " + T_ITEMS + " ADD COLUMN " + C_LOW_STOCK_THRESHOLD +
+                            " INTEGER NOT NULL DEFAULT " + LOW_STOCK_QUANTITY);
+
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_items_location_stock ON " + T_ITEMS + " (" +
+                            C_LOCATION + ", " + C_QTY + ", " + C_LOW_STOCK_THRESHOLD + ")");
+                    db.execSQL("DROP INDEX IF EXISTS idx_items_location_quantity");
+
+                    db.execSQL("DROP TRIGGER IF EXISTS location_summary_ai");
+                    db.execSQL("DROP TRIGGER IF EXISTS location_summary_ad");
+                    db.execSQL("DROP TRIGGER IF EXISTS location_summary_au");
+                    db.execSQL("CREATE TRIGGER location_summary_ai AFTER INSERT ON " + T_ITEMS + " BEGIN " +
+                            addToSummary("new", "new." + C_LOW_STOCK_THRESHOLD) + " END");
+                    db.execSQL("CREATE TRIGGER location_summary_ad AFTER DELETE ON " + T_ITEMS + " BEGIN " +
+                            removeFromSummary("old", "old." + C_LOW_STOCK_THRESHOLD) + " END");
+                    db.execSQL("CREATE TRIGGER location_summary_au AFTER UPDATE OF " + C_QTY + ", " + C_LOCATION + ", " +
+                            C_LOW_STOCK_THRESHOLD + " ON " + T_ITEMS + " BEGIN " +
+                            removeFromSummary("old", "old." + C_LOW_STOCK_THRESHOLD) + " " +
+                            addToSummary("new", "new." + C_LOW_STOCK_THRESHOLD) + " END");
+
+                    // Every item still has the default threshold, so the counts haven't changed
+                }
+            },
+            // 9 -> 10: append-only ledger of quantity movements, written by triggers in the same
+            // transaction as the item write, and the snapshots old ledger rows are compacted into
+            // (see DatabaseHelper.compactLedger). Existing items start with one entry for their quantity.
+            new Migration(9) {
+                @Override public void migrate(SQLiteDatabase db) {
+                    db.execSQL("CREATE TABLE IF NOT EXISTS " + T_QUANTITY_LEDGER + " (" +
+                            C_ID + " INTEGER PRIMARY KEY, " +
+                            C_ITEM_ID + " INTEGER NOT NULL, " +
+                            C_DELTA + " INTEGER NOT NULL, " +
+                            C_CHANGED_AT + " INTEGER NOT NULL)");
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_ledger_item_changed_at ON " + T_QUANTITY_LEDGER +
+                            " (" + C_ITEM_ID + ", " + C_CHANGED_AT + ")");
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_ledger_changed_at ON " + T_QUANTITY_LEDGER + " (" + C_CHANGED_AT + ")");
+
+                    db.execSQL("CREATE TABLE IF NOT EXISTS " + T_QUANTITY_SNAPSHOTS + " (" +
+                            C_ITEM_ID + " INTEGER NOT NULL, " +
+                            C_TAKEN_AT + " INTEGER NOT NULL, " +
+                            C_QTY + " INTEGER NOT NULL, " +
+                            "PRIMARY KEY (" + C_ITEM_ID + ", " + C_TAKEN_AT + ")) WITHOUT ROWID");
+
+                    String insertLedger = "INSERT INTO " + T_QUANTITY_LEDGER + " (" + C_ITEM_ID + ", " + C_DELTA + ", " + C_CHANGED_AT + ")";
+                    db.execSQL("CREATE TRIGGER IF NOT EXISTS ledger_ai AFTER INSERT ON " + T_ITEMS + " BEGIN " +
+                            insertLedger + " VALUES (new." + C_ID + ", new." + C_QTY + ", new." + C_UPDATED_AT + "); END");
+                    db.execSQL("CREATE TRIGGER IF NOT EXISTS ledger_au AFTER UPDATE OF " + C_QTY + " ON " + T_ITEMS +
+                            " WHEN new." + C_QTY + " != old." + C_QTY + " BEGIN " +
+                            insertLedger + " VALUES (new." + C_ID + ", new." + C_QTY + " - old." + C_QTY + ", new." + C_UPDATED_AT + "); END");
+                    // A delete has no updated_at of its own, use the current time in milliseconds
+                    db.execSQL("CREATE TRIGGER IF NOT EXISTS ledger_ad AFTER DELETE ON " + T_ITEMS + " BEGIN " +
+                            insertLedger + " VALUES (old." + C_ID + ", -old." + C_QTY + ", " +
+                            "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)); END");
+
+                    db.execSQL(insertLedger + " SELECT " + C_ID + ", " + C_QTY + ", " + C_UPDATED_AT + " FROM " + T_ITEMS);
+                }
+            },
+            // 10 -> 11: depletion forecast state per item, written next to each quantity change
+            // (see DatabaseHelper.quantityWritten). Rows are created on the first change.
+            new Migration(10) {
+                @Override public void migrate(SQLiteDatabase db) {
+                    db.execSQL("CREATE TABLE IF NOT EXISTS " + T_ITEM_FORECAST + " (" +
+                            C_ITEM_ID + " INTEGER PRIMARY KEY, " +
+                            C_RATE + " REAL NOT NULL, " +
+                            C_OBSERVED_AT + " INTEGER NOT NULL, " +
+                            C_DEPLETES_AT + " INTEGER)");
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_forecast_depletes_at ON " + T_ITEM_FORECAST + " (" + C_DEPLETES_AT + ")");
+                    db.execSQL("CREATE TRIGGER IF NOT EXISTS forecast_ad AFTER DELETE ON " + T_ITEMS + " BEGIN " +
+                            "DELETE FROM " + T_ITEM_FORECAST + " WHERE " + C_ITEM_ID + " = old." + C_ID + "; END");
+                }
+            },
+            // 11 -> 12: sync with the inventory API. Every item starts out unsynced, deletes of
+            // items the API knows about are queued in sync_deletes until they've been pushed.
+            new Migration(11) {
+                @Override public void migrate(SQLiteDatabase db) {
+                    db.execSQL("ALTER TABLE " + T_ITEMS + " ADD COLUMN " + C_REMOTE_ID + " TEXT");
+                    db.execSQL("ALTER TABLE " + T_ITEMS + " ADD COLUMN " + C_SYNCED_AT + " INTEGER");
+                    db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS idx_items_remote_id ON " + T_ITEMS + " (" + C_REMOTE_ID + ")");
+                    // Partial index, only holds the (usually few) rows waiting to be pushed
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_items_unsynced ON " + T_ITEMS + " (" + C_ID + ") WHERE " + UNSYNCED);
+
+                    db.execSQL("CREATE TABLE IF NOT EXISTS " + T_SYNC_STATE + " (" +
+                            C_ID + " INTEGER PRIMARY KEY CHECK (" + C_ID + " = 0), " +
+                            C_PULLED_UNTIL + " INTEGER NOT NULL, " +
+                            C_PULLED_AFTER_ID + " TEXT NOT NULL)");
+                    db.execSQL("CREATE TABLE IF NOT EXISTS " + T_SYNC_DELETES + " (" +
+                            C_REMOTE_ID + " TEXT PRIMARY KEY) WITHOUT ROWID");
+                    db.execSQL("CREATE TRIGGER IF NOT EXISTS sync_deletes_ad AFTER DELETE ON " + T_ITEMS +
+                            " WHEN old." + C_REMOTE_ID + " IS NOT NULL BEGIN " +
+                            "INSERT OR IGNORE INTO " + T_SYNC_DELETES + " (" + C_REMOTE_ID + ") VALUES (old." + C_REMOTE_ID + "); END");
+                }
+            },
+            // 12 -> 13: changes waiting to be pushed are recorded in the outbox (one coalesced
+            // entry per item, written by DatabaseHelper next to each change) instead of being
+            // derived from synced_at. Every item gets its remote id up front so each change
+            // can be keyed on it. synced_at is left in place, DROP COLUMN needs SQLite 3.35.
+            new Migration(12) {
+                @Override public void migrate(SQLiteDatabase db) {
+                    try (Cursor c = db.rawQuery("SELECT " + C_ID + " FROM " + T_ITEMS + " WHERE " + C_REMOTE_ID + " IS NULL", null);
+                         SQLiteStatement assign = db.compileStatement("UPDATE " + T_ITEMS + " SET " + C_REMOTE_ID + "=? WHERE " + C_ID + "=?")) {
+                        while (c.moveToNext()) {
+                            assign.bindString(1, UUID.randomUUID().toString());
+                            assign.bindLong(2, c.getLong(0));
+                            assign.executeUpdateDelete();
+                        }
+                    }
+
+                    db.execSQL("CREATE TABLE IF NOT EXISTS " + T_OUTBOX + " (" +
+                            C_REMOTE_ID + " TEXT PRIMARY KEY, " +
+                            C_KIND + " INTEGER NOT NULL, " +
+                            C_NAME + " TEXT, " +
+                            C_QTY + " INTEGER, " +
+                            C_QTY_DELTA + " INTEGER NOT NULL DEFAULT 0, " +
+                            C_LOCATION_SET + " INTEGER NOT NULL DEFAULT 0, " +
+                            C_LOCATION + " TEXT, " +
+                            C_VERSION + " INTEGER NOT NULL, " +
+                            C_ATTEMPTS + " INTEGER NOT NULL DEFAULT 0, " +
+                            C_NEXT_ATTEMPT_AT + " INTEGER NOT NULL) WITHOUT ROWID");
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_outbox_next_attempt_at ON " + T_OUTBOX + " (" + C_NEXT_ATTEMPT_AT + ")");
+
+                    // Never-synced items are creates, items changed since their last sync are
+                    // whole-item updates, and queued deletes carry over as they are
+                    String columns = " (" + C_REMOTE_ID + ", " + C_KIND + ", " + C_NAME + ", " + C_QTY + ", " +
+                            C_LOCATION_SET + ", " + C_LOCATION + ", " + C_VERSION + ", " + C_NEXT_ATTEMPT_AT + ")";
+                    db.execSQL("INSERT INTO " + T_OUTBOX + columns + " SELECT " + C_REMOTE_ID + ", " +
+                            "CASE WHEN " + C_SYNCED_AT + " IS NULL THEN " + PendingChange.CREATE + " ELSE " + PendingChange.UPDATE + " END, " +
+                            C_NAME + ", " + C_QTY + ", 1, " + C_LOCATION + ", 1, 0 FROM " + T_ITEMS + " WHERE " + UNSYNCED);
+                    db.execSQL("INSERT OR IGNORE INTO " + T_OUTBOX + columns + " SELECT " + C_REMOTE_ID + ", " +
+                            PendingChange.DELETE + ", NULL, NULL, 0, NULL, 1, 0 FROM " + T_SYNC_DELETES);
+
+                    db.execSQL("DROP TRIGGER IF EXISTS sync_deletes_ad");
+                    db.execSQL("DROP TABLE IF EXISTS " + T_SYNC_DELETES);
+                    db.execSQL("DROP INDEX IF EXISTS idx_items_unsynced");
+                }
+            },
+            // 13 -> 14: locations get their own table and items reference it by id. Locations
+            // that only differ in case or surrounding spaces are merged, and '' becomes no
+            // location. SQLite can't drop or retype a column before 3.35, so items is rebuilt
+            // (which also drops synced_at) and its indexes and triggers are created again.
+            // Ids are copied as they are and the AUTOINCREMENT counter is carried over, so
+            // ids of deleted items are still never reused.
+            new Migration(13) {
+                @Override public void migrate(SQLiteDatabase db) {
+                    db.execSQL("CREATE TABLE IF NOT EXISTS " + T_LOCATIONS + " (" +
+                            C_ID + " INTEGER PRIMARY KEY, " +
+                            C_NAME + " TEXT NOT NULL UNIQUE COLLATE NOCASE)");
+                    db.execSQL("INSERT OR IGNORE INTO " + T_LOCATIONS + " (" + C_NAME + ")" +
+                            " SELECT trim(" + C_LOCATION + ") FROM " + T_ITEMS +
+                            " WHERE trim(" + C_LOCATION + ") != '' GROUP BY trim(" + C_LOCATION + ") ORDER BY MIN(" + C_ID + ")");
+
+                    db.execSQL("CREATE TABLE items_new (" +
+                            C_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                            C_NAME + " TEXT NOT NULL, " +
+                            C_QTY + " INTEGER NOT NULL DEFAULT 0, " +
+                            C_LOCATION_ID + " INTEGER REFERENCES " + T_LOCATIONS + " (" + C_ID + "), " +
+                            C_UPDATED_AT + " INTEGER NOT NULL, " +
+                            C_LOW_STOCK_THRESHOLD + " INTEGER NOT NULL DEFAULT " + LOW_STOCK_QUANTITY + ", " +
+                            C_REMOTE_ID + " TEXT)");
+                    db.execSQL("INSERT INTO items_new SELECT i." + C_ID + ", i." + C_NAME + ", i." + C_QTY + ", " +
+                            "(SELECT l." + C_ID + " FROM " + T_LOCATIONS + " l WHERE l." + C_NAME + " = trim(i." + C_LOCATION + ")), " +
+                            "i." + C_UPDATED_AT + ", i." + C_LOW_STOCK_THRESHOLD + ", i." + C_REMOTE_ID + " FROM " + T_ITEMS + " i");
+                    db.execSQL("DELETE FROM sqlite_sequence WHERE name = 'items_new'");
+                    db.execSQL("UPDATE sqlite_sequence SET name = 'items_new' WHERE name = '" + T_ITEMS + "'");
+                    db.execSQL("DROP TABLE " + T_ITEMS);
+                    db.execSQL("ALTER TABLE items_new RENAME TO " + T_ITEMS);
+
+                    db.execSQL("CREATE INDEX idx_items_updated_at ON " + T_ITEMS + " (" + C_UPDATED_AT + ")");
+                    db.execSQL("CREATE INDEX idx_items_name_location ON " + T_ITEMS + " (" + C_NAME + ", " + C_LOCATION_ID + ")");
+                    db.execSQL("CREATE INDEX idx_items_quantity ON " + T_ITEMS + " (" + C_QTY + ", " + C_NAME + ", " + C_LOCATION_ID + ")");
+                    // Also what "every item in bay X" reads from
+                    db.execSQL("CREATE INDEX idx_items_location_stock ON " + T_ITEMS + " (" +
+                            C_LOCATION_ID + ", " + C_QTY + ", " + C_LOW_STOCK_THRESHOLD + ")");
+                    db.execSQL("CREATE UNIQUE INDEX idx_items_remote_id ON " + T_ITEMS + " (" + C_REMOTE_ID + ")");
+
+                    // The full-text index keeps indexing the location's name. Its content is read
+                    // through a view (FTS4 needs it to have a rowid column), so the text is still
+                    // only stored once.
+                    db.execSQL("DROP TABLE IF EXISTS " + T_ITEMS_FTS);
+                    db.execSQL("CREATE VIEW " + V_ITEMS_SEARCH + " AS SELECT i." + C_ID + " AS rowid, i." + C_NAME + " AS " + C_NAME +
+                            ", l." + C_NAME + " AS " + C_LOCATION + " FROM " + T_ITEMS + " i" +
+                            " LEFT JOIN " + T_LOCATIONS + " l ON l." + C_ID + " = i." + C_LOCATION_ID);
+                    db.execSQL("CREATE VIRTUAL TABLE " + T_ITEMS_FTS + " USING fts4(" +
+                            "content=\"" + V_ITEMS_SEARCH + "\", " + C_NAME + ", " + C_LOCATION + ", prefix=\"2,3\")");
+                    String locationName = "(SELECT " + C_NAME + " FROM " + T_LOCATIONS + " WHERE " + C_ID + " = new." + C_LOCATION_ID + ")";
+                    db.execSQL("CREATE TRIGGER items_fts_bu BEFORE UPDATE OF " + C_NAME + ", " + C_LOCATION_ID +
+                            " ON " + T_ITEMS + " BEGIN " +
+                            "DELETE FROM " + T_ITEMS_FTS + " WHERE docid=old." + C_ID + "; END");
+                    db.execSQL("CREATE TRIGGER items_fts_bd BEFORE DELETE ON " + T_ITEMS + " BEGIN " +
+                            "DELETE FROM " + T_ITEMS_FTS + " WHERE docid=old." + C_ID + "; END");
+                    db.execSQL("CREATE TRIGGER items_fts_au AFTER UPDATE OF " + C_NAME + ", " + C_LOCATION_ID +
+                            " ON " + T_ITEMS + " BEGIN " +
+                            "INSERT INTO " + T_ITEMS_FTS + " (docid, " + C_NAME + ", " + C_LOCATION + ")" +
+                            " VALUES (new." + C_ID + ", new." + C_NAME + ", " + locationName + "); END");
+                    db.execSQL("CREATE TRIGGER items_fts_ai AFTER INSERT ON " + T_ITEMS + " BEGIN " +
+                            "INSERT INTO " + T_ITEMS_FTS + " (docid, " + C_NAME + ", " + C_LOCATION + ")" +
+                            " VALUES (new." + C_ID + ", new." + C_NAME + ", " + locationName + "); END");
+                    db.execSQL("INSERT INTO " + T_ITEMS_FTS + " (" + T_ITEMS_FTS + ") VALUES ('rebuild')");
+
+                    // Totals are kept per location id, 0 for items without a location
+                    db.execSQL("DROP TABLE " + T_LOCATION_SUMMARY);
+                    db.execSQL("CREATE TABLE " + T_LOCATION_SUMMARY + " (" +
+                            C_LOCATION_ID + " INTEGER NOT NULL PRIMARY KEY, " +
+                            C_ITEM_COUNT + " INTEGER NOT NULL, " +
+                            C_UNITS + " INTEGER NOT NULL, " +
+                            C_LOW_STOCK_COUNT + " INTEGER NOT NULL) WITHOUT ROWID");
+                    db.execSQL("CREATE TRIGGER location_summary_ai AFTER INSERT ON " + T_ITEMS + " BEGIN " +
+                            addToLocationSummary("new") + " END");
+                    db.execSQL("CREATE TRIGGER location_summary_ad AFTER DELETE ON " + T_ITEMS + " BEGIN " +
+                            removeFromLocationSummary("old") + " END");
+                    db.execSQL("CREATE TRIGGER location_summary_au AFTER UPDATE OF " + C_QTY + ", " + C_LOCATION_ID + ", " +
+                            C_LOW_STOCK_THRESHOLD + " ON " + T_ITEMS + " BEGIN " +
+                            removeFromLocationSummary("old") + " " + addToLocationSummary("new") + " END");
+                    db.execSQL("INSERT INTO " + T_LOCATION_SUMMARY + " SELECT IFNULL(" + C_LOCATION_ID + ", 0), COUNT(*), " +
+                            "SUM(" + C_QTY + "), SUM(" + C_QTY + " <= " + C_LOW_STOCK_THRESHOLD + ") FROM " + T_ITEMS +
+                            " GROUP BY IFNULL(" + C_LOCATION_ID + ", 0)");
+
+                    // Unchanged from 9 -> 10 and 10 -> 11, they went with the old table
+                    String insertLedger = "INSERT INTO " + T_QUANTITY_LEDGER + " (" + C_ITEM_ID + ", " + C_DELTA + ", " + C_CHANGED_AT + ")";
+                    db.execSQL("CREATE TRIGGER ledger_ai AFTER INSERT ON " + T_ITEMS + " BEGIN " +
+                            insertLedger + " VALUES (new." + C_ID + ", new." + C_QTY + ", new." + C_UPDATED_AT + "); END");
+                    db.execSQL("CREATE TRIGGER ledger_au AFTER UPDATE OF " + C_QTY + " ON " + T_ITEMS +
+                            " WHEN new." + C_QTY + " != old." + C_QTY + " BEGIN " +
+                            insertLedger + " VALUES (new." + C_ID + ", new." + C_QTY + " - old." + C_QTY + ", new." + C_UPDATED_AT + "); END");
+                    db.execSQL("CREATE TRIGGER ledger_ad AFTER DELETE ON " + T_ITEMS + " BEGIN " +
+                            insertLedger + " VALUES (old." + C_ID + ", -old." + C_QTY + ", " +
+                            "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)); END");
+                    db.execSQL("CREATE TRIGGER forecast_ad AFTER DELETE ON " + T_ITEMS + " BEGIN " +
+                            "DELETE FROM " + T_ITEM_FORECAST + " WHERE " + C_ITEM_ID + " = old." + C_ID + "; END");
+                }
+            },
+            // 14 -> 15: the barcode items are scanned by. Unique, but any number of items may
+            // have none (NULLs never collide in a unique index).
+            new Migration(14) {
+                @Override public void migrate(SQLiteDatabase db) {
+                    db.execSQL("ALTER TABLE " + T_ITEMS + " ADD COLUMN " + C_SKU + " TEXT");
+                    db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS idx_items_sku ON " + T_ITEMS + " (" + C_SKU + ")");
+                }
+            },
+            // 15 -> 16: one index per way the grid can be sorted (see ItemQuery), with and
+            // without a location filter in front. The keyset pages go (key, id), so every
+            // index ends in the sort key and the rowid comes right after it. Names are
+            // indexed NOCASE like the locations. Two indexes go to make up for the writes:
+            // idx_items_location_stock only kept the threshold for the dashboard counts,
+            // which location_summary has since taken over, and the lowest stock list now
+            // reads off idx_items_sort_quantity (ties by id rather than name).
+            new Migration(15) {
+                @Override public void migrate(SQLiteDatabase db) {
+                    db.execSQL("DROP INDEX IF EXISTS idx_items_location_stock");
+                    db.execSQL("DROP INDEX IF EXISTS idx_items_quantity");
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_items_location_quantity ON " + T_ITEMS + " (" +
+                            C_LOCATION_ID + ", " + C_QTY + ")");
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_items_location_name ON " + T_ITEMS + " (" +
+                            C_LOCATION_ID + ", " + C_NAME + " COLLATE NOCASE)");
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_items_location_updated_at ON " + T_ITEMS + " (" +
+                            C_LOCATION_ID + ", " + C_UPDATED_AT + ")");
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_items_sort_name ON " + T_ITEMS + " (" + C_NAME + " COLLATE NOCASE)");
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_items_sort_quantity ON " + T_ITEMS + " (" + C_QTY + ")");
+                }
+            },
+    };
+
+    private Migrations() {}
+
+    // Schema as it was at BASELINE_VERSION
+    static void createBaseline(SQLiteDatabase db) {
+        // Create the user login table
+        db.execSQL("CREATE TABLE " + T_USERS + " (" +
+                C_USERNAME + " TEXT PRIMARY KEY, " +
+                C_PASSWORD + " TEXT NOT NULL)");
+
+        // Create the item inventory table
+        db.execSQL("CREATE TABLE " + T_ITEMS + " (" +
+                C_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                C_NAME + " TEXT NOT NULL, " +
+                C_QTY + " INTEGER NOT NULL DEFAULT 0, " +
+                C_LOCATION + " TEXT, " +
+                C_UPDATED_AT + " INTEGER NOT NULL)");
+    }
+
+    // Trigger body that counts the row (new. or old.) into its location,
+    // threshold is the SQL for the quantity at or below which the row is low on stock
+    private static String addToSummary(String row, String threshold) {
+        return "INSERT INTO " + T_LOCATION_SUMMARY + " VALUES (IFNULL(" + row + "." + C_LOCATION + ", ''), 1, " +
+                row + "." + C_QTY + ", " + row + "." + C_QTY + " <= " + threshold + ")" +
+                " ON CONFLICT(" + C_LOCATION + ") DO UPDATE SET " +
+                C_ITEM_COUNT + " = " + C_ITEM_COUNT + " + 1, " +
+                C_UNITS + " = " + C_UNITS + " + excluded." + C_UNITS + ", " +
+                C_LOW_STOCK_COUNT + " = " + C_LOW_STOCK_COUNT + " + excluded." + C_LOW_STOCK_COUNT + ";";
+    }
+
+    // Trigger body that takes the row back out of its location, dropping empty locations
+    private static String removeFromSummary(String row, String threshold) {
+        String where = " WHERE " + C_LOCATION + " = IFNULL(" + row + "." + C_LOCATION + ", '')";
+        return "UPDATE " + T_LOCATION_SUMMARY + " SET " +
+                C_ITEM_COUNT + " = " + C_ITEM_COUNT + " - 1, " +
+                C_UNITS + " = " + C_UNITS + " - " + row + "." + C_QTY + ", " +
+                C_LOW_STOCK_COUNT + " = " + C_LOW_STOCK_COUNT + " - (" + row + "." + C_QTY + " <= " + threshold + ")" +
+                where + "; " +
+                "DELETE FROM " + T_LOCATION_SUMMARY + where + " AND " + C_ITEM_COUNT + " = 0;";
+    }
+
+    // From 13 -> 14 on the location summary is keyed by location id, with each item's own threshold
+    private static String addToLocationSummary(String row) {
+        return "INSERT INTO " + T_LOCATION_SUMMARY + " VALUES (IFNULL(" + row + "." + C_LOCATION_ID + ", 0), 1, " +
+                row + "." + C_QTY + ", " + row + "." + C_QTY + " <= " + row + "." + C_LOW_STOCK_THRESHOLD + ")" +
+                " ON CONFLICT(" + C_LOCATION_ID + ") DO UPDATE SET " +
+                C_ITEM_COUNT + " = " + C_ITEM_COUNT + " + 1, " +
+                C_UNITS + " = " + C_UNITS + " + excluded." + C_UNITS + ", " +
+                C_LOW_STOCK_COUNT + " = " + C_LOW_STOCK_COUNT + " + excluded." + C_LOW_STOCK_COUNT + ";";
+    }
+
+    private static String removeFromLocationSummary(String row) {
+        String where = " WHERE " + C_LOCATION_ID + " = IFNULL(" + row + "." + C_LOCATION_ID + ", 0)";
+        return "UPDATE " + T_LOCATION_SUMMARY + " SET " +
+                C_ITEM_COUNT + " = " + C_ITEM_COUNT + " - 1, " +
+                C_UNITS + " = " + C_UNITS + " - " + row + "." + C_QTY + ", " +
+                C_LOW_STOCK_COUNT + " = " + C_LOW_STOCK_COUNT + " - (" + row + "." + C_QTY + " <= " + row + "." + C_LOW_STOCK_THRESHOLD + ")" +
+                where + "; " +
+                "DELETE FROM " + T_LOCATION_SUMMARY + where + " AND " + C_ITEM_COUNT + " = 0;";
+    }
+
+    // Run every step between the two versions in order
+    static void migrate(SQLiteDatabase db, int fromVersion, int toVersion) {
+        for (int version = fromVersion; version < toVersion; version++) {
+            step(version).migrate(db);
+        }
+    }
+
+    private static Migration step(int fromVersion) {
+        for (Migration step : STEPS) {
+            if (step.fromVersion == fromVersion) return step;
+        }
+        throw new IllegalStateException("No migration from database version " + fromVersion);
+    }
+}
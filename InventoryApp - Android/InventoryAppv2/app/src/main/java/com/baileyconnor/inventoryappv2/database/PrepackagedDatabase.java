@@ -0,0 +1,80 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// The database a new install starts from, holding the sample items, shipped ready made in
+// the app's assets and copied into place just before the database is first opened. That
+// one file copy replaces creating the schema, running every migration and inserting the
+// samples on the first launch. PrepackagedDatabaseTest writes the asset and checks that
+// it's still what a fresh database with the samples would be.
+//
+// Nothing is copied over an existing database. The copy is written next to the database
+// and renamed into place, so an interrupted copy is never opened. If the copy fails the
+// app starts with an empty database instead.
+public class PrepackagedDatabase {
+
+    // Where the database is in the app's assets
+    public static final String ASSET = "databases/" + DatabaseHelper.DB_NAME;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Opens the prepackaged database's bytes
+    public interface Source {
+        InputStream open() throws IOException;
+    }
+
+    private final Source source;
+
+    // Constructor (the source is injectable so the copy can be tested on the JVM)
+    public PrepackagedDatabase(Source source) {
+        this.source = source;
+    }
+
+    // The copy in the app's assets
+    public static PrepackagedDatabase fromAssets(Context context) {
+        Context app = context.getApplicationContext();
+        return new PrepackagedDatabase(() -> app.getAssets().open(ASSET));
+    }
+
+    // Returns true if the database was copied to target, false if there already was one
+    // or the copy failed
+    public boolean installTo(File target) {
+        if (target.exists()) return false;
+
+        File parent = target.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            System.out.println("ERROR: Couldn't create " + parent + " for the prepackaged database");
+            return false;
+        }
+
+        File partial = new File(target.getPath() + ".partial");
+        try (InputStream in = source.open(); FileOutputStream out = new FileOutputStream(partial)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            out.getFD().sync();
+        } catch (IOException e) {
+            System.out.println("ERROR: Couldn't copy the prepackaged database, starting with an empty one: " + e);
+            partial.delete();
+            return false;
+        }
+
+        // A log or journal left behind by an earlier database would be replayed into the copy
+        for (String suffix : new String[] { "-wal", "-shm", "-journal" }) {
+            new File(target.getPath() + suffix).delete();
+        }
+        if (!partial.renameTo(target)) {
+            System.out.println("ERROR: Couldn't move the prepackaged database into place, starting with an empty one");
+            partial.delete();
+            return false;
+        }
+        return true;
+    }
+}
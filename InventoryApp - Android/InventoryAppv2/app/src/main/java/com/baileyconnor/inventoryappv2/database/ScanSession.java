@@ -0,0 +1,128 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import com.baileyconnor.inventoryappv2.model.Item;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// A run of back-to-back barcode scans.
+// Every sku is read into memory when the session starts, so finding the item a scanned
+// sku belongs to is a map lookup and never a query; the item itself then comes from
+// the store, usually out of its ItemCache.
+//
+// The map is kept current with the store's ChangeFeed. Before each scan the ids written
+// since the last one are dropped (their sku may have changed, or the item is gone) and
+// looked up again the first time they're scanned. Skus that belong to no item are
+// remembered too, until the next write. Blocking, run it off the main thread.
+public class ScanSession {
+
+    private final InventoryStore store;
+    private final ChangeFeed feed;
+
+    // Both directions of the skus known to be current
+    private final Map<String, Long> ids = new HashMap<>();
+    private final Map<Long, String> skus = new HashMap<>();
+    // Scanned skus that no item had
+    private final Set<String> unknown = new HashSet<>();
+    private long syncedVersion;
+
+    // Scans answered from memory, lookups that went to the store, and full reloads
+    private long hits = 0;
+    private long misses = 0;
+    private long reloads = 0;
+
+    // Constructor
+    public ScanSession(InventoryStore store) {
+        this.store = store;
+        this.feed = store.getChangeFeed();
+        synchronized (this) {
+            reload();
+        }
+    }
+
+    // The item with the given sku, null if there is none
+    public synchronized Item scan(String sku) {
+        Long id = idOf(sku);
+        return id != null ? store.getItemById(id) : null;
+    }
+
+    // Id of the item with the given sku, null if there is none
+    public synchronized Long idOf(String sku) {
+        String key = DatabaseHelper.normalizeSku(sku);
+        if (key == null) return null;
+        catchUp();
+
+        Long id = ids.get(key);
+        if (id != null || unknown.contains(key)) {
+            hits++;
+            return id;
+        }
+
+        misses++;
+        Item item = store.getItemBySku(key);
+        if (item == null) {
+            unknown.add(key);
+            return null;
+        }
+        put(key, item.getId());
+        return item.getId();
+    }
+
+    public synchronized int size() {
+        return ids.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getReloads() {
+        return reloads;
+    }
+
+    // --- --- Helper Functions --- --- \\
+
+    // Forget whatever was written since the last scan
+    private void catchUp() {
+        ChangeFeed.Changes changes = feed.changesSince(syncedVersion);
+        if (changes.isEmpty()) return;
+        if (changes.everything) {
+            reload();
+            return;
+        }
+
+        // Any changed item could have been given one of the unknown skus
+        unknown.clear();
+        for (long id : changes.ids) {
+            String sku = skus.remove(id);
+            if (sku != null) ids.remove(sku);
+        }
+        syncedVersion = changes.version;
+    }
+
+    private void reload() {
+        // Read the version first, a write landing during the load is then seen again
+        long version = feed.version();
+        ids.clear();
+        skus.clear();
+        unknown.clear();
+        for (Map.Entry<String, Long> entry : store.getSkuIndex().entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+        syncedVersion = version;
+        reloads++;
+    }
+
+    private void put(String sku, long id) {
+        // The item may have had a different sku before
+        String previous = skus.put(id, sku);
+        if (previous != null && !previous.equals(sku)) ids.remove(previous);
+        ids.put(sku, id);
+    }
+}
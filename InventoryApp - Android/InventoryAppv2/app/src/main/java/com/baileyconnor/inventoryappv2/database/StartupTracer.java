@@ -0,0 +1,108 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import android.os.Trace;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Times the phases of a cold start: opening the database (copying in the prepackaged one
+// on the first run), the inventory grid's first page query and binding that page up to the
+// grid's first frame. Each phase is also an async trace section, so it shows up by name in
+// a Perfetto or systrace capture even when it starts and ends on different threads.
+//
+// Times are measured from when the tracer was created, the app's tracer is created first
+// thing in InventoryApp.onCreate. A phase is only recorded the first time, later begin()
+// and end() calls for it are ignored, so the screens can call them on every load.
+// The finished phases are shown on the Database Metrics screen.
+public class StartupTracer {
+
+    public static final String DB_OPEN = "db open";
+    public static final String FIRST_QUERY = "first query";
+    public static final String FIRST_BIND = "first bind";
+
+    private static StartupTracer instance;
+
+    private final long createdAt = System.nanoTime();
+    // Whether the phases are also emitted as system trace sections
+    private final boolean systemTrace;
+
+    // Begin and end times of each phase in nanoseconds since createdAt, -1 until it ends.
+    // In the order the phases began, guarded by this.
+    private final Map<String, long[]> phases = new LinkedHashMap<>();
+
+    // Shared instance timing the app's own start
+    public static synchronized StartupTracer getInstance() {
+        if (instance == null) {
+            instance = new StartupTracer(true);
+        }
+        return instance;
+    }
+
+    // Constructor (without the system trace sections the tracer also works in plain JVM tests)
+    public StartupTracer(boolean systemTrace) {
+        this.systemTrace = systemTrace;
+    }
+
+    // --- --- Recording --- --- \\
+
+    public synchronized void begin(String phase) {
+        if (phases.containsKey(phase)) return;
+        phases.put(phase, new long[] { System.nanoTime() - createdAt, -1 });
+        if (systemTrace) Trace.beginAsyncSection(sectionName(phase), cookie(phase));
+    }
+
+    public synchronized void end(String phase) {
+        long[] times = phases.get(phase);
+        if (times == null || times[1] != -1) return;
+        times[1] = System.nanoTime() - createdAt;
+        if (systemTrace) Trace.endAsyncSection(sectionName(phase), cookie(phase));
+    }
+
+    // --- --- Reading --- --- \\
+
+    // How long the phase took, -1 if it hasn't ended
+    public synchronized double durationMs(String phase) {
+        long[] times = phases.get(phase);
+        return times == null || times[1] == -1 ? -1 : (times[1] - times[0]) / 1e6;
+    }
+
+    // How long after the tracer was created the phase ended, -1 if it hasn't.
+    // For FIRST_BIND this is the time to the grid's first frame.
+    public synchronized double endedAtMs(String phase) {
+        long[] times = phases.get(phase);
+        return times == null || times[1] == -1 ? -1 : times[1] / 1e6;
+    }
+
+    // Phases that have ended, in the order they began
+    public synchronized List<String> finished() {
+        List<String> finished = new ArrayList<>();
+        for (Map.Entry<String, long[]> entry : phases.entrySet()) {
+            if (entry.getValue()[1] != -1) finished.add(entry.getKey());
+        }
+        return finished;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder out = new StringBuilder();
+        for (String phase : finished()) {
+            if (out.length() > 0) out.append(", ");
+            out.append(String.format(Locale.US, "%s %.1f ms (done at %.1f ms)", phase, durationMs(phase), endedAtMs(phase)));
+        }
+        return out.toString();
+    }
+
+    // --- --- Helper Functions --- --- \\
+
+    private static String sectionName(String phase) {
+        return "startup: " + phase;
+    }
+
+    // Sections with the same name need the same cookie to be matched up, each phase only runs once
+    private static int cookie(String phase) {
+        return phase.hashCode();
+    }
+}
@@ -0,0 +1,53 @@
+package com.baileyconnor.inventoryappv2.forecast;
+
+// Estimates how fast an item is being used up and when it will run out.
+//
+// The only state per item is the smoothed consumption rate and the time it was last
+// updated, so each quantity change is O(1) and history is never re-read. The rate is a
+// time-weighted exponential moving average: an observation dt after the last one gets the
+// weight 1 - e^(-dt / smoothing), so a burst of quick decrements adds up to roughly the
+// units taken divided by the smoothing time instead of a huge instantaneous rate, and
+// steady use of c units every d days settles on exactly c / d per day.
+// Restocks don't count as consumption, the rate just decays over the interval.
+public class DepletionForecaster {
+
+    public static final long DAY_MS = 24L * 60 * 60 * 1000;
+    public static final long DEFAULT_SMOOTHING_MS = 7 * DAY_MS;
+
+    // Forecasts further out than this are treated as "not running out"
+    public static final double MAX_FORECAST_DAYS = 3650;
+
+    // Returned by depletesAt when the item isn't being used up
+    public static final long NEVER = -1;
+
+    private final double smoothingMs;
+
+    // Constructor
+    public DepletionForecaster(long smoothingMs) {
+        this.smoothingMs = smoothingMs;
+    }
+
+    // Consumption rate in units per day after the quantity moved from oldQuantity to
+    // newQuantity at time now, given the rate last updated at lastObservedAt
+    public double nextRate(double rate, long lastObservedAt, int oldQuantity, int newQuantity, long now) {
+        double consumed = Math.max(0, oldQuantity - newQuantity);
+        double dt = Math.max(0, now - lastObservedAt);
+
+        if (dt == 0) {
+            // Same instant: the limit of the average below as dt goes to 0
+            return rate + consumed * DAY_MS / smoothingMs;
+        }
+        double weight = 1 - Math.exp(-dt / smoothingMs);
+        double observed = consumed * DAY_MS / dt;
+        return rate + weight * (observed - rate);
+    }
+
+    // When the quantity reaches zero at the given rate, or NEVER
+    public static long depletesAt(double ratePerDay, int quantity, long now) {
+        if (quantity <= 0) return now;
+        if (ratePerDay <= 0) return NEVER;
+
+        double days = quantity / ratePerDay;
+        return days > MAX_FORECAST_DAYS ? NEVER : now + (long) (days * DAY_MS);
+    }
+}
@@ -0,0 +1,140 @@
+package com.baileyconnor.inventoryappv2.importer;
+
+import com.baileyconnor.inventoryappv2.model.Item;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Reads items from CSV with a header row naming the columns: name, quantity (or qty)
+// and an optional location. Quoted fields may contain commas, "" and line breaks.
+// Only the current record is kept in memory.
+public class CsvItemReader implements ItemRowReader {
+
+    private final Reader in;
+    private int nameCol = -1, qtyCol = -1, locCol = -1;
+    private long row = 0;
+    private int peeked = -2;
+
+    // Constructor (pass a BufferedReader, the input is read one char at a time).
+    // Nothing is read until the first call to next().
+    public CsvItemReader(Reader in) {
+        this.in = in;
+    }
+
+    @Override
+    public Item next() throws IOException {
+        if (nameCol == -1) readHeader();
+
+        List<String> fields;
+        do {
+            fields = readRecord();
+            if (fields == null) return null;
+            row++;
+        } while (fields.size() == 1 && fields.get(0).trim().isEmpty()); // skip blank lines
+
+        String name = field(fields, nameCol);
+        String qty = field(fields, qtyCol);
+        String location = locCol == -1 ? "" : field(fields, locCol);
+
+        if (name.isEmpty()) throw new ImportRowException(row, "name is empty");
+        int quantity;
+        try {
+            quantity = Integer.parseInt(qty);
+        } catch (NumberFormatException error) {
+            throw new ImportRowException(row, "quantity \"" + qty + "\" is not a number");
+        }
+        if (quantity < 0) throw new ImportRowException(row, "quantity cannot be negative");
+
+        return new Item(name, quantity, location);
+    }
+
+    @Override
+    public long row() {
+        return row;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // --- --- Helper Functions --- --- \\
+
+    private void readHeader() throws IOException {
+        List<String> header = readRecord();
+        if (header == null) throw new IOException("The CSV file is empty");
+
+        for (int i = 0; i < header.size(); i++) {
+            String column = header.get(i).trim().toLowerCase(Locale.ROOT);
+            if (column.startsWith("\uFEFF")) column = column.substring(1); // byte order mark
+            switch (column) {
+                case "name": nameCol = i; break;
+                case "quantity": case "qty": qtyCol = i; break;
+                case "location": locCol = i; break;
+                default: break;
+            }
+        }
+        if (nameCol == -1 || qtyCol == -1) {
+            throw new IOException("The CSV header must have name and quantity columns");
+        }
+    }
+
+    private static String field(List<String> fields, int col) {
+        return col < fields.size() ? fields.get(col).trim() : "";
+    }
+
+    // Reads one record, or returns null at the end of the input
+    private List<String> readRecord() throws IOException {
+        int c = read();
+        if (c == -1) return null;
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        while (true) {
+            if (quoted) {
+                if (c == -1) throw new ImportRowException(row + 1, "unterminated quoted field");
+                if (c == '"') {
+                    if (peek() == '"') {
+                        read();
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c == '\r' || c == -1) {
+                if (c == '\r' && peek() == '\n') read();
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    private int read() throws IOException {
+        if (peeked != -2) {
+            int c = peeked;
+            peeked = -2;
+            return c;
+        }
+        return in.read();
+    }
+
+    private int peek() throws IOException {
+        if (peeked == -2) peeked = in.read();
+        return peeked;
+    }
+}
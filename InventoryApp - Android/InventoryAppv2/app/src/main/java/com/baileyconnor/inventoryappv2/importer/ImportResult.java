@@ -0,0 +1,36 @@
+package com.baileyconnor.inventoryappv2.importer;
+
+// Running totals of an import, also used for progress updates
+public class ImportResult {
+    public final long rowsRead;
+    public final long inserted;
+    public final long updated;
+    public final long skipped;
+    public final long elapsedMs;
+    // Set when the file couldn't be read any further, rows before that are kept
+    public final String error;
+
+    public ImportResult(long rowsRead, long inserted, long updated, long skipped, long elapsedMs) {
+        this(rowsRead, inserted, updated, skipped, elapsedMs, null);
+    }
+
+    public ImportResult(long rowsRead, long inserted, long updated, long skipped, long elapsedMs, String error) {
+        this.rowsRead = rowsRead;
+        this.inserted = inserted;
+        this.updated = updated;
+        this.skipped = skipped;
+        this.elapsedMs = elapsedMs;
+        this.error = error;
+    }
+
+    // Rows read per second so far
+    public long rowsPerSecond() {
+        return elapsedMs == 0 ? rowsRead : rowsRead * 1000 / elapsedMs;
+    }
+
+    @Override
+    public String toString() {
+        return rowsRead + " rows (" + inserted + " new, " + updated + " updated, " + skipped + " skipped) in "
+                + elapsedMs + " ms, " + rowsPerSecond() + " rows/s";
+    }
+}
@@ -0,0 +1,10 @@
+package com.baileyconnor.inventoryappv2.importer;
+
+import java.io.IOException;
+
+// A single bad row; the importer skips it and keeps going
+public class ImportRowException extends IOException {
+    public ImportRowException(long row, String message) {
+        super("Row " + row + ": " + message);
+    }
+}
@@ -0,0 +1,91 @@
+package com.baileyconnor.inventoryappv2.importer;
+
+import com.baileyconnor.inventoryappv2.database.DatabaseHelper;
+import com.baileyconnor.inventoryappv2.database.InventoryStore;
+import com.baileyconnor.inventoryappv2.model.Item;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Bulk import pipeline: streams rows from an ItemRowReader, skips invalid rows and
+// writes the rest with upsert-by-name/location in chunked transactions.
+// At most one chunk of items is held in memory, whatever the size of the file.
+public class ItemImporter {
+
+    public interface ProgressListener {
+        void onProgress(ImportResult progress);
+    }
+
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    // Keep the first few row errors so they can be shown to the user
+    private static final int MAX_ERRORS_KEPT = 20;
+
+    private final InventoryStore store;
+    private final int chunkSize;
+    private final List<String> errors = new ArrayList<>();
+
+    public ItemImporter(InventoryStore store) {
+        this(store, DEFAULT_CHUNK_SIZE);
+    }
+
+    public ItemImporter(InventoryStore store, int chunkSize) {
+        this.store = store;
+        this.chunkSize = chunkSize;
+    }
+
+    // Runs the import on the calling thread; the listener is called after each chunk.
+    // If the file can't be read any further, or a chunk can't be written, the chunks
+    // already written are kept and the result carries the error. Nothing is thrown.
+    public ImportResult run(ItemRowReader reader, ProgressListener listener) {
+        long start = System.currentTimeMillis();
+        long rows = 0, inserted = 0, updated = 0, skipped = 0;
+        List<Item> chunk = new ArrayList<>(chunkSize);
+        String failure = null;
+
+        try (ItemRowReader in = reader) {
+            while (true) {
+                Item item;
+                try {
+                    item = in.next();
+                } catch (ImportRowException error) {
+                    rows++;
+                    skipped++;
+                    if (errors.size() < MAX_ERRORS_KEPT) errors.add(error.getMessage());
+                    continue;
+                }
+
+                if (item != null) {
+                    rows++;
+                    chunk.add(item);
+                }
+
+                if (chunk.size() == chunkSize || (item == null && !chunk.isEmpty())) {
+                    for (int outcome : store.upsertItems(chunk)) {
+                        if (outcome == DatabaseHelper.UPSERT_INSERTED) inserted++;
+                        else if (outcome == DatabaseHelper.UPSERT_UPDATED) updated++;
+                        else skipped++;
+                    }
+                    chunk.clear();
+                    if (listener != null) {
+                        listener.onProgress(new ImportResult(rows, inserted, updated, skipped,
+                                System.currentTimeMillis() - start));
+                    }
+                }
+
+                if (item == null) break;
+            }
+        } catch (IOException | RuntimeException error) {
+            System.out.println("ERROR: The import stopped after " + rows + " rows: " + error);
+            failure = error.getMessage() != null ? error.getMessage() : error.toString();
+        }
+
+        return new ImportResult(rows, inserted, updated, skipped, System.currentTimeMillis() - start, failure);
+    }
+
+    // Messages for the first rows that were skipped
+    public List<String> getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,16 @@
+package com.baileyconnor.inventoryappv2.importer;
+
+import com.baileyconnor.inventoryappv2.model.Item;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+// Streams items out of an import file one row at a time
+public interface ItemRowReader extends Closeable {
+    // Returns the next row, or null at the end of the file.
+    // Throws ImportRowException for a row that can't be turned into an Item.
+    Item next() throws IOException;
+
+    // 1-based row number of the last row returned, used in error messages
+    long row();
+}
@@ -0,0 +1,110 @@
+package com.baileyconnor.inventoryappv2.importer;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import com.baileyconnor.inventoryappv2.model.Item;
+
+import java.io.IOException;
+import java.io.Reader;
+
+// Reads items from a JSON array of objects with name, quantity and location keys
+// (the same shape the inventory API returns). Other keys are skipped.
+// The array is streamed, so only the current object is kept in memory.
+// An element that isn't an object, or a value of the wrong type, is skipped as a bad
+// row; a file that isn't an array at all can't be read.
+public class JsonItemReader implements ItemRowReader {
+
+    private final JsonReader json;
+    private long row = 0;
+    private boolean started = false;
+
+    public JsonItemReader(Reader in) {
+        this.json = new JsonReader(in);
+    }
+
+    @Override
+    public Item next() throws IOException {
+        if (!started) {
+            JsonToken first = json.peek();
+            if (first != JsonToken.BEGIN_ARRAY) throw new IOException("Expected an array of items but found " + first);
+            json.beginArray();
+            started = true;
+        }
+        if (!json.hasNext()) {
+            return null;
+        }
+        row++;
+
+        JsonToken element = json.peek();
+        if (element != JsonToken.BEGIN_OBJECT) {
+            json.skipValue();
+            throw new ImportRowException(row, "expected an object but found " + element);
+        }
+
+        String name = null, location = "";
+        Integer quantity = null;
+        boolean badName = false, badQuantity = false, badLocation = false;
+
+        // The whole object is read before a bad value is reported, so the next row starts on the next element
+        json.beginObject();
+        while (json.hasNext()) {
+            String key = json.nextName();
+            JsonToken token = json.peek();
+            if (token == JsonToken.NULL) {
+                json.skipValue();
+                continue;
+            }
+            // nextString() and nextInt() only take strings and numbers
+            boolean scalar = token == JsonToken.STRING || token == JsonToken.NUMBER;
+            switch (key) {
+                case "name":
+                    if (scalar) {
+                        name = json.nextString().trim();
+                        continue;
+                    }
+                    badName = true;
+                    break;
+                case "quantity":
+                    if (scalar) {
+                        try {
+                            quantity = json.nextInt();
+                            continue;
+                        } catch (NumberFormatException error) {
+                            // Left unread, skipped below
+                        }
+                    }
+                    badQuantity = true;
+                    break;
+                case "location":
+                    if (scalar) {
+                        location = json.nextString().trim();
+                        continue;
+                    }
+                    badLocation = true;
+                    break;
+            }
+            // Unknown keys and values of the wrong type
+            json.skipValue();
+        }
+        json.endObject();
+
+        if (badName) throw new ImportRowException(row, "name is not a string");
+        if (name == null || name.isEmpty()) throw new ImportRowException(row, "name is missing");
+        if (quantity == null || badQuantity) throw new ImportRowException(row, "quantity is missing or not a number");
+        if (badLocation) throw new ImportRowException(row, "location is not a string");
+        if (quantity < 0) throw new ImportRowException(row, "quantity cannot be negative");
+
+        return new Item(name, quantity, location);
+    }
+
+    @Override
+    public long row() {
+        return row;
+    }
+
+    @Override
+    public void close() throws IOException {
+        json.close();
+    }
+}
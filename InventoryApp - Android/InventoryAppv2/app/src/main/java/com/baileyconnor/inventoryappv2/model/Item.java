@@ -5,6 +5,9 @@ public class Item {
     private String name;
     private int quantity;
     private String location;
+    // Barcode the item is scanned by, null if it has none
+    private String sku;
+    private long updatedAt;
 
     // Constructor
     public Item(long id, String name, int quantity, String location) {
@@ -22,17 +25,28 @@ public class Item {
         this(0, name, quantity, location);
     }
 
+    // Copy Constructor
+    public Item(Item other) {
+        this(other.id, other.name, other.quantity, other.location);
+        this.sku = other.sku;
+        this.updatedAt = other.updatedAt;
+    }
+
     // Getters
     public long getId() { return  id; }
     public String getName() { return name; }
     public int getQuantity() { return quantity; }
     public String getLocation() { return location; }
+    public String getSku() { return sku; }
+    public long getUpdatedAt() { return updatedAt; }
 
     // Setters
     public void setId(long id) { this.id = id; }
     public void setName(String name) { this.name = name; }
     public void setQuantity(int quantity) { this.quantity = quantity; }
     public void setLocation(String location) { this.location = location; }
+    public void setSku(String sku) { this.sku = sku; }
+    public void setUpdatedAt(long updatedAt) { this.updatedAt = updatedAt; }
 
 
 }
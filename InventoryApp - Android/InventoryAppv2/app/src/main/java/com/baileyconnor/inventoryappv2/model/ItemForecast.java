@@ -0,0 +1,29 @@
+package com.baileyconnor.inventoryappv2.model;
+
+import com.baileyconnor.inventoryappv2.forecast.DepletionForecaster;
+
+// An item with its estimated consumption rate and the time it's expected to run out
+public class ItemForecast {
+    private final Item item;
+    private final double unitsPerDay;
+    private final long depletesAt;
+
+    // Constructor
+    public ItemForecast(Item item, double unitsPerDay, long depletesAt) {
+        this.item = item;
+        this.unitsPerDay = unitsPerDay;
+        this.depletesAt = depletesAt;
+    }
+
+    // Getters
+    public Item getItem() { return item; }
+    public double getUnitsPerDay() { return unitsPerDay; }
+    // DepletionForecaster.NEVER if the item isn't being used up
+    public long getDepletesAt() { return depletesAt; }
+
+    // Estimated days until empty, or -1 if the item isn't being used up
+    public double daysUntilEmpty(long now) {
+        if (depletesAt == DepletionForecaster.NEVER) return -1;
+        return Math.max(0, (depletesAt - now) / (double) DepletionForecaster.DAY_MS);
+    }
+}
@@ -0,0 +1,38 @@
+package com.baileyconnor.inventoryappv2.model;
+
+// What the inventory grid shows for an item. The full Item is only loaded when it's opened.
+// location and updatedAt are what the grid may be sorted and paged on (see ItemQuery),
+// they aren't displayed.
+public class ItemSummary {
+    private final long id;
+    private final String name;
+    private final int quantity;
+    private final String location;
+    private final long updatedAt;
+
+    // Constructor
+    public ItemSummary(long id, String name, int quantity, String location, long updatedAt) {
+        this.id = id;
+        this.name = name;
+        this.quantity = quantity;
+        this.location = location;
+        this.updatedAt = updatedAt;
+    }
+
+    // Without a location, for rows that are only ever sorted by updatedAt
+    public ItemSummary(long id, String name, int quantity, long updatedAt) {
+        this(id, name, quantity, null, updatedAt);
+    }
+
+    // Summary of an item that was loaded in full (e.g. a search result)
+    public ItemSummary(Item item) {
+        this(item.getId(), item.getName(), item.getQuantity(), item.getLocation(), item.getUpdatedAt());
+    }
+
+    // Getters
+    public long getId() { return id; }
+    public String getName() { return name; }
+    public int getQuantity() { return quantity; }
+    public String getLocation() { return location; }
+    public long getUpdatedAt() { return updatedAt; }
+}
@@ -0,0 +1,23 @@
+package com.baileyconnor.inventoryappv2.model;
+
+// Totals for one location (bay), or for the whole warehouse when location is null
+public class LocationSummary {
+    private final String location;
+    private final int itemCount;
+    private final long units;
+    private final int lowStockCount;
+
+    // Constructor
+    public LocationSummary(String location, int itemCount, long units, int lowStockCount) {
+        this.location = location;
+        this.itemCount = itemCount;
+        this.units = units;
+        this.lowStockCount = lowStockCount;
+    }
+
+    // Getters
+    public String getLocation() { return location; }
+    public int getItemCount() { return itemCount; }
+    public long getUnits() { return units; }
+    public int getLowStockCount() { return lowStockCount; }
+}
@@ -0,0 +1,30 @@
+package com.baileyconnor.inventoryappv2.model;
+
+// One item's quantity going from oldQuantity to newQuantity in a committed write.
+// threshold is the item's low stock threshold at the time of the change.
+public class QuantityChange {
+    public final long itemId;
+    public final String name;
+    public final int oldQuantity;
+    public final int newQuantity;
+    public final int threshold;
+
+    // Constructor
+    public QuantityChange(long itemId, String name, int oldQuantity, int newQuantity, int threshold) {
+        this.itemId = itemId;
+        this.name = name;
+        this.oldQuantity = oldQuantity;
+        this.newQuantity = newQuantity;
+        this.threshold = threshold;
+    }
+
+    // At or below the threshold after the change
+    public boolean isLow() {
+        return newQuantity <= threshold;
+    }
+
+    // Was above the threshold and now isn't
+    public boolean crossedBelow() {
+        return oldQuantity > threshold && newQuantity <= threshold;
+    }
+}
@@ -0,0 +1,22 @@
+package com.baileyconnor.inventoryappv2.model;
+
+// An item as exchanged with the inventory API during a sync.
+// remoteId is the API's uuid for the item, localId is 0 for items pulled from the API.
+public class SyncItem {
+    public final long localId;
+    public final String remoteId;
+    public final String name;
+    public final int quantity;
+    public final String location;
+    public final long updatedAt;
+
+    // Constructor
+    public SyncItem(long localId, String remoteId, String name, int quantity, String location, long updatedAt) {
+        this.localId = localId;
+        this.remoteId = remoteId;
+        this.name = name;
+        this.quantity = quantity;
+        this.location = location;
+        this.updatedAt = updatedAt;
+    }
+}
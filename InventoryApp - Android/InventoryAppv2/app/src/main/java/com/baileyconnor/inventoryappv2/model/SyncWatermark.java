@@ -0,0 +1,17 @@
+package com.baileyconnor.inventoryappv2.model;
+
+// Position of the last change pulled from the inventory API: its updated_at (epoch
+// milliseconds) and uuid, which breaks ties between rows changed in the same second
+public class SyncWatermark {
+    // Nothing pulled yet
+    public static final SyncWatermark NONE = new SyncWatermark(0, "");
+
+    public final long updatedAt;
+    public final String remoteId;
+
+    // Constructor
+    public SyncWatermark(long updatedAt, String remoteId) {
+        this.updatedAt = updatedAt;
+        this.remoteId = remoteId;
+    }
+}
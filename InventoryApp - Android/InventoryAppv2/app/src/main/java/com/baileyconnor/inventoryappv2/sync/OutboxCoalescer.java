@@ -0,0 +1,70 @@
+package com.baileyconnor.inventoryappv2.sync;
+
+import java.util.Objects;
+
+import static com.baileyconnor.inventoryappv2.sync.PendingChange.CREATE;
+import static com.baileyconnor.inventoryappv2.sync.PendingChange.DELETE;
+import static com.baileyconnor.inventoryappv2.sync.PendingChange.UPDATE;
+
+// Folds the pending changes to one item into a single change, so the outbox holds at
+// most one entry per item however many times it's edited offline. Five +1s become one
+// +5, a set quantity followed by +2 becomes the set quantity plus 2, an update followed
+// by a delete becomes the delete, and a create followed by a delete becomes nothing.
+public final class OutboxCoalescer {
+
+    private OutboxCoalescer() {}
+
+    // The single change equivalent to pending followed by next, or null if together they
+    // amount to nothing. sent is true once pending (or an earlier version of it) has been
+    // handed to the API: it may have been applied, so a create can no longer be cancelled.
+    public static PendingChange merge(PendingChange pending, PendingChange next, boolean sent) {
+        if (pending == null) return next;
+        // Ids aren't reused, nothing else can happen to a deleted item
+        if (pending.kind == DELETE) return pending;
+        if (next.kind == DELETE) return pending.kind == CREATE && !sent ? null : next;
+        if (next.kind == CREATE) return next;
+
+        // next is an update, laid over whatever pending set
+        String name = next.name != null ? next.name : pending.name;
+        boolean locationSet = next.locationSet || pending.locationSet;
+        String location = next.locationSet ? next.location : pending.location;
+
+        Integer quantity;
+        int delta;
+        if (next.quantity != null) {
+            quantity = next.quantity;
+            delta = 0;
+        } else if (pending.quantity != null) {
+            quantity = pending.quantity + next.quantityDelta;
+            delta = 0;
+        } else {
+            quantity = null;
+            delta = pending.quantityDelta + next.quantityDelta;
+        }
+        return new PendingChange(pending.kind, name, quantity, delta, locationSet, location);
+    }
+
+    // What is still to be sent of current once sent, an earlier version of it, has been
+    // applied by the API. Null if nothing is left.
+    public static PendingChange remaining(PendingChange current, PendingChange sent) {
+        if (current == null) return null;
+        if (current.kind == DELETE) return sent.kind == DELETE ? null : current;
+
+        // The item exists on the API now, only what changed since has to follow
+        String name = current.name != null && !current.name.equals(sent.name) ? current.name : null;
+        boolean locationSet = current.locationSet && !(sent.locationSet && Objects.equals(current.location, sent.location));
+        String location = locationSet ? current.location : null;
+
+        Integer quantity = null;
+        int delta = 0;
+        if (current.quantity != null) {
+            if (!current.quantity.equals(sent.quantity)) quantity = current.quantity;
+        } else {
+            // Both are relative, merging never turns a set quantity back into a delta
+            delta = current.quantityDelta - sent.quantityDelta;
+        }
+
+        PendingChange left = new PendingChange(UPDATE, name, quantity, delta, locationSet, location);
+        return left.isEmpty() ? null : left;
+    }
+}
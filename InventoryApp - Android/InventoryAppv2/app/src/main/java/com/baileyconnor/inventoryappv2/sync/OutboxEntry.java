@@ -0,0 +1,19 @@
+package com.baileyconnor.inventoryappv2.sync;
+
+// A row of the outbox: the coalesced change waiting to be sent for one item.
+// version goes up every time another change is merged in, attempts counts how many
+// times it has been handed to the API.
+public class OutboxEntry {
+    public final String remoteId;
+    public final long version;
+    public final int attempts;
+    public final PendingChange change;
+
+    // Constructor
+    public OutboxEntry(String remoteId, long version, int attempts, PendingChange change) {
+        this.remoteId = remoteId;
+        this.version = version;
+        this.attempts = attempts;
+        this.change = change;
+    }
+}
@@ -0,0 +1,84 @@
+package com.baileyconnor.inventoryappv2.sync;
+
+import java.util.Objects;
+
+// A change to one item that hasn't reached the inventory API yet.
+// Fields that weren't changed are left unset: name is null, locationSet is false, and
+// quantity is null when the quantity was only moved by quantityDelta (or not at all).
+public final class PendingChange {
+    public static final int CREATE = 1;
+    public static final int UPDATE = 2;
+    public static final int DELETE = 3;
+
+    public final int kind;
+    public final String name;
+    public final Integer quantity;
+    public final int quantityDelta;
+    public final boolean locationSet;
+    public final String location;
+
+    // Constructor
+    public PendingChange(int kind, String name, Integer quantity, int quantityDelta, boolean locationSet, String location) {
+        this.kind = kind;
+        this.name = name;
+        this.quantity = quantity;
+        this.quantityDelta = quantityDelta;
+        this.locationSet = locationSet;
+        this.location = location;
+    }
+
+    public static PendingChange create(String name, int quantity, String location) {
+        return new PendingChange(CREATE, name, quantity, 0, true, location);
+    }
+
+    // Every field written at once, like updateItem
+    public static PendingChange update(String name, int quantity, String location) {
+        return new PendingChange(UPDATE, name, quantity, 0, true, location);
+    }
+
+    public static PendingChange adjustQuantity(int delta) {
+        return new PendingChange(UPDATE, null, null, delta, false, null);
+    }
+
+    public static PendingChange setQuantity(int quantity) {
+        return new PendingChange(UPDATE, null, quantity, 0, false, null);
+    }
+
+    public static PendingChange rename(String name) {
+        return new PendingChange(UPDATE, name, null, 0, false, null);
+    }
+
+    public static PendingChange move(String location) {
+        return new PendingChange(UPDATE, null, null, 0, true, location);
+    }
+
+    public static PendingChange delete() {
+        return new PendingChange(DELETE, null, null, 0, false, null);
+    }
+
+    // An update that doesn't change anything
+    public boolean isEmpty() {
+        return kind == UPDATE && name == null && quantity == null && quantityDelta == 0 && !locationSet;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof PendingChange)) return false;
+        PendingChange that = (PendingChange) other;
+        return kind == that.kind && quantityDelta == that.quantityDelta && locationSet == that.locationSet
+                && Objects.equals(name, that.name) && Objects.equals(quantity, that.quantity)
+                && Objects.equals(location, that.location);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, name, quantity, quantityDelta, locationSet, location);
+    }
+
+    @Override
+    public String toString() {
+        String kindName = kind == CREATE ? "create" : kind == UPDATE ? "update" : "delete";
+        return kindName + "{name=" + name + ", quantity=" + quantity + ", delta=" + quantityDelta +
+                (locationSet ? ", location=" + location : "") + "}";
+    }
+}
@@ -0,0 +1,204 @@
+package com.baileyconnor.inventoryappv2.sync;
+
+import com.baileyconnor.inventoryappv2.database.InventoryStore;
+import com.baileyconnor.inventoryappv2.model.SyncItem;
+import com.baileyconnor.inventoryappv2.model.SyncWatermark;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+// Two-way delta sync between the local items table and the inventory API.
+//
+// Push: the outbox holds one coalesced change per item changed locally (see
+// OutboxCoalescer), it is drained in batches. Creates are sent as whole items, updates only
+// carry the fields that changed and a relative quantity change stays relative. A batch that
+// fails, or an entry the API rejects, is retried with exponential backoff. Note a relative
+// change whose response is lost may be applied twice when it's retried.
+// Pull: only rows changed after the stored watermark are fetched, a page at a time. Each
+// page is applied in one transaction together with the new watermark, so an interrupted
+// sync resumes where it stopped. Local changes that haven't been pushed yet win over pulled
+// ones; they go out on the next push.
+//
+// Deletes made on the API aren't pulled, it keeps no record of deleted rows.
+// sync() does network I/O, call it from a background thread. The app runs it through
+// InventoryRepository.sync(), from Sync now on the inventory screen or the Sync screen.
+public class SyncEngine {
+
+    static final int PUSH_BATCH_SIZE = 200;
+    static final int PULL_PAGE_SIZE = 500;
+
+    // Wait before retrying an outbox entry: doubles with every failed attempt, up to the max
+    static final long RETRY_BASE_MS = 5_000;
+    static final long RETRY_MAX_MS = 60 * 60 * 1000;
+
+    private final InventoryStore store;
+    private final SyncTransport transport;
+    private final LongSupplier clock;
+
+    // Constructor
+    public SyncEngine(InventoryStore store, SyncTransport transport) {
+        this(store, transport, System::currentTimeMillis);
+    }
+
+    // Constructor (the clock is injectable so retries can be tested)
+    public SyncEngine(InventoryStore store, SyncTransport transport, LongSupplier clock) {
+        this.store = store;
+        this.transport = transport;
+        this.clock = clock;
+    }
+
+    public SyncResult sync() throws IOException {
+        long start = System.nanoTime();
+        long sentBefore = transport.bytesSent();
+        long receivedBefore = transport.bytesReceived();
+
+        int[] pushed = push();
+        int[] pulled = pull();
+
+        return new SyncResult(pushed[0], pushed[1], pushed[2], pulled[0], pulled[1],
+                transport.bytesSent() - sentBefore, transport.bytesReceived() - receivedBefore,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // --- --- Helper Functions --- --- \\
+
+    // Returns { changes pushed, deletes pushed, rejected }
+    private int[] push() throws IOException {
+        int[] counts = new int[3];
+        long now = clock.getAsLong();
+
+        while (true) {
+            // Rejected entries are deferred past now, so every batch holds new entries
+            List<OutboxEntry> batch = store.claimOutbox(now, PUSH_BATCH_SIZE);
+            if (batch.isEmpty()) return counts;
+
+            JSONObject response;
+            try {
+                response = transport.post("/sync/push", pushBody(batch));
+            } catch (IOException error) {
+                store.deferOutbox(retryTimes(batch, now));
+                throw error;
+            }
+            Set<String> rejected = rejectedIds(response);
+
+            List<OutboxEntry> accepted = new ArrayList<>(batch.size());
+            List<OutboxEntry> failed = new ArrayList<>();
+            for (OutboxEntry entry : batch) {
+                if (rejected.contains(entry.remoteId)) {
+                    failed.add(entry);
+                } else {
+                    accepted.add(entry);
+                    counts[entry.change.kind == PendingChange.DELETE ? 1 : 0]++;
+                }
+            }
+            store.acknowledgeOutbox(accepted);
+            if (!failed.isEmpty()) store.deferOutbox(retryTimes(failed, now));
+            counts[2] += failed.size();
+        }
+    }
+
+    // Returns { rows pulled, rows applied }
+    private int[] pull() throws IOException {
+        int[] counts = new int[2];
+        SyncWatermark watermark = store.getPullWatermark();
+
+        boolean more = true;
+        while (more) {
+            JSONObject page = transport.get("/sync/changes?since=" + watermark.updatedAt +
+                    "&after_id=" + URLEncoder.encode(watermark.remoteId, StandardCharsets.UTF_8.name()) +
+                    "&limit=" + PULL_PAGE_SIZE);
+            try {
+                List<SyncItem> items = parseItems(page.getJSONArray("items"));
+                JSONObject next = page.getJSONObject("watermark");
+                watermark = new SyncWatermark(next.getLong("updatedAt"), next.getString("id"));
+                more = page.optBoolean("hasMore") && !items.isEmpty();
+
+                counts[0] += items.size();
+                counts[1] += store.applyRemoteItems(items, watermark);
+            } catch (JSONException error) {
+                throw new IOException("Unexpected /sync/changes response", error);
+            }
+        }
+        return counts;
+    }
+
+    // How long to wait before an entry that has been tried attempts times is tried again
+    static long retryDelayMs(int attempts) {
+        int doublings = Math.min(Math.max(attempts - 1, 0), 30);
+        return Math.min(RETRY_BASE_MS << doublings, RETRY_MAX_MS);
+    }
+
+    private static Map<String, Long> retryTimes(List<OutboxEntry> entries, long now) {
+        Map<String, Long> times = new HashMap<>();
+        for (OutboxEntry entry : entries) {
+            times.put(entry.remoteId, now + retryDelayMs(entry.attempts));
+        }
+        return times;
+    }
+
+    private static JSONObject pushBody(List<OutboxEntry> batch) throws IOException {
+        try {
+            JSONArray items = new JSONArray();
+            JSONArray updates = new JSONArray();
+            JSONArray deleted = new JSONArray();
+            for (OutboxEntry entry : batch) {
+                PendingChange change = entry.change;
+                if (change.kind == PendingChange.DELETE) {
+                    deleted.put(entry.remoteId);
+                    continue;
+                }
+
+                // The API has no null locations, an empty one means "no location" there
+                JSONObject json = new JSONObject().put("id", entry.remoteId);
+                if (change.name != null) json.put("name", change.name);
+                if (change.quantity != null) json.put("quantity", change.quantity);
+                if (change.quantity == null && change.quantityDelta != 0) json.put("quantityDelta", change.quantityDelta);
+                if (change.locationSet) json.put("location", change.location == null ? "" : change.location);
+                (change.kind == PendingChange.CREATE ? items : updates).put(json);
+            }
+            return new JSONObject()
+                    .put("items", items)
+                    .put("updates", updates)
+                    .put("deleted", deleted);
+        } catch (JSONException error) {
+            throw new IOException("Couldn't build the push request", error);
+        }
+    }
+
+    private static Set<String> rejectedIds(JSONObject response) {
+        Set<String> ids = new HashSet<>();
+        JSONArray rejected = response.optJSONArray("rejected");
+        if (rejected == null) return ids;
+        for (int i = 0; i < rejected.length(); i++) {
+            JSONObject entry = rejected.optJSONObject(i);
+            if (entry == null) continue;
+            System.out.println("ERROR: The API rejected item " + entry.optString("id") + ": " + entry.optString("message"));
+            ids.add(entry.optString("id"));
+        }
+        return ids;
+    }
+
+    private static List<SyncItem> parseItems(JSONArray array) throws JSONException {
+        List<SyncItem> items = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject item = array.getJSONObject(i);
+            // The API has no null locations, an empty one means "no location" here
+            String location = item.optString("location", "");
+            items.add(new SyncItem(0, item.getString("id"), item.getString("name"), item.getInt("quantity"),
+                    location.isEmpty() ? null : location, item.getLong("updatedAt")));
+        }
+        return items;
+    }
+}
@@ -0,0 +1,35 @@
+package com.baileyconnor.inventoryappv2.sync;
+
+import java.util.Locale;
+
+// What one SyncEngine.sync() did
+public class SyncResult {
+    public final int pushed;
+    public final int pushedDeletes;
+    public final int rejected;
+    public final int pulled;
+    public final int applied;
+    public final long bytesSent;
+    public final long bytesReceived;
+    public final long durationMs;
+
+    // Constructor
+    public SyncResult(int pushed, int pushedDeletes, int rejected, int pulled, int applied,
+                      long bytesSent, long bytesReceived, long durationMs) {
+        this.pushed = pushed;
+        this.pushedDeletes = pushedDeletes;
+        this.rejected = rejected;
+        this.pulled = pulled;
+        this.applied = applied;
+        this.bytesSent = bytesSent;
+        this.bytesReceived = bytesReceived;
+        this.durationMs = durationMs;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "pushed %d (%d deletes, %d rejected), pulled %d (%d applied), %d bytes sent, %d received, %d ms",
+                pushed, pushedDeletes, rejected, pulled, applied, bytesSent, bytesReceived, durationMs);
+    }
+}
@@ -0,0 +1,153 @@
+package com.baileyconnor.inventoryappv2.sync;
+
+import androidx.annotation.Nullable;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// JSON over HTTP to the inventory API.
+// Request bodies are gzip compressed when they're large enough to benefit, and responses
+// are asked for compressed. Bytes are counted as they go over the wire (compressed).
+public class SyncTransport {
+
+    private static final int TIMEOUT_MS = 15_000;
+
+    // Bodies smaller than this aren't worth compressing
+    static final int GZIP_MIN_BYTES = 1024;
+
+    private final String baseUrl;
+    private final Supplier<String> accessToken;
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    // Constructor, the token is the JWT from the API's /auth/login
+    public SyncTransport(String baseUrl, Supplier<String> accessToken) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.accessToken = accessToken;
+    }
+
+    public JSONObject get(String pathAndQuery) throws IOException {
+        return exchange("GET", pathAndQuery, null);
+    }
+
+    public JSONObject post(String path, JSONObject body) throws IOException {
+        return exchange("POST", path, body.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Sign in to the API, returns the JWT to send with every other request. Like the iOS
+    // client only a SHA-256 of the password leaves the device.
+    public String login(String username, String password) throws IOException {
+        try {
+            JSONObject body = new JSONObject()
+                    .put("username", username)
+                    .put("client_password_hash", sha256Hex(password));
+            return post("/auth/login", body).getString("access_token");
+        } catch (JSONException error) {
+            throw new IOException("POST /auth/login returned no access token", error);
+        }
+    }
+
+    // Totals since the transport was created
+    public long bytesSent() { return bytesSent.get(); }
+    public long bytesReceived() { return bytesReceived.get(); }
+
+    // --- --- Helper Functions --- --- \\
+
+    private JSONObject exchange(String method, String path, @Nullable byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        try {
+            connection.setRequestMethod(method);
+            connection.setConnectTimeout(TIMEOUT_MS);
+            connection.setReadTimeout(TIMEOUT_MS);
+            // Set explicitly so the response isn't unzipped for us and the wire size can be counted
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+            connection.setRequestProperty("Accept", "application/json");
+            String token = accessToken.get();
+            if (token != null) connection.setRequestProperty("Authorization", "Bearer " + token);
+
+            if (body != null) {
+                if (body.length >= GZIP_MIN_BYTES) {
+                    body = gzip(body);
+                    connection.setRequestProperty("Content-Encoding", "gzip");
+                }
+                connection.setRequestProperty("Content-Type", "application/json");
+                connection.setDoOutput(true);
+                connection.setFixedLengthStreamingMode(body.length);
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(body);
+                }
+                bytesSent.addAndGet(body.length);
+            }
+
+            int status = connection.getResponseCode();
+            InputStream raw = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+            String text = raw == null ? "" : read(raw, "gzip".equalsIgnoreCase(connection.getContentEncoding()));
+            if (status >= 400) {
+                throw new IOException(method + " " + path + " failed with HTTP " + status + ": " + text);
+            }
+            return new JSONObject(text);
+        } catch (JSONException error) {
+            throw new IOException(method + " " + path + " returned invalid JSON", error);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private String read(InputStream raw, boolean gzipped) throws IOException {
+        InputStream counted = new FilterInputStream(raw) {
+            @Override public int read() throws IOException {
+                int b = super.read();
+                if (b != -1) bytesReceived.incrementAndGet();
+                return b;
+            }
+
+            @Override public int read(byte[] buffer, int offset, int length) throws IOException {
+                int n = super.read(buffer, offset, length);
+                if (n > 0) bytesReceived.addAndGet(n);
+                return n;
+            }
+        };
+        try (InputStream in = gzipped ? new GZIPInputStream(counted) : counted) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) out.write(buffer, 0, n);
+            return out.toString(StandardCharsets.UTF_8.name());
+        }
+    }
+
+    private static String sha256Hex(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) hex.append(String.format(Locale.US, "%02x", b));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException error) {
+            throw new IllegalStateException("SHA-256 is always available", error);
+        }
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream zip = new GZIPOutputStream(out)) {
+            zip.write(body);
+        }
+        return out.toByteArray();
+    }
+}
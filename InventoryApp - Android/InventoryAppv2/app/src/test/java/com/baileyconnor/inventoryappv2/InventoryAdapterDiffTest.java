@@ -0,0 +1,109 @@
+package com.baileyconnor.inventoryappv2;
+
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import com.baileyconnor.inventoryappv2.model.ItemSummary;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the InventoryAdapter diff. The update events are counted the
+ * same way RecyclerView would rebind cells for them.
+ */
+public class InventoryAdapterDiffTest {
+
+    private static final int SIZE = 10_000;
+
+    @Test
+    public void oneQuantityChange_rebindsOneCellWithPayload() {
+        List<ItemSummary> before = items();
+        List<ItemSummary> after = items();
+        ItemSummary changed = after.get(4_321);
+        after.set(4_321, new ItemSummary(changed.getId(), changed.getName(), changed.getQuantity() - 1, changed.getUpdatedAt()));
+
+        CountingCallback counts = diff(before, after);
+
+        assertEquals(1, counts.changed);
+        assertEquals(1, counts.quantityPayloads);
+        assertEquals(0, counts.inserted);
+        assertEquals(0, counts.removed);
+        assertEquals(0, counts.moved);
+    }
+
+    @Test
+    public void identicalLists_rebindNothing() {
+        CountingCallback counts = diff(items(), items());
+
+        assertEquals(0, counts.changed + counts.inserted + counts.removed + counts.moved);
+    }
+
+    @Test
+    public void renamedItem_getsFullRebind() {
+        List<ItemSummary> after = items();
+        ItemSummary renamed = after.get(10);
+        after.set(10, new ItemSummary(renamed.getId(), "Renamed", renamed.getQuantity(), renamed.getUpdatedAt()));
+
+        CountingCallback counts = diff(items(), after);
+
+        assertEquals(1, counts.changed);
+        assertEquals(0, counts.quantityPayloads);
+    }
+
+    @Test
+    public void insertAtTop_isSingleInsert() {
+        List<ItemSummary> after = items();
+        after.add(0, new ItemSummary(SIZE + 1, "New Item", 1, SIZE + 1));
+
+        CountingCallback counts = diff(items(), after);
+
+        assertEquals(1, counts.inserted);
+        assertEquals(0, counts.changed + counts.removed + counts.moved);
+    }
+
+    private static List<ItemSummary> items() {
+        List<ItemSummary> list = new ArrayList<>(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            list.add(new ItemSummary(i + 1, "Item " + i, i % 100, SIZE - i));
+        }
+        return list;
+    }
+
+    private static CountingCallback diff(List<ItemSummary> before, List<ItemSummary> after) {
+        InventoryAdapter.ItemDiff itemDiff = new InventoryAdapter.ItemDiff();
+        DiffUtil.DiffResult result = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override public int getOldListSize() { return before.size(); }
+            @Override public int getNewListSize() { return after.size(); }
+            @Override public boolean areItemsTheSame(int o, int n) {
+                return itemDiff.areItemsTheSame(before.get(o), after.get(n));
+            }
+            @Override public boolean areContentsTheSame(int o, int n) {
+                return itemDiff.areContentsTheSame(before.get(o), after.get(n));
+            }
+            @Override public Object getChangePayload(int o, int n) {
+                return itemDiff.getChangePayload(before.get(o), after.get(n));
+            }
+        });
+
+        CountingCallback counts = new CountingCallback();
+        result.dispatchUpdatesTo(counts);
+        return counts;
+    }
+
+    private static class CountingCallback implements ListUpdateCallback {
+        int inserted, removed, moved, changed, quantityPayloads;
+
+        @Override public void onInserted(int position, int count) { inserted += count; }
+        @Override public void onRemoved(int position, int count) { removed += count; }
+        @Override public void onMoved(int fromPosition, int toPosition) { moved++; }
+        @Override public void onChanged(int position, int count, Object payload) {
+            changed += count;
+            if (payload == InventoryAdapter.PAYLOAD_QUANTITY) quantityPayloads += count;
+        }
+    }
+}
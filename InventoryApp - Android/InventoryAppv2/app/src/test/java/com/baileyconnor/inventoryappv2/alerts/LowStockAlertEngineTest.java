@@ -0,0 +1,157 @@
+package com.baileyconnor.inventoryappv2.alerts;
+
+import com.baileyconnor.inventoryappv2.model.QuantityChange;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for LowStockAlertEngine with a fake clock, scheduler and sender.
+ */
+public class LowStockAlertEngineTest {
+
+    private static final long WINDOW = 1_000;
+    private static final long INTERVAL = 10_000;
+    private static final String PHONE = "5550100";
+
+    private final List<String> sent = new ArrayList<>();
+    private final List<long[]> dueTimes = new ArrayList<>();
+    private final List<Runnable> dueTasks = new ArrayList<>();
+    private long now = 0;
+    private LowStockAlertEngine engine;
+
+    @Before
+    public void setUp() {
+        engine = new LowStockAlertEngine(
+                (phone, message) -> {
+                    assertEquals(PHONE, phone);
+                    sent.add(message);
+                    return true;
+                },
+                () -> now,
+                (task, delayMs) -> {
+                    dueTimes.add(new long[] { now + delayMs });
+                    dueTasks.add(task);
+                },
+                WINDOW, INTERVAL, 2);
+        engine.setRecipient(PHONE);
+    }
+
+    @Test
+    public void crossing_isSentAfterTheWindow() {
+        engine.onQuantityChanged(changes(change(1, "Boxes", 6, 4)));
+        advance(WINDOW - 1);
+        assertTrue(sent.isEmpty());
+
+        advance(1);
+        assertEquals(Collections.singletonList("Low stock: Boxes (4 left)"), sent);
+    }
+
+    @Test
+    public void crossingsInOneWindow_areCoalesced() {
+        engine.onQuantityChanged(changes(change(1, "Boxes", 6, 4)));
+        advance(300);
+        engine.onQuantityChanged(changes(change(2, "Tape", 9, 0), change(1, "Boxes", 4, 2)));
+        advance(WINDOW);
+
+        assertEquals(Collections.singletonList("Low stock: Boxes (2 left), Tape (0 left)"), sent);
+    }
+
+    @Test
+    public void itemAlertsOncePerDip() {
+        engine.onQuantityChanged(changes(change(1, "Boxes", 6, 4)));
+        advance(WINDOW);
+        engine.onQuantityChanged(changes(change(1, "Boxes", 4, 1)));
+        advance(INTERVAL);
+        assertEquals(1, sent.size());
+
+        // Restocked, then low again
+        engine.onQuantityChanged(changes(change(1, "Boxes", 1, 20)));
+        engine.onQuantityChanged(changes(change(1, "Boxes", 20, 3)));
+        advance(INTERVAL);
+        assertEquals(2, sent.size());
+    }
+
+    @Test
+    public void restockedBeforeTheWindowCloses_sendsNothing() {
+        engine.onQuantityChanged(changes(change(1, "Boxes", 6, 4)));
+        engine.onQuantityChanged(changes(change(1, "Boxes", 4, 30)));
+        advance(WINDOW * 5);
+
+        assertTrue(sent.isEmpty());
+    }
+
+    @Test
+    public void sends_areRateLimited() {
+        for (int i = 0; i < 4; i++) {
+            engine.onQuantityChanged(changes(change(i, "Item " + i, 10, 0)));
+            advance(WINDOW);
+        }
+        // One message straight away at WINDOW, the rest are queued (and merged once the queue is full)
+        assertEquals(1, sent.size());
+
+        advance(WINDOW + INTERVAL - 1 - now);
+        assertEquals(1, sent.size());
+        advance(1);
+        assertEquals(2, sent.size());
+        advance(INTERVAL);
+        assertEquals(3, sent.size());
+        assertEquals("Low stock: Item 2 (0 left), Item 3 (0 left)", sent.get(2));
+
+        advance(INTERVAL * 3);
+        assertEquals(3, sent.size());
+    }
+
+    @Test
+    public void largeDigest_isTruncated() {
+        List<QuantityChange> batch = new ArrayList<>();
+        for (int i = 0; i < LowStockAlertEngine.MAX_ITEMS_PER_MESSAGE + 3; i++) {
+            batch.add(change(i, "Item " + i, 10, 1));
+        }
+        engine.onQuantityChanged(batch);
+        advance(WINDOW);
+
+        assertTrue(sent.get(0).endsWith("Item 4 (1 left) and 3 more"));
+    }
+
+    @Test
+    public void turnedOff_sendsNothing() {
+        engine.setRecipient(null);
+        engine.onQuantityChanged(changes(change(1, "Boxes", 6, 4)));
+        advance(WINDOW * 5);
+
+        assertTrue(sent.isEmpty());
+    }
+
+    private static QuantityChange change(long id, String name, int oldQuantity, int newQuantity) {
+        return new QuantityChange(id, name, oldQuantity, newQuantity, 5);
+    }
+
+    private static List<QuantityChange> changes(QuantityChange... changes) {
+        return Arrays.asList(changes);
+    }
+
+    // Move the clock forward, running scheduled tasks in order as they come due
+    private void advance(long ms) {
+        long target = now + ms;
+        while (true) {
+            int next = -1;
+            for (int i = 0; i < dueTimes.size(); i++) {
+                if (dueTimes.get(i)[0] <= target && (next == -1 || dueTimes.get(i)[0] < dueTimes.get(next)[0])) {
+                    next = i;
+                }
+            }
+            if (next == -1) break;
+            now = dueTimes.remove(next)[0];
+            dueTasks.remove(next).run();
+        }
+        now = target;
+    }
+}
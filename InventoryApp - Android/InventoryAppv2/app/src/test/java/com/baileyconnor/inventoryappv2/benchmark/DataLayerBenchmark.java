@@ -0,0 +1,295 @@
+package com.baileyconnor.inventoryappv2.benchmark;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.baileyconnor.inventoryappv2.database.DatabaseHelper;
+import com.baileyconnor.inventoryappv2.database.DatabaseProfile;
+import com.baileyconnor.inventoryappv2.database.ItemQuery;
+import com.baileyconnor.inventoryappv2.database.ScanSession;
+import com.baileyconnor.inventoryappv2.model.Item;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Throughput and allocation of the DatabaseHelper operations at warehouse sizes, on the
+ * JVM against Robolectric's SQLite. Skipped unless the benchmark system property is set:
+ *
+ *   ./gradlew testDebugUnitTest --tests '*DataLayerBenchmark' -Pbenchmark
+ *
+ * Results are compared with src/test/resources/benchmark/baseline.csv and the run fails if
+ * an operation got slower than the baseline by more than benchmark.tolerance (default 0.5).
+ * -Pbenchmark=baseline writes the results there instead. Other properties:
+ * benchmark.sizes (default 1000,100000,1000000), benchmark.warmupMs (2000), benchmark.measureMs (1000)
+ * and benchmark.profile (durable, balanced or throughput, see DatabaseProfile).
+ *
+ * The numbers only compare runs on the same machine, the baseline records where it was taken.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DataLayerBenchmark {
+
+    private static final String BASELINE_RESOURCE = "benchmark/baseline.csv";
+    private static final String BASELINE_FILE = "src/test/resources/" + BASELINE_RESOURCE;
+    private static final String RESULTS_FILE = "build/benchmark/data-layer.csv";
+
+    private static final int SEED_CHUNK = 10_000;
+    private static final int LOCATIONS = 50;
+    // Rows in a page of the inventory grid
+    private static final int GRID_PAGE = 60;
+    // A scripted scan session: SCAN_SCRIPT scans of SCAN_WORKING_SET different items, about one
+    // in twenty a barcode that isn't in the inventory
+    private static final int SCAN_SCRIPT = 300;
+    private static final int SCAN_WORKING_SET = 120;
+    // Each operation is timed over this many windows and the median is reported
+    private static final int WINDOWS = 3;
+
+    private final String mode = System.getProperty("benchmark");
+    private final long warmupMs = Long.getLong("benchmark.warmupMs", 2_000);
+    private final long measureMs = Long.getLong("benchmark.measureMs", 1_000);
+    private final double tolerance = Double.parseDouble(System.getProperty("benchmark.tolerance", "0.5"));
+    private final DatabaseProfile profile = DatabaseProfile.named(System.getProperty("benchmark.profile"));
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void dataLayer() throws IOException {
+        Assume.assumeTrue("Set -Pbenchmark to run the benchmarks", mode != null);
+
+        List<Result> results = new ArrayList<>();
+        for (String size : System.getProperty("benchmark.sizes", "1000,100000,1000000").split(",")) {
+            results.addAll(runAt(Integer.parseInt(size.trim())));
+        }
+
+        write(results, new File(RESULTS_FILE));
+        Map<String, Result> baseline = readBaseline();
+        List<String> regressions = new ArrayList<>();
+        System.out.println(String.format(Locale.US, "%-17s %9s %14s %14s %12s", "operation", "rows", "ops/s", "bytes/op", "vs baseline"));
+        for (Result result : results) {
+            Result before = baseline.get(result.key());
+            String change = "";
+            if (before != null && before.opsPerSec > 0) {
+                double ratio = result.opsPerSec / before.opsPerSec - 1;
+                change = String.format(Locale.US, "%+.0f%%", ratio * 100);
+                if (ratio < -tolerance) regressions.add(result.key() + " " + change);
+            }
+            System.out.println(String.format(Locale.US, "%-17s %9d %14.3f %14d %12s",
+                    result.operation, result.rows, result.opsPerSec, result.bytesPerOp, change));
+        }
+
+        if ("baseline".equals(mode)) {
+            write(results, new File(BASELINE_FILE));
+            return;
+        }
+        assertTrue("Slower than the baseline: " + regressions, regressions.isEmpty());
+    }
+
+    // --- --- Helper Functions --- --- \\
+
+    // Fresh database holding rows items and rows users, then every operation against it
+    private List<Result> runAt(int rows) {
+        Context context = RuntimeEnvironment.getApplication();
+        context.deleteDatabase("inventory_app.db");
+        DatabaseHelper helper = new DatabaseHelper(context, profile);
+        try {
+            long start = System.nanoTime();
+            seed(helper, rows);
+            System.out.println("Seeded " + rows + " rows in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+            int[] counter = { 0 };
+            List<Result> results = new ArrayList<>();
+            results.add(measure("insertItem", rows, () ->
+                    helper.insertItem(new Item("New item " + counter[0]++, random.nextInt(100), location()))));
+            results.add(measure("updateItem", rows, () -> {
+                long id = 1 + random.nextInt(rows);
+                helper.updateItem(new Item(id, "Item " + id, random.nextInt(100), location()));
+            }));
+            results.add(measure("getItemById", rows, () -> helper.getItemById(1 + random.nextInt(rows))));
+            results.add(measure("getAllItems", rows, helper::getAllItems));
+            results.add(measure("getItemsPage", rows, () -> helper.getItemsPage(Long.MAX_VALUE, Long.MAX_VALUE, GRID_PAGE)));
+            results.add(measure("getItemSummaries", rows, () -> helper.getItemSummaries(Long.MAX_VALUE, Long.MAX_VALUE, GRID_PAGE)));
+            // First page of the grid sorted by name at one location, filtered on quantity
+            ItemQuery byName = ItemQuery.DEFAULT.withSort(ItemQuery.SORT_NAME, false).withQuantityRange(10, 80);
+            results.add(measure("queryItemSummaries", rows, () ->
+                    helper.queryItemSummaries(byName.withLocation(location()), null, GRID_PAGE)));
+            results.add(measure("validateLogin", rows, () -> {
+                int user = random.nextInt(rows);
+                helper.validateLogin("user" + user, "password" + user);
+            }));
+
+            // Both replay the same script, one scan per operation
+            String[] script = scanScript(rows);
+            int[] next = { 0 };
+            results.add(measure("getItemBySku", rows, () -> helper.getItemBySku(script[next[0]++ % script.length])));
+            ScanSession session = new ScanSession(helper);
+            results.add(measure("scanSession", rows, () -> session.scan(script[next[0]++ % script.length])));
+            return results;
+        } finally {
+            helper.close();
+            context.deleteDatabase("inventory_app.db");
+        }
+    }
+
+    // Items go through insertItems like an import, then the outbox is emptied as if they had
+    // been synced. Users are inserted directly, createUser commits one row at a time.
+    private void seed(DatabaseHelper helper, int rows) {
+        List<Item> chunk = new ArrayList<>(SEED_CHUNK);
+        for (int i = 0; i < rows; i++) {
+            Item item = new Item("Item " + (i + 1), random.nextInt(100), location());
+            item.setSku(sku(i + 1));
+            chunk.add(item);
+            if (chunk.size() == SEED_CHUNK || i == rows - 1) {
+                helper.insertItems(chunk);
+                chunk.clear();
+            }
+        }
+
+        SQLiteDatabase db = helper.getWritableDatabase();
+        db.execSQL("DELETE FROM " + DatabaseHelper.T_OUTBOX);
+        db.beginTransaction();
+        try (SQLiteStatement insert = db.compileStatement("INSERT INTO " + DatabaseHelper.T_USERS + " (" +
+                DatabaseHelper.C_USERNAME + ", " + DatabaseHelper.C_PASSWORD + ") VALUES (?, ?)")) {
+            for (int i = 0; i < rows; i++) {
+                insert.bindString(1, "user" + i);
+                insert.bindString(2, "password" + i);
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        helper.getItemCache().clear();
+    }
+
+    private String location() {
+        return "Bay " + random.nextInt(LOCATIONS);
+    }
+
+    // Every seeded item has a 12 digit sku made from its id
+    private static String sku(long id) {
+        return String.format(Locale.US, "%012d", id);
+    }
+
+    // The skus scanned by a picker working through one area: the same items come up again
+    // and again, in no particular order
+    private String[] scanScript(int rows) {
+        long[] workingSet = new long[SCAN_WORKING_SET];
+        for (int i = 0; i < workingSet.length; i++) workingSet[i] = 1 + random.nextInt(rows);
+
+        String[] script = new String[SCAN_SCRIPT];
+        for (int i = 0; i < script.length; i++) {
+            script[i] = random.nextInt(20) == 0 ? sku(rows + 1 + random.nextInt(rows))
+                    : sku(workingSet[random.nextInt(workingSet.length)]);
+        }
+        return script;
+    }
+
+    // Warm up, then time WINDOWS windows of at least measureMs (and one call) each
+    private Result measure(String operation, int rows, Runnable work) {
+        run(work, warmupMs);
+
+        double[] opsPerSec = new double[WINDOWS];
+        long operations = 0;
+        long allocated = 0;
+        for (int window = 0; window < WINDOWS; window++) {
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            long count = run(work, measureMs);
+            long elapsed = System.nanoTime() - start;
+            allocated += allocatedBytes() - allocatedBefore;
+            operations += count;
+            opsPerSec[window] = count * 1e9 / elapsed;
+        }
+        Arrays.sort(opsPerSec);
+        return new Result(operation, rows, opsPerSec[WINDOWS / 2], allocated / operations);
+    }
+
+    private static long run(Runnable work, long forMs) {
+        long end = System.nanoTime() + forMs * 1_000_000;
+        long count = 0;
+        do {
+            work.run();
+            count++;
+        } while (System.nanoTime() < end);
+        return count;
+    }
+
+    // Bytes allocated on the Java heap by this thread so far
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void write(List<Result> results, File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) throw new IOException("Couldn't create " + parent);
+
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            out.println("# " + System.getProperty("os.name") + " " + System.getProperty("os.arch") + ", " +
+                    Runtime.getRuntime().availableProcessors() + " cpus, Java " + System.getProperty("java.version"));
+            out.println("operation,rows,ops_per_sec,bytes_per_op");
+            for (Result result : results) {
+                out.println(String.format(Locale.US, "%s,%d,%.3f,%d", result.operation, result.rows, result.opsPerSec, result.bytesPerOp));
+            }
+        }
+        System.out.println("Results written to " + file.getPath());
+    }
+
+    private static Map<String, Result> readBaseline() throws IOException {
+        Map<String, Result> baseline = new LinkedHashMap<>();
+        InputStream in = DataLayerBenchmark.class.getClassLoader().getResourceAsStream(BASELINE_RESOURCE);
+        if (in == null) return baseline;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("#") || line.startsWith("operation,") || line.trim().isEmpty()) continue;
+                String[] fields = line.split(",");
+                Result result = new Result(fields[0], Integer.parseInt(fields[1]), Double.parseDouble(fields[2]), Long.parseLong(fields[3]));
+                baseline.put(result.key(), result);
+            }
+        }
+        return baseline;
+    }
+
+    // Median throughput of one operation at one table size, and the heap it allocated per call
+    private static final class Result {
+        final String operation;
+        final int rows;
+        final double opsPerSec;
+        final long bytesPerOp;
+
+        Result(String operation, int rows, double opsPerSec, long bytesPerOp) {
+            this.operation = operation;
+            this.rows = rows;
+            this.opsPerSec = opsPerSec;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        String key() {
+            return operation + "@" + rows;
+        }
+    }
+}
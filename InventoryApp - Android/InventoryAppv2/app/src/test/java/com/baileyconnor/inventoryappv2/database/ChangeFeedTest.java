@@ -0,0 +1,79 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for ChangeFeed, no Android classes are needed.
+ */
+public class ChangeFeedTest {
+
+    @Test
+    public void changesSince_unionsTheIdsWrittenAfterTheVersion() {
+        ChangeFeed feed = new ChangeFeed(ChangeFeed.DEFAULT_MAX_ENTRIES);
+        assertTrue(feed.changesSince(0).isEmpty());
+
+        feed.itemChanged(1);
+        long loaded = feed.version();
+        feed.itemChanged(2);
+        feed.itemsChanged(Arrays.asList(2L, 3L));
+        feed.itemsChanged(new ArrayList<>());
+
+        ChangeFeed.Changes changes = feed.changesSince(loaded);
+        assertEquals(3, changes.version);
+        assertFalse(changes.everything);
+        assertEquals(new HashSet<>(Arrays.asList(2L, 3L)), changes.ids);
+        assertTrue(feed.changesSince(changes.version).isEmpty());
+    }
+
+    @Test
+    public void unknownOrTooManyIds_meanEverything() {
+        ChangeFeed feed = new ChangeFeed(ChangeFeed.DEFAULT_MAX_ENTRIES);
+        feed.itemChanged(1);
+        feed.everythingChanged();
+        feed.itemChanged(2);
+        assertTrue(feed.changesSince(0).everything);
+        assertEquals(2, feed.changesSince(2).ids.iterator().next().longValue());
+
+        List<Long> batch = new ArrayList<>();
+        for (long id = 0; id <= ChangeFeed.MAX_IDS; id++) batch.add(id);
+        long version = feed.version();
+        feed.itemsChanged(batch);
+        assertTrue(feed.changesSince(version).everything);
+    }
+
+    @Test
+    public void deletes_areReportedWithoutCountingAgainstMaxIds() {
+        ChangeFeed feed = new ChangeFeed(ChangeFeed.DEFAULT_MAX_ENTRIES);
+        List<Long> selection = new ArrayList<>();
+        for (long id = 1; id <= 2 * ChangeFeed.MAX_IDS; id++) selection.add(id);
+
+        feed.itemsDeleted(selection);
+        feed.itemChanged(5_000);
+        ChangeFeed.Changes changes = feed.changesSince(0);
+        assertFalse(changes.everything);
+        assertEquals(selection.size() + 1, changes.ids.size());
+        assertEquals(new HashSet<>(selection), changes.deleted);
+
+        List<Long> tooMany = new ArrayList<>();
+        for (long id = 1; id <= ChangeFeed.MAX_DELETED_IDS + 1; id++) tooMany.add(id);
+        long version = feed.version();
+        feed.itemsDeleted(tooMany);
+        assertTrue(feed.changesSince(version).everything);
+    }
+
+    @Test
+    public void observersBehindTheLog_getEverything() {
+        ChangeFeed feed = new ChangeFeed(4);
+        for (long id = 1; id <= 6; id++) feed.itemChanged(id);
+
+        assertTrue(feed.changesSince(1).everything);
+        assertEquals(new HashSet<>(Arrays.asList(3L, 4L, 5L, 6L)), feed.changesSince(2).ids);
+    }
+}
@@ -0,0 +1,78 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import com.baileyconnor.inventoryappv2.model.ItemSummary;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.FileInputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Times a first launch on the JVM, phase by phase as StartupTracer records it on a device:
+ * the database is opened (and the prepackaged one copied in) on the writer thread while the
+ * grid's first page is requested, and the page is handed to the grid. The views aren't
+ * inflated here, so the bind phase ends once the grid's listener has the page. The phases
+ * are printed as a STARTUP: line for CI to track, and the run fails past FIRST_FRAME_BUDGET_MS.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ColdStartTest {
+
+    // Generous for a JVM that may be loading SQLite for the first time, it's there to catch
+    // the first launch going back to creating and filling the database
+    private static final long FIRST_FRAME_BUDGET_MS = 3_000;
+
+    private static final int PAGE_SIZE = 60;
+    private static final int PREFETCH_DISTANCE = 30;
+
+    @Test
+    public void firstLaunch_showsThePrepackagedItemsWithinBudget() throws Exception {
+        StartupTracer tracer = new StartupTracer(false);
+        DatabaseHelper helper = new DatabaseHelper(RuntimeEnvironment.getApplication(), DatabaseProfile.BALANCED,
+                new PrepackagedDatabase(() -> new FileInputStream(PrepackagedDatabaseTest.ASSET_FILE)));
+        InventoryRepository repository = new InventoryRepository(
+                helper,
+                Executors.newSingleThreadExecutor(),
+                Executors.newFixedThreadPool(2),
+                Runnable::run);
+
+        CountDownLatch shown = new CountDownLatch(1);
+        AtomicReference<List<ItemSummary>> firstPage = new AtomicReference<>();
+        ItemPagingSource pagingSource = new ItemPagingSource(repository, PAGE_SIZE, PREFETCH_DISTANCE, items -> {
+            tracer.end(StartupTracer.FIRST_QUERY);
+            tracer.begin(StartupTracer.FIRST_BIND);
+            firstPage.set(items);
+            tracer.end(StartupTracer.FIRST_BIND);
+            shown.countDown();
+        });
+
+        try {
+            // The order InventoryApp and InventoryActivity start them in
+            repository.open(tracer, null);
+            tracer.begin(StartupTracer.FIRST_QUERY);
+            pagingSource.refresh();
+            assertTrue(shown.await(30, TimeUnit.SECONDS));
+        } finally {
+            repository.shutdown();
+            helper.close();
+        }
+
+        System.out.println("STARTUP: " + tracer);
+        assertEquals(PrepackagedDatabaseTest.SAMPLE_ITEMS.size(), firstPage.get().size());
+        assertEquals(Arrays.asList(StartupTracer.DB_OPEN, StartupTracer.FIRST_QUERY, StartupTracer.FIRST_BIND),
+                tracer.finished());
+        // The first page can't be read before the database is open
+        assertTrue(tracer.endedAtMs(StartupTracer.DB_OPEN) <= tracer.endedAtMs(StartupTracer.FIRST_QUERY));
+        assertTrue("First frame after " + tracer.endedAtMs(StartupTracer.FIRST_BIND) + " ms: " + tracer,
+                tracer.endedAtMs(StartupTracer.FIRST_BIND) < FIRST_FRAME_BUDGET_MS);
+    }
+}
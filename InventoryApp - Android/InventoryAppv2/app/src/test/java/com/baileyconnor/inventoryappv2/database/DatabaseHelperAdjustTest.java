@@ -0,0 +1,159 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import com.baileyconnor.inventoryappv2.model.Item;
+import com.baileyconnor.inventoryappv2.model.QuantityChange;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseHelperAdjustTest {
+
+    private DatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        helper = new DatabaseHelper(RuntimeEnvironment.getApplication());
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Test
+    public void adjust_returnsNewQuantityAndHonoursGuards() {
+        long id = helper.insertItem(new Item("Tape", 10, "Bay 7"));
+
+        assertEquals(Integer.valueOf(7), helper.adjustQuantity(id, -3, 0, DatabaseHelper.NO_CEILING));
+        assertNull(helper.adjustQuantity(id, -8, 0, DatabaseHelper.NO_CEILING));
+        assertNull(helper.adjustQuantity(id, 5, DatabaseHelper.NO_FLOOR, 10));
+        assertEquals(Integer.valueOf(10), helper.adjustQuantity(id, 3, DatabaseHelper.NO_FLOOR, 10));
+        assertNull(helper.adjustQuantity(id + 1, 1, DatabaseHelper.NO_FLOOR, DatabaseHelper.NO_CEILING));
+
+        // Overflow is rejected by the default ceiling rather than wrapping
+        assertNull(helper.adjustQuantity(id, Integer.MAX_VALUE, DatabaseHelper.NO_FLOOR, DatabaseHelper.NO_CEILING));
+        assertEquals(10, helper.getItemById(id).getQuantity());
+    }
+
+    @Test
+    public void adjust_rejectsResultsThatOverflow() {
+        long up = helper.insertItem(new Item("Tape", 10, "Bay 7"));
+        long down = helper.insertItem(new Item("Cups", 0, "Bay 7"));
+        helper.updateQuantity(down, -10);
+        List<QuantityChange> changes = new ArrayList<>();
+        helper.setQuantityListener(changes::addAll);
+
+        assertNull(helper.adjustQuantity(up, Integer.MAX_VALUE, DatabaseHelper.NO_FLOOR, DatabaseHelper.NO_CEILING));
+        assertNull(helper.adjustQuantity(down, Integer.MIN_VALUE, DatabaseHelper.NO_FLOOR, DatabaseHelper.NO_CEILING));
+        assertArrayEquals(new int[] { 0, 0 }, helper.adjustQuantities(new long[] { up, down }, Integer.MAX_VALUE,
+                DatabaseHelper.NO_FLOOR, DatabaseHelper.NO_CEILING));
+
+        // Nothing was written, so nothing reached the listeners either
+        assertEquals(10, helper.getItemById(up).getQuantity());
+        assertEquals(-10, helper.getItemById(down).getQuantity());
+        assertTrue(changes.isEmpty());
+
+        // The largest change that fits still goes through
+        assertArrayEquals(new int[] { 1 }, helper.adjustQuantities(new long[] { up }, Integer.MAX_VALUE - 10,
+                DatabaseHelper.NO_FLOOR, DatabaseHelper.NO_CEILING));
+        assertEquals(Integer.MAX_VALUE, helper.getItemById(up).getQuantity());
+        assertEquals(1, changes.size());
+        assertEquals(Integer.MAX_VALUE, changes.get(0).newQuantity);
+    }
+
+    @Test
+    public void fieldUpdates_keepOtherColumns() {
+        long id = helper.insertItem(new Item("Tape", 10, "Bay 7"));
+        Item stale = helper.getItemById(id);
+
+        // Someone else takes stock while this copy is open
+        helper.adjustQuantity(id, -4, 0, DatabaseHelper.NO_CEILING);
+
+        assertEquals(1, helper.updateLocation(id, "Bay 1"));
+        assertEquals(1, helper.updateName(id, stale.getName() + " (wide)"));
+        Item item = helper.getItemById(id);
+        assertEquals("Tape (wide)", item.getName());
+        assertEquals("Bay 1", item.getLocation());
+        assertEquals(6, item.getQuantity());
+
+        assertEquals(Integer.valueOf(12), helper.updateQuantity(id, 12));
+        assertEquals("Bay 1", helper.getItemById(id).getLocation());
+        assertEquals(1, helper.searchItems("wide", 10).size());
+    }
+
+    @Test
+    public void concurrentAdjustments_loseNoUpdates() throws Exception {
+        long id = helper.insertItem(new Item("Nails", 1_000, "Bay 4"));
+        int threads = 8;
+        int perThread = 100;
+
+        List<Integer> results = runConcurrently(threads, () -> {
+            int applied = 0;
+            for (int i = 0; i < perThread; i++) {
+                // Half the writers pick, half restock
+                if (helper.adjustQuantity(id, i % 2 == 0 ? 3 : -1, 0, DatabaseHelper.NO_CEILING) != null) applied++;
+            }
+            return applied;
+        });
+
+        for (int applied : results) assertEquals(perThread, applied);
+        assertEquals(1_000 + threads * (perThread / 2) * (3 - 1), helper.getItemById(id).getQuantity());
+        assertEquals(helper.getItemById(id).getQuantity(), helper.quantityAt(id, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void concurrentDecrements_neverGoBelowFloor() throws Exception {
+        long id = helper.insertItem(new Item("Boxes", 100, "Bay 4"));
+
+        List<Integer> results = runConcurrently(8, () -> {
+            int applied = 0;
+            for (int i = 0; i < 50; i++) {
+                if (helper.adjustQuantity(id, -1, 0, DatabaseHelper.NO_CEILING) != null) applied++;
+            }
+            return applied;
+        });
+
+        int total = 0;
+        for (int applied : results) total += applied;
+        assertEquals(100, total);
+        assertEquals(0, helper.getItemById(id).getQuantity());
+    }
+
+    // Runs the work on several threads at once and returns each thread's result
+    private static List<Integer> runConcurrently(int threads, Callable<Integer> work) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                return work.call();
+            }));
+        }
+        start.countDown();
+
+        List<Integer> results = new ArrayList<>();
+        try {
+            for (Future<Integer> future : futures) results.add(future.get(60, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+        return results;
+    }
+}
@@ -0,0 +1,129 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import com.baileyconnor.inventoryappv2.model.Item;
+import com.baileyconnor.inventoryappv2.model.LocationSummary;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseHelperAggregateTest {
+
+    private DatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        helper = new DatabaseHelper(RuntimeEnvironment.getApplication());
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Test
+    public void summary_tracksInsertsUpdatesAndDeletes() {
+        long[] ids = helper.insertItems(Arrays.asList(
+                new Item("Boxes", 17, "Bay 4"),
+                new Item("Nails", 3, "Bay 4"),
+                new Item("Tape", 29, "Bay 7"),
+                new Item("Labels", 0, null)));
+
+        LocationSummary bay4 = find(helper.getLocationSummaries(), "Bay 4");
+        assertEquals(2, bay4.getItemCount());
+        assertEquals(20, bay4.getUnits());
+        assertEquals(1, bay4.getLowStockCount());
+        assertEquals(1, find(helper.getLocationSummaries(), "").getItemCount());
+
+        // Move the nails to Bay 7 and restock them
+        helper.updateItem(new Item(ids[1], "Nails", 50, "Bay 7"));
+        LocationSummary bay7 = find(helper.getLocationSummaries(), "Bay 7");
+        assertEquals(2, bay7.getItemCount());
+        assertEquals(79, bay7.getUnits());
+        assertEquals(0, bay7.getLowStockCount());
+        assertEquals(0, find(helper.getLocationSummaries(), "Bay 4").getLowStockCount());
+
+        // An emptied location disappears
+        helper.deleteItems(new long[] { ids[1], ids[2] });
+        assertNull(find(helper.getLocationSummaries(), "Bay 7"));
+
+        LocationSummary totals = helper.getInventoryTotals();
+        assertNull(totals.getLocation());
+        assertEquals(2, totals.getItemCount());
+        assertEquals(17, totals.getUnits());
+        assertEquals(1, totals.getLowStockCount());
+    }
+
+    @Test
+    public void summary_matchesGroupByAfterRandomWrites() {
+        Random random = new Random(42);
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            items.add(new Item("Item " + i, random.nextInt(20), "Bay " + random.nextInt(12)));
+        }
+        long[] ids = helper.insertItems(items);
+
+        List<Item> updates = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            long id = ids[random.nextInt(ids.length)];
+            updates.add(new Item(id, "Item " + id, random.nextInt(20), "Bay " + random.nextInt(14)));
+        }
+        helper.updateItems(updates);
+        helper.deleteItems(Arrays.copyOf(ids, 300));
+        helper.upsertItems(Arrays.asList(new Item("Item 1999", 1, "Bay 3"), new Item("New", 4, "Bay 20")));
+
+        assertEquals(describe(helper.computeLocationSummaries()), describe(helper.getLocationSummaries()));
+    }
+
+    @Test
+    public void threshold_changesLowStockCount() {
+        long[] ids = helper.insertItems(Arrays.asList(
+                new Item("Boxes", 17, "Bay 4"),
+                new Item("Nails", 8, "Bay 4")));
+        assertEquals(0, helper.getInventoryTotals().getLowStockCount());
+
+        helper.setLowStockThreshold(ids[1], 10);
+        assertEquals(1, find(helper.getLocationSummaries(), "Bay 4").getLowStockCount());
+        assertEquals(describe(helper.computeLocationSummaries()), describe(helper.getLocationSummaries()));
+    }
+
+    @Test
+    public void lowestStock_isSortedByQuantity() {
+        helper.insertItems(Arrays.asList(
+                new Item("Boxes", 17, "Bay 4"),
+                new Item("Nails", 3, "Bay 4"),
+                new Item("Tape", 29, "Bay 7"),
+                new Item("Labels", 0, "Bay 1")));
+
+        List<Item> lowest = helper.getLowestStock(2);
+        assertEquals(2, lowest.size());
+        assertEquals("Labels", lowest.get(0).getName());
+        assertEquals("Nails", lowest.get(1).getName());
+    }
+
+    private static LocationSummary find(List<LocationSummary> summaries, String location) {
+        for (LocationSummary summary : summaries) {
+            if (summary.getLocation().equals(location)) return summary;
+        }
+        return null;
+    }
+
+    private static List<String> describe(List<LocationSummary> summaries) {
+        List<String> lines = new ArrayList<>();
+        for (LocationSummary s : summaries) {
+            lines.add(s.getLocation() + ":" + s.getItemCount() + ":" + s.getUnits() + ":" + s.getLowStockCount());
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,149 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import com.baileyconnor.inventoryappv2.model.Item;
+import com.baileyconnor.inventoryappv2.model.QuantityChange;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseHelperBatchTest {
+
+    private DatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        helper = new DatabaseHelper(RuntimeEnvironment.getApplication());
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Test
+    public void batchWrites_returnPerRowResults() {
+        long[] ids = helper.insertItems(Arrays.asList(
+                new Item("Boxes", 17, "Bay 4"),
+                new Item(null, 1, "Bay 1"),
+                new Item("Tape", 29, null)));
+
+        assertTrue(ids[0] > 0);
+        assertEquals(-1, ids[1]);
+        assertTrue(ids[2] > 0);
+        assertEquals(2, helper.getAllItems().size());
+
+        Item boxes = helper.getItemById(ids[0]);
+        boxes.setQuantity(5);
+        int[] updated = helper.updateItems(Arrays.asList(boxes, new Item(999, "Missing", 1, "Bay 1")));
+        assertArrayEquals(new int[] { 1, 0 }, updated);
+        assertEquals(5, helper.getItemById(ids[0]).getQuantity());
+
+        int[] deleted = helper.deleteItems(new long[] { ids[0], ids[0], ids[2] });
+        assertArrayEquals(new int[] { 1, 0, 1 }, deleted);
+        assertTrue(helper.getAllItems().isEmpty());
+    }
+
+    @Test
+    public void insertItems_handlesLargeBatch() {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            items.add(new Item("Item " + i, i, "Bay " + (i % 9)));
+        }
+
+        long[] ids = helper.insertItems(items);
+
+        assertEquals(5_000, ids.length);
+        assertEquals(5_000, helper.getAllItems().size());
+        assertEquals("Item 4999", helper.getItemById(ids[4_999]).getName());
+    }
+
+    @Test
+    public void bulkEdits_areOneWriteEach() {
+        long[] ids = helper.insertItems(Arrays.asList(
+                new Item("Boxes", 17, "Bay 4"),
+                new Item("Tape", 2, "Bay 7"),
+                new Item("Nails", 103, null)));
+        ChangeFeed feed = helper.getChangeFeed();
+        long version = feed.version();
+
+        int[] moved = helper.moveItems(new long[] { ids[0], ids[2], 999 }, " bay 7");
+        assertArrayEquals(new int[] { 1, 1, 0 }, moved);
+        assertEquals(version + 1, feed.version());
+        assertEquals("Bay 7", helper.getItemById(ids[0]).getLocation());
+        assertEquals(3, helper.getItemsAtLocation("Bay 7").size());
+
+        // Tape would go below zero and is left alone
+        int[] adjusted = helper.adjustQuantities(ids, -3, 0, DatabaseHelper.NO_CEILING);
+        assertArrayEquals(new int[] { 1, 0, 1 }, adjusted);
+        assertEquals(version + 2, feed.version());
+        assertEquals(14, helper.getItemById(ids[0]).getQuantity());
+        assertEquals(2, helper.getItemById(ids[1]).getQuantity());
+        assertEquals(100, helper.getItemById(ids[2]).getQuantity());
+        assertEquals(new HashSet<>(Arrays.asList(ids[0], ids[2])), feed.changesSince(version + 1).ids);
+    }
+
+    @Test
+    public void deletingAThousandSelectedItems_takesUnderASecond() {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            items.add(new Item("Item " + i, i, "Bay " + (i % 9)));
+        }
+        long[] ids = helper.insertItems(items);
+        long[] selected = new long[1_000];
+        for (int i = 0; i < selected.length; i++) selected[i] = ids[i * 5];
+        long version = helper.getChangeFeed().version();
+
+        long start = System.nanoTime();
+        int[] deleted = helper.deleteItems(selected);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        for (int rows : deleted) assertEquals(1, rows);
+        assertEquals(4_000, helper.getInventoryTotals().getItemCount());
+        assertTrue("Deleting 1000 items took " + elapsedMs + " ms", elapsedMs < 1_000);
+
+        // Reported as deletes, which the grid drops without reading anything back
+        ChangeFeed.Changes changes = helper.getChangeFeed().changesSince(version);
+        assertFalse(changes.everything);
+        assertEquals(1_000, changes.deleted.size());
+    }
+
+    @Test
+    public void quantityListener_getsOldAndNewQuantities() {
+        long[] ids = helper.insertItems(Arrays.asList(
+                new Item("Boxes", 17, "Bay 4"),
+                new Item("Tape", 29, null)));
+        helper.setLowStockThreshold(ids[1], 10);
+
+        List<QuantityChange> changes = new ArrayList<>();
+        helper.setQuantityListener(changes::addAll);
+
+        helper.updateItem(new Item(ids[0], "Boxes", 4, "Bay 4"));
+        helper.updateItems(Arrays.asList(new Item(ids[0], "Boxes", 4, "Bay 2"), new Item(ids[1], "Tape", 8, null)));
+        helper.upsertItems(Arrays.asList(new Item("Tape", 30, null), new Item("Labels", 1, "Bay 1")));
+
+        // Location-only and unchanged quantities are not reported
+        assertEquals(3, changes.size());
+        assertEquals(17, changes.get(0).oldQuantity);
+        assertTrue(changes.get(0).crossedBelow());
+        assertEquals(10, changes.get(1).threshold);
+        assertTrue(changes.get(1).crossedBelow());
+        assertEquals(ids[1], changes.get(2).itemId);
+        assertFalse(changes.get(2).isLow());
+
+        helper.setQuantityListener(null);
+        helper.updateItem(new Item(ids[0], "Boxes", 0, "Bay 2"));
+        assertEquals(3, changes.size());
+    }
+}
@@ -0,0 +1,170 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import com.baileyconnor.inventoryappv2.model.Item;
+import com.baileyconnor.inventoryappv2.model.ItemSummary;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseHelperCacheTest {
+
+    private DatabaseHelper helper;
+    private ItemCache cache;
+
+    @Before
+    public void setUp() {
+        helper = new DatabaseHelper(RuntimeEnvironment.getApplication());
+        cache = helper.getItemCache();
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Test
+    public void detailAfterPageLoad_isCacheHit() {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++) items.add(new Item("Item " + i, i, "Bay 1"));
+        helper.insertItems(items);
+        cache.clear();
+
+        List<Item> page = helper.getItemsPage(Long.MAX_VALUE, Long.MAX_VALUE, 60);
+        int misses = cache.missCount();
+        Item opened = helper.getItemById(page.get(10).getId());
+
+        assertEquals(page.get(10).getName(), opened.getName());
+        assertEquals(1, cache.hitCount());
+        assertEquals(misses, cache.missCount());
+    }
+
+    @Test
+    public void summaryPages_matchItemPagesWithoutCaching() {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++) items.add(new Item("Item " + i, i, "Bay 1"));
+        helper.insertItems(items);
+        cache.clear();
+
+        List<ItemSummary> first = helper.getItemSummaries(Long.MAX_VALUE, Long.MAX_VALUE, 60);
+        ItemSummary last = first.get(first.size() - 1);
+        List<ItemSummary> second = helper.getItemSummaries(last.getUpdatedAt(), last.getId(), 60);
+        assertEquals(0, cache.size());
+
+        List<ItemSummary> summaries = new ArrayList<>(first);
+        summaries.addAll(second);
+        List<Item> page = helper.getItemsPage(Long.MAX_VALUE, Long.MAX_VALUE, 200);
+        assertEquals(page.size(), summaries.size());
+        for (int i = 0; i < page.size(); i++) {
+            assertEquals(page.get(i).getId(), summaries.get(i).getId());
+            assertEquals(page.get(i).getName(), summaries.get(i).getName());
+            assertEquals(page.get(i).getQuantity(), summaries.get(i).getQuantity());
+        }
+    }
+
+    @Test
+    public void writes_keepCacheCoherent() {
+        long id = helper.insertItem(new Item("Tape", 29, "Bay 7"));
+        assertEquals(29, helper.getItemById(id).getQuantity());
+
+        helper.updateItem(new Item(id, "Tape", 3, "Bay 1"));
+        Item updated = helper.getItemById(id);
+        assertEquals(3, updated.getQuantity());
+        assertEquals("Bay 1", updated.getLocation());
+
+        helper.updateItems(Arrays.asList(new Item(id, "Tape", 8, "Bay 1")));
+        assertEquals(8, helper.getItemById(id).getQuantity());
+
+        helper.upsertItems(Arrays.asList(new Item("Tape", 40, "Bay 1")));
+        assertEquals(40, helper.getItemById(id).getQuantity());
+
+        helper.deleteItem(id);
+        assertNull(helper.getItemById(id));
+    }
+
+    @Test
+    public void writes_areReportedToTheChangeFeed() {
+        ChangeFeed feed = helper.getChangeFeed();
+        long id = helper.insertItem(new Item("Tape", 29, "Bay 7"));
+        long other = helper.insertItem(new Item("Boxes", 17, "Bay 4"));
+        long loaded = feed.version();
+
+        // Reads aren't changes
+        helper.getAllItems();
+        helper.getItemSummaries(Long.MAX_VALUE, Long.MAX_VALUE, 60);
+        assertTrue(feed.changesSince(loaded).isEmpty());
+
+        helper.adjustQuantity(id, -4, 0, DatabaseHelper.NO_CEILING);
+        helper.updateItems(Arrays.asList(new Item(id, "Tape", 8, "Bay 1")));
+        ChangeFeed.Changes changes = feed.changesSince(loaded);
+        assertFalse(changes.everything);
+        assertEquals(Collections.singleton(id), changes.ids);
+
+        // Nothing to report for a write that didn't change a row
+        long version = feed.version();
+        helper.deleteItem(other + 100);
+        assertEquals(version, feed.version());
+
+        helper.upsertItems(Arrays.asList(new Item("Tape", 40, "Bay 1")));
+        assertTrue(feed.changesSince(version).everything);
+    }
+
+    @Test
+    public void summariesByIds_leaveOutDeletedItems() {
+        long kept = helper.insertItem(new Item("Tape", 29, "Bay 7"));
+        long deleted = helper.insertItem(new Item("Boxes", 17, "Bay 4"));
+        long loaded = helper.getChangeFeed().version();
+        helper.updateQuantity(kept, 3);
+        helper.deleteItem(deleted);
+
+        ChangeFeed.Changes changes = helper.getChangeFeed().changesSince(loaded);
+        List<ItemSummary> rows = helper.getItemSummariesByIds(changes.ids);
+
+        assertEquals(new HashSet<>(Arrays.asList(kept, deleted)), changes.ids);
+        assertEquals(1, rows.size());
+        assertEquals(kept, rows.get(0).getId());
+        assertEquals(3, rows.get(0).getQuantity());
+    }
+
+    @Test
+    public void returnedItems_areCopies() {
+        long id = helper.insertItem(new Item("Boxes", 17, "Bay 4"));
+        helper.getItemById(id).setQuantity(0);
+
+        assertEquals(17, helper.getItemById(id).getQuantity());
+    }
+
+    @Test
+    public void readStartedBeforeWrite_isNotCached() {
+        long id = helper.insertItem(new Item("Nails", 103, "Bay 4"));
+        Item loaded = helper.getItemById(id);
+
+        long stamp = cache.stamp();
+        helper.updateItem(new Item(id, "Nails", 90, "Bay 4"));
+        cache.putIfUnchanged(loaded, stamp);
+
+        assertEquals(90, helper.getItemById(id).getQuantity());
+    }
+
+    @Test
+    public void cache_isBoundedAndCountsEvictions() {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < ItemCache.DEFAULT_MAX_ITEMS + 100; i++) items.add(new Item("Item " + i, i, "Bay 1"));
+        helper.insertItems(items);
+
+        assertEquals(ItemCache.DEFAULT_MAX_ITEMS, cache.size());
+        assertEquals(100, cache.evictionCount());
+    }
+}
@@ -0,0 +1,129 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.baileyconnor.inventoryappv2.model.Item;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseHelperConcurrencyTest {
+
+    private static final int COMMITTED = 1_000;
+    private static final int UNCOMMITTED = 50_000;
+
+    private final Context context = RuntimeEnvironment.getApplication();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+    private final ExecutorService reader = Executors.newSingleThreadExecutor();
+    private DatabaseHelper helper;
+
+    @After
+    public void tearDown() {
+        writer.shutdownNow();
+        reader.shutdownNow();
+        if (helper != null) helper.close();
+    }
+
+    @Test
+    public void profiles_areAppliedToTheConnections() {
+        helper = new DatabaseHelper(context, DatabaseProfile.DURABLE);
+        SQLiteDatabase db = helper.getWritableDatabase();
+
+        assertEquals("wal", DatabaseUtils.stringForQuery(db, "PRAGMA journal_mode", null));
+        // Read on a pooled connection
+        assertEquals(2, DatabaseUtils.longForQuery(db, "PRAGMA synchronous", null));
+
+        // A transaction holds the writer's connection
+        db.beginTransaction();
+        try {
+            assertEquals(2, DatabaseUtils.longForQuery(db, "PRAGMA synchronous", null));
+            assertEquals(DatabaseProfile.DURABLE.walAutoCheckpointPages,
+                    DatabaseUtils.longForQuery(db, "PRAGMA wal_autocheckpoint", null));
+            assertEquals(-DatabaseProfile.DURABLE.cacheSizeKb, DatabaseUtils.longForQuery(db, "PRAGMA cache_size", null));
+        } finally {
+            db.endTransaction();
+        }
+        helper.close();
+
+        helper = new DatabaseHelper(context);
+        assertSame(DatabaseProfile.BALANCED, helper.getProfile());
+        assertEquals(1, DatabaseUtils.longForQuery(helper.getReadableDatabase(), "PRAGMA synchronous", null));
+    }
+
+    @Test
+    public void readers_makeProgressWhileALargeWriteIsOpen() throws Exception {
+        helper = new DatabaseHelper(context);
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < COMMITTED; i++) items.add(new Item("Item " + i, i, "Bay " + (i % 8)));
+        helper.insertItems(items);
+
+        // A receiving dock batch, written inside a transaction that is then left open
+        List<Item> pallets = new ArrayList<>();
+        for (int i = 0; i < UNCOMMITTED; i++) pallets.add(new Item("Pallet " + i, 1, "Dock"));
+        CountDownLatch writeOpen = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        Future<?> write = writer.submit(() -> {
+            SQLiteDatabase db = helper.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                helper.insertItems(pallets);
+                writeOpen.countDown();
+                commit.await();
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            return null;
+        });
+        assertTrue(writeOpen.await(120, TimeUnit.SECONDS));
+
+        // Readers finish while the write is still open and see only what was committed
+        int reads = 0;
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+        while (reads == 0 || System.nanoTime() < end) {
+            Future<Integer> count = reader.submit(() -> helper.getAllItems().size());
+            assertEquals(COMMITTED, (int) count.get(5, TimeUnit.SECONDS));
+            Future<Integer> page = reader.submit(() ->
+                    helper.getItemSummaries(Long.MAX_VALUE, Long.MAX_VALUE, 60).size());
+            assertEquals(60, (int) page.get(5, TimeUnit.SECONDS));
+            reads++;
+        }
+        assertFalse(write.isDone());
+
+        commit.countDown();
+        write.get(60, TimeUnit.SECONDS);
+        assertEquals(COMMITTED + UNCOMMITTED, helper.getAllItems().size());
+    }
+
+    @Test
+    public void checkpoint_emptiesTheWal() {
+        helper = new DatabaseHelper(context, DatabaseProfile.THROUGHPUT);
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) items.add(new Item("Item " + i, i, "Bay 1"));
+        helper.insertItems(items);
+
+        File wal = new File(context.getDatabasePath("inventory_app.db").getPath() + "-wal");
+        assertTrue(wal.length() > 0);
+
+        assertTrue(helper.checkpoint());
+        assertEquals(0, wal.length());
+        assertEquals(5_000, helper.getAllItems().size());
+    }
+}
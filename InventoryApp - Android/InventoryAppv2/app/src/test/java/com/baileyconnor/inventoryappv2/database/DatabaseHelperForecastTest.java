@@ -0,0 +1,103 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import android.database.DatabaseUtils;
+
+import com.baileyconnor.inventoryappv2.forecast.DepletionForecaster;
+import com.baileyconnor.inventoryappv2.model.Item;
+import com.baileyconnor.inventoryappv2.model.ItemForecast;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseHelperForecastTest {
+
+    private DatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        helper = new DatabaseHelper(RuntimeEnvironment.getApplication());
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Test
+    public void updates_keepOneForecastRowPerItem() {
+        long id = helper.insertItem(new Item("Tape", 29, "Bay 7"));
+        assertNull(helper.getForecast(id));
+
+        // A rename doesn't touch the forecast
+        helper.updateItem(new Item(id, "Packing Tape", 29, "Bay 7"));
+        assertNull(helper.getForecast(id));
+
+        helper.updateItem(new Item(id, "Packing Tape", 20, "Bay 7"));
+        helper.updateItems(Arrays.asList(new Item(id, "Packing Tape", 12, "Bay 7")));
+        ItemForecast forecast = helper.getForecast(id);
+        assertEquals(12, forecast.getItem().getQuantity());
+        assertTrue(forecast.getUnitsPerDay() > 0);
+        assertNotEquals(DepletionForecaster.NEVER, forecast.getDepletesAt());
+        assertEquals(1, forecastRows());
+
+        helper.deleteItem(id);
+        assertNull(helper.getForecast(id));
+        assertEquals(0, forecastRows());
+    }
+
+    @Test
+    public void runningOutSoon_isSortedByDepletionTime() {
+        long[] ids = helper.insertItems(Arrays.asList(
+                new Item("Boxes", 100, "Bay 4"),
+                new Item("Nails", 100, "Bay 4"),
+                new Item("Tape", 10, "Bay 7"),
+                new Item("Labels", 5, "Bay 1")));
+
+        // Same usage, fewer left means sooner
+        helper.updateItem(new Item(ids[0], "Boxes", 90, "Bay 4"));
+        helper.updateItem(new Item(ids[1], "Nails", 60, "Bay 4"));
+        helper.updateItem(new Item(ids[2], "Tape", 0, "Bay 7"));
+        // Restocked, never used up
+        helper.updateItem(new Item(ids[3], "Labels", 50, "Bay 1"));
+
+        assertEquals(Arrays.asList("Tape", "Nails"), names(helper.getRunningOutSoon(2)));
+        assertEquals(Arrays.asList("Tape", "Nails", "Boxes"), names(helper.getRunningOutSoon(10)));
+        assertEquals(DepletionForecaster.NEVER, helper.getForecast(ids[3]).getDepletesAt());
+    }
+
+    @Test
+    public void imports_updateTheForecastOfMatchedItems() {
+        long id = helper.insertItem(new Item("Tape", 29, "Bay 7"));
+
+        // Same quantity, nothing was used
+        helper.upsertItems(Arrays.asList(new Item("Tape", 29, "bay 7")));
+        assertNull(helper.getForecast(id));
+
+        helper.upsertItems(Arrays.asList(new Item("Tape", 12, "Bay 7"), new Item("Labels", 5, "Bay 1")));
+        ItemForecast forecast = helper.getForecast(id);
+        assertEquals(12, forecast.getItem().getQuantity());
+        assertTrue(forecast.getUnitsPerDay() > 0);
+        assertEquals(1, forecastRows());
+    }
+
+    private long forecastRows() {
+        return DatabaseUtils.queryNumEntries(helper.getReadableDatabase(), DatabaseHelper.T_ITEM_FORECAST);
+    }
+
+    private static List<String> names(List<ItemForecast> forecasts) {
+        List<String> names = new ArrayList<>();
+        for (ItemForecast forecast : forecasts) names.add(forecast.getItem().getName());
+        return names;
+    }
+}
@@ -0,0 +1,188 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.baileyconnor.inventoryappv2.model.Item;
+import com.baileyconnor.inventoryappv2.model.ItemSummary;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseHelperItemQueryTest {
+
+    private static final int ROWS = 300;
+    private static final int PAGE_SIZE = 7;
+    private static final String[] NAMES = { "apple", "Apple", "Bolt", "bolt", "cable", "Zip tie", "\u00e9clair", "Nut" };
+
+    private DatabaseHelper helper;
+    // Low stock threshold of every item
+    private final Map<Long, Integer> thresholds = new HashMap<>();
+
+    @Before
+    public void setUp() {
+        helper = new DatabaseHelper(RuntimeEnvironment.getApplication());
+
+        // Repeated names and quantities so the id tie-break matters, some items without a location
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            String location = i % 7 == 0 ? null : (i % 5 == 0 ? "bay " : "Bay ") + (i % 4);
+            items.add(new Item(NAMES[i % NAMES.length], i % 23, location));
+        }
+        long[] ids = helper.insertItems(items);
+        for (long id : ids) {
+            int threshold = id % 3 == 0 ? 10 : DatabaseHelper.LOW_STOCK_QUANTITY;
+            if (threshold != DatabaseHelper.LOW_STOCK_QUANTITY) helper.setLowStockThreshold(id, threshold);
+            thresholds.put(id, threshold);
+        }
+        // A few distinct update times among the ties
+        for (int i = 0; i < ids.length; i += 11) {
+            helper.updateQuantity(ids[i], i % 17);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Test
+    public void everySortAndFilter_pagesThroughTheMatchingItemsInOrder() {
+        List<ItemQuery> queries = new ArrayList<>();
+        for (int sort = ItemQuery.SORT_UPDATED_AT; sort <= ItemQuery.SORT_LOCATION; sort++) {
+            for (boolean descending : new boolean[] { false, true }) {
+                ItemQuery query = ItemQuery.DEFAULT.withSort(sort, descending);
+                queries.add(query);
+                queries.add(query.withLocation("BAY 2"));
+                queries.add(query.withQuantityRange(4, 12));
+                queries.add(query.withQuantityRange(null, 6).withLowStockOnly(true));
+                queries.add(query.withLocation("Bay 1").withQuantityRange(3, null).withLowStockOnly(true));
+            }
+        }
+
+        for (ItemQuery query : queries) {
+            List<ItemSummary> expected = expected(query);
+            List<ItemSummary> paged = pageThrough(query);
+            assertEquals(query.toString(), ids(expected), ids(paged));
+        }
+    }
+
+    @Test
+    public void namesSortIgnoringCase_andItemsWithoutALocationComeFirst() {
+        List<ItemSummary> byName = pageThrough(ItemQuery.DEFAULT.withSort(ItemQuery.SORT_NAME, false));
+        List<String> names = new ArrayList<>();
+        for (ItemSummary item : byName) {
+            if (names.isEmpty() || !names.get(names.size() - 1).equalsIgnoreCase(item.getName())) names.add(item.getName());
+        }
+        // apple/Apple and Bolt/bolt are each one group, non-ASCII sorts after ASCII
+        assertEquals(Arrays.asList("apple", "Bolt", "cable", "Nut", "Zip tie", "\u00e9clair"), names);
+
+        List<ItemSummary> byLocation = pageThrough(ItemQuery.DEFAULT.withSort(ItemQuery.SORT_LOCATION, false));
+        assertNull(byLocation.get(0).getLocation());
+        assertEquals("Bay 3", byLocation.get(byLocation.size() - 1).getLocation());
+    }
+
+    @Test
+    public void unknownLocation_matchesNothing() {
+        assertTrue(helper.queryItemSummaries(ItemQuery.DEFAULT.withLocation("Bay 99"), null, PAGE_SIZE).isEmpty());
+    }
+
+    @Test
+    public void rowsById_onlyIncludeTheOnesThatStillMatch() {
+        ItemQuery query = ItemQuery.DEFAULT.withQuantityRange(10, null);
+        List<ItemSummary> page = helper.queryItemSummaries(query, null, PAGE_SIZE);
+        long moved = page.get(0).getId();
+        long kept = page.get(1).getId();
+        helper.updateQuantity(moved, 2);
+
+        List<ItemSummary> rows = helper.queryItemSummariesByIds(query, Arrays.asList(moved, kept));
+        assertEquals(Collections.singletonList(kept), ids(rows));
+    }
+
+    @Test
+    public void compiledQueries_walkTheSortIndexWithoutSorting() {
+        SQLiteDatabase db = helper.getReadableDatabase();
+        db.execSQL("ANALYZE");
+        ItemSummary after = new ItemSummary(50, "Bolt", 7, "Bay 1", 1_000L);
+
+        List<String> failures = new ArrayList<>();
+        for (int sort = ItemQuery.SORT_UPDATED_AT; sort <= ItemQuery.SORT_LOCATION; sort++) {
+            for (boolean descending : new boolean[] { false, true }) {
+                ItemQuery query = ItemQuery.DEFAULT.withSort(sort, descending);
+                for (ItemQuery filtered : Arrays.asList(query, query.withQuantityRange(1, 20).withLowStockOnly(true))) {
+                    for (long locationId : new long[] { DatabaseHelper.ANY_LOCATION, 0, 2 }) {
+                        if (sort == ItemQuery.SORT_LOCATION && locationId == DatabaseHelper.ANY_LOCATION) continue;
+                        for (ItemSummary key : Arrays.asList(null, after)) {
+                            List<String> args = new ArrayList<>();
+                            String sql = DatabaseHelper.compileItemQuery(filtered, locationId, key, PAGE_SIZE, args);
+                            for (String step : plan(db, sql, args)) {
+                                if (step.contains("TEMP B-TREE") || !step.contains("INDEX idx_items_")) {
+                                    failures.add(sql + "\n    -> " + step);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        assertTrue("Queries that don't read off their index:\n" + String.join("\n", failures), failures.isEmpty());
+    }
+
+    // --- --- Helper Functions --- --- \\
+
+    private List<ItemSummary> pageThrough(ItemQuery query) {
+        List<ItemSummary> all = new ArrayList<>();
+        ItemSummary after = null;
+        while (true) {
+            List<ItemSummary> page = helper.queryItemSummaries(query, after, PAGE_SIZE);
+            all.addAll(page);
+            if (page.size() < PAGE_SIZE) return all;
+            after = page.get(page.size() - 1);
+        }
+    }
+
+    // Filtered and sorted in memory, to compare against what the database returns
+    private List<ItemSummary> expected(ItemQuery query) {
+        List<ItemSummary> expected = new ArrayList<>();
+        for (Item item : helper.getAllItems()) {
+            if (query.location != null && (item.getLocation() == null || !item.getLocation().equalsIgnoreCase(query.location))) continue;
+            if (query.minQuantity != null && item.getQuantity() < query.minQuantity) continue;
+            if (query.maxQuantity != null && item.getQuantity() > query.maxQuantity) continue;
+            if (query.lowStockOnly && item.getQuantity() > thresholds.get(item.getId())) continue;
+            expected.add(new ItemSummary(item));
+        }
+        expected.sort(query::compare);
+        return expected;
+    }
+
+    private static List<Long> ids(List<ItemSummary> items) {
+        List<Long> ids = new ArrayList<>(items.size());
+        for (ItemSummary item : items) ids.add(item.getId());
+        return ids;
+    }
+
+    private static List<String> plan(SQLiteDatabase db, String sql, List<String> args) {
+        List<String> steps = new ArrayList<>();
+        try (Cursor c = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args.toArray(new String[0]))) {
+            int detail = c.getColumnIndexOrThrow("detail");
+            while (c.moveToNext()) {
+                steps.add(c.getString(detail));
+            }
+        }
+        return steps;
+    }
+}
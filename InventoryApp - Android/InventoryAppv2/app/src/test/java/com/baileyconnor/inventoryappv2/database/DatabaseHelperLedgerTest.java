@@ -0,0 +1,135 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import com.baileyconnor.inventoryappv2.model.Item;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseHelperLedgerTest {
+
+    private static final long DAY = DatabaseHelper.LEDGER_BUCKET_MS;
+
+    private DatabaseHelper helper;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        helper = new DatabaseHelper(RuntimeEnvironment.getApplication());
+        db = helper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Test
+    public void quantityAt_replaysTheLedger() {
+        long id = insertAt(10 * DAY + 1_000, 50);
+        setQuantityAt(id, 10 * DAY + 2_000, 40);
+        setQuantityAt(id, 11 * DAY + 500, 35);
+        setQuantityAt(id, 12 * DAY + 100, 20);
+        setQuantityAt(id, 14 * DAY, 10);
+
+        assertEquals(0, helper.quantityAt(id, 9 * DAY));
+        assertEquals(50, helper.quantityAt(id, 10 * DAY + 1_500));
+        assertEquals(35, helper.quantityAt(id, 11 * DAY + 600));
+        assertEquals(20, helper.quantityAt(id, 13 * DAY));
+        assertEquals(10, helper.quantityAt(id, 15 * DAY));
+    }
+
+    @Test
+    public void compaction_keepsRecentHistoryAndEndOfDayQuantities() {
+        long id = insertAt(10 * DAY + 1_000, 50);
+        setQuantityAt(id, 10 * DAY + 2_000, 40);
+        setQuantityAt(id, 11 * DAY + 500, 35);
+        setQuantityAt(id, 12 * DAY + 100, 20);
+        setQuantityAt(id, 14 * DAY, 10);
+
+        // The cutoff is rounded down to the end of day 12
+        assertEquals(4, helper.compactLedger(13 * DAY + 5, DAY));
+        assertEquals(1, count(DatabaseHelper.T_QUANTITY_LEDGER));
+        assertEquals(3, count(DatabaseHelper.T_QUANTITY_SNAPSHOTS));
+
+        assertEquals(0, helper.quantityAt(id, 10 * DAY + 1_500));
+        assertEquals(40, helper.quantityAt(id, 11 * DAY + 600));
+        assertEquals(20, helper.quantityAt(id, 13 * DAY));
+        assertEquals(10, helper.quantityAt(id, 15 * DAY));
+
+        // Compacting again builds on the earlier snapshots
+        assertEquals(1, helper.compactLedger(16 * DAY - 1, DAY));
+        assertEquals(0, count(DatabaseHelper.T_QUANTITY_LEDGER));
+        assertEquals(20, helper.quantityAt(id, 13 * DAY));
+        assertEquals(10, helper.quantityAt(id, 15 * DAY));
+    }
+
+    @Test
+    public void compaction_keepsTheSnapshotCountBounded() {
+        long retained = DatabaseHelper.SNAPSHOT_RETENTION_MS / DAY;
+        long id = insertAt(DAY, 1);
+        // One movement a day for over two years, compacted every 30 days
+        for (int day = 2; day <= 2 * retained + 60; day++) {
+            setQuantityAt(id, day * DAY + 1_000, day);
+            if (day % 30 == 0) {
+                helper.compactLedger(day * DAY - 1, DAY);
+                assertTrue(count(DatabaseHelper.T_QUANTITY_SNAPSHOTS) <= retained + 2);
+            }
+        }
+        long end = (2 * retained + 60) * DAY;
+        helper.compactLedger(end - 1, DAY);
+        // The end of every day from the horizon on, plus the base before it
+        assertEquals(retained + 2, count(DatabaseHelper.T_QUANTITY_SNAPSHOTS));
+
+        // Everything inside the horizon still reads back, the kept base included
+        assertEquals(2 * retained + 59, helper.quantityAt(id, end - 1));
+        assertEquals(retained + 59, helper.quantityAt(id, end - retained * DAY));
+        assertEquals(0, helper.quantityAt(id, 10 * DAY));
+    }
+
+    @Test
+    public void quantityAt_now_matchesCurrentQuantity() {
+        Random random = new Random(7);
+        long[] ids = new long[20];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = helper.insertItem(new Item("Item " + i, random.nextInt(100), "Bay 1"));
+        }
+        for (int i = 0; i < 300; i++) {
+            long id = ids[random.nextInt(ids.length)];
+            helper.updateItem(new Item(id, "Item", random.nextInt(100), "Bay 1"));
+        }
+        helper.deleteItem(ids[0]);
+        helper.compactLedger(System.currentTimeMillis() - 1, 1_000);
+
+        long now = System.currentTimeMillis() + 1_000;
+        assertEquals(0, helper.quantityAt(ids[0], now));
+        for (int i = 1; i < ids.length; i++) {
+            assertEquals(helper.getItemById(ids[i]).getQuantity(), helper.quantityAt(ids[i], now));
+        }
+    }
+
+    // Writes through SQL with a chosen updated_at, the ledger triggers take their time from it
+    private long insertAt(long time, int quantity) {
+        db.execSQL("INSERT INTO items (name, quantity, updated_at) VALUES ('Boxes', ?, ?)",
+                new Object[] { quantity, time });
+        return helper.getAllItems().get(0).getId();
+    }
+
+    private void setQuantityAt(long id, long time, int quantity) {
+        db.execSQL("UPDATE items SET quantity = ?, updated_at = ? WHERE id = ?", new Object[] { quantity, time, id });
+    }
+
+    private long count(String table) {
+        return android.database.DatabaseUtils.queryNumEntries(db, table);
+    }
+}
@@ -0,0 +1,129 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.baileyconnor.inventoryappv2.model.Item;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseHelperLocationTest {
+
+    private DatabaseHelper helper;
+    private LocationDictionary locations;
+
+    @Before
+    public void setUp() {
+        helper = new DatabaseHelper(RuntimeEnvironment.getApplication());
+        locations = helper.getLocationDictionary();
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Test
+    public void items_shareOneStringPerLocation() {
+        helper.insertItems(Arrays.asList(
+                new Item("Boxes", 17, "Bay 4"),
+                new Item("Nails", 103, "bay 4 "),
+                new Item("Tape", 29, "Bay 7"),
+                new Item("Cups", 51, "  ")));
+        helper.getItemCache().clear();
+
+        List<Item> items = helper.getAllItems();
+        assertEquals(2, DatabaseUtils.queryNumEntries(helper.getReadableDatabase(), DatabaseHelper.T_LOCATIONS));
+        assertEquals(2, locations.size());
+        assertNull(find(items, "Cups").getLocation());
+        assertEquals("Bay 4", find(items, "Nails").getLocation());
+        assertSame(find(items, "Boxes").getLocation(), find(items, "Nails").getLocation());
+    }
+
+    @Test
+    public void itemsAtLocation_areReadOffTheIndexLowestStockFirst() {
+        helper.insertItems(Arrays.asList(
+                new Item("Boxes", 17, "Bay 4"),
+                new Item("Tape", 29, "Bay 7"),
+                new Item("Nails", 3, "Bay 4")));
+
+        List<Item> bay4 = helper.getItemsAtLocation(" bay 4");
+        assertEquals(2, bay4.size());
+        assertEquals("Nails", bay4.get(0).getName());
+        assertEquals("Boxes", bay4.get(1).getName());
+        assertTrue(helper.getItemsAtLocation("Bay 9").isEmpty());
+        assertTrue(helper.getItemsAtLocation(null).isEmpty());
+
+        long id = bay4.get(0).getId();
+        helper.updateLocation(id, "BAY 7");
+        assertEquals(1, helper.getItemsAtLocation("Bay 4").size());
+        assertEquals("Bay 7", helper.getItemById(id).getLocation());
+        assertEquals(2, helper.getItemsAtLocation("Bay 7").size());
+    }
+
+    @Test
+    public void rolledBackLocations_neverReachTheDictionary() {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            helper.insertItem(new Item("Pallet", 1, "Dock"));
+            // Visible to the transaction that made it, but not kept
+            assertNotEquals(0, locations.existingIdOf(db, "Dock"));
+            assertEquals(0, locations.size());
+        } finally {
+            db.endTransaction();
+        }
+        helper.getItemCache().clear();
+
+        assertTrue(helper.getAllItems().isEmpty());
+        assertEquals(0, locations.existingIdOf(db, "Dock"));
+        assertEquals(0, locations.size());
+
+        // Created again once it's written for real
+        long id = helper.insertItem(new Item("Pallet", 1, "dock"));
+        helper.getItemCache().clear();
+        assertEquals("dock", helper.getItemById(id).getLocation());
+        assertEquals(1, locations.size());
+    }
+
+    @Test
+    public void idsByName_isKeptUntilALocationIsAdded() {
+        helper.insertItems(Arrays.asList(
+                new Item("Boxes", 17, "Bay 7"),
+                new Item("Tape", 29, "bay 4")));
+        SQLiteDatabase db = helper.getReadableDatabase();
+        long bay4 = locations.existingIdOf(db, "Bay 4");
+        long bay7 = locations.existingIdOf(db, "Bay 7");
+
+        List<Long> ids = locations.idsByName(db);
+        assertEquals(Arrays.asList(0L, bay4, bay7), ids);
+        // A copy, changing it leaves the cached order alone
+        ids.clear();
+        assertEquals(Arrays.asList(0L, bay4, bay7), locations.idsByName(db));
+
+        // Read before anything else reloads the dictionary, so only the insert can have reset it
+        helper.insertItem(new Item("Nails", 3, "Bay 5"));
+        ids = locations.idsByName(db);
+        assertEquals(Arrays.asList(0L, bay4, locations.existingIdOf(db, "Bay 5"), bay7), ids);
+    }
+
+    // --- --- Helper Functions --- --- \\
+
+    private static Item find(List<Item> items, String name) {
+        for (Item item : items) {
+            if (item.getName().equals(name)) return item;
+        }
+        return null;
+    }
+}
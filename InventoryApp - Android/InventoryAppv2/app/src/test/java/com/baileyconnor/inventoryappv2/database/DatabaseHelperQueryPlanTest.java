@@ -0,0 +1,201 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.baileyconnor.inventoryappv2.model.ItemSummary;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs EXPLAIN QUERY PLAN for every SQL_ query and STMT_ statement in DatabaseHelper,
+ * and every shape a compiled ItemQuery takes, against a large items table. Fails on
+ * any scan of a table, unless it walks an index and stops at a LIMIT, and on temp
+ * B-tree sorts (full-text queries may sort their matches). The few statements that
+ * are meant to read a whole table are listed with the reason.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseHelperQueryPlanTest {
+
+    private static final int ROWS = 5_000;
+    private static final int PAGE_SIZE = 60;
+
+    // Statements that read a whole table (or sort what they read) on purpose
+    private static final Map<String, String> WHOLE_TABLE_READS = new HashMap<>();
+    static {
+        WHOLE_TABLE_READS.put("SQL_ALL_ITEMS", "getAllItems and claiming the prepackaged items want every item");
+        WHOLE_TABLE_READS.put("SQL_LOCATION_TOTALS_LIVE", "recounts location_summary from items to verify it");
+        WHOLE_TABLE_READS.put("SQL_LOCATION_SUMMARIES", "location_summary has one row per location");
+        WHOLE_TABLE_READS.put("SQL_INVENTORY_TOTALS", "location_summary has one row per location");
+        WHOLE_TABLE_READS.put("SQL_ALL_LOCATIONS", "loads LocationDictionary, one row per location");
+        WHOLE_TABLE_READS.put("STMT_COMPACT_LEDGER", "groups the ledger rows past the cutoff into buckets");
+        WHOLE_TABLE_READS.put("STMT_PRUNE_SNAPSHOTS", "runs with compaction, old snapshots are spread over every item");
+    }
+
+    private DatabaseHelper helper;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        helper = new DatabaseHelper(RuntimeEnvironment.getApplication());
+        db = helper.getWritableDatabase();
+
+        db.beginTransaction();
+        try {
+            for (int i = 1; i <= 9; i++) {
+                db.execSQL("INSERT INTO " + DatabaseHelper.T_LOCATIONS + " (" + DatabaseHelper.C_ID + ", " +
+                        DatabaseHelper.C_NAME + ") VALUES (?, ?)", new Object[] { i, "Bay " + i });
+            }
+            for (int i = 0; i < ROWS; i++) {
+                db.execSQL("INSERT INTO " + DatabaseHelper.T_ITEMS + " (" +
+                                DatabaseHelper.C_NAME + ", " + DatabaseHelper.C_QTY + ", " +
+                                DatabaseHelper.C_LOCATION_ID + ", " + DatabaseHelper.C_UPDATED_AT + ", " +
+                                DatabaseHelper.C_SKU + ") VALUES (?, ?, ?, ?, ?)",
+                        new Object[] { "Item " + i, i % 50, 1 + i % 9, 1_000L + i, i % 2 == 0 ? "SKU-" + i : null });
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        db.execSQL("ANALYZE");
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Test
+    public void everyStatement_usesIndexes() throws Exception {
+        Map<String, String> statements = statements();
+        assertTrue(statements.keySet().containsAll(WHOLE_TABLE_READS.keySet()));
+
+        Set<String> tables = tables();
+        List<String> failures = new ArrayList<>();
+        for (Map.Entry<String, String> statement : statements.entrySet()) {
+            if (WHOLE_TABLE_READS.containsKey(statement.getKey())) continue;
+            String sql = statement.getValue();
+            failures.addAll(check(sql, plan(sql, defaultArgs(sql)), tables));
+        }
+
+        assertTrue("Statements without a usable index:\n" + String.join("\n", failures), failures.isEmpty());
+    }
+
+    @Test
+    public void everyCompiledItemQuery_usesIndexes() {
+        ItemSummary after = new ItemSummary(50, "Item 50", 7, "Bay 1", 1_050L);
+
+        Set<String> tables = tables();
+        List<String> failures = new ArrayList<>();
+        for (int sort = ItemQuery.SORT_UPDATED_AT; sort <= ItemQuery.SORT_LOCATION; sort++) {
+            for (boolean descending : new boolean[] { false, true }) {
+                ItemQuery query = ItemQuery.DEFAULT.withSort(sort, descending);
+                for (ItemQuery filtered : Arrays.asList(query, query.withQuantityRange(1, 20).withLowStockOnly(true))) {
+                    for (long locationId : new long[] { DatabaseHelper.ANY_LOCATION, 0, 2 }) {
+                        if (sort == ItemQuery.SORT_LOCATION && locationId == DatabaseHelper.ANY_LOCATION) continue;
+                        for (ItemSummary key : Arrays.asList(null, after)) {
+                            List<String> args = new ArrayList<>();
+                            String sql = DatabaseHelper.compileItemQuery(filtered, locationId, key, PAGE_SIZE, args);
+                            failures.addAll(check(sql, plan(sql, args.toArray(new String[0])), tables));
+                        }
+                    }
+                }
+            }
+        }
+
+        assertTrue("Compiled queries without a usable index:\n" + String.join("\n", failures), failures.isEmpty());
+    }
+
+    // The steps of a plan that read a whole table or sort it
+    private static List<String> check(String sql, List<String> steps, Set<String> tables) {
+        // A full-text query only sorts the rows that matched, not the whole table
+        boolean fullText = steps.stream().anyMatch(step -> step.contains("VIRTUAL TABLE"));
+        List<String> failures = new ArrayList<>();
+        for (String step : steps) {
+            if (isFullScan(sql, step, tables) || (step.contains("USE TEMP B-TREE") && !fullText)) {
+                failures.add(sql + "\n    -> " + step);
+            }
+        }
+        return failures;
+    }
+
+    // Any SCAN step over a real table reads all of it, whether it walks the table or one of
+    // its indexes. The one exception is walking an index in the order a statement wants
+    // when the statement stops at a LIMIT, which reads no more than the limit (a primary
+    // key or index lookup is a SEARCH step, and scans of a CTE, a subquery result, a
+    // constant row or the full-text index are fine).
+    private static boolean isFullScan(String sql, String step, Set<String> tables) {
+        if (!step.startsWith("SCAN ")) return false;
+        String scanned = step.substring("SCAN ".length()).replaceFirst("^TABLE ", "").split(" ")[0];
+        if (!tables.contains(scanned) || step.contains("VIRTUAL TABLE")) return false;
+        boolean limited = sql.trim().endsWith(" LIMIT ?");
+        return !(limited && step.contains(" INDEX "));
+    }
+
+    private Set<String> tables() {
+        Set<String> tables = new HashSet<>();
+        try (Cursor c = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'table'", null)) {
+            while (c.moveToNext()) {
+                tables.add(c.getString(0));
+            }
+        }
+        return tables;
+    }
+
+    private static String[] defaultArgs(String sql) {
+        String[] args = new String[countParams(sql)];
+        Arrays.fill(args, "1");
+        return args;
+    }
+
+    private List<String> plan(String sql, String[] args) {
+        List<String> steps = new ArrayList<>();
+        try (Cursor c = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args)) {
+            int detail = c.getColumnIndexOrThrow("detail");
+            while (c.moveToNext()) {
+                steps.add(c.getString(detail));
+            }
+        }
+        return steps;
+    }
+
+    private static int countParams(String sql) {
+        int count = 0;
+        for (char ch : sql.toCharArray()) {
+            if (ch == '?') count++;
+        }
+        return count;
+    }
+
+    // Every static String constant named SQL_* or STMT_* in DatabaseHelper, by name
+    private static Map<String, String> statements() throws IllegalAccessException {
+        Map<String, String> statements = new LinkedHashMap<>();
+        for (Field field : DatabaseHelper.class.getDeclaredFields()) {
+            String name = field.getName();
+            if ((name.startsWith("SQL_") || name.startsWith("STMT_")) && Modifier.isStatic(field.getModifiers())
+                    && field.getType() == String.class) {
+                field.setAccessible(true);
+                statements.put(name, (String) field.get(null));
+            }
+        }
+        return statements;
+    }
+}
@@ -0,0 +1,110 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import android.os.CancellationSignal;
+
+import com.baileyconnor.inventoryappv2.model.Item;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseHelperSearchTest {
+
+    private DatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        helper = new DatabaseHelper(RuntimeEnvironment.getApplication());
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Test
+    public void search_matchesWordPrefixesInNameAndLocation() {
+        helper.insertItems(Arrays.asList(
+                new Item("USB-C Cable (1M)", 25, "Bay 2"),
+                new Item("Lightning Cable (1M)", 24, "Bay 3"),
+                new Item("Cable Ties", 300, "Bay 5"),
+                new Item("Boxes", 17, "Cable Shelf")));
+
+        assertEquals(Arrays.asList("USB-C Cable (1M)"), names(helper.searchItems("usb ca", 10)));
+        assertEquals(Arrays.asList("Lightning Cable (1M)"), names(helper.searchItems("LIGHT", 10)));
+        assertTrue(helper.searchItems("   ", 10).isEmpty());
+        assertTrue(helper.searchItems("%_", 10).isEmpty());
+
+        // Name prefix first, then name contains, then location-only matches
+        assertEquals(Arrays.asList("Cable Ties", "USB-C Cable (1M)", "Lightning Cable (1M)", "Boxes"),
+                names(helper.searchItems("cab", 10)));
+        assertEquals(2, helper.searchItems("cab", 2).size());
+    }
+
+    @Test
+    public void search_followsInsertsRenamesAndDeletes() {
+        long id = helper.insertItem(new Item("Tape", 29, "Bay 7"));
+        assertEquals(1, helper.searchItems("tap", 10).size());
+
+        helper.updateItem(new Item(id, "Packing Paper", 29, "Bay 7"));
+        assertTrue(helper.searchItems("tap", 10).isEmpty());
+        assertEquals(1, helper.searchItems("pack", 10).size());
+
+        helper.deleteItem(id);
+        assertTrue(helper.searchItems("pack", 10).isEmpty());
+        assertTrue(helper.searchItems("bay", 10).isEmpty());
+    }
+
+    @Test
+    public void search_cancelledQueryReturnsNothing() {
+        helper.insertItem(new Item("Tape", 29, "Bay 7"));
+        CancellationSignal signal = new CancellationSignal();
+        signal.cancel();
+
+        assertTrue(helper.searchItems("tape", 10, signal).isEmpty());
+    }
+
+    @Test
+    public void matchQuery_prefixesEveryWord() {
+        assertEquals("usb* c* ca*", DatabaseHelper.matchQuery("USB-C ca"));
+        assertEquals("or* not*", DatabaseHelper.matchQuery("OR \"NOT\""));
+        assertEquals("", DatabaseHelper.matchQuery(" *-( "));
+    }
+
+    @Test
+    public void search_staysFastWithManyItems() {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            String name = i % 1_000 == 0 ? "USB-C Cable " + i : "Item " + i;
+            items.add(new Item(name, i % 50, "Bay " + (i % 9)));
+        }
+        helper.insertItems(items);
+
+        // Warm up, then time the typed prefixes of one search
+        helper.searchItems("usb", 20);
+        long start = System.nanoTime();
+        String[] typed = { "u", "us", "usb", "usb c", "usb ca", "usb cab" };
+        for (String query : typed) {
+            assertFalse(helper.searchItems(query, 20).isEmpty());
+        }
+        long averageMs = (System.nanoTime() - start) / 1_000_000 / typed.length;
+
+        assertTrue("Average search took " + averageMs + " ms", averageMs < 10);
+    }
+
+    private static List<String> names(List<Item> items) {
+        List<String> names = new ArrayList<>();
+        for (Item item : items) names.add(item.getName());
+        return names;
+    }
+}
@@ -0,0 +1,107 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import com.baileyconnor.inventoryappv2.model.Item;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseHelperSkuTest {
+
+    private DatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        helper = new DatabaseHelper(RuntimeEnvironment.getApplication());
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Test
+    public void skus_areUniqueAndFoundTrimmed() {
+        long boxes = helper.insertItem(withSku(new Item("Boxes", 17, "Bay 4"), " 0012345 "));
+        long tape = helper.insertItem(new Item("Tape", 29, "Bay 7"));
+        helper.getItemCache().clear();
+
+        assertEquals(boxes, helper.getItemBySku("0012345").getId());
+        assertEquals("0012345", helper.getItemById(boxes).getSku());
+        assertNull(helper.getItemBySku("0099999"));
+        assertNull(helper.getItemBySku("  "));
+
+        // Taken by Boxes, so neither a new item nor Tape can have it
+        assertEquals(-1, helper.insertItem(withSku(new Item("Nails", 103), "0012345")));
+        assertEquals(-1, helper.setSku(tape, "0012345"));
+        assertEquals(1, helper.setSku(tape, "0054321"));
+        assertEquals(tape, helper.getItemBySku("0054321").getId());
+
+        // Any number of items can have none
+        assertEquals(1, helper.setSku(boxes, ""));
+        assertNull(helper.getItemById(boxes).getSku());
+        assertNull(helper.getItemBySku("0012345"));
+        assertNotEquals(-1, helper.insertItem(new Item("Cups", 51)));
+    }
+
+    @Test
+    public void updates_keepTheSku() {
+        long id = helper.insertItems(Collections.singletonList(withSku(new Item("Boxes", 17, "Bay 4"), "0012345")))[0];
+
+        // A copy of the item that never had its sku read
+        helper.updateItem(new Item(id, "Boxes", 12, "Bay 4"));
+        assertEquals("0012345", helper.getItemById(id).getSku());
+        helper.updateItems(Collections.singletonList(new Item(id, "Boxes", 9, "Bay 4")));
+        assertEquals("0012345", helper.getItemById(id).getSku());
+        assertEquals(9, helper.getItemBySku("0012345").getQuantity());
+    }
+
+    @Test
+    public void scanSession_answersFromMemoryAndFollowsWrites() {
+        long[] ids = helper.insertItems(Arrays.asList(
+                withSku(new Item("Boxes", 17, "Bay 4"), "A1"),
+                withSku(new Item("Tape", 29, "Bay 7"), "A2"),
+                new Item("Nails", 103, "Bay 4")));
+        ScanSession session = new ScanSession(helper);
+        assertEquals(2, session.size());
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("Boxes", session.scan("A1").getName());
+            assertNull(session.scan("A3"));
+        }
+        assertEquals(1, session.getMisses());
+        assertEquals(19, session.getHits());
+
+        // The sku moves from Boxes to Nails, and Tape is deleted
+        helper.setSku(ids[0], null);
+        helper.setSku(ids[2], "A1");
+        helper.deleteItem(ids[1]);
+        assertEquals(ids[2], (long) session.idOf("A1"));
+        assertNull(session.idOf("A2"));
+
+        // An unknown sku is looked up again once it could have been given out
+        helper.setSku(ids[0], "A3");
+        assertEquals(ids[0], (long) session.idOf("A3"));
+
+        // A write without ids reloads the whole map
+        helper.upsertItems(Collections.singletonList(new Item("Nails", 90, "Bay 4")));
+        assertEquals(ids[2], (long) session.idOf("A1"));
+        assertEquals(2, session.getReloads());
+    }
+
+    // --- --- Helper Functions --- --- \\
+
+    private static Item withSku(Item item, String sku) {
+        item.setSku(sku);
+        return item;
+    }
+}
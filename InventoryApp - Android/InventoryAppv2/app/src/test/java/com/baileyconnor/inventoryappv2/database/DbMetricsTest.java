@@ -0,0 +1,112 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import com.baileyconnor.inventoryappv2.model.Item;
+
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for DbMetrics and InstrumentedStore, no Android classes are needed.
+ */
+public class DbMetricsTest {
+
+    private static final long MS = 1_000_000;
+
+    @Test
+    public void buckets_coverEveryLatencyWithinAQuarter() {
+        for (long micros = 1; micros < 50_000_000; micros += 1 + micros / 7) {
+            int bucket = DbMetrics.bucketOf(micros * 1_000);
+            long upper = DbMetrics.bucketUpperMicros(bucket);
+            assertTrue(micros + "us in bucket " + bucket, micros <= upper);
+            assertTrue(micros + "us in bucket " + bucket, upper <= micros * 1.25);
+            if (bucket > 0) assertTrue(DbMetrics.bucketUpperMicros(bucket - 1) < micros);
+        }
+    }
+
+    @Test
+    public void percentiles_comeFromTheHistogram() {
+        DbMetrics metrics = new DbMetrics();
+        // 90 fast reads of 1 ms, 9 of 10 ms and one of 200 ms
+        for (int i = 0; i < 90; i++) metrics.record("getAllItems", MS, 100);
+        for (int i = 0; i < 9; i++) metrics.record("getAllItems", 10 * MS, 100);
+        metrics.record("getAllItems", 200 * MS, 100);
+
+        DbMetrics.Stats stats = metrics.snapshot().get(0);
+        assertEquals("getAllItems", stats.operation);
+        assertEquals(100, stats.count);
+        assertEquals(10_000, stats.rows);
+        assertEquals(1, stats.p50Ms, 0.25);
+        assertEquals(10, stats.p95Ms, 2.5);
+        assertEquals(10, stats.p99Ms, 2.5);
+        assertEquals(200, stats.maxMs, 0.001);
+        assertEquals(10_000 / (stats.totalMs / 1000), stats.rowsPerSecond, 0.001);
+    }
+
+    @Test
+    public void slowQueries_keepTheLatestOverTheThreshold() {
+        DbMetrics metrics = new DbMetrics();
+        metrics.setSlowThresholdMs(50);
+        metrics.record("getItemById", 2 * MS, 1);
+        for (int i = 0; i < DbMetrics.SLOW_LOG_SIZE + 5; i++) {
+            metrics.record("getAllItems", (60 + i) * MS, i);
+        }
+
+        List<DbMetrics.SlowQuery> slow = metrics.slowQueries();
+        assertEquals(DbMetrics.SLOW_LOG_SIZE, slow.size());
+        assertEquals(DbMetrics.SLOW_LOG_SIZE + 5, metrics.slowQueryCount());
+        assertEquals(DbMetrics.SLOW_LOG_SIZE + 4, slow.get(0).rows);
+        for (DbMetrics.SlowQuery query : slow) assertEquals("getAllItems", query.operation);
+
+        metrics.reset();
+        assertTrue(metrics.slowQueries().isEmpty());
+        assertTrue(metrics.snapshot().isEmpty());
+        assertEquals(50, metrics.getSlowThresholdMs());
+    }
+
+    @Test
+    public void instrumentedStore_recordsOperationsOnlyWhileEnabled() {
+        DbMetrics metrics = new DbMetrics();
+        InventoryStore store = new InstrumentedStore(fakeStore(), metrics);
+
+        store.getAllItems();
+        store.getAllItems();
+        store.insertItems(Arrays.asList(new Item("Tape", 3), new Item("Nails", 9)));
+        metrics.setEnabled(false);
+        store.getAllItems();
+        store.getItemById(1);
+
+        List<DbMetrics.Stats> snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.size());
+        for (DbMetrics.Stats stats : snapshot) {
+            if (stats.operation.equals("getAllItems")) {
+                assertEquals(2, stats.count);
+                assertEquals(4, stats.rows);
+            } else {
+                assertEquals("insertItems", stats.operation);
+                assertEquals(1, stats.count);
+                assertEquals(2, stats.rows);
+            }
+        }
+    }
+
+    // --- --- Helper Functions --- --- \\
+
+    // Lists come back with two items, everything else with a default for its type
+    private static InventoryStore fakeStore() {
+        return (InventoryStore) Proxy.newProxyInstance(
+                InventoryStore.class.getClassLoader(),
+                new Class<?>[] { InventoryStore.class },
+                (proxy, method, args) -> {
+                    Class<?> type = method.getReturnType();
+                    if (type == long[].class) return new long[] { 1, 2 };
+                    if (type == List.class) return new ArrayList<>(Arrays.asList(new Item("Boxes", 1), new Item("Tape", 2)));
+                    return null;
+                });
+    }
+}
@@ -0,0 +1,194 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import com.baileyconnor.inventoryappv2.model.Item;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for InventoryRepository, the store is a recording fake so no
+ * Android classes are needed.
+ */
+public class InventoryRepositoryTest {
+
+    private final Set<Thread> storeThreads = ConcurrentHashMap.newKeySet();
+    private final List<Thread> callbackThreads = Collections.synchronizedList(new ArrayList<>());
+    private ExecutorService mainThread;
+    private InventoryRepository repository;
+    // Thrown by every store call while set
+    private volatile RuntimeException storeFailure;
+
+    @Before
+    public void setUp() {
+        // Records the thread of every store call and returns a default value for its type
+        InventoryStore store = (InventoryStore) Proxy.newProxyInstance(
+                InventoryStore.class.getClassLoader(),
+                new Class<?>[] { InventoryStore.class },
+                (proxy, method, args) -> {
+                    storeThreads.add(Thread.currentThread());
+                    if (storeFailure != null) throw storeFailure;
+                    Class<?> type = method.getReturnType();
+                    if (type == boolean.class) return true;
+                    if (type == long.class) return 1L;
+                    if (type == int.class) return 1;
+                    if (type == List.class) return new ArrayList<>();
+                    if (type == Map.class) return new HashMap<>();
+                    if (type == ChangeFeed.class) return new ChangeFeed(ChangeFeed.DEFAULT_MAX_ENTRIES);
+                    return null;
+                });
+
+        mainThread = Executors.newSingleThreadExecutor(r -> new Thread(r, "fake-main"));
+        repository = new InventoryRepository(
+                store,
+                Executors.newSingleThreadExecutor(),
+                Executors.newFixedThreadPool(2),
+                command -> mainThread.execute(() -> {
+                    callbackThreads.add(Thread.currentThread());
+                    command.run();
+                }));
+    }
+
+    @After
+    public void tearDown() {
+        repository.shutdown();
+        mainThread.shutdownNow();
+    }
+
+    @Test
+    public void queries_neverRunOnCallerThread() throws Exception {
+        Item item = new Item(1, "Boxes", 17, "Bay 4");
+        List<Future<?>> futures = new ArrayList<>();
+        futures.add(repository.open(new StartupTracer(false), null));
+        futures.add(repository.createUser("user", "pass", null));
+        futures.add(repository.validateLogin("user", "pass", null));
+        futures.add(repository.insertItem(item, null));
+        futures.add(repository.updateItem(item, null));
+        futures.add(repository.deleteItem(1, null));
+        futures.add(repository.insertItems(Collections.singletonList(item), null));
+        futures.add(repository.updateItems(Collections.singletonList(item), null));
+        futures.add(repository.deleteItems(new long[] { 1 }, null));
+        futures.add(repository.moveItems(new long[] { 1 }, "Bay 4", null));
+        futures.add(repository.adjustQuantities(new long[] { 1 }, 5, 0, DatabaseHelper.NO_CEILING, null));
+        futures.add(repository.upsertItems(Collections.singletonList(item), null));
+        futures.add(repository.adjustQuantity(1, -2, 0, DatabaseHelper.NO_CEILING, null));
+        futures.add(repository.updateQuantity(1, 5, null));
+        futures.add(repository.updateName(1, "Boxes", null));
+        futures.add(repository.updateLocation(1, "Bay 4", null));
+        futures.add(repository.getItemById(1, null));
+        futures.add(repository.getAllItems(null));
+        futures.add(repository.getItemsPage(Long.MAX_VALUE, Long.MAX_VALUE, 50, null));
+        futures.add(repository.getItemSummaries(Long.MAX_VALUE, Long.MAX_VALUE, 50, null));
+        futures.add(repository.getItemSummariesByIds(Collections.singletonList(1L), null));
+        futures.add(repository.queryItemSummaries(ItemQuery.DEFAULT.withSort(ItemQuery.SORT_NAME, false), null, 50, null));
+        futures.add(repository.queryItemSummariesByIds(ItemQuery.DEFAULT, Collections.singletonList(1L), null));
+        futures.add(repository.getItemsAtLocation("Bay 4", null));
+        futures.add(repository.searchItems("box", 20, null, null));
+        futures.add(repository.setSku(1, "0012345", null));
+        futures.add(repository.getItemBySku("0012345", null));
+        futures.add(repository.openScanSession(null));
+        futures.add(repository.getLocationSummaries(null));
+        futures.add(repository.getInventoryTotals(null));
+        futures.add(repository.getLowestStock(10, null));
+        futures.add(repository.setLowStockThreshold(1, 3, null));
+        futures.add(repository.quantityAt(1, System.currentTimeMillis(), null));
+        futures.add(repository.compactLedger(null));
+        futures.add(repository.getRunningOutSoon(10, null));
+        futures.add(repository.getForecast(1, null));
+        futures.add(repository.checkpoint(null));
+
+        for (Future<?> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+
+        assertFalse(storeThreads.isEmpty());
+        assertFalse(storeThreads.contains(Thread.currentThread()));
+    }
+
+    @Test
+    public void callbacks_areDeliveredOnMainThread() throws Exception {
+        List<Object> results = Collections.synchronizedList(new ArrayList<>());
+        repository.getAllItems(results::add).get(5, TimeUnit.SECONDS);
+        repository.insertItem(new Item("Tape", 29), results::add).get(5, TimeUnit.SECONDS);
+
+        drainMainThread();
+
+        // Asserted here, a failed assertion inside a callback would only end the fake main thread
+        assertEquals(2, results.size());
+        assertEquals(new ArrayList<>(), results.get(0));
+        assertEquals(1L, results.get(1));
+        assertEquals(2, callbackThreads.size());
+        for (Thread thread : callbackThreads) {
+            assertEquals("fake-main", thread.getName());
+        }
+    }
+
+    @Test
+    public void failures_areDeliveredToOnError() throws Exception {
+        storeFailure = new IllegalStateException("disk I/O error");
+        List<Object> results = Collections.synchronizedList(new ArrayList<>());
+        List<Exception> errors = Collections.synchronizedList(new ArrayList<>());
+
+        Future<Long> insert = repository.insertItem(new Item("Tape", 29),
+                InventoryRepository.Callback.of(results::add, errors::add));
+        Future<List<Item>> read = repository.getAllItems(InventoryRepository.Callback.of(results::add, errors::add));
+        // A plain callback leaves the error to the Future
+        Future<Integer> delete = repository.deleteItem(1, results::add);
+
+        for (Future<?> future : new Future<?>[] { insert, read, delete }) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                fail("The operation should have failed");
+            } catch (ExecutionException error) {
+                assertSame(storeFailure, error.getCause());
+            }
+        }
+
+        drainMainThread();
+
+        assertTrue(results.isEmpty());
+        assertEquals(2, errors.size());
+        for (Exception error : errors) {
+            assertSame(storeFailure, error);
+        }
+        for (Thread thread : callbackThreads) {
+            assertEquals("fake-main", thread.getName());
+        }
+    }
+
+    @Test
+    public void writes_areSerializedOnOneThread() throws Exception {
+        storeThreads.clear();
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            futures.add(repository.insertItem(new Item("Item " + i, i), null));
+        }
+        for (Future<Long> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(1, storeThreads.size());
+    }
+
+    // Runs every callback posted so far to completion
+    private void drainMainThread() throws InterruptedException {
+        mainThread.shutdown();
+        assertTrue(mainThread.awaitTermination(5, TimeUnit.SECONDS));
+    }
+}
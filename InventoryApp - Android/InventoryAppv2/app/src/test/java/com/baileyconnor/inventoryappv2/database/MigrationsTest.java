@@ -0,0 +1,130 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.baileyconnor.inventoryappv2.model.Item;
+import com.baileyconnor.inventoryappv2.sync.PendingChange;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Upgrades a database created at the baseline version and checks that no rows are lost.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MigrationsTest {
+
+    @Test
+    public void upgradeFromBaseline_keepsUsersAndItems() {
+        Context context = RuntimeEnvironment.getApplication();
+        File path = context.getDatabasePath("inventory_app.db");
+        path.getParentFile().mkdirs();
+
+        // Build the database the way the baseline version of the app left it
+        try (SQLiteDatabase old = SQLiteDatabase.openOrCreateDatabase(path, null)) {
+            Migrations.createBaseline(old);
+            old.execSQL("INSERT INTO users (username, password) VALUES ('picker', 'secret')");
+            old.execSQL("INSERT INTO items (name, quantity, location, updated_at) VALUES ('Boxes', 17, 'Bay 4', 1)");
+            old.execSQL("INSERT INTO items (name, quantity, location, updated_at) VALUES ('Tape', 29, 'Bay 7', 2)");
+            old.setVersion(Migrations.BASELINE_VERSION);
+        }
+
+        DatabaseHelper helper = new DatabaseHelper(context);
+        try {
+            assertEquals(DatabaseHelper.DB_VERSION, helper.getReadableDatabase().getVersion());
+            assertTrue(helper.validateLogin("picker", "secret"));
+
+            List<Item> items = helper.getAllItems();
+            assertEquals(2, items.size());
+            assertEquals("Tape", items.get(0).getName());
+            assertEquals(17, items.get(1).getQuantity());
+
+            // Neither item has been synced, both are waiting in the outbox to be created on the API
+            try (Cursor c = helper.getReadableDatabase().rawQuery("SELECT COUNT(*) FROM outbox WHERE kind = " +
+                    PendingChange.CREATE + " AND remote_id IS NOT NULL", null)) {
+                assertTrue(c.moveToFirst());
+                assertEquals(2, c.getInt(0));
+            }
+        } finally {
+            helper.close();
+        }
+    }
+
+    @Test
+    public void upgradeTo14_movesLocationsIntoTheirOwnTable() {
+        Context context = RuntimeEnvironment.getApplication();
+        File path = context.getDatabasePath("inventory_app.db");
+        path.getParentFile().mkdirs();
+
+        try (SQLiteDatabase old = SQLiteDatabase.openOrCreateDatabase(path, null)) {
+            Migrations.createBaseline(old);
+            Migrations.migrate(old, Migrations.BASELINE_VERSION, 13);
+            old.execSQL("INSERT INTO items (name, quantity, location, updated_at, remote_id) VALUES ('Boxes', 17, 'Bay 4', 1, 'a')");
+            old.execSQL("INSERT INTO items (name, quantity, location, updated_at, remote_id) VALUES ('Tape', 29, ' bay 4', 2, 'b')");
+            old.execSQL("INSERT INTO items (name, quantity, location, updated_at, remote_id) VALUES ('Nails', 103, '', 3, 'c')");
+            old.execSQL("INSERT INTO items (name, quantity, location, updated_at, remote_id) VALUES ('Cups', 51, 'Bay 1', 4, 'd')");
+            old.execSQL("DELETE FROM items WHERE name = 'Cups'");
+            old.setVersion(13);
+        }
+
+        DatabaseHelper helper = new DatabaseHelper(context);
+        try {
+            List<Item> items = helper.getAllItems();
+            assertEquals(3, items.size());
+            assertNull(items.get(0).getLocation());
+            // Both spellings are the same bay now, read back as one shared String
+            assertEquals("Bay 4", items.get(1).getLocation());
+            assertSame(items.get(1).getLocation(), items.get(2).getLocation());
+            assertEquals(2, helper.getItemsAtLocation("BAY 4").size());
+
+            // Search and the dashboard still see the locations
+            assertEquals(2, helper.searchItems("bay", 10).size());
+            assertEquals(2, helper.getLocationSummaries().size());
+
+            // The deleted item's id isn't handed out again
+            assertEquals(5, helper.insertItem(new Item("Cups", 51, "Bay 1")));
+        } finally {
+            helper.close();
+        }
+    }
+
+    @Test
+    public void freshInstall_matchesUpgradedSchema() {
+        Context context = RuntimeEnvironment.getApplication();
+
+        SQLiteDatabase upgraded = SQLiteDatabase.create(null);
+        Migrations.createBaseline(upgraded);
+        Migrations.migrate(upgraded, Migrations.BASELINE_VERSION, DatabaseHelper.DB_VERSION);
+
+        DatabaseHelper helper = new DatabaseHelper(context);
+        try {
+            assertEquals(schema(upgraded), schema(helper.getReadableDatabase()));
+            assertTrue(schema(upgraded).contains("index:idx_items_updated_at"));
+            assertTrue(schema(upgraded).contains("index:idx_items_sku"));
+        } finally {
+            helper.close();
+            upgraded.close();
+        }
+    }
+
+    private static Set<String> schema(SQLiteDatabase db) {
+        Set<String> names = new HashSet<>();
+        try (Cursor c = db.rawQuery("SELECT type, name FROM sqlite_master WHERE name NOT LIKE 'sqlite_%' AND name != 'android_metadata'", null)) {
+            while (c.moveToNext()) {
+                names.add(c.getString(0) + ":" + c.getString(1));
+            }
+        }
+        return names;
+    }
+}
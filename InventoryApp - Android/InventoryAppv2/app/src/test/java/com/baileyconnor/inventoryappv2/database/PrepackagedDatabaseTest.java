@@ -0,0 +1,191 @@
+package com.baileyconnor.inventoryappv2.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.baileyconnor.inventoryappv2.model.Item;
+import com.baileyconnor.inventoryappv2.sync.OutboxEntry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * The prepackaged database in src/main/assets and copying it in on the first open.
+ *
+ * The asset is a fresh database holding SAMPLE_ITEMS, rebuilt with
+ *
+ *   ./gradlew testDebugUnitTest --tests '*PrepackagedDatabaseTest' -Pprepackaged=write
+ *
+ * after a migration or a change to the samples, the test fails until it has been.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PrepackagedDatabaseTest {
+
+    static final File ASSET_FILE = new File("src/main/assets/" + PrepackagedDatabase.ASSET);
+
+    // What a new install starts with
+    static final List<Item> SAMPLE_ITEMS = Arrays.asList(
+            new Item("Boxes", 17, "Bay 4"),
+            new Item("Tape", 29, "Bay 7"),
+            new Item("Nails", 103, "Bay 4"),
+            new Item("Paper Cups", 51, "Bay 1"),
+            new Item("Apple Magic Keyboard", 6, "Bay 2"),
+            new Item("Apple Magic Trackpad", 7, "Bay 2"),
+            new Item("Apple Magic Mouse", 6, "Bay 2"),
+            new Item("Lightning Cable (1M)", 24, "Bay 3"),
+            new Item("USB-C Cable (1M)", 25, "Bay 2"));
+
+    @Test
+    public void asset_isAFreshDatabaseWithTheSamples() throws IOException {
+        File built = build(RuntimeEnvironment.getApplication());
+        if ("write".equals(System.getProperty("prepackaged"))) {
+            ASSET_FILE.getParentFile().mkdirs();
+            Files.copy(built.toPath(), ASSET_FILE.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Wrote " + ASSET_FILE.getAbsolutePath());
+        }
+        assertTrue("Missing " + ASSET_FILE + ", write it with -Pprepackaged=write", ASSET_FILE.isFile());
+
+        // Rollback journal rather than WAL in the header (bytes 18 and 19), so the file is
+        // whole without a -wal next to it
+        try (RandomAccessFile header = new RandomAccessFile(ASSET_FILE, "r")) {
+            header.seek(18);
+            assertEquals(1, header.read());
+            assertEquals(1, header.read());
+        }
+
+        try (SQLiteDatabase asset = SQLiteDatabase.openDatabase(ASSET_FILE.getPath(), null, SQLiteDatabase.OPEN_READONLY);
+             SQLiteDatabase fresh = SQLiteDatabase.openDatabase(built.getPath(), null, SQLiteDatabase.OPEN_READONLY)) {
+            String stale = "The prepackaged database is out of date, rewrite it with -Pprepackaged=write";
+            // Opened without running a single migration
+            assertEquals(stale, DatabaseHelper.DB_VERSION, asset.getVersion());
+            assertEquals(stale, schema(fresh), schema(asset));
+            assertEquals(stale, items(fresh), items(asset));
+            // Each install queues its own copy of the items, see DatabaseHelper.claimPrepackagedItems
+            assertEquals(0, DatabaseUtils.queryNumEntries(asset, DatabaseHelper.T_OUTBOX));
+        }
+    }
+
+    @Test
+    public void firstOpen_copiesTheAssetAndClaimsItsItems() {
+        Context context = RuntimeEnvironment.getApplication();
+        PrepackagedDatabase prepackaged = new PrepackagedDatabase(() -> new FileInputStream(ASSET_FILE));
+
+        Set<String> remoteIds = new HashSet<>();
+        DatabaseHelper helper = new DatabaseHelper(context, DatabaseProfile.BALANCED, prepackaged);
+        try {
+            long before = System.currentTimeMillis();
+            helper.open();
+            assertEquals(SAMPLE_ITEMS.size(), helper.getAllItems().size());
+            assertEquals(4, helper.getItemsAtLocation("bay 2").size());
+
+            List<OutboxEntry> outbox = helper.claimOutbox(Long.MAX_VALUE, 100);
+            assertEquals(SAMPLE_ITEMS.size(), outbox.size());
+            for (OutboxEntry entry : outbox) {
+                remoteIds.add(entry.remoteId);
+            }
+            assertEquals(SAMPLE_ITEMS.size(), remoteIds.size());
+            for (Item item : helper.getAllItems()) {
+                assertTrue(item.getUpdatedAt() >= before);
+            }
+
+            helper.deleteItem(helper.getAllItems().get(0).getId());
+        } finally {
+            helper.close();
+        }
+
+        // Only the first open copies, and the ids it claimed are kept
+        helper = new DatabaseHelper(context, DatabaseProfile.BALANCED, prepackaged);
+        try {
+            assertEquals(SAMPLE_ITEMS.size() - 1, helper.getAllItems().size());
+            try (Cursor c = helper.getReadableDatabase().rawQuery("SELECT " + DatabaseHelper.C_REMOTE_ID +
+                    " FROM " + DatabaseHelper.T_ITEMS, null)) {
+                while (c.moveToNext()) {
+                    assertTrue(remoteIds.contains(c.getString(0)));
+                }
+            }
+        } finally {
+            helper.close();
+        }
+    }
+
+    @Test
+    public void failedCopy_startsEmpty() {
+        Context context = RuntimeEnvironment.getApplication();
+        PrepackagedDatabase missing = new PrepackagedDatabase(() -> {
+            throw new IOException("no such asset");
+        });
+
+        DatabaseHelper helper = new DatabaseHelper(context, DatabaseProfile.BALANCED, missing);
+        try {
+            assertTrue(helper.getAllItems().isEmpty());
+            assertTrue(helper.insertItem(new Item("Boxes", 17, "Bay 4")) > 0);
+        } finally {
+            helper.close();
+        }
+        File path = context.getDatabasePath(DatabaseHelper.DB_NAME);
+        assertFalse(new File(path.getPath() + ".partial").exists());
+    }
+
+    // --- --- Helper Functions --- --- \\
+
+    // A new database with the samples, as the asset should be
+    private static File build(Context context) {
+        DatabaseHelper helper = new DatabaseHelper(context);
+        try {
+            helper.insertItems(SAMPLE_ITEMS);
+            helper.getWritableDatabase().execSQL("DELETE FROM " + DatabaseHelper.T_OUTBOX);
+        } finally {
+            helper.close();
+        }
+
+        File path = context.getDatabasePath(DatabaseHelper.DB_NAME);
+        try (SQLiteDatabase db = SQLiteDatabase.openDatabase(path.getPath(), null, SQLiteDatabase.OPEN_READWRITE)) {
+            // Back to a single file, packed tight
+            db.rawQuery("PRAGMA journal_mode = DELETE", null).close();
+            db.execSQL("VACUUM");
+        }
+        return path;
+    }
+
+    private static List<String> schema(SQLiteDatabase db) {
+        List<String> schema = new ArrayList<>();
+        try (Cursor c = db.rawQuery("SELECT type, name, sql FROM sqlite_master WHERE name NOT LIKE 'sqlite_%'" +
+                " AND name != 'android_metadata' ORDER BY type, name", null)) {
+            while (c.moveToNext()) {
+                schema.add(c.getString(0) + ":" + c.getString(1) + ":" + c.getString(2));
+            }
+        }
+        return schema;
+    }
+
+    // Name, quantity and location of every item, in the order they were inserted
+    private static List<String> items(SQLiteDatabase db) {
+        List<String> items = new ArrayList<>();
+        try (Cursor c = db.rawQuery("SELECT i." + DatabaseHelper.C_NAME + ", i." + DatabaseHelper.C_QTY + ", l." +
+                DatabaseHelper.C_NAME + " FROM " + DatabaseHelper.T_ITEMS + " i LEFT JOIN " + DatabaseHelper.T_LOCATIONS +
+                " l ON l." + DatabaseHelper.C_ID + " = i." + DatabaseHelper.C_LOCATION_ID + " ORDER BY i." + DatabaseHelper.C_ID, null)) {
+            while (c.moveToNext()) {
+                items.add(c.getString(0) + ", " + c.getInt(1) + ", " + c.getString(2));
+            }
+        }
+        return items;
+    }
+}
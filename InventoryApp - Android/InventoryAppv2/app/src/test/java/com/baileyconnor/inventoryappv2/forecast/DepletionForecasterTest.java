@@ -0,0 +1,64 @@
+package com.baileyconnor.inventoryappv2.forecast;
+
+import org.junit.Test;
+
+import static com.baileyconnor.inventoryappv2.forecast.DepletionForecaster.DAY_MS;
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for DepletionForecaster, times are plain millisecond values.
+ */
+public class DepletionForecasterTest {
+
+    private final DepletionForecaster forecaster = new DepletionForecaster(DepletionForecaster.DEFAULT_SMOOTHING_MS);
+
+    @Test
+    public void steadyUse_settlesOnUnitsPerDay() {
+        // 6 units every 2 days
+        double rate = 0;
+        int quantity = 10_000;
+        long now = 0;
+        for (int i = 0; i < 100; i++) {
+            now += 2 * DAY_MS;
+            rate = forecaster.nextRate(rate, now - 2 * DAY_MS, quantity, quantity - 6, now);
+            quantity -= 6;
+        }
+        assertEquals(3.0, rate, 0.001);
+    }
+
+    @Test
+    public void burstOfDecrements_isBoundedBySmoothingTime() {
+        // 20 units taken one at a time, a second apart
+        double rate = 0;
+        long now = 0;
+        for (int quantity = 100; quantity > 80; quantity--) {
+            rate = forecaster.nextRate(rate, now, quantity, quantity - 1, now + 1_000);
+            now += 1_000;
+        }
+        // Roughly 20 units spread over the 7 day smoothing time, not 20 units per 20 seconds
+        assertEquals(20.0 / 7, rate, 0.01);
+    }
+
+    @Test
+    public void sameInstant_addsToRate() {
+        double rate = forecaster.nextRate(1.0, 5_000, 10, 3, 5_000);
+        assertEquals(2.0, rate, 1e-9);
+    }
+
+    @Test
+    public void restock_decaysRateWithoutCountingAsUse() {
+        double rate = forecaster.nextRate(4.0, 0, 5, 50, 7 * DAY_MS);
+        assertEquals(4.0 / Math.E, rate, 1e-9);
+
+        double unchanged = forecaster.nextRate(4.0, 0, 5, 50, 0);
+        assertEquals(4.0, unchanged, 1e-9);
+    }
+
+    @Test
+    public void depletesAt_handlesEmptyIdleAndFarFutureItems() {
+        assertEquals(1_000 + 5 * DAY_MS, DepletionForecaster.depletesAt(2.0, 10, 1_000));
+        assertEquals(1_000, DepletionForecaster.depletesAt(2.0, 0, 1_000));
+        assertEquals(DepletionForecaster.NEVER, DepletionForecaster.depletesAt(0, 10, 1_000));
+        assertEquals(DepletionForecaster.NEVER, DepletionForecaster.depletesAt(0.001, 10_000, 1_000));
+    }
+}
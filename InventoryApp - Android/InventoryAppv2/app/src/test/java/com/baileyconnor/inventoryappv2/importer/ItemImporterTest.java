@@ -0,0 +1,174 @@
+package com.baileyconnor.inventoryappv2.importer;
+
+import android.database.sqlite.SQLiteFullException;
+
+import com.baileyconnor.inventoryappv2.database.DatabaseHelper;
+import com.baileyconnor.inventoryappv2.database.InventoryStore;
+import com.baileyconnor.inventoryappv2.model.Item;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class ItemImporterTest {
+
+    private DatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        helper = new DatabaseHelper(RuntimeEnvironment.getApplication());
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Test
+    public void csv_upsertsByNameAndLocation() {
+        helper.insertItem(new Item("Boxes", 17, "Bay 4"));
+
+        String csv = "Name,Location,Qty\n" +
+                "Boxes,Bay 4,40\n" +            // existing item, quantity replaced
+                "Boxes,Bay 5,3\n" +             // same name in another bay is a new item
+                "\"Cable, USB-C \"\"1M\"\"\",Bay 2,25\r\n" +
+                ",Bay 1,5\n" +                  // no name
+                "Tape,Bay 7,lots\n";            // bad quantity
+
+        ImportResult result = new ItemImporter(helper).run(new CsvItemReader(new StringReader(csv)), null);
+
+        assertNull(result.error);
+        assertEquals(5, result.rowsRead);
+        assertEquals(2, result.inserted);
+        assertEquals(1, result.updated);
+        assertEquals(2, result.skipped);
+
+        List<Item> items = helper.getAllItems();
+        assertEquals(3, items.size());
+        assertEquals(40, find(items, "Boxes", "Bay 4").getQuantity());
+        assertNotNull(find(items, "Cable, USB-C \"1M\"", "Bay 2"));
+    }
+
+    @Test
+    public void json_skipsUnknownKeys() {
+        String json = "[{\"id\":\"x\",\"name\":\"Nails\",\"quantity\":103,\"maxQuantity\":200,\"location\":\"Bay 4\"}," +
+                "{\"name\":\"Paper Cups\",\"quantity\":51,\"location\":null}," +
+                "{\"name\":\"Bad\"}]";
+
+        ItemImporter importer = new ItemImporter(helper);
+        ImportResult result = importer.run(new JsonItemReader(new StringReader(json)), null);
+
+        assertEquals(2, result.inserted);
+        assertEquals(1, result.skipped);
+        assertEquals(1, importer.getErrors().size());
+        assertEquals(103, find(helper.getAllItems(), "Nails", "Bay 4").getQuantity());
+    }
+
+    @Test
+    public void json_skipsElementsOfTheWrongShape() {
+        String json = "[1," +
+                "{\"name\":{},\"quantity\":2}," +
+                "{\"name\":\"Tape\",\"quantity\":[3]}," +
+                "\"Boxes\"," +
+                "{\"name\":\"Nails\",\"quantity\":4,\"location\":\"Bay 1\"}]";
+
+        ItemImporter importer = new ItemImporter(helper);
+        ImportResult result = importer.run(new JsonItemReader(new StringReader(json)), null);
+
+        assertNull(result.error);
+        assertEquals(5, result.rowsRead);
+        assertEquals(1, result.inserted);
+        assertEquals(4, result.skipped);
+        assertEquals(4, importer.getErrors().size());
+        assertEquals(4, find(helper.getAllItems(), "Nails", "Bay 1").getQuantity());
+    }
+
+    @Test
+    public void json_thatIsNotAnArray_endsTheImportWithAnError() {
+        ImportResult result = new ItemImporter(helper)
+                .run(new JsonItemReader(new StringReader("{\"name\":\"Nails\",\"quantity\":4}")), null);
+
+        assertNotNull(result.error);
+        assertEquals(0, result.rowsRead);
+        assertTrue(helper.getAllItems().isEmpty());
+    }
+
+    @Test
+    public void failedWrite_endsTheImportWithAnError() {
+        // Every store call fails like a full disk would
+        InventoryStore full = (InventoryStore) Proxy.newProxyInstance(
+                InventoryStore.class.getClassLoader(),
+                new Class<?>[] { InventoryStore.class },
+                (proxy, method, args) -> {
+                    throw new SQLiteFullException("database or disk is full");
+                });
+
+        ImportResult result = new ItemImporter(full)
+                .run(new CsvItemReader(new StringReader("name,quantity\nTape,3\n")), null);
+
+        assertEquals("database or disk is full", result.error);
+        assertEquals(1, result.rowsRead);
+        assertEquals(0, result.inserted);
+    }
+
+    @Test
+    public void largeFile_isStreamedInChunks() {
+        int rows = 50_000;
+        List<ImportResult> updates = new ArrayList<>();
+
+        ImportResult result = new ItemImporter(helper, 1_000)
+                .run(new CsvItemReader(new GeneratedCsv(rows)), updates::add);
+
+        assertEquals(rows, result.inserted);
+        assertEquals(rows / 1_000, updates.size());
+        assertEquals(rows, helper.getAllItems().size());
+        System.out.println("Imported " + result);
+    }
+
+    private static Item find(List<Item> items, String name, String location) {
+        for (Item item : items) {
+            if (item.getName().equals(name) && location.equals(item.getLocation())) return item;
+        }
+        return null;
+    }
+
+    // Produces a CSV file row by row without ever holding it in memory
+    private static class GeneratedCsv extends Reader {
+        private final int rows;
+        private int row = -1;
+        private String line = "";
+        private int pos = 0;
+
+        GeneratedCsv(int rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public int read(char[] buf, int off, int len) {
+            if (pos == line.length()) {
+                if (++row > rows) return -1;
+                line = row == 0 ? "name,quantity,location\n" : "Item " + row + "," + (row % 500) + ",Bay " + (row % 12) + "\n";
+                pos = 0;
+            }
+            int n = Math.min(len, line.length() - pos);
+            line.getChars(pos, pos + n, buf, off);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public void close() {}
+    }
+}
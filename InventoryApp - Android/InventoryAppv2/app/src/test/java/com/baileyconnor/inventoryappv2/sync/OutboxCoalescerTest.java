@@ -0,0 +1,202 @@
+package com.baileyconnor.inventoryappv2.sync;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for OutboxCoalescer. The randomized tests replay operation sequences
+ * one change at a time against a model of the API's copy of an item, and check the
+ * coalesced change leaves it in the same state.
+ */
+public class OutboxCoalescerTest {
+
+    private static final String[] NAMES = { "Boxes", "Tape", "Nails" };
+    private static final String[] LOCATIONS = { null, "Bay 4", "Bay 7" };
+
+    @Test
+    public void increments_becomeOneDelta() {
+        PendingChange pending = null;
+        for (int i = 0; i < 5; i++) pending = OutboxCoalescer.merge(pending, PendingChange.adjustQuantity(1), false);
+
+        assertEquals(PendingChange.adjustQuantity(5), pending);
+    }
+
+    @Test
+    public void deltaAfterSetQuantity_staysAbsolute() {
+        PendingChange pending = OutboxCoalescer.merge(PendingChange.setQuantity(10), PendingChange.adjustQuantity(-3), false);
+
+        assertEquals(PendingChange.setQuantity(7), pending);
+    }
+
+    @Test
+    public void updateThenDelete_becomesDelete() {
+        PendingChange pending = OutboxCoalescer.merge(PendingChange.rename("Tape"), PendingChange.delete(), false);
+        pending = OutboxCoalescer.merge(pending, PendingChange.adjustQuantity(2), false);
+
+        assertEquals(PendingChange.delete(), pending);
+    }
+
+    @Test
+    public void createThenDelete_isNothingUnlessItWasSent() {
+        PendingChange create = PendingChange.create("Tape", 3, "Bay 7");
+
+        assertNull(OutboxCoalescer.merge(create, PendingChange.delete(), false));
+        assertEquals(PendingChange.delete(), OutboxCoalescer.merge(create, PendingChange.delete(), true));
+    }
+
+    @Test
+    public void updatesAfterCreate_stayInTheCreate() {
+        PendingChange pending = PendingChange.create("Tape", 3, "Bay 7");
+        pending = OutboxCoalescer.merge(pending, PendingChange.adjustQuantity(4), false);
+        pending = OutboxCoalescer.merge(pending, PendingChange.move(null), false);
+
+        assertEquals(PendingChange.create("Tape", 7, null), pending);
+    }
+
+    @Test
+    public void remaining_keepsOnlyWhatChangedSinceSending() {
+        PendingChange sent = PendingChange.create("Tape", 3, "Bay 7");
+        PendingChange current = OutboxCoalescer.merge(sent, PendingChange.rename("Packing Tape"), true);
+        assertEquals(PendingChange.rename("Packing Tape"), OutboxCoalescer.remaining(current, sent));
+
+        sent = PendingChange.adjustQuantity(2);
+        current = OutboxCoalescer.merge(sent, PendingChange.adjustQuantity(3), true);
+        assertEquals(PendingChange.adjustQuantity(3), OutboxCoalescer.remaining(current, sent));
+
+        assertNull(OutboxCoalescer.remaining(sent, sent));
+        assertEquals(PendingChange.delete(), OutboxCoalescer.remaining(PendingChange.delete(), sent));
+        assertNull(OutboxCoalescer.remaining(PendingChange.delete(), PendingChange.delete()));
+    }
+
+    @Test
+    public void randomSequences_coalesceToTheSameState() {
+        Random random = new Random(7);
+        for (int run = 0; run < 20_000; run++) {
+            boolean created = random.nextBoolean();
+            State start = created ? State.ABSENT : randomState(random);
+            List<PendingChange> ops = randomOps(random, created, 1 + random.nextInt(12));
+
+            State expected = start;
+            for (PendingChange op : ops) expected = expected.apply(op);
+
+            PendingChange coalesced = null;
+            for (PendingChange op : ops) coalesced = OutboxCoalescer.merge(coalesced, op, false);
+
+            assertEquals(ops.toString(), expected, start.apply(coalesced));
+        }
+    }
+
+    @Test
+    public void randomSequences_sentMidwayEndInTheSameState() {
+        Random random = new Random(11);
+        for (int run = 0; run < 20_000; run++) {
+            boolean created = random.nextBoolean();
+            State start = created ? State.ABSENT : randomState(random);
+            List<PendingChange> ops = randomOps(random, created, 2 + random.nextInt(12));
+            if (ops.size() < 2) continue;
+            int split = 1 + random.nextInt(ops.size() - 1);
+
+            State expected = start;
+            for (PendingChange op : ops) expected = expected.apply(op);
+
+            // The first part is claimed and sent, the rest is merged in while it's in flight
+            PendingChange sent = null;
+            for (PendingChange op : ops.subList(0, split)) sent = OutboxCoalescer.merge(sent, op, false);
+            if (sent == null) continue;
+            PendingChange current = sent;
+            for (PendingChange op : ops.subList(split, ops.size())) current = OutboxCoalescer.merge(current, op, true);
+
+            // The API may or may not have applied what was sent before everything is merged
+            assertEquals(ops.toString(), expected, start.apply(current));
+            if (sent.kind == PendingChange.CREATE || current.kind == PendingChange.DELETE) {
+                assertEquals(ops.toString(), expected, start.apply(sent).apply(current));
+            }
+
+            // Once it's acknowledged only the remainder goes out
+            State acknowledged = start.apply(sent);
+            assertEquals(ops.toString(), expected, acknowledged.apply(OutboxCoalescer.remaining(current, sent)));
+        }
+    }
+
+    // --- --- Helper Functions --- --- \\
+
+    // A valid sequence of local changes: a new item starts with its create, nothing follows a delete
+    private static List<PendingChange> randomOps(Random random, boolean created, int length) {
+        List<PendingChange> ops = new ArrayList<>();
+        if (created) ops.add(PendingChange.create(pick(random, NAMES), random.nextInt(20), pick(random, LOCATIONS)));
+        while (ops.size() < length) {
+            int roll = random.nextInt(20);
+            if (roll == 0) {
+                ops.add(PendingChange.delete());
+                break;
+            }
+            if (roll < 10) ops.add(PendingChange.adjustQuantity(random.nextInt(7) - 3));
+            else if (roll < 13) ops.add(PendingChange.setQuantity(random.nextInt(20)));
+            else if (roll < 15) ops.add(PendingChange.rename(pick(random, NAMES)));
+            else if (roll < 17) ops.add(PendingChange.move(pick(random, LOCATIONS)));
+            else ops.add(PendingChange.update(pick(random, NAMES), random.nextInt(20), pick(random, LOCATIONS)));
+        }
+        return ops;
+    }
+
+    private static State randomState(Random random) {
+        return new State(true, pick(random, NAMES), random.nextInt(20), pick(random, LOCATIONS));
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    // The API's copy of an item
+    private static final class State {
+        static final State ABSENT = new State(false, null, 0, null);
+
+        final boolean exists;
+        final String name;
+        final int quantity;
+        final String location;
+
+        State(boolean exists, String name, int quantity, String location) {
+            this.exists = exists;
+            this.name = name;
+            this.quantity = quantity;
+            this.location = location;
+        }
+
+        // What the API does with a change, null being no change at all
+        State apply(PendingChange change) {
+            if (change == null) return this;
+            if (change.kind == PendingChange.DELETE) return ABSENT;
+            if (change.kind == PendingChange.CREATE) return new State(true, change.name, change.quantity, change.location);
+            if (!exists) return this;
+            return new State(true,
+                    change.name != null ? change.name : name,
+                    change.quantity != null ? change.quantity : quantity + change.quantityDelta,
+                    change.locationSet ? change.location : location);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof State)) return false;
+            State that = (State) other;
+            return exists == that.exists && quantity == that.quantity
+                    && Objects.equals(name, that.name) && Objects.equals(location, that.location);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(exists, name, quantity, location);
+        }
+
+        @Override
+        public String toString() {
+            return exists ? name + ":" + quantity + ":" + location : "absent";
+        }
+    }
+}
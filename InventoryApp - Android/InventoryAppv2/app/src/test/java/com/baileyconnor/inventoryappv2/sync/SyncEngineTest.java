@@ -0,0 +1,412 @@
+package com.baileyconnor.inventoryappv2.sync;
+
+import com.baileyconnor.inventoryappv2.database.DatabaseHelper;
+import com.baileyconnor.inventoryappv2.model.Item;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the SyncEngine against a local stand-in for the inventory API's /sync endpoints.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SyncEngineTest {
+
+    private static final String TOKEN = "test-token";
+    // SHA-256 of "secret", the only password FakeApi accepts
+    private static final String PASSWORD_HASH = "2bb80d537b1da3e38bd30361aa855686bde0eacd7162fef6a25fe97bf527a25b";
+
+    private final FakeApi api = new FakeApi();
+    private DatabaseHelper helper;
+    private SyncEngine engine;
+    // Ahead of the wall clock the outbox is stamped with, moved forward to let retries become due
+    private long now = System.currentTimeMillis() + 60_000;
+
+    @Before
+    public void setUp() throws IOException {
+        api.start();
+        helper = new DatabaseHelper(RuntimeEnvironment.getApplication());
+        engine = new SyncEngine(helper, new SyncTransport(api.url(), () -> TOKEN), () -> now);
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        api.stop();
+    }
+
+    @Test
+    public void firstSync_pushesEveryLocalItemCompressed() throws IOException {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 450; i++) items.add(new Item("Item " + i, i, i % 2 == 0 ? "Bay 1" : null));
+        helper.insertItems(items);
+
+        SyncResult result = engine.sync();
+
+        assertEquals(450, result.pushed);
+        assertEquals(450, api.rows.size());
+        // Pushed in batches, every batch compressed
+        assertEquals(3, api.pushBodies.size());
+        for (boolean gzipped : api.pushGzipped) assertTrue(gzipped);
+        assertTrue(result.bytesSent > 0 && result.bytesReceived > 0);
+        assertTrue(result.bytesSent < api.pushBodies.get(0).length());
+
+        // Nothing left to push, and our own rows coming back don't rewrite anything
+        api.pushBodies.clear();
+        SyncResult again = engine.sync();
+        assertEquals(0, again.pushed);
+        assertTrue(api.pushBodies.isEmpty());
+        assertEquals(0, again.applied);
+    }
+
+    @Test
+    public void pull_onlyFetchesRowsChangedSinceTheWatermark() throws IOException {
+        for (int i = 0; i < 1_200; i++) api.put(UUID.randomUUID().toString(), "Remote " + i, i, "Bay 9");
+
+        SyncResult first = engine.sync();
+        assertEquals(1_200, first.pulled);
+        assertEquals(1_200, first.applied);
+        assertEquals(3, api.changeRequests);
+        assertEquals(1_200, helper.getAllItems().size());
+
+        String changed = api.rows.keySet().iterator().next();
+        api.put(changed, "Renamed", 7, "Bay 2");
+        api.changeRequests = 0;
+
+        SyncResult second = engine.sync();
+        assertEquals(1, second.pulled);
+        assertEquals(1, api.changeRequests);
+        assertTrue(second.bytesReceived < first.bytesReceived / 100);
+        assertEquals(1, helper.searchItems("renamed", 10).size());
+        assertEquals(0, engine.sync().pulled);
+    }
+
+    @Test
+    public void localChanges_arePushedAsDeltasAndDeletes() throws Exception {
+        String keep = UUID.randomUUID().toString();
+        String gone = UUID.randomUUID().toString();
+        api.put(keep, "Tape", 10, "Bay 7");
+        api.put(gone, "Boxes", 4, "Bay 4");
+        engine.sync();
+
+        long tapeId = helper.searchItems("tape", 1).get(0).getId();
+        long boxesId = helper.searchItems("boxes", 1).get(0).getId();
+        helper.adjustQuantity(tapeId, -3, 0, DatabaseHelper.NO_CEILING);
+        helper.deleteItem(boxesId);
+        // Someone changes the same item on the API before we sync
+        api.put(keep, "Tape", 25, "Bay 7");
+
+        SyncResult result = engine.sync();
+        assertEquals(1, result.pushed);
+        assertEquals(1, result.pushedDeletes);
+        // The -3 is applied on top of the API's change, and pulled back
+        assertEquals(22, api.rows.get(keep).getInt("quantity"));
+        assertFalse(api.rows.containsKey(gone));
+        assertEquals(22, helper.getItemById(tapeId).getQuantity());
+
+        // A quantity that was set rather than adjusted wins over the API's
+        helper.updateQuantity(tapeId, 5);
+        api.put(keep, "Tape", 40, "Bay 7");
+        engine.sync();
+        assertEquals(5, api.rows.get(keep).getInt("quantity"));
+        assertEquals(5, helper.getItemById(tapeId).getQuantity());
+    }
+
+    @Test
+    public void repeatedChanges_arePushedAsOne() throws Exception {
+        String id = UUID.randomUUID().toString();
+        api.put(id, "Tape", 10, "Bay 7");
+        engine.sync();
+        long tapeId = helper.searchItems("tape", 1).get(0).getId();
+
+        for (int i = 0; i < 5; i++) helper.adjustQuantity(tapeId, 1, 0, DatabaseHelper.NO_CEILING);
+        helper.updateLocation(tapeId, "Bay 2");
+        api.pushBodies.clear();
+        engine.sync();
+
+        assertEquals(1, api.pushBodies.size());
+        JSONObject body = new JSONObject(api.pushBodies.get(0));
+        assertEquals(0, body.getJSONArray("items").length());
+        JSONArray updates = body.getJSONArray("updates");
+        assertEquals(1, updates.length());
+        assertEquals(5, updates.getJSONObject(0).getInt("quantityDelta"));
+        assertEquals("Bay 2", updates.getJSONObject(0).getString("location"));
+        assertFalse(updates.getJSONObject(0).has("name"));
+        assertEquals(15, api.rows.get(id).getInt("quantity"));
+    }
+
+    @Test
+    public void deletes_replaceWhateverWasPending() throws Exception {
+        String id = UUID.randomUUID().toString();
+        api.put(id, "Tape", 10, "Bay 7");
+        engine.sync();
+        long tapeId = helper.searchItems("tape", 1).get(0).getId();
+
+        // Never pushed, so nothing needs to be sent for it
+        long tempId = helper.insertItem(new Item("Temporary", 1, "Bay 1"));
+        helper.updateQuantity(tempId, 3);
+        helper.deleteItem(tempId);
+        // Known to the API, only the delete is sent
+        helper.updateName(tapeId, "Packing Tape");
+        helper.deleteItem(tapeId);
+
+        api.pushBodies.clear();
+        SyncResult result = engine.sync();
+
+        assertEquals(0, result.pushed);
+        assertEquals(1, result.pushedDeletes);
+        JSONObject body = new JSONObject(api.pushBodies.get(0));
+        assertEquals(0, body.getJSONArray("items").length());
+        assertEquals(0, body.getJSONArray("updates").length());
+        assertEquals(id, body.getJSONArray("deleted").getString(0));
+        assertTrue(api.rows.isEmpty());
+    }
+
+    @Test
+    public void failedPush_isRetriedWithBackoff() throws IOException {
+        helper.insertItem(new Item("Tape", 3, "Bay 7"));
+        api.failPushes = true;
+        try {
+            engine.sync();
+            fail("The push should have failed");
+        } catch (IOException expected) {
+            // The entry stays in the outbox
+        }
+
+        api.failPushes = false;
+        assertEquals(0, engine.sync().pushed);
+        assertTrue(api.rows.isEmpty());
+
+        now += SyncEngine.RETRY_BASE_MS;
+        assertEquals(1, engine.sync().pushed);
+        assertEquals(1, api.rows.size());
+    }
+
+    @Test
+    public void rejectedItems_areRetriedLater() throws IOException {
+        helper.insertItem(new Item("Broken", -5, "Bay 1"));
+        helper.insertItem(new Item("Fine", 5, "Bay 1"));
+
+        SyncResult result = engine.sync();
+        assertEquals(1, result.pushed);
+        assertEquals(1, result.rejected);
+        assertEquals(0, engine.sync().rejected);
+
+        // Each failed attempt doubles the wait
+        now += SyncEngine.RETRY_BASE_MS;
+        assertEquals(1, engine.sync().rejected);
+        now += SyncEngine.RETRY_BASE_MS;
+        assertEquals(0, engine.sync().rejected);
+        now += SyncEngine.RETRY_BASE_MS;
+        assertEquals(1, engine.sync().rejected);
+        assertEquals(SyncEngine.RETRY_MAX_MS, SyncEngine.retryDelayMs(100));
+    }
+
+    @Test
+    public void login_sendsAPasswordHashForTheToken() throws IOException {
+        SyncTransport transport = new SyncTransport(api.url() + "/", () -> null);
+        assertEquals(TOKEN, transport.login("clerk", "secret"));
+        // Only the SHA-256 of the password goes over the wire, like the iOS client
+        assertEquals(PASSWORD_HASH, api.passwordHash);
+
+        try {
+            transport.login("clerk", "wrong");
+            fail("Expected the login to be refused");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("401"));
+        }
+    }
+
+    // In-memory stand-in for the Flask /auth/login and /sync endpoints
+    private static class FakeApi {
+        final Map<String, JSONObject> rows = new TreeMap<>();
+        final List<String> pushBodies = Collections.synchronizedList(new ArrayList<>());
+        final List<Boolean> pushGzipped = Collections.synchronizedList(new ArrayList<>());
+        volatile int changeRequests;
+        volatile boolean failPushes;
+        volatile String passwordHash;
+        private long clock = 1_000_000;
+        private HttpServer server;
+
+        void start() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/sync/changes", exchange -> handle(exchange, this::changes));
+            server.createContext("/sync/push", exchange -> handle(exchange, this::push));
+            server.createContext("/auth/login", this::login);
+            server.start();
+        }
+
+        void stop() {
+            server.stop(0);
+        }
+
+        String url() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        // Every write lands in its own second, like updated_at on the API
+        synchronized void put(String id, String name, int quantity, String location) {
+            clock += 1_000;
+            try {
+                rows.put(id, new JSONObject().put("id", id).put("name", name).put("quantity", quantity)
+                        .put("location", location).put("updatedAt", clock));
+            } catch (Exception error) {
+                throw new AssertionError(error);
+            }
+        }
+
+        private interface Handler {
+            JSONObject handle(HttpExchange exchange) throws Exception;
+        }
+
+        private void handle(HttpExchange exchange, Handler handler) throws IOException {
+            byte[] body;
+            int status = 200;
+            try {
+                assertEquals("Bearer " + TOKEN, exchange.getRequestHeaders().getFirst("Authorization"));
+                body = handler.handle(exchange).toString().getBytes(StandardCharsets.UTF_8);
+            } catch (Throwable error) {
+                status = 500;
+                body = String.valueOf(error).getBytes(StandardCharsets.UTF_8);
+            }
+            String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (status == 200 && accept != null && accept.contains("gzip") && body.length >= SyncTransport.GZIP_MIN_BYTES) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                try (GZIPOutputStream zip = new GZIPOutputStream(out)) {
+                    zip.write(body);
+                }
+                body = out.toByteArray();
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+
+        private synchronized JSONObject changes(HttpExchange exchange) throws Exception {
+            changeRequests++;
+            Map<String, String> query = new HashMap<>();
+            for (String pair : exchange.getRequestURI().getRawQuery().split("&")) {
+                String[] parts = pair.split("=", 2);
+                query.put(parts[0], parts.length > 1 ? URLDecoder.decode(parts[1], "UTF-8") : "");
+            }
+            long since = Long.parseLong(query.get("since"));
+            String afterId = query.get("after_id");
+            int limit = Integer.parseInt(query.get("limit"));
+
+            List<JSONObject> changed = new ArrayList<>();
+            for (JSONObject row : rows.values()) {
+                long updatedAt = row.getLong("updatedAt");
+                if (updatedAt > since || (updatedAt == since && row.getString("id").compareTo(afterId) > 0)) changed.add(row);
+            }
+            changed.sort((a, b) -> {
+                int byTime = Long.compare(a.optLong("updatedAt"), b.optLong("updatedAt"));
+                return byTime != 0 ? byTime : a.optString("id").compareTo(b.optString("id"));
+            });
+
+            List<JSONObject> page = changed.subList(0, Math.min(limit, changed.size()));
+            JSONObject watermark = new JSONObject().put("updatedAt", since).put("id", afterId);
+            if (!page.isEmpty()) {
+                JSONObject last = page.get(page.size() - 1);
+                watermark = new JSONObject().put("updatedAt", last.getLong("updatedAt")).put("id", last.getString("id"));
+            }
+            return new JSONObject().put("status", "ok").put("items", new JSONArray(page))
+                    .put("hasMore", changed.size() > limit).put("watermark", watermark);
+        }
+
+        // Signing in is the one request sent without a token
+        private void login(HttpExchange exchange) throws IOException {
+            int status;
+            String body;
+            try {
+                assertNull(exchange.getRequestHeaders().getFirst("Authorization"));
+                JSONObject request = new JSONObject(readText(exchange.getRequestBody()));
+                assertEquals("clerk", request.getString("username"));
+                passwordHash = request.getString("client_password_hash");
+                boolean wrong = !passwordHash.equals(PASSWORD_HASH);
+                status = wrong ? 401 : 200;
+                body = wrong ? "{\"error\": \"Invalid credentials\"}" : new JSONObject().put("access_token", TOKEN).toString();
+            } catch (Throwable error) {
+                status = 500;
+                body = String.valueOf(error);
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+
+        private synchronized JSONObject push(HttpExchange exchange) throws Exception {
+            boolean gzipped = "gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"));
+            String text = readText(gzipped ? new GZIPInputStream(exchange.getRequestBody()) : exchange.getRequestBody());
+            if (failPushes) throw new IOException("Server unavailable");
+            pushBodies.add(text);
+            pushGzipped.add(gzipped);
+
+            JSONObject body = new JSONObject(text);
+            JSONArray rejected = new JSONArray();
+            JSONArray items = body.getJSONArray("items");
+            for (int i = 0; i < items.length(); i++) {
+                JSONObject item = items.getJSONObject(i);
+                if (item.getInt("quantity") < 0) {
+                    rejected.put(new JSONObject().put("id", item.getString("id")).put("message", "quantity cannot be negative."));
+                    continue;
+                }
+                put(item.getString("id"), item.getString("name"), item.getInt("quantity"), item.getString("location"));
+            }
+            JSONArray updates = body.getJSONArray("updates");
+            for (int i = 0; i < updates.length(); i++) {
+                JSONObject update = updates.getJSONObject(i);
+                JSONObject row = rows.get(update.getString("id"));
+                if (row == null) continue;
+                int quantity = update.has("quantity") ? update.getInt("quantity")
+                        : Math.max(0, row.getInt("quantity") + update.optInt("quantityDelta"));
+                put(update.getString("id"), update.optString("name", row.getString("name")), quantity,
+                        update.has("location") ? update.getString("location") : row.getString("location"));
+            }
+            JSONArray deleted = body.getJSONArray("deleted");
+            for (int i = 0; i < deleted.length(); i++) rows.remove(deleted.getString(i));
+
+            return new JSONObject().put("status", "ok").put("rejected", rejected);
+        }
+
+        private static String readText(InputStream body) throws IOException {
+            try (InputStream in = body) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int n;
+                while ((n = in.read(buffer)) != -1) out.write(buffer, 0, n);
+                return out.toString("UTF-8");
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ from pathlib import Path
 from auth import auth_bp
 from db import get_db_connection, JWT_SECRET_KEY
 
+import gzip
 import json
 import pymysql
 import sys
@@ -285,6 +286,241 @@ def modify_item():
         }
     }), 200
 
+# --- Delta sync for the Android client ---
+# The client keeps a watermark (updated_at in epoch milliseconds + uuid) of the last row
+# it pulled and only asks for rows after it. Pushes send batches of changed items and
+# deleted uuids. Either direction may be gzip compressed.
+
+SYNC_PAGE_LIMIT = 500
+SYNC_MAX_PUSH_ITEMS = 500
+# Bodies smaller than this aren't worth compressing
+GZIP_MIN_BYTES = 1024
+
+def _sync_request_json():
+    # Returns the request body as JSON (gunzipped if needed), or None if it isn't valid
+    body = request.get_data()
+    if request.headers.get("Content-Encoding", "").lower() == "gzip":
+        try:
+            body = gzip.decompress(body)
+        except OSError:
+            return None
+    try:
+        return json.loads(body)
+    except ValueError:
+        return None
+
+def _sync_response(payload, status):
+    # Compact JSON, gzip compressed when the client accepts it and it is worth it
+    body = json.dumps(payload, separators=(",", ":")).encode("utf-8")
+    headers = {"Vary": "Accept-Encoding"}
+    if len(body) >= GZIP_MIN_BYTES and "gzip" in request.headers.get("Accept-Encoding", "").lower():
+        body = gzip.compress(body)
+        headers["Content-Encoding"] = "gzip"
+    return app.response_class(body, status=status, mimetype="application/json", headers=headers)
+
+@app.route("/sync/changes", methods=["GET"])
+@jwt_required()
+def sync_changes():
+    # Items changed after the (since, after_id) watermark, oldest first
+    try:
+        since = int(request.args.get("since", 0))
+        limit = int(request.args.get("limit", SYNC_PAGE_LIMIT))
+    except ValueError:
+        return _sync_response({
+            "status": "error",
+            "message": "since and limit must be integers."
+        }, 400)
+    after_id = request.args.get("after_id", "")
+    limit = max(1, min(limit, SYNC_PAGE_LIMIT))
+    since_seconds = max(0, since) // 1000
+
+    conn = get_db_connection()
+    try:
+        with conn.cursor() as cursor:
+            # updated_at only has whole seconds, so rows from the current second are held
+            # back until it has passed. Otherwise a later write in the same second could sort
+            # before a watermark the client has already stored and never be sent.
+            # Reads in order off idx_inventory_items_updated_at_uuid (see install.py).
+            sql = """
+                SELECT
+                    uuid,
+                    name,
+                    quantity,
+                    max_quantity,
+                    location,
+                    symbol_name,
+                    UNIX_TIMESTAMP(updated_at) AS updated_at
+                FROM inventory_items
+                WHERE (updated_at > FROM_UNIXTIME(%s)
+                       OR (updated_at = FROM_UNIXTIME(%s) AND uuid > %s))
+                  AND updated_at < NOW()
+                ORDER BY updated_at, uuid
+                LIMIT %s
+            """
+            # One extra row tells us if there is another page
+            cursor.execute(sql, (since_seconds, since_seconds, after_id, limit + 1))
+            rows = cursor.fetchall()
+    finally:
+        conn.close()
+
+    has_more = len(rows) > limit
+    rows = rows[:limit]
+
+    items = []
+    for row in rows:
+        items.append({
+            "id": row["uuid"],
+            "name": row["name"],
+            "quantity": row["quantity"],
+            "maxQuantity": row["max_quantity"],
+            "location": row["location"],
+            "symbolName": row["symbol_name"],
+            "updatedAt": int(row["updated_at"]) * 1000,
+        })
+
+    watermark = {"updatedAt": since, "id": after_id}
+    if items:
+        watermark = {"updatedAt": items[-1]["updatedAt"], "id": items[-1]["id"]}
+
+    return _sync_response({
+        "status": "ok",
+        "items": items,
+        "hasMore": has_more,
+        "watermark": watermark
+    }, 200)
+
+@app.route("/sync/push", methods=["POST"])
+@jwt_required()
+def sync_push():
+    # Upsert a batch of items by uuid, apply a batch of partial updates and delete a batch of uuids.
+    # "items" are whole items (created on the app), "updates" only carry the fields that
+    # changed and may move the quantity by quantityDelta instead of setting it, so changes
+    # made on other devices meanwhile aren't overwritten.
+    # Invalid items are rejected one by one, the rest of the batch is still applied.
+    data = _sync_request_json()
+
+    if not isinstance(data, dict):
+        return _sync_response({
+            "status": "error",
+            "message": "Request body must be valid JSON."
+        }, 400)
+
+    items = data.get("items") or []
+    updates = data.get("updates") or []
+    deleted = data.get("deleted") or []
+    if not isinstance(items, list) or not isinstance(updates, list) or not isinstance(deleted, list):
+        return _sync_response({
+            "status": "error",
+            "message": "Fields 'items', 'updates' and 'deleted' must be lists."
+        }, 400)
+    if len(items) + len(updates) + len(deleted) > SYNC_MAX_PUSH_ITEMS:
+        return _sync_response({
+            "status": "error",
+            "message": f"At most {SYNC_MAX_PUSH_ITEMS} changes per request."
+        }, 413)
+
+    rows = []
+    rejected = []
+    for item in items:
+        item_id = item.get("id") if isinstance(item, dict) else None
+        try:
+            item_id = str(uuid.UUID(str(item_id)))
+            name = str(item["name"]).strip()
+            location = str(item.get("location") or "").strip()
+            quantity = int(item["quantity"])
+        except (KeyError, TypeError, ValueError) as err:
+            rejected.append({"id": item_id, "message": f"Missing or invalid fields: {err}"})
+            continue
+
+        # Input validation, the Android app has no max quantity or required location
+        if not name:
+            rejected.append({"id": item_id, "message": "name cannot be empty."})
+            continue
+        if quantity < 0:
+            rejected.append({"id": item_id, "message": "quantity cannot be negative."})
+            continue
+        rows.append((item_id, name, quantity, max(quantity, 1), location))
+
+    # One (SET clause, params) per update, only the fields that are present
+    changes = []
+    for update in updates:
+        item_id = update.get("id") if isinstance(update, dict) else None
+        sets = []
+        params = []
+        try:
+            item_id = str(uuid.UUID(str(item_id)))
+            if "name" in update:
+                name = str(update["name"]).strip()
+                if not name:
+                    raise ValueError("name cannot be empty.")
+                sets.append("name = %s")
+                params.append(name)
+            if "quantity" in update and "quantityDelta" in update:
+                raise ValueError("send either quantity or quantityDelta, not both.")
+            if "quantity" in update:
+                quantity = int(update["quantity"])
+                if quantity < 0:
+                    raise ValueError("quantity cannot be negative.")
+                sets.append("quantity = %s")
+                params.append(quantity)
+            if "quantityDelta" in update:
+                # Relative to whatever the server holds now, never below zero
+                sets.append("quantity = GREATEST(0, quantity + %s)")
+                params.append(int(update["quantityDelta"]))
+            if "location" in update:
+                sets.append("location = %s")
+                params.append(str(update["location"] or "").strip())
+        except (TypeError, ValueError) as err:
+            rejected.append({"id": item_id, "message": f"Missing or invalid fields: {err}"})
+            continue
+
+        if not sets:
+            continue
+        # MySQL assigns left to right, so this sees the new quantity
+        sets.append("max_quantity = GREATEST(max_quantity, quantity)")
+        changes.append((", ".join(sets), params + [item_id]))
+
+    delete_ids = []
+    for item_id in deleted:
+        try:
+            delete_ids.append(str(uuid.UUID(str(item_id))))
+        except ValueError:
+            rejected.append({"id": item_id, "message": "Field 'id' must be a valid UUID string."})
+
+    # Database operation
+    conn = get_db_connection()
+    try:
+        with conn.cursor() as cursor:
+            if rows:
+                sql = """
+                    INSERT INTO inventory_items
+                        (uuid, name, quantity, max_quantity, location)
+                    VALUES (%s, %s, %s, %s, %s)
+                    ON DUPLICATE KEY UPDATE
+                        name = VALUES(name),
+                        quantity = VALUES(quantity),
+                        max_quantity = GREATEST(max_quantity, VALUES(quantity)),
+                        location = VALUES(location)
+                """
+                cursor.executemany(sql, rows)
+            # An update for an item deleted on the server changes nothing and isn't an error
+            for sets, params in changes:
+                cursor.execute(f"UPDATE inventory_items SET {sets} WHERE uuid = %s", params)
+            if delete_ids:
+                placeholders = ", ".join(["%s"] * len(delete_ids))
+                cursor.execute(f"DELETE FROM inventory_items WHERE uuid IN ({placeholders})", delete_ids)
+        conn.commit()
+    finally:
+        conn.close()
+
+    return _sync_response({
+        "status": "ok",
+        "upserted": len(rows),
+        "updated": len(changes),
+        "deleted": len(delete_ids),
+        "rejected": rejected
+    }, 200)
+
 # NOTE: Not requiring JWT Token for /ping route
 @app.route("/ping", methods=["GET"])
 def health_check():
@@ -80,9 +80,16 @@ def ensure_schema(conn: pymysql.connections.Connection) -> None:
             created_at   DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
             updated_at   DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
             PRIMARY KEY (id),
-            UNIQUE KEY uq_inventory_items_uuid (uuid)
+            UNIQUE KEY uq_inventory_items_uuid (uuid),
+            KEY idx_inventory_items_updated_at_uuid (updated_at, uuid)
         ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
         """,
+        # Delta sync reads changes in (updated_at, uuid) order, added separately for
+        # databases created before the index was part of the table
+        """
+        CREATE INDEX IF NOT EXISTS idx_inventory_items_updated_at_uuid
+            ON inventory_items (updated_at, uuid);
+        """,
         """
         CREATE TABLE IF NOT EXISTS inventory_item_audit (
             id                BIGINT UNSIGNED NOT NULL AUTO_INCREMENT,